@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.scripts;
+
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.ModeRegistry;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * PrecompileModes parses all DataSource XML files and writes the resulting
+ * mode registry in serialized form, so that the webapp and taskomatic can
+ * skip the parsing at startup.
+ * @version $Rev$
+ */
+public class PrecompileModes {
+
+    private PrecompileModes() {
+    }
+
+    private static void usage() {
+        System.out.println("Usage: PrecompileModes <outputfile>");
+    }
+
+    /**
+     * Main method, expects the file to write the precompiled modes to.
+     * @param args the output file name as the first argument.
+     * @throws IOException if the output file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage();
+            System.exit(-1);
+        }
+
+        File file = new File(args[0]);
+        ModeRegistry registry = ModeRegistry.parse(new ModeFactory());
+        registry.write(file);
+        System.out.println("Wrote " + registry.getNames().size() +
+                " query files to " + file);
+    }
+}
@@ -23,12 +23,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The Config class acts as an abstraction layer between our configuration
@@ -38,6 +43,10 @@ import java.util.TreeSet;
  * <p>
  * Config files are properties, with /usr/share/rhn/config-defaults/rhn.conf
  * setting defaults that can be overridden by /etc/rhn/rhn.conf.
+ * <p>
+ * The values are kept in an immutable snapshot which remembers how each name
+ * it has been asked for resolves, so reads take no lock. Changing a value, or
+ * parsing the files again, builds a new snapshot and swaps it in.
  *
  * @version $Rev$
  */
@@ -78,10 +87,10 @@ public class Config {
      * array of prefix in the order they should be search
      * if the given lookup string is without a namespace.
      */
-    private final String[] prefixOrder = new String[] {"web", "server"};
-    private static Config singletonConfig = null;
-    /** hash of configuration properties */
-    private final Properties configValues = new Properties();
+    private static final String[] PREFIX_ORDER = new String[] {"web", "server"};
+    private static volatile Config singletonConfig = null;
+    /** snapshot of the configuration properties */
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<String, String>());
     /** set of configuration file names */
     private final TreeSet<File> fileList = new TreeSet<File>(new Comparator<File>() {
 
@@ -132,11 +141,18 @@ public class Config {
      *
      * @return the config option
      */
-    public static synchronized Config get() {
-        if (singletonConfig == null) {
-            singletonConfig = new Config();
+    public static Config get() {
+        Config retval = singletonConfig;
+        if (retval == null) {
+            synchronized (Config.class) {
+                retval = singletonConfig;
+                if (retval == null) {
+                    retval = new Config();
+                    singletonConfig = retval;
+                }
+            }
         }
-        return singletonConfig;
+        return retval;
     }
 
     private static String getDefaultConfigDir() {
@@ -180,7 +196,7 @@ public class Config {
      * @return true if the config contains key
      */
     public boolean containsKey(String name) {
-        return configValues.containsKey(name);
+        return snapshot.values.containsKey(name);
     }
 
     /**
@@ -190,50 +206,14 @@ public class Config {
      * @return the value
      */
     public String getString(String value) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("getString() -     getString() called with: " + value);
-        }
         if (value == null) {
             return null;
         }
-
-        int lastDot = value.lastIndexOf('.');
-        String ns = "";
-        String property = value;
-        if (lastDot > 0) {
-            property = value.substring(lastDot + 1);
-            ns = value.substring(0, lastDot);
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("getString() -     getString() -> Getting property: " +
-                    property);
-        }
-        String result = configValues.getProperty(property);
+        String result = snapshot.resolve(value);
         if (logger.isDebugEnabled()) {
-            logger.debug("getString() -     getString() -> result: " + result);
+            logger.debug("getString() - " + value + " is: " + result);
         }
-        if (result == null) {
-            if (!"".equals(ns)) {
-                result = configValues.getProperty(ns + "." + property);
-            }
-            else {
-                for (int i = 0; i < prefixOrder.length; i++) {
-                    result = configValues.getProperty(prefixOrder[i] + "." + property);
-                    if (result != null) {
-                        break;
-                    }
-                }
-            }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("getString() -     getString() -> returning: " + result);
-        }
-
-        if (result == null || result.equals("")) {
-            return null;
-        }
-
-        return StringUtils.trim(result);
+        return result;
     }
 
     /**
@@ -316,16 +296,21 @@ public class Config {
      * @param value new value
      * @return the previous value of the property
      */
-    public String setString(String name, String value) {
-        return (String) configValues.setProperty(name, value);
+    public synchronized String setString(String name, String value) {
+        Map<String, String> values = new HashMap<String, String>(snapshot.values);
+        String retval = values.put(name, value);
+        snapshot = new Snapshot(values);
+        return retval;
     }
 
     /**
      * remove the config entry for key
      * @param name key to remove
      */
-    public void remove(String name) {
-        configValues.remove(name);
+    public synchronized void remove(String name) {
+        Map<String, String> values = new HashMap<String, String>(snapshot.values);
+        values.remove(name);
+        snapshot = new Snapshot(values);
     }
 
     /**
@@ -335,29 +320,10 @@ public class Config {
      * @return the value
      */
     public boolean getBoolean(String s) {
-        String value = getString(s);
-        if (logger.isDebugEnabled()) {
-            logger.debug("getBoolean() - " + s + " is : " + value);
-        }
-        if (value == null) {
+        if (s == null) {
             return false;
         }
-
-        //need to check the possible true values
-        // tried to use BooleanUtils, but that didn't
-        // get the job done for an integer as a String.
-
-
-        for (int i = 0; i < TRUE_VALUES.length; i++) {
-            if (TRUE_VALUES[i].equalsIgnoreCase(value)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("getBoolean() - Returning true: " + value);
-                }
-                return true;
-            }
-        }
-
-        return false;
+        return snapshot.resolveBoolean(s);
     }
 
     /**
@@ -369,15 +335,19 @@ public class Config {
         // need to check the possible true values
         // tried to use BooleanUtils, but that didn't
         // get the job done for an integer as a String.
-        for (int i = 0; i < TRUE_VALUES.length; i++) {
-            if (TRUE_VALUES[i].equalsIgnoreCase(b)) {
-                configValues.setProperty(s, "1");
+        setString(s, isTrue(b) ? "1" : "0");
+    }
 
-                // get out we're done here
-                return;
+    private static boolean isTrue(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < TRUE_VALUES.length; i++) {
+            if (TRUE_VALUES[i].equalsIgnoreCase(value)) {
+                return true;
             }
         }
-        configValues.setProperty(s, "0");
+        return false;
     }
 
     private void getFiles(String path) {
@@ -423,7 +393,8 @@ public class Config {
     /**
      * Parse all of the added files.
      */
-    public void parseFiles() {
+    public synchronized void parseFiles() {
+        Map<String, String> values = new HashMap<String, String>(snapshot.values);
         for (Iterator<File> i = fileList.iterator(); i.hasNext();) {
             File curr = i.next();
 
@@ -440,7 +411,6 @@ public class Config {
 
             // loop through all of the config values in the properties file
             // making sure the prefix is there.
-            Properties newProps = new Properties();
             for (Iterator j = props.keySet().iterator(); j.hasNext();) {
                 String key = (String) j.next();
                 String newKey = key;
@@ -448,10 +418,10 @@ public class Config {
                     newKey = ns + "." + key;
                 }
                 logger.debug("Adding: " + newKey + ": " + props.getProperty(key));
-                newProps.put(newKey, props.getProperty(key));
+                values.put(newKey, props.getProperty(key));
             }
-            configValues.putAll(newProps);
         }
+        snapshot = new Snapshot(values);
     }
 
     /**
@@ -464,15 +434,85 @@ public class Config {
      */
     public Properties getNamespaceProperties(String namespace) {
         Properties prop = new Properties();
-        for (Iterator i = configValues.keySet().iterator(); i.hasNext();) {
-            String key = (String) i.next();
+        for (Map.Entry<String, String> entry : snapshot.values.entrySet()) {
+            String key = entry.getKey();
             if (key.startsWith(namespace)) {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Looking for key: [" + key + "]");
                 }
-                prop.put(key, configValues.getProperty(key));
+                prop.put(key, entry.getValue());
             }
         }
         return prop;
     }
+
+    /**
+     * Immutable set of configuration values. The value each name resolves
+     * to, after the namespace lookups and trimming, is remembered the first
+     * time the name is asked for.
+     */
+    private static final class Snapshot {
+
+        // marks names which resolve to no value
+        private static final String NONE = new String();
+
+        private final Map<String, String> values;
+        private final ConcurrentMap<String, String> resolved =
+                new ConcurrentHashMap<String, String>();
+        private final ConcurrentMap<String, Boolean> booleans =
+                new ConcurrentHashMap<String, Boolean>();
+
+        private Snapshot(Map<String, String> valuesIn) {
+            values = Collections.unmodifiableMap(valuesIn);
+        }
+
+        private String resolve(String name) {
+            String result = resolved.get(name);
+            if (result == null) {
+                result = lookup(name);
+                if (result == null || result.equals("")) {
+                    result = NONE;
+                }
+                else {
+                    result = StringUtils.trim(result);
+                }
+                resolved.putIfAbsent(name, result);
+            }
+            return result == NONE ? null : result;
+        }
+
+        private boolean resolveBoolean(String name) {
+            Boolean result = booleans.get(name);
+            if (result == null) {
+                result = Boolean.valueOf(isTrue(resolve(name)));
+                booleans.putIfAbsent(name, result);
+            }
+            return result.booleanValue();
+        }
+
+        private String lookup(String name) {
+            int lastDot = name.lastIndexOf('.');
+            String ns = "";
+            String property = name;
+            if (lastDot > 0) {
+                property = name.substring(lastDot + 1);
+                ns = name.substring(0, lastDot);
+            }
+            String result = values.get(property);
+            if (result == null) {
+                if (!"".equals(ns)) {
+                    result = values.get(ns + "." + property);
+                }
+                else {
+                    for (int i = 0; i < PREFIX_ORDER.length; i++) {
+                        result = values.get(PREFIX_ORDER[i] + "." + property);
+                        if (result != null) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
 }
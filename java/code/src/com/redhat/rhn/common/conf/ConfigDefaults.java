@@ -171,6 +171,43 @@ public class ConfigDefaults {
      */
     public static final String TASKOMATIC_CHANNEL_REPODATA_WORKERS
         = "java.taskomatic_channel_repodata_workers";
+    public static final String TASKOMATIC_REPODATA_INCREMENTAL_THRESHOLD
+        = "java.taskomatic_repodata_incremental_threshold";
+
+    /**
+     * Number of threads executing the events published to the MessageQueue
+     */
+    public static final String MESSAGE_QUEUE_THREAD_POOL_SIZE
+        = "java.message_queue_thread_pool_size";
+    public static final String MESSAGE_QUEUE_STATS_INTERVAL
+        = "java.message_queue_stats_interval";
+
+    /**
+     * Web session cache defaults
+     */
+    public static final String SESSION_CACHE_SIZE = "java.session_cache_size";
+    public static final String SESSION_CHECK_INTERVAL = "java.session_check_interval";
+    public static final String SESSION_EXTEND_INTERVAL = "java.session_extend_interval";
+
+    /**
+     * Search server client defaults
+     */
+    public static final String SEARCH_CLIENT_THREADS = "java.search_client_threads";
+    public static final String SEARCH_CLIENT_TIMEOUT = "java.search_client_timeout";
+    public static final String SEARCH_CACHE_SIZE = "java.search_cache_size";
+    public static final String SEARCH_CACHE_TTL = "java.search_cache_ttl";
+
+    /**
+     * Number of mail server connections kept open, and of threads sending
+     * notification mails
+     */
+    public static final String SMTP_POOL_SIZE = "java.smtp_pool_size";
+    public static final String MAIL_SENDER_THREADS = "java.mail_sender_threads";
+
+    /**
+     * Number of rows up to which an API result is read before it is written
+     */
+    public static final String API_STREAM_BUFFER_ROWS = "java.api_stream_buffer_rows";
 
     private ConfigDefaults() {
     }
@@ -596,6 +633,118 @@ public class ConfigDefaults {
         return Config.get().getInt(TASKOMATIC_CHANNEL_REPODATA_WORKERS, 1);
     }
 
+    /**
+     * Returns the maximum number of added, changed and removed packages, in percent
+     * of the channel packages, for which the repodata of a channel is updated
+     * from the previous run instead of regenerated from scratch
+     * @return threshold in percent, 0 to always regenerate from scratch
+     */
+    public int getRepodataIncrementalThreshold() {
+        return Config.get().getInt(TASKOMATIC_REPODATA_INCREMENTAL_THRESHOLD, 10);
+    }
+
+    /**
+     * Returns the number of threads executing MessageQueue events
+     * @return MessageQueue thread pool size
+     */
+    public int getMessageQueueThreadPoolSize() {
+        return Config.get().getInt(MESSAGE_QUEUE_THREAD_POOL_SIZE, 5);
+    }
+
+    /**
+     * Returns how often the queue depth, wait time and execution time of
+     * every event type of the message queue are logged
+     * @return interval in minutes, 0 to never log them
+     */
+    public int getMessageQueueStatsInterval() {
+        return Config.get().getInt(MESSAGE_QUEUE_STATS_INTERVAL, 60);
+    }
+
+    /**
+     * Returns the maximum number of web sessions kept in memory
+     * @return session cache size
+     */
+    public int getSessionCacheSize() {
+        return Config.get().getInt(SESSION_CACHE_SIZE, 10000);
+    }
+
+    /**
+     * Returns the number of seconds for which a cached web session is trusted
+     * without checking that it still exists in the database
+     * @return session check interval in seconds
+     */
+    public int getSessionCheckInterval() {
+        return Config.get().getInt(SESSION_CHECK_INTERVAL, 5);
+    }
+
+    /**
+     * Returns the number of seconds for which the expiration of a cached web
+     * session is not written again
+     * @return session extend interval in seconds
+     */
+    public int getSessionExtendInterval() {
+        return Config.get().getInt(SESSION_EXTEND_INTERVAL, 60);
+    }
+
+    /**
+     * Returns the maximum number of concurrent calls to the search server
+     * @return number of search client threads
+     */
+    public int getSearchClientThreads() {
+        return Config.get().getInt(SEARCH_CLIENT_THREADS, 5);
+    }
+
+    /**
+     * Returns the time in seconds after which a call to the search server is
+     * given up
+     * @return search client timeout
+     */
+    public int getSearchClientTimeout() {
+        return Config.get().getInt(SEARCH_CLIENT_TIMEOUT, 60);
+    }
+
+    /**
+     * Returns the maximum number of search results kept in memory
+     * @return search cache size
+     */
+    public int getSearchCacheSize() {
+        return Config.get().getInt(SEARCH_CACHE_SIZE, 500);
+    }
+
+    /**
+     * Returns the time in seconds for which search results are kept in memory,
+     * 0 if they are not
+     * @return search cache time to live
+     */
+    public int getSearchCacheTtl() {
+        return Config.get().getInt(SEARCH_CACHE_TTL, 0);
+    }
+
+    /**
+     * Returns the maximum number of idle mail server connections kept open
+     * @return smtp pool size
+     */
+    public int getSmtpPoolSize() {
+        return Config.get().getInt(SMTP_POOL_SIZE, 4);
+    }
+
+    /**
+     * Returns the number of threads sending notification mails concurrently
+     * @return number of mail sender threads
+     */
+    public int getMailSenderThreads() {
+        return Config.get().getInt(MAIL_SENDER_THREADS, 4);
+    }
+
+    /**
+     * Returns the number of rows up to which an API result returned as a
+     * stream is read before it is written to the response
+     * @return number of rows read ahead
+     */
+    public int getApiStreamBufferRows() {
+        return Config.get().getInt(API_STREAM_BUFFER_ROWS, 5000);
+    }
+
     /**
      * Returns actions display limit
      * @return actions display limit
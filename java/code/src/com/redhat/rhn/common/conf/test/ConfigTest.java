@@ -286,6 +286,17 @@ public class ConfigTest extends RhnBaseTestCase {
         c.setString("to_override", oldValue);
     }
 
+    public void testSetStringAfterLookup() throws Exception {
+        String key = "newvalue" + TestUtils.randomString();
+        assertNull(c.getString(key));
+        assertFalse(c.getBoolean("web." + key));
+        c.setString("web." + key, "yes");
+        assertEquals("yes", c.getString(key));
+        assertTrue(c.getBoolean("web." + key));
+        c.remove("web." + key);
+        assertNull(c.getString(key));
+    }
+
     public void testGetUndefinedInt() throws Exception {
         int zero = c.getInt("Undefined_config_variable");
         assertEquals(0, zero);
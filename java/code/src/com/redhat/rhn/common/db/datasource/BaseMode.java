@@ -14,12 +14,16 @@
  */
 package com.redhat.rhn.common.db.datasource;
 
+import java.io.Serializable;
+
 /**
  * A cached set of query/elaborator strings and the parameterMap hash maps.
  *
  * @version $Rev: 59372 $
  */
-public abstract class BaseMode implements Mode {
+public abstract class BaseMode implements Mode, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String name;
     private CachedStatement query;
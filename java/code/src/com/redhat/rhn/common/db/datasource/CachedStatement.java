@@ -21,24 +21,24 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.HibernateHelper;
 import com.redhat.rhn.common.hibernate.HibernateRuntimeException;
 import com.redhat.rhn.common.translation.SqlExceptionTranslator;
-import com.redhat.rhn.common.util.MethodUtil;
-import com.redhat.rhn.common.util.StringUtil;
 
 import org.apache.log4j.Logger;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 
 import java.io.Serializable;
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -46,6 +46,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A cached set of query/elaborator strings and the parameterMap hash maps.
@@ -64,6 +67,14 @@ public class CachedStatement implements Serializable {
     private static Logger log = Logger
             .getLogger(CachedStatement.class);
     static final int BATCH_SIZE = 500;
+    /**
+     * Elaborator batches are padded up to one of these sizes, so that only a
+     * handful of distinct SQL strings are ever built and the database can
+     * reuse the parsed cursors.
+     */
+    private static final int[] BATCH_BUCKETS = {1, 10, 50, 100, 250, BATCH_SIZE};
+    private static final AtomicLong EXPANDED_HITS = new AtomicLong();
+    private static final AtomicLong EXPANDED_MISSES = new AtomicLong();
     private final String alias;
     private final String name;
     /** the original query, before the named bind parameters were removed. */
@@ -80,6 +91,9 @@ public class CachedStatement implements Serializable {
     // existing one with the %s expanded out.
     private CachedStatement parentStatement;
     private RestartData restartData = null;
+    // Expanded copies of this statement with %s replaced by bind
+    // parameters, keyed by batch bucket size.
+    private transient ConcurrentMap<Integer, CachedStatement> expanded;
 
     // We could (and probably should) cache the ResultSet metadata here as
     // well.  There is no reason that the first call to each statement
@@ -122,23 +136,16 @@ public class CachedStatement implements Serializable {
      */
     public CachedStatement(CachedStatement orig) {
         this(orig.getName(), orig.getAlias());
-        this.setQuery(new String(orig.getOrigQuery()));
-
-        if (orig.column != null) {
-            this.column = new String(orig.column);
-        }
-
-        this.params = new ArrayList<String>(orig.params);
-        this.sortOptions = new ArrayList<String>(orig.sortOptions);
-
-        if (orig.defaultSort != null) {
-            this.defaultSort = new String(orig.defaultSort);
-        }
-
-        if (orig.sortOrder != null) {
-            this.sortOrder = new String(orig.sortOrder);
-        }
-
+        // The parsed query is never modified once set, so it is shared with
+        // the original instead of being parsed again for every copy.
+        this.origQuery = orig.origQuery;
+        this.query = orig.query;
+        this.qMap = orig.qMap;
+        this.column = orig.column;
+        this.params.addAll(orig.params);
+        this.sortOptions.addAll(orig.sortOptions);
+        this.defaultSort = orig.defaultSort;
+        this.sortOrder = orig.sortOrder;
         this.multiple = orig.multiple;
     }
 
@@ -282,6 +289,64 @@ public class CachedStatement implements Serializable {
         return res.intValue();
     }
 
+    int executeBatchUpdate(List<Map<String, Object>> parameterList) {
+        PreparedStatement ps = null;
+        try {
+            Connection conn = stealConnection();
+            ps = conn.prepareStatement(query);
+            if (log.isDebugEnabled()) {
+                log.debug("executeBatchUpdate() - Executing: " + query);
+                log.debug("executeBatchUpdate() - With " + parameterList.size() +
+                        " parameter sets");
+            }
+            int count = 0;
+            int pending = 0;
+            for (Map<String, Object> parameters : parameterList) {
+                NamedPreparedStatement.addBatch(ps, qMap, setupParamMap(parameters));
+                pending++;
+                if (pending == BATCH_SIZE) {
+                    count += sumUpdateCounts(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                count += sumUpdateCounts(ps.executeBatch());
+            }
+            return count;
+        }
+        catch (BatchUpdateException e) {
+            // the cause of the failure, e.g. a constraint violation, is
+            // usually reported by the next exception
+            SQLException cause = e.getNextException();
+            throw SqlExceptionTranslator.sqlException(cause == null ? e : cause);
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
+        catch (HibernateException he) {
+            throw new
+            HibernateRuntimeException(
+                    "HibernateException executing CachedStatement", he);
+        }
+        finally {
+            HibernateHelper.cleanupDB(ps);
+        }
+    }
+
+    private static int sumUpdateCounts(int[] counts) {
+        int retval = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // the driver does not know, assume the statement did its job
+                retval++;
+            }
+            else if (counts[i] > 0) {
+                retval += counts[i];
+            }
+        }
+        return retval;
+    }
+
 
     DataResult<Object> execute(Map<String, Object> parameters, Mode mode) {
         return execute(parameters, defaultSort, sortOrder, mode);
@@ -300,6 +365,12 @@ public class CachedStatement implements Serializable {
     Object execute(Map<String, Object> parameters, List<Object> inClause,
             String sortColumn,
             String order, Mode mode) {
+        return execute(prepareQuery(inClause, sortColumn, order), qMap, parameters,
+                mode);
+    }
+
+    private String prepareQuery(List<Object> inClause, String sortColumn,
+            String order) {
         if (query.indexOf("%o") > 0 && !sortOptions.contains(sortColumn)) {
             throw new IllegalArgumentException("Sort Column, " + sortColumn +
                     " invalid for query " + this);
@@ -341,8 +412,7 @@ public class CachedStatement implements Serializable {
 
             finalQuery = finalQuery.replaceAll("%s", buf.toString());
         }
-
-        return execute(finalQuery, qMap, parameters, mode);
+        return finalQuery;
     }
 
     DataResult<Object> execute(Map<String, Object> parameters,
@@ -352,6 +422,114 @@ public class CachedStatement implements Serializable {
                 order, mode);
     }
 
+    /**
+     * Executes the query with a forward-only cursor and hands the rows to the
+     * handler as they are read. Rows are elaborated in windows of BATCH_SIZE,
+     * so only one window is held in memory at any time.
+     */
+    int executeStreaming(Map<String, Object> parameters,
+            Map<String, Object> elabParams, SelectMode mode,
+            RowHandler<Object> handler) {
+        return executeStreaming(prepareQuery(null, defaultSort, sortOrder),
+                parameters, elabParams, mode, handler);
+    }
+
+    /**
+     * Streams the rows of the given, already prepared, SQL of this statement.
+     */
+    int executeStreaming(String sql, Map<String, Object> parameters,
+            Map<String, Object> elabParams, SelectMode mode,
+            RowHandler<Object> handler) {
+        String className = mode.getClassString();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            Connection conn = stealConnection();
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setMaxRows(mode.getMaxRows());
+            ps.setFetchSize(mode.getFetchSize());
+
+            if (log.isDebugEnabled()) {
+                log.debug("executeStreaming() - Executing: " + sql);
+                log.debug("executeStreaming() - With: " + parameters);
+            }
+
+            if (!NamedPreparedStatement.execute(ps, qMap, setupParamMap(parameters))) {
+                return 0;
+            }
+            rs = ps.getResultSet();
+            List<String> columns = getColumnNames(rs.getMetaData());
+            RowMapper mapper = null;
+            if (className != null && !className.equals("java.util.Map")) {
+                mapper = RowMapper.getMapper(Class.forName(className), columns);
+            }
+
+            Map<String, Object> elab = elabParams;
+            if (elab == null) {
+                elab = Collections.emptyMap();
+            }
+            List<Object> window = new ArrayList<Object>(BATCH_SIZE);
+            int count = 0;
+            while (rs.next()) {
+                if (mapper == null) {
+                    Map<String, Object> row = new HashMap<String, Object>();
+                    addToMap(columns, rs, row, -1);
+                    window.add(row);
+                }
+                else {
+                    Object row = mapper.getMappedClass().newInstance();
+                    addToObject(mapper, rs, row, false);
+                    window.add(row);
+                }
+                if (window.size() == BATCH_SIZE) {
+                    count += handleWindow(window, mode, elab, handler);
+                }
+            }
+            count += handleWindow(window, mode, elab, handler);
+            return count;
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
+        catch (HibernateException he) {
+            throw new
+            HibernateRuntimeException(
+                    "HibernateException executing CachedStatement", he);
+        }
+        catch (ClassNotFoundException e) {
+            throw new ObjectCreateWrapperException("Could not create " +
+                    className, e);
+        }
+        catch (InstantiationException e) {
+            throw new ObjectCreateWrapperException("Could not create " +
+                    className, e);
+        }
+        catch (IllegalAccessException e) {
+            throw new ObjectCreateWrapperException("Could not create " +
+                    className, e);
+        }
+        finally {
+            HibernateHelper.cleanupDB(rs, ps);
+        }
+    }
+
+    private int handleWindow(List<Object> window, SelectMode mode,
+            Map<String, Object> elabParams, RowHandler<Object> handler) {
+        int size = window.size();
+        if (size == 0) {
+            return 0;
+        }
+        if (!mode.getElaborators().isEmpty()) {
+            mode.elaborate(window, elabParams);
+        }
+        for (Object row : window) {
+            handler.handleRow(row);
+        }
+        window.clear();
+        return size;
+    }
+
     Collection<Object> executeElaborator(List<Object> resultList, Mode mode,
             Map<String, Object> parametersIn) {
         List<Object> elaborated = new LinkedList<Object>();
@@ -385,29 +563,71 @@ public class CachedStatement implements Serializable {
                     mode, resultList);
         }
 
-        StringBuilder bindParams = new StringBuilder(":l0");
-        List<String> newParams = new ArrayList<String>(params);
         if (!checkForColumn(resultList.get(0), column)) {
             throw new MapColumnNotFoundException("Column, " + column +
                     ", not found " +
                     "in driving query results");
         }
 
-        parameters.put("l0", getKey(resultList.get(0), column));
+        // Pad the batch to its bucket size by repeating the last key, the
+        // duplicates do not change the outcome of the IN clause.
+        int arity = bucketSize(len);
+        Object key = null;
+        for (int i = 0; i < arity; i++) {
+            if (i < len) {
+                key = getKey(resultList.get(i), column);
+            }
+            parameters.put("l" + i, key);
+        }
+
+        return getExpandedStatement(arity).executeElaboratorBatch(resultList, mode,
+                parameters);
+    }
+
+    private static int bucketSize(int len) {
+        for (int i = 0; i < BATCH_BUCKETS.length; i++) {
+            if (len <= BATCH_BUCKETS[i]) {
+                return BATCH_BUCKETS[i];
+            }
+        }
+        return len;
+    }
+
+    private synchronized ConcurrentMap<Integer, CachedStatement> getExpandedMap() {
+        if (expanded == null) {
+            expanded = new ConcurrentHashMap<Integer, CachedStatement>();
+        }
+        return expanded;
+    }
+
+    /**
+     * Returns the copy of this statement with %s expanded to arity bind
+     * parameters named l0 .. l(arity - 1), creating it on first use.
+     */
+    private CachedStatement getExpandedStatement(int arity) {
+        ConcurrentMap<Integer, CachedStatement> cache = getExpandedMap();
+        Integer cacheKey = new Integer(arity);
+        CachedStatement cs = cache.get(cacheKey);
+        if (cs != null) {
+            EXPANDED_HITS.incrementAndGet();
+            return cs;
+        }
+        EXPANDED_MISSES.incrementAndGet();
+
+        StringBuilder bindParams = new StringBuilder(":l0");
+        List<String> newParams = new ArrayList<String>(params);
         newParams.add("l0");
         // start at 1, because we already added the first one
-        for (int i = 1; i < len; i++) {
+        for (int i = 1; i < arity; i++) {
             bindParams.append(", :l" + i);
-            parameters.put("l" + i, getKey(resultList.get(i), column));
             newParams.add("l" + i);
         }
 
-        // This should all be removed and replaced with a copy constructor.
         String newName = "";
         if (!name.equals("")) {
-            newName = name + len;
+            newName = name + arity;
         }
-        CachedStatement cs = new CachedStatement(newName, alias, this);
+        cs = new CachedStatement(newName, alias, this);
         cs.setQuery(origQuery.replaceAll("%s", bindParams.toString()));
         cs.setMultiple(multiple);
         cs.setParams(newParams);
@@ -415,8 +635,26 @@ public class CachedStatement implements Serializable {
         cs.setSortOptions(sortOptions);
         cs.setSortOrder(sortOrder);
         cs.setDefaultSort(defaultSort);
-        // Should cache the new CachedStatment here
-        return cs.executeElaboratorBatch(resultList, mode, parameters);
+        CachedStatement existing = cache.putIfAbsent(cacheKey, cs);
+        return existing == null ? cs : existing;
+    }
+
+    /**
+     * Returns the number of elaborator batches that reused an already
+     * expanded statement.
+     * @return number of expanded statement cache hits
+     */
+    public static long getExpandedStatementHits() {
+        return EXPANDED_HITS.get();
+    }
+
+    /**
+     * Returns the number of elaborator batches that had to expand and parse
+     * a new statement.
+     * @return number of expanded statement cache misses
+     */
+    public static long getExpandedStatementMisses() {
+        return EXPANDED_MISSES.get();
     }
 
     private Map<String, Object> setupParamMap(Map<String, Object> parameters) {
@@ -573,12 +811,19 @@ public class CachedStatement implements Serializable {
                         ", not found in elaborator results");
             }
 
+            Class<?> clazz = null;
+            RowMapper mapper = null;
+            if (className != null && !className.equals("java.util.Map")) {
+                clazz = Class.forName(className);
+                mapper = RowMapper.getMapper(clazz, columns);
+            }
+
             // loop through the results, adding them to the displayMap
             while (rs.next()) {
                 /*
                  * If no className was specified *or* if the caller wants a Map
                  */
-                if (className == null || className.equals("java.util.Map")) {
+                if (clazz == null) {
                     Map<String, Object> resultMap;
                     if (pointers == null) {
                         resultMap = new HashMap<String, Object>();
@@ -608,7 +853,6 @@ public class CachedStatement implements Serializable {
                  * Otherwise, try to set the results to the class given.
                  */
                 else {
-                    Class<?> clazz = Class.forName(className);
                     Object obj;
                     if (pointers == null) {
                         obj = clazz.newInstance();
@@ -623,7 +867,10 @@ public class CachedStatement implements Serializable {
                         obj = currentResults.get(pos.intValue());
                     }
                     // if pointers are null, we are doing an elaborator.
-                    addToObject(columns, rs, obj, (pointers != null));
+                    if (obj.getClass() != mapper.getMappedClass()) {
+                        mapper = RowMapper.getMapper(obj.getClass(), columns);
+                    }
+                    addToObject(mapper, rs, obj, (pointers != null));
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
                     if (pointers == null) {
@@ -711,7 +958,7 @@ public class CachedStatement implements Serializable {
         }
     }
 
-    private void addToObject(List<String> columns, ResultSet rs, Object obj,
+    private void addToObject(RowMapper mapper, ResultSet rs, Object obj,
             boolean elaborator)
                     throws SQLException {
 
@@ -722,59 +969,24 @@ public class CachedStatement implements Serializable {
             columnSkip = cb.getCallBackColumns();
         }
         else {
-            columnSkip = new ArrayList<String>();
+            columnSkip = Collections.emptyList();
         }
 
-        Iterator<String> i = columns.iterator();
-        while (i.hasNext()) {
-            String columnName = i.next();
-            if (columnSkip.contains(columnName.toLowerCase())) {
-                continue;
-            }
-
-            String setName = StringUtil.beanify("set " + columnName.toLowerCase());
-            String getName = StringUtil.beanify("get " + columnName.toLowerCase());
-
-            boolean isList = false;
-            Method[] methods = obj.getClass().getMethods();
-            /*
-             * Now loop through the methods and find the set method for this column
-             * then decide if it takes a collection
-             * Note: This action might not complete correctly if there are two set
-             *       methods with the same name
-             */
-            for (int j = 0; j < methods.length; j++) {
-                //getName() gets the name of the set method
-                //setName is the name of the set method
-                if (methods[j].getName().equals(setName)) {
-                    Class<?> paramType = methods[j].getParameterTypes()[0];
-                    if (Collection.class.isAssignableFrom(paramType)) {
-                        isList = true;
-                    }
-                    break;
-                }
-            }
-
-            if (isList) { //requires matching get method returning the same list
-                Collection<Object> c = (Collection<Object>) MethodUtil
-                        .callMethod(obj,
-                                getName, new Object[0]);
-                if (c == null) {
-                    c = new ArrayList<Object>();
-                }
-                c.add(getObject(rs, columnName));
-                MethodUtil.callMethod(obj, setName, c);
+        /*
+         * The mapper resolves the set method of every column once, and
+         * decides whether it takes a collection. If the result set should
+         * be a list, but has a non-Collection set method, the attribute
+         * corresponding to this column will ultimately contain the last
+         * item found for this column.
+         */
+        List<String> columns = mapper.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            String columnName = columns.get(i);
+            if (columnSkip.contains(columnName)) {
                 continue;
             }
-            /*
-             * Just call the set method.  This will call the same
-             * set method multiple times.  If the result set should
-             * be a list, but has a non-Collection set method, the
-             * attribute corresponding to this column will ultimately
-             * contain the last item found for this column.
-             */
-            MethodUtil.callMethod(obj, setName, getObject(rs, columnName));
-        } //while
+            mapper.setValue(obj, i, getObject(rs, columnName));
+        }
     }
 
     /**
@@ -834,24 +1046,14 @@ public class CachedStatement implements Serializable {
         if (obj instanceof Map) {
             return ((Map<String, Object>) obj).containsKey(key);
         }
-        Class<?> clazz = obj.getClass();
-        Method[] methods = clazz.getMethods();
-        for (int i = 0; i < methods.length; i++) {
-            if (methods[i].getName().equals(StringUtil.beanify("get " + key))) {
-                return true;
-            }
-        }
-        return false;
+        return RowMapper.hasProperty(obj.getClass(), key);
     }
 
     private Object getKey(Object obj, String key) {
         if (obj instanceof Map) {
             return ((Map<String, Object>) obj).get(key);
         }
-        Object keyData = MethodUtil.callMethod(obj,
-                StringUtil.beanify("get " + key),
-                new Object[0]);
-        return keyData;
+        return RowMapper.getProperty(obj, key);
     }
 
     private Map<Object, Integer> generatePointers(List<Object> dr, String key) {
@@ -868,10 +1070,7 @@ public class CachedStatement implements Serializable {
                         pos));
             }
             else {
-                Object keyData = MethodUtil.callMethod(row,
-                        StringUtil.beanify("get " + key),
-                        new Object[0]);
-                pointers.put(keyData, new Integer(pos));
+                pointers.put(RowMapper.getProperty(row, key), new Integer(pos));
             }
             pos++;
         }
@@ -900,6 +1099,22 @@ public class CachedStatement implements Serializable {
         restartData = new RestartData(sql, parameterMap, parameters, mode, dr);
     }
 
+    /**
+     * Describes the latest query so that it can be streamed again later
+     * without keeping its results around.
+     * @param mode the mode the query was run for
+     * @param elabParams named parameters of the elaborators of the mode
+     * @return the description, null if no query was run yet
+     */
+    QueryDescriptor describeLastQuery(SelectMode mode,
+            Map<String, Object> elabParams) {
+        if (restartData == null) {
+            return null;
+        }
+        return new QueryDescriptor(mode, restartData.getSql(),
+                restartData.getParameters(), elabParams);
+    }
+
     /**
      * Restart the latest query
      * @return what the previous query returned or null.
@@ -173,6 +173,19 @@ public class DataResult<T> extends ArrayList<T> {
         return new ModeElaborator(mode, elabParams);
     }
 
+    /**
+     * Describes the query which produced this result, so that it can be
+     * streamed again later, for example into a CSV export, without keeping
+     * this result around.
+     * @return the query description, null if the query is not known
+     */
+    public QueryDescriptor getQueryDescriptor() {
+        if (mode == null || mode.getQuery() == null) {
+            return null;
+        }
+        return mode.getQuery().describeLastQuery(mode, elabParams);
+    }
+
     /**
      * Return the parameters that were passed into the last call to elaborate()
      * @return Map of elaboration values
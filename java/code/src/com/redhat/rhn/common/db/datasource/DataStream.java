@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SelectMode execution that is deferred until its consumer is ready to
+ * take the rows, for results that are too large to be collected into a
+ * DataResult first. Every call to {@link #forEach(RowHandler)} runs the query
+ * again through {@link SelectMode#execute(Map, Map, RowHandler)}, so the rows
+ * are read through a forward-only cursor and never held all at once.
+ *
+ * The cursor, and with it the JDBC connection of the current session, stays
+ * open for as long as {@link #forEach(RowHandler)} runs, that is for the time
+ * the consumer takes to handle all the rows. For an XML-RPC result this is the
+ * whole download by the client, which is why results small enough are read
+ * ahead with {@link #prefetch(int)} and only the larger ones are streamed.
+ * @param <T> type of the rows, a Map or the DTO class of the mode
+ * @version $Rev$
+ */
+public class DataStream<T> {
+
+    private final SelectMode mode;
+    private final Map<String, ?> parameters;
+    private final Map<String, ?> elabParams;
+
+    /**
+     * Create a new DataStream
+     * @param modeIn the mode to execute
+     * @param parametersIn query parameters
+     * @param elabParamsIn named query parameters for elaborators, may be null
+     */
+    public DataStream(SelectMode modeIn, Map<String, ?> parametersIn,
+            Map<String, ?> elabParamsIn) {
+        mode = modeIn;
+        parameters = parametersIn;
+        elabParams = elabParamsIn;
+    }
+
+    /**
+     * Create a new DataStream of a mode without elaborator parameters
+     * @param modeIn the mode to execute
+     * @param parametersIn query parameters
+     */
+    public DataStream(SelectMode modeIn, Map<String, ?> parametersIn) {
+        this(modeIn, parametersIn, null);
+    }
+
+    /**
+     * @return the mode executed by this stream
+     */
+    public SelectMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Executes the query and hands every elaborated row to the handler.
+     * @param handler called for each row, in query order
+     * @return the number of rows handled
+     */
+    public int forEach(RowHandler<T> handler) {
+        return mode.execute(parameters, elabParams, handler);
+    }
+
+    /**
+     * Executes the query and collects its rows, unless there are more than
+     * maxRows of them. The query is given up as soon as the limit is exceeded,
+     * and runs again from the start on the next call.
+     * @param maxRows maximum number of rows to collect
+     * @return the rows of the query, or null if it returned more than maxRows
+     */
+    public List<T> prefetch(final int maxRows) {
+        final List<T> ret = new ArrayList<T>();
+        try {
+            forEach(new RowHandler<T>() {
+                public void handleRow(T row) {
+                    if (ret.size() >= maxRows) {
+                        throw new LimitExceededException();
+                    }
+                    ret.add(row);
+                }
+            });
+        }
+        catch (LimitExceededException e) {
+            return null;
+        }
+        return ret;
+    }
+
+    /**
+     * Executes the query and collects all of its rows. This defeats the
+     * purpose of streaming and is meant for callers that need the whole
+     * result anyway, such as tests.
+     * @return the rows of the query
+     */
+    public List<T> toList() {
+        final List<T> ret = new ArrayList<T>();
+        forEach(new RowHandler<T>() {
+            public void handleRow(T row) {
+                ret.add(row);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Stops the query of {@link #prefetch(int)} once it has too many rows.
+     */
+    private static class LimitExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -14,7 +14,6 @@
  */
 package com.redhat.rhn.common.db.datasource;
 
-import com.redhat.rhn.common.util.manifestfactory.ManifestFactory;
 import com.redhat.rhn.common.util.manifestfactory.ManifestFactoryBuilder;
 
 import org.xml.sax.ContentHandler;
@@ -30,6 +29,10 @@ import java.util.Map;
  * Class to drive parsing of the DataSource XML files, and return modes
  * as they are requested.
  *
+ * The files are parsed once into an immutable {@link ModeRegistry}. Select
+ * modes are handed out as cheap copies of the registered prototypes, so the
+ * per-call state (class, max rows, fetch size) never leaks between callers.
+ *
  * @version $Rev$
  */
 public class ModeFactory implements ManifestFactoryBuilder {
@@ -38,9 +41,12 @@ public class ModeFactory implements ManifestFactoryBuilder {
     private static final String DEFAULT_PARSER_NAME =
                                        "org.apache.xerces.parsers.SAXParser";
 
-    private static ManifestFactory factory = new ManifestFactory(new ModeFactory());
+    private static final ModeRegistry REGISTRY = ModeRegistry.load(new ModeFactory());
 
-    private static XMLReader parser = null;
+    // Only used while building a registry, which happens on a single thread.
+    // The handler is kept across files because named queries defined in one
+    // file may be used by modes of the files parsed after it.
+    private XMLReader parser = null;
 
     /** {@inheritDoc} */
     public String getManifestFilename() {
@@ -73,26 +79,22 @@ public class ModeFactory implements ManifestFactoryBuilder {
         }
     }
 
+    /**
+     * Returns the registry holding all parsed modes.
+     * @return the mode registry
+     */
+    public static ModeRegistry getRegistry() {
+        return REGISTRY;
+    }
+
     private static Mode getModeInternal(String name, String mode) {
-        Map modes = (Map)factory.getObject(name);
-        Mode ret = (Mode)modes.get(mode);
-        if (ret == null) {
-            throw new ModeNotFoundException(
-                              "Could not find mode " + mode + " in " + name);
-        }
-        return ret;
+        return REGISTRY.getMode(name, mode);
     }
 
     private static SelectMode getSelectMode(String name, String mode) {
-        Map modes = (Map) factory.getObject(name);
-        SelectMode m = (SelectMode) modes.get(mode);
-        if (m == null) {
-            throw new ModeNotFoundException(
-                              "Could not find mode " + mode + " in " + name);
-        }
-        SelectMode ret = new SelectMode(m);
-        return ret;
+        return new SelectMode((SelectMode) REGISTRY.getMode(name, mode));
     }
+
     /**
      * Retreive a specific mode from the map of modes already parsed
      * @param name The name of the file to search, this is the name as it is
@@ -147,7 +149,7 @@ public class ModeFactory implements ManifestFactoryBuilder {
      * unit tests.
      */
     public static Collection getKeys() {
-        return factory.getKeys();
+        return REGISTRY.getNames();
     }
 
     /**
@@ -158,7 +160,6 @@ public class ModeFactory implements ManifestFactoryBuilder {
      * unit tests.
      */
     public static Map getFileKeys(String name) {
-        return (Map)factory.getObject(name);
+        return REGISTRY.getModes(name);
     }
 }
-
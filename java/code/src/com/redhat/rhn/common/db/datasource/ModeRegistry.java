@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.util.manifestfactory.ManifestFactory;
+import com.redhat.rhn.common.util.manifestfactory.ManifestFactoryBuilder;
+import com.redhat.rhn.common.util.manifestfactory.ManifestFactoryLookupException;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable registry of the modes defined by the DataSource XML files.
+ *
+ * The registry is built once, either by parsing every file listed in the
+ * manifest or by reading the precompiled (serialized) form produced at build
+ * time, and can be read concurrently afterwards. The modes it holds are the
+ * prototypes handed out by {@link ModeFactory}.
+ *
+ * @version $Rev$
+ */
+public final class ModeRegistry implements Serializable {
+
+    /** name of the precompiled registry, relative to the manifest builder */
+    public static final String PRECOMPILED_FILENAME = "xml/file-list.ser";
+
+    private static final long serialVersionUID = 1L;
+
+    private static Logger log = Logger.getLogger(ModeRegistry.class);
+
+    private final Map<String, Map<String, Mode>> files;
+
+    private ModeRegistry(Map<String, Map<String, Mode>> filesIn) {
+        Map<String, Map<String, Mode>> copy = new HashMap<String, Map<String, Mode>>();
+        for (Map.Entry<String, Map<String, Mode>> e : filesIn.entrySet()) {
+            copy.put(e.getKey(), Collections.unmodifiableMap(
+                    new HashMap<String, Mode>(e.getValue())));
+        }
+        files = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Builds a registry by parsing all the files listed in the manifest of
+     * the given builder.
+     * @param builder builder creating the mode map of a single file
+     * @return the new registry
+     */
+    public static ModeRegistry parse(ManifestFactoryBuilder builder) {
+        ManifestFactory factory = new ManifestFactory(builder);
+        Map<String, Map<String, Mode>> parsed = new HashMap<String, Map<String, Mode>>();
+        for (Object key : factory.getKeys()) {
+            String name = (String) key;
+            parsed.put(name, (Map<String, Mode>) factory.getObject(name));
+        }
+        return new ModeRegistry(parsed);
+    }
+
+    /**
+     * Loads the precompiled registry next to the manifest of the given
+     * builder, falling back to parsing the XML files when there is none or
+     * when it cannot be read.
+     * @param builder builder creating the mode map of a single file
+     * @return the registry
+     */
+    public static ModeRegistry load(ManifestFactoryBuilder builder) {
+        URL u = builder.getClass().getResource(PRECOMPILED_FILENAME);
+        if (u != null) {
+            try {
+                ObjectInputStream in = new ObjectInputStream(
+                        new BufferedInputStream(u.openStream()));
+                try {
+                    return (ModeRegistry) in.readObject();
+                }
+                finally {
+                    in.close();
+                }
+            }
+            catch (IOException e) {
+                log.warn("Unable to read " + u + ", parsing query files instead", e);
+            }
+            catch (ClassNotFoundException e) {
+                log.warn("Unable to read " + u + ", parsing query files instead", e);
+            }
+        }
+        return parse(builder);
+    }
+
+    /**
+     * Writes the precompiled form of this registry.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeObject(this);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the modes of the given file.
+     * @param name name of the file as listed in the manifest
+     * @return read-only map of mode name to mode
+     */
+    public Map<String, Mode> getModes(String name) {
+        Map<String, Mode> modes = files.get(name);
+        if (modes == null) {
+            throw new ManifestFactoryLookupException("No object for " +
+                    getClass().getName() + " of name " + name);
+        }
+        return modes;
+    }
+
+    /**
+     * Returns the mode with the given name.
+     * @param name name of the file as listed in the manifest
+     * @param mode name of the mode
+     * @return the mode
+     */
+    public Mode getMode(String name, String mode) {
+        Mode ret = getModes(name).get(mode);
+        if (ret == null) {
+            throw new ModeNotFoundException(
+                    "Could not find mode " + mode + " in " + name);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the names of all files of the registry.
+     * @return read-only collection of file names
+     */
+    public Collection<String> getNames() {
+        return files.keySet();
+    }
+}
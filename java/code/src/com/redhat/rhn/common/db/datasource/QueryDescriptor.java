@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description of an executed select query: its mode, the SQL as it was run
+ * (sorting and IN clause included) and the parameters of the query and of
+ * its elaborators. It holds none of the rows, so it is cheap to keep, for
+ * example in the session, and the query can be streamed again from it with
+ * {@link #execute(RowHandler)}.
+ *
+ * @version $Rev$
+ * @see DataResult#getQueryDescriptor()
+ */
+public class QueryDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SelectMode mode;
+    private final String sql;
+    private final HashMap<String, Object> parameters;
+    private final HashMap<String, Object> elabParams;
+
+    /**
+     * Constructor
+     * @param modeIn the mode the query was run for
+     * @param sqlIn the SQL that was run
+     * @param parametersIn named parameters of the query
+     * @param elabParamsIn named parameters of the elaborators, may be null
+     */
+    QueryDescriptor(SelectMode modeIn, String sqlIn, Map<String, Object> parametersIn,
+            Map<String, Object> elabParamsIn) {
+        // a fresh copy does not reference the results of the original
+        mode = new SelectMode(modeIn);
+        sql = sqlIn;
+        parameters = new HashMap<String, Object>();
+        if (parametersIn != null) {
+            parameters.putAll(parametersIn);
+        }
+        elabParams = new HashMap<String, Object>();
+        if (elabParamsIn != null) {
+            elabParams.putAll(elabParamsIn);
+        }
+    }
+
+    /**
+     * @return the name of the mode
+     */
+    public String getModeName() {
+        return mode.getName();
+    }
+
+    /**
+     * Runs the query again and streams its elaborated rows to the handler.
+     * @param handler called for each row, in query order
+     * @return the number of rows handled
+     * @see SelectMode#execute(Map, Map, RowHandler)
+     */
+    public int execute(RowHandler handler) {
+        SelectMode m = new SelectMode(mode);
+        return m.getQuery().executeStreaming(sql, parameters, elabParams, m, handler);
+    }
+}
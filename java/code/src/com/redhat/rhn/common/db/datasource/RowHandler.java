@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+/**
+ * RowHandler is called for each row of a streamed SelectMode execution,
+ * after the row went through all elaborators of the mode. DTOs implementing
+ * {@link RowCallback} still get their callback while being elaborated.
+ * The handler should not keep references to the rows it is given if the
+ * memory use of the query is to stay constant.
+ * @param <T> type of the rows, a Map or the DTO class of the mode
+ * @version $Rev$
+ * @see SelectMode#execute(java.util.Map, java.util.Map, RowHandler)
+ */
+public interface RowHandler<T> {
+
+    /**
+     * Callback method invoked once per row, in query order.
+     * @param row the fully elaborated row
+     */
+    void handleRow(T row);
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.translation.TranslationException;
+import com.redhat.rhn.common.translation.Translator;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+import com.redhat.rhn.common.util.StringUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the columns of a query onto the setters of a DTO class.
+ *
+ * The setter, the collection-ness of the property and the getter needed to
+ * append to a collection are resolved once per (class, column list) and the
+ * resulting mapper is shared by every query returning the same combination.
+ * The value coercion rules are the same as the ones used by
+ * {@link com.redhat.rhn.common.util.MethodUtil#callMethod(Object, String, Object...)}:
+ * the first setter taking the value as is wins, otherwise the value is run
+ * through the {@link Translator}.
+ *
+ * @version $Rev$
+ */
+public final class RowMapper {
+
+    private static final ConcurrentMap<Key, RowMapper> MAPPERS =
+            new ConcurrentHashMap<Key, RowMapper>();
+
+    private static final ConcurrentMap<Key, Method> GETTERS =
+            new ConcurrentHashMap<Key, Method>();
+
+    private final Class<?> clazz;
+    private final List<String> columns;
+    private final Property[] properties;
+
+    private RowMapper(Class<?> clazzIn, List<String> columnsIn) {
+        clazz = clazzIn;
+        columns = columnsIn;
+        Method[] methods = clazzIn.getMethods();
+        properties = new Property[columnsIn.size()];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = new Property(methods, columnsIn.get(i));
+        }
+    }
+
+    /**
+     * Returns the mapper for the given class and column list, creating it
+     * on first use.
+     * @param clazz DTO class the rows are mapped onto
+     * @param columns lower case column names in result set order
+     * @return the shared mapper
+     */
+    public static RowMapper getMapper(Class<?> clazz, List<String> columns) {
+        Key key = new Key(clazz, columns);
+        RowMapper mapper = MAPPERS.get(key);
+        if (mapper == null) {
+            List<String> copy = Collections.unmodifiableList(
+                    new ArrayList<String>(columns));
+            mapper = new RowMapper(clazz, copy);
+            RowMapper existing = MAPPERS.putIfAbsent(new Key(clazz, copy), mapper);
+            if (existing != null) {
+                mapper = existing;
+            }
+        }
+        return mapper;
+    }
+
+    /**
+     * Reads a property of a DTO through its cached getter.
+     * @param obj the object to read from
+     * @param column lower case column name of the property
+     * @return the value returned by the getter
+     */
+    public static Object getProperty(Object obj, String column) {
+        Method getter = findGetter(obj.getClass(), column);
+        if (getter == null) {
+            throw new MethodNotFoundException("Could not find method called: " +
+                    StringUtil.beanify("get " + column) + " in class: " +
+                    obj.getClass().getName() + " with params: []");
+        }
+        return invoke(getter, obj);
+    }
+
+    /**
+     * Tells whether a DTO class has a getter for the given column.
+     * @param clazz the class to check
+     * @param column lower case column name of the property
+     * @return true if a getter exists
+     */
+    public static boolean hasProperty(Class<?> clazz, String column) {
+        return findGetter(clazz, column) != null;
+    }
+
+    /**
+     * Clears all cached mappers and getters.
+     */
+    public static void clearCache() {
+        MAPPERS.clear();
+        GETTERS.clear();
+    }
+
+    /**
+     * Returns the DTO class of this mapper.
+     * @return the DTO class
+     */
+    public Class<?> getMappedClass() {
+        return clazz;
+    }
+
+    /**
+     * Returns the columns of this mapper.
+     * @return the lower case column names, in result set order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the value of the column at the given index on obj. If the setter
+     * takes a Collection, the value is appended to the collection returned
+     * by the matching getter instead.
+     * @param obj the object to update
+     * @param index index of the column in {@link #getColumns()}
+     * @param value value read from the result set
+     */
+    public void setValue(Object obj, int index, Object value) {
+        properties[index].set(obj, value);
+    }
+
+    private static Method findGetter(Class<?> clazz, String column) {
+        Key key = new Key(clazz, Collections.singletonList(column));
+        Method getter = GETTERS.get(key);
+        if (getter == null) {
+            getter = lookupGetter(clazz.getMethods(),
+                    StringUtil.beanify("get " + column));
+            if (getter != null) {
+                GETTERS.putIfAbsent(key, getter);
+            }
+        }
+        return getter;
+    }
+
+    private static Method lookupGetter(Method[] methods, String getName) {
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].getName().equals(getName) &&
+                    methods[i].getParameterTypes().length == 0) {
+                return methods[i];
+            }
+        }
+        return null;
+    }
+
+    private static Object invoke(Method m, Object obj, Object... args) {
+        try {
+            return m.invoke(obj, args);
+        }
+        catch (IllegalAccessException e) {
+            throw new MethodInvocationException("Could not access " + m.getName(), e);
+        }
+        catch (InvocationTargetException e) {
+            throw new MethodInvocationException("Something bad happened when " +
+                    "calling " + m.getName(), e);
+        }
+    }
+
+    /**
+     * Resolved accessors for a single column.
+     */
+    private static final class Property {
+
+        private final String setName;
+        private final Method[] setters;
+        private final Method getter;
+        private final boolean list;
+
+        Property(Method[] methods, String column) {
+            setName = StringUtil.beanify("set " + column);
+            List<Method> found = new ArrayList<Method>();
+            boolean isList = false;
+            boolean first = true;
+            for (int i = 0; i < methods.length; i++) {
+                if (!methods[i].getName().equals(setName)) {
+                    continue;
+                }
+                Class<?>[] types = methods[i].getParameterTypes();
+                // the first setter found decides whether this is a list
+                if (first && types.length > 0) {
+                    isList = Collection.class.isAssignableFrom(types[0]);
+                    first = false;
+                }
+                if (types.length == 1) {
+                    found.add(methods[i]);
+                }
+            }
+            setters = found.toArray(new Method[found.size()]);
+            list = isList;
+            getter = isList ? lookupGetter(methods,
+                    StringUtil.beanify("get " + column)) : null;
+        }
+
+        void set(Object obj, Object value) {
+            if (list) {
+                //requires matching get method returning the same list
+                if (getter == null) {
+                    throw new MethodNotFoundException("Could not find method called: " +
+                            "get" + setName.substring(3) + " in class: " +
+                            obj.getClass().getName() + " with params: []");
+                }
+                Collection<Object> c = (Collection<Object>) invoke(getter, obj);
+                if (c == null) {
+                    c = new ArrayList<Object>();
+                }
+                c.add(value);
+                callSetter(obj, c);
+            }
+            else {
+                callSetter(obj, value);
+            }
+        }
+
+        private void callSetter(Object obj, Object value) {
+            for (int i = 0; i < setters.length; i++) {
+                Class<?> type = setters[i].getParameterTypes()[0];
+                if ((value == null && !type.isPrimitive()) || type.isInstance(value)) {
+                    invoke(setters[i], obj, value);
+                    return;
+                }
+                Object converted;
+                try {
+                    converted = Translator.convert(value, type);
+                }
+                catch (TranslationException e) {
+                    // move on to the next setter.
+                    continue;
+                }
+                invoke(setters[i], obj, converted);
+                return;
+            }
+            throw new MethodNotFoundException("Could not find method called: " +
+                    setName + " in class: " + obj.getClass().getName() +
+                    " with params: [" + (value == null ? "" : "type: " +
+                    value.getClass().getName() + ", value: " + value) + "]");
+        }
+    }
+
+    /**
+     * Cache key made of a class and a list of column names.
+     */
+    private static final class Key {
+
+        private final Class<?> clazz;
+        private final List<String> columns;
+        private final int hash;
+
+        Key(Class<?> clazzIn, List<String> columnsIn) {
+            clazz = clazzIn;
+            columns = columnsIn;
+            hash = 31 * clazzIn.hashCode() + columnsIn.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return clazz == other.clazz && columns.equals(other.columns);
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class SelectMode extends BaseMode implements Serializable {
     private String clazz;
     private List<CachedStatement> elaborators;
     private int maxRows;
+    private int fetchSize = CachedStatement.BATCH_SIZE;
 
     // increase this number on any data change
     private static final long serialVersionUID = 1L;
@@ -127,6 +128,21 @@ public class SelectMode extends BaseMode implements Serializable {
         return getQuery().execute((Map) null, this);
     }
 
+    /**
+     * Executes the query using the given parameters and streams the results
+     * to the handler instead of collecting them into a DataResult. The rows
+     * are read through a forward-only cursor, fetched getFetchSize() at a
+     * time, and elaborated in windows, so memory use does not depend on the
+     * number of rows returned.
+     * @param parameters Query parameters.
+     * @param elabParams named query parameters for elaborators.
+     * @param handler called for each elaborated row.
+     * @return the number of rows handled.
+     */
+    public int execute(Map parameters, Map elabParams, RowHandler handler) {
+        return getQuery().executeStreaming(parameters, elabParams, this, handler);
+    }
+
     /**
      * Executes the query with the given parameters an an IN clause.
      * @param parameters named parameters for the Query.
@@ -188,6 +204,26 @@ public class SelectMode extends BaseMode implements Serializable {
         maxRows = max;
     }
 
+    /**
+     * The number of rows fetched from the database at a time by streamed
+     * executions. Zero (0) leaves the choice to the JDBC driver.
+     * @param size number of rows to fetch at a time, must be &gt;= 0
+     */
+    public void setFetchSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        fetchSize = size;
+    }
+
+    /**
+     * Returns the number of rows fetched at a time by streamed executions.
+     * @return the JDBC fetch size
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
     /**
      * Returns maximum number of rows to be returned by this query.
      * @return maximum number of rows to be returned by this query.
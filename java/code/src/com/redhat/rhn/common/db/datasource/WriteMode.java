@@ -54,5 +54,19 @@ public class WriteMode extends BaseMode {
         return toReturn;
     }
 
+    /**
+     * Executes the update statement once for every set of query parameters,
+     * sending the statements to the database in JDBC batches instead of one
+     * at a time.
+     * @param parameterList the query parameters of every execution
+     * @return the number of rows updated/inserted/deleted
+     */
+    public int executeBatchUpdate(List<Map<String, Object>> parameterList) {
+        if (parameterList.isEmpty()) {
+            return 0;
+        }
+        return getQuery().executeBatchUpdate(parameterList);
+    }
+
 }
 
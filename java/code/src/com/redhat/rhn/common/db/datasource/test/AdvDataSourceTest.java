@@ -17,9 +17,12 @@ package com.redhat.rhn.common.db.datasource.test;
 import com.redhat.rhn.common.ObjectCreateWrapperException;
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.CachedStatement;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.RowHandler;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
@@ -299,6 +302,80 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         }
     }
 
+    public void testExpandedStatementCache() throws Exception {
+        for (int i = 1000; i < 1020; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode("test_queries", "find_all_in_table");
+        DataResult<AdvDataSourceDto> dr = m.execute(Collections.EMPTY_MAP);
+        dr.elaborate();
+
+        long hits = CachedStatement.getExpandedStatementHits();
+        long misses = CachedStatement.getExpandedStatementMisses();
+        m = ModeFactory.getMode("test_queries", "find_all_in_table");
+        dr = m.execute(Collections.EMPTY_MAP);
+        dr.elaborate();
+        assertEquals(misses, CachedStatement.getExpandedStatementMisses());
+        assertTrue(CachedStatement.getExpandedStatementHits() > hits);
+        for (AdvDataSourceDto row : dr) {
+            assertNotNull(row.getTestColumn());
+            assertNotNull(row.getFoobar());
+        }
+    }
+
+    public void testStreamedElaboration() throws Exception {
+        int startId = 1000;
+        int endId = startId + 1200;
+
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode("test_queries", "find_all_in_table");
+        m.setFetchSize(100);
+        final List<AdvDataSourceDto> rows = new ArrayList<AdvDataSourceDto>();
+        int count = m.execute(Collections.EMPTY_MAP, Collections.EMPTY_MAP,
+                new RowHandler<AdvDataSourceDto>() {
+            public void handleRow(AdvDataSourceDto row) {
+                assertNotNull(row.getTestColumn());
+                assertNotNull(row.getPin());
+                rows.add(row);
+            }
+        });
+        assertEquals(rows.size(), count);
+        assertTrue(count >= endId - startId);
+        assertEquals(m.execute(Collections.EMPTY_MAP).size(), count);
+    }
+
+    public void testDataStream() throws Exception {
+        for (int i = 1000; i < 1020; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode("test_queries", "find_all_in_table");
+        DataStream<AdvDataSourceDto> stream =
+                new DataStream<AdvDataSourceDto>(m, Collections.EMPTY_MAP);
+        List<AdvDataSourceDto> rows = stream.toList();
+        assertTrue(rows.size() >= 20);
+        for (AdvDataSourceDto row : rows) {
+            assertNotNull(row.getPin());
+        }
+        // every pass runs the query again
+        assertEquals(rows.size(), stream.toList().size());
+    }
+
+    public void testDataStreamPrefetch() throws Exception {
+        for (int i = 1000; i < 1020; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode("test_queries", "find_all_in_table");
+        DataStream<AdvDataSourceDto> stream =
+                new DataStream<AdvDataSourceDto>(m, Collections.EMPTY_MAP);
+        int size = stream.toList().size();
+        assertEquals(size, stream.prefetch(size).size());
+        assertNull(stream.prefetch(size - 1));
+        // the stream can still be read after giving up
+        assertEquals(size, stream.toList().size());
+    }
+
     public void testMaxRowsWithElaboration() throws Exception {
         int startId = 1000;
         int endId = startId + 50;
@@ -22,6 +22,7 @@ import com.redhat.rhn.common.db.datasource.MapColumnNotFoundException;
 import com.redhat.rhn.common.db.datasource.Mode;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.ModeNotFoundException;
+import com.redhat.rhn.common.db.datasource.ModeRegistry;
 import com.redhat.rhn.common.db.datasource.ParameterValueNotFoundException;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
@@ -31,10 +32,14 @@ import com.redhat.rhn.testing.RhnBaseTestCase;
 
 import org.hibernate.Session;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -79,6 +84,53 @@ public class DataSourceParserTest extends RhnBaseTestCase {
         }
     }
 
+    public void testRegistryIsReadOnly() throws Exception {
+        try {
+            ModeFactory.getFileKeys("test_queries").clear();
+            fail("Should have received an exception");
+        }
+        catch (UnsupportedOperationException e) {
+            // Expected, the parsed modes are shared by all callers.
+        }
+        assertFalse(ModeFactory.getFileKeys("test_queries").isEmpty());
+    }
+
+    public void testModeCopiesAreIndependent() throws Exception {
+        SelectMode m1 = ModeFactory.getMode("test_queries", "find_all_in_table");
+        m1.setMaxRows(5);
+        m1.setFetchSize(10);
+        SelectMode m2 = ModeFactory.getMode("test_queries", "find_all_in_table",
+                Map.class);
+        assertEquals(0, m2.getMaxRows());
+        assertNotSame(m1.getQuery(), m2.getQuery());
+        assertEquals(m1.getQuery().getQuery(), m2.getQuery().getQuery());
+        assertEquals(Map.class.getName(), m2.getClassString());
+        assertFalse(Map.class.getName().equals(m1.getClassString()));
+    }
+
+    public void testPrecompiledRegistry() throws Exception {
+        File file = File.createTempFile("file-list", ".ser");
+        try {
+            ModeFactory.getRegistry().write(file);
+            ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+            ModeRegistry registry = (ModeRegistry) in.readObject();
+            in.close();
+
+            assertEquals(new HashSet(ModeFactory.getKeys()),
+                    new HashSet(registry.getNames()));
+            Mode orig = ModeFactory.getRegistry().getMode("test_queries",
+                    "find_all_in_table");
+            SelectMode m = (SelectMode) registry.getMode("test_queries",
+                    "find_all_in_table");
+            assertEquals(orig.getQuery().getQuery(), m.getQuery().getQuery());
+            assertEquals(((SelectMode) orig).getElaborators().size(),
+                    m.getElaborators().size());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
     public void testExternalElaborator() throws Exception {
         SelectMode m = ModeFactory.getMode("test_queries",
             "user_tables_external_elaborator" + db_sufix);
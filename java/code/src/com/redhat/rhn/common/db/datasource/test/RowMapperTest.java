@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource.test;
+
+import com.redhat.rhn.common.db.datasource.RowMapper;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+import com.redhat.rhn.common.util.MethodUtil;
+import com.redhat.rhn.common.util.StringUtil;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.frontend.dto.SystemOverview;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * RowMapperTest compares the cached row mapping with the reflective
+ * MethodUtil based mapping it replaces.
+ * @version $Rev$
+ */
+public class RowMapperTest extends RhnBaseTestCase {
+
+    private static final List<String> SYSTEM_COLUMNS = Arrays.asList("id",
+            "name", "last_checkin_days_ago", "locked", "modified", "entitlement",
+            "selectable");
+
+    private static final List<String> PACKAGE_COLUMNS = Arrays.asList("id",
+            "name", "version", "release", "epoch", "arch_label", "last_modified",
+            "package_size");
+
+    public void testMapperIsCached() {
+        RowMapper mapper = RowMapper.getMapper(SystemOverview.class, SYSTEM_COLUMNS);
+        assertSame(mapper, RowMapper.getMapper(SystemOverview.class,
+                Arrays.asList(SYSTEM_COLUMNS.toArray(new String[0]))));
+        assertNotSame(mapper, RowMapper.getMapper(PackageDto.class, SYSTEM_COLUMNS));
+        assertEquals(SYSTEM_COLUMNS, mapper.getColumns());
+    }
+
+    public void testSystemOverview() {
+        Object[][] rows = {
+            {new Long(1000010000), "host1", new Long(3), new Long(1),
+                new Timestamp(1000L), "enterprise_entitled", new Long(1)},
+            {new Long(1000010000), "host1", new Long(3), new Long(1),
+                new Timestamp(1000L), "provisioning_entitled", new Long(1)},
+        };
+        SystemOverview mapped = new SystemOverview();
+        SystemOverview legacy = new SystemOverview();
+        map(SYSTEM_COLUMNS, rows, mapped, legacy);
+
+        assertEquals(legacy.getId(), mapped.getId());
+        assertEquals(legacy.getName(), mapped.getName());
+        assertEquals(legacy.getLastCheckinDaysAgo(), mapped.getLastCheckinDaysAgo());
+        assertEquals(legacy.getLocked(), mapped.getLocked());
+        assertEquals(legacy.getModified(), mapped.getModified());
+        assertEquals(legacy.isSelectable(), mapped.isSelectable());
+        assertEquals(2, mapped.getEntitlement().size());
+        assertEquals(legacy.getEntitlement(), mapped.getEntitlement());
+    }
+
+    public void testPackageDto() {
+        Object[][] rows = {
+            {new Long(42), "kernel", "2.6.32", "431.el6", null, "x86_64",
+                new Timestamp(1400000000000L), new Long(30000000)},
+        };
+        PackageDto mapped = new PackageDto();
+        PackageDto legacy = new PackageDto();
+        map(PACKAGE_COLUMNS, rows, mapped, legacy);
+
+        assertEquals(legacy.getId(), mapped.getId());
+        assertEquals(legacy.getName(), mapped.getName());
+        assertEquals(legacy.getVersion(), mapped.getVersion());
+        assertEquals(legacy.getRelease(), mapped.getRelease());
+        assertNull(mapped.getEpoch());
+        assertEquals(legacy.getArchLabel(), mapped.getArchLabel());
+        assertNotNull(mapped.getLastModified());
+        assertEquals(legacy.getLastModified(), mapped.getLastModified());
+        assertEquals(legacy.getPackageSize(), mapped.getPackageSize());
+    }
+
+    public void testGetProperty() {
+        PackageDto dto = new PackageDto();
+        dto.setId(new Long(7));
+        assertTrue(RowMapper.hasProperty(PackageDto.class, "id"));
+        assertFalse(RowMapper.hasProperty(PackageDto.class, "no_such_column"));
+        assertEquals(new Long(7), RowMapper.getProperty(dto, "id"));
+        try {
+            RowMapper.getProperty(dto, "no_such_column");
+            fail("Should have received an Exception");
+        }
+        catch (MethodNotFoundException e) {
+            // expected.
+        }
+    }
+
+    public void testMissingSetter() {
+        RowMapper mapper = RowMapper.getMapper(PackageDto.class,
+                Arrays.asList("no_such_column"));
+        try {
+            mapper.setValue(new PackageDto(), 0, "value");
+            fail("Should have received an Exception");
+        }
+        catch (MethodNotFoundException e) {
+            // expected.
+        }
+    }
+
+    private void map(List<String> columns, Object[][] rows, Object mapped,
+            Object legacy) {
+        RowMapper mapper = RowMapper.getMapper(mapped.getClass(), columns);
+        for (Object[] row : rows) {
+            for (int i = 0; i < columns.size(); i++) {
+                mapper.setValue(mapped, i, row[i]);
+                setLegacy(legacy, columns.get(i), row[i]);
+            }
+        }
+    }
+
+    /**
+     * The mapping CachedStatement used to do for every column of every row.
+     */
+    private void setLegacy(Object obj, String column, Object value) {
+        String setName = StringUtil.beanify("set " + column);
+        String getName = StringUtil.beanify("get " + column);
+
+        boolean isList = false;
+        Method[] methods = obj.getClass().getMethods();
+        for (int j = 0; j < methods.length; j++) {
+            if (methods[j].getName().equals(setName)) {
+                Class<?> paramType = methods[j].getParameterTypes()[0];
+                if (Collection.class.isAssignableFrom(paramType)) {
+                    isList = true;
+                }
+                break;
+            }
+        }
+
+        if (isList) {
+            Collection<Object> c = (Collection<Object>) MethodUtil.callMethod(obj,
+                    getName, new Object[0]);
+            if (c == null) {
+                c = new ArrayList<Object>();
+            }
+            c.add(value);
+            MethodUtil.callMethod(obj, setName, c);
+            return;
+        }
+        MethodUtil.callMethod(obj, setName, value);
+    }
+}
@@ -88,8 +88,8 @@ public class Diff {
      * @see Hunk
      */
     public List<Hunk> diffFiles() {
-        Differ differ = new Differ(firstfile.length, secondfile.length);
-        return differ.diff(firstfile, secondfile);
+        Differ differ = new Differ(firstfile, secondfile);
+        return differ.diff();
     }
 
     private void writeHunks(List<Hunk> hunks, DiffWriter writer) {
@@ -15,120 +15,249 @@
 package com.redhat.rhn.common.filediff;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Java file diff using Eugene W. Myers's algorithm as described in
- * "An O(ND) Difference Algorithm and Its Variations".
+ * "An O(ND) Difference Algorithm and Its Variations", with the linear space
+ * refinement described in the same paper.
+ *
+ * Lines are first replaced by numbers, equal lines getting the same number, so
+ * that the diff compares ints rather than strings. The lines the files start
+ * and end with in common are skipped before searching for the shortest edit
+ * script, which is then found by recursively splitting both files at the
+ * middle snake of that script. The result is always an optimal diff.
  * @version $Rev$
  */
 public class Differ {
-    private final Trace head;
-    private Trace beforeCurrent;
-    private int bestSoFar;
-    private static final int NUMBEROFTRACESTOKEEP = 1000;
-    private final List<Integer> matches = new ArrayList<Integer>();
+
+    private final String[] oldFile;
+    private final String[] newFile;
+    private final int[] oldIds;
+    private final int[] newIds;
+    private final boolean[] oldChanged;
+    private final boolean[] newChanged;
+    // furthest reaching forward and backward paths, indexed by diagonal
+    private final int[] forward;
+    private final int[] backward;
+    private final int diagonalOffset;
 
     /**
-     * @param oldLength The length of the old file
-     * @param newLength The length of the new file
+     * @param oldFileIn The old(first, from) file
+     * @param newFileIn The new(second, to) file
      */
-    public Differ(int oldLength, int newLength) {
-        //we need a head element in order to do deletions.
-        head = new Trace(0, 0); //the head of the linked list.
-        head.setNext(new Trace(oldLength, newLength));
-        beforeCurrent = head;
-        bestSoFar = 0;
+    public Differ(String[] oldFileIn, String[] newFileIn) {
+        oldFile = oldFileIn;
+        newFile = newFileIn;
+        oldIds = new int[oldFile.length];
+        newIds = new int[newFile.length];
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        intern(oldFile, oldIds, ids);
+        intern(newFile, newIds, ids);
+        oldChanged = new boolean[oldFile.length];
+        newChanged = new boolean[newFile.length];
+        forward = new int[oldFile.length + newFile.length + 3];
+        backward = new int[oldFile.length + newFile.length + 3];
+        diagonalOffset = newFile.length + 1;
     }
 
     /**
-     * @param oldFile The old(first, from) file
-     * @param newFile The new(second, to) file
      * @return A list of Hunks representing the differences.
      */
-    public List<Hunk> diff(String[] oldFile, String[] newFile) {
-        List<Hunk> retval = null;
-        while (retval == null) {
-            retval = step(oldFile, newFile);
+    public List<Hunk> diff() {
+        compare(0, oldIds.length, 0, newIds.length);
+        return createHunks();
+    }
+
+    private static void intern(String[] file, int[] lineIds, Map<String, Integer> ids) {
+        for (int i = 0; i < file.length; i++) {
+            Integer id = ids.get(file[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(file[i], id);
+            }
+            lineIds[i] = id;
         }
-        return retval;
     }
 
     /**
-     * The crux of the optimization for this algorithm lies in the fact that we
-     * will step through all of the traces in parallel rather than recursively.
-     * This allows us to delete traces that are unlikely be the most optimal.
-     *
-     * We only consider the best {@value #NUMBEROFTRACESTOKEEP} traces at any
-     * given time. This is to prevent the memory required from growing
-     * exponentially in large files. The resulting trace is always guaranteed to
-     * be *correct*, but maybe not *optimal*.
-     *
-     * This will call the step function on Trace for every current trace we
-     * have. It will delete traces that are unlikely to be optimal.
-     *
-     * @param oldFile
-     *            The old(first, from) file
-     * @param newFile
-     *            The new(second, to) file
-     * @return A list of Hunks representing the differences. null if we need to
-     *         step again
+     * Marks the lines which differ between oldIds[oldLo..oldHi) and
+     * newIds[newLo..newHi).
      */
-    private List<Hunk> step(String[] oldFile, String[] newFile) {
-        beforeCurrent = head;
-        boolean forked;
-        int minimumMatchValue = 0;
-
-        // get a list of all match values for all traces
-        while (beforeCurrent.next() != null) {
-            beforeCurrent = beforeCurrent.next();
-            matches.add(beforeCurrent.getMatches());
+    private void compare(int oldLo, int oldHi, int newLo, int newHi) {
+        while (oldLo < oldHi && newLo < newHi && oldIds[oldLo] == newIds[newLo]) {
+            oldLo++;
+            newLo++;
+        }
+        while (oldLo < oldHi && newLo < newHi &&
+                oldIds[oldHi - 1] == newIds[newHi - 1]) {
+            oldHi--;
+            newHi--;
         }
 
-        // if we have too many traces find the match number you need to beat to
-        // remain valid
-        if (matches.size() > NUMBEROFTRACESTOKEEP) {
-            Collections.sort(matches); // sort ascending
-            minimumMatchValue = matches.get(matches.size() -
-                    NUMBEROFTRACESTOKEEP);
+        if (oldLo == oldHi) {
+            for (int i = newLo; i < newHi; i++) {
+                newChanged[i] = true;
+            }
+        }
+        else if (newLo == newHi) {
+            for (int i = oldLo; i < oldHi; i++) {
+                oldChanged[i] = true;
+            }
         }
+        else {
+            // Both ranges start and end with different lines, so the edit
+            // script has at least two edits and each half has at least one:
+            // both halves are smaller than the whole.
+            int[] middle = middleSnake(oldLo, oldHi, newLo, newHi);
+            compare(oldLo, middle[0], newLo, middle[1]);
+            compare(middle[0], oldHi, middle[1], newHi);
+        }
+    }
 
-        // reset things before the "real" iteration
-        matches.clear();
-        beforeCurrent = head;
+    /**
+     * Finds a point of the shortest edit script of the given ranges which
+     * splits it in two halves of (almost) the same number of edits, by
+     * searching from both ends at the same time until the paths meet.
+     * The ranges must not start or end with a common line.
+     * @return the index in the old and in the new file of the point
+     */
+    private int[] middleSnake(int oldLo, int oldHi, int newLo, int newHi) {
+        // diagonal k holds the points where x - y == k
+        int kMin = oldLo - newHi;
+        int kMax = oldHi - newLo;
+        int forwardMid = oldLo - newLo;
+        int backwardMid = oldHi - newHi;
+        boolean odd = ((forwardMid - backwardMid) & 1) != 0;
+        int fMin = forwardMid;
+        int fMax = forwardMid;
+        int bMin = backwardMid;
+        int bMax = backwardMid;
+        forward[diagonalOffset + forwardMid] = oldLo;
+        backward[diagonalOffset + backwardMid] = oldHi;
 
-        while (beforeCurrent.next() != null) {
-            // delete impossible and unlikely traces.
-            if (beforeCurrent.next().getMatches() < minimumMatchValue ||
-                    bestSoFar > beforeCurrent.next().bestPossible()) {
-                beforeCurrent.setNext(beforeCurrent.next().next());
+        while (true) {
+            // extend the forward paths by one edit
+            if (fMin > kMin) {
+                forward[diagonalOffset + --fMin - 1] = -1;
             }
             else {
-                forked = beforeCurrent.next().step(oldFile, newFile);
-
-                //With the step algorithm, the first one to reach the end of
-                //both files is the winner!
-                if (beforeCurrent.next().isDone()) {
-                    return beforeCurrent.next().createHunks(oldFile, newFile);
+                fMin++;
+            }
+            if (fMax < kMax) {
+                forward[diagonalOffset + ++fMax + 1] = -1;
+            }
+            else {
+                fMax--;
+            }
+            for (int k = fMax; k >= fMin; k -= 2) {
+                int below = forward[diagonalOffset + k - 1];
+                int above = forward[diagonalOffset + k + 1];
+                int x = below >= above ? below + 1 : above;
+                int y = x - k;
+                while (x < oldHi && y < newHi && oldIds[x] == newIds[y]) {
+                    x++;
+                    y++;
                 }
+                forward[diagonalOffset + k] = x;
+                if (odd && bMin <= k && k <= bMax &&
+                        backward[diagonalOffset + k] <= x) {
+                    return new int[] {x, y};
+                }
+            }
 
-                //update bestSoFar
-                if (beforeCurrent.next().getMatches() > bestSoFar) {
-                    bestSoFar = beforeCurrent.next().getMatches();
+            // extend the backward paths by one edit
+            if (bMin > kMin) {
+                backward[diagonalOffset + --bMin - 1] = Integer.MAX_VALUE;
+            }
+            else {
+                bMin++;
+            }
+            if (bMax < kMax) {
+                backward[diagonalOffset + ++bMax + 1] = Integer.MAX_VALUE;
+            }
+            else {
+                bMax--;
+            }
+            for (int k = bMax; k >= bMin; k -= 2) {
+                int below = backward[diagonalOffset + k - 1];
+                int above = backward[diagonalOffset + k + 1];
+                int x = below < above ? below : above - 1;
+                int y = x - k;
+                while (x > oldLo && y > newLo && oldIds[x - 1] == newIds[y - 1]) {
+                    x--;
+                    y--;
                 }
+                backward[diagonalOffset + k] = x;
+                if (!odd && fMin <= k && k <= fMax &&
+                        x <= forward[diagonalOffset + k]) {
+                    return new int[] {x, y};
+                }
+            }
+        }
+    }
 
-                //if it forked, there is a new element in the linked list
-                //that has already been dealt with, so skip it.
-                if (forked) {
-                    beforeCurrent = beforeCurrent.next().next();
+    /**
+     * Walks both files along the marked lines. Unchanged lines of both files
+     * pair up in order, the changed lines between two such pairs make a
+     * delete, insert or change hunk.
+     */
+    private List<Hunk> createHunks() {
+        List<Hunk> retval = new ArrayList<Hunk>();
+        int oldLine = 0;
+        int newLine = 0;
+        while (oldLine < oldFile.length || newLine < newFile.length) {
+            int oldNum = 0;
+            int newNum = 0;
+            Hunk hunk;
+            if (oldLine < oldFile.length && newLine < newFile.length &&
+                    !oldChanged[oldLine] && !newChanged[newLine]) {
+                while (oldLine + oldNum < oldFile.length &&
+                        newLine + oldNum < newFile.length &&
+                        !oldChanged[oldLine + oldNum] &&
+                        !newChanged[newLine + oldNum]) {
+                    oldNum++;
+                }
+                newNum = oldNum;
+                hunk = new MatchHunk();
+            }
+            else {
+                while (oldLine + oldNum < oldFile.length &&
+                        oldChanged[oldLine + oldNum]) {
+                    oldNum++;
+                }
+                while (newLine + newNum < newFile.length &&
+                        newChanged[newLine + newNum]) {
+                    newNum++;
+                }
+                if (oldNum == 0) {
+                    hunk = new InsertHunk();
+                }
+                else if (newNum == 0) {
+                    hunk = new DeleteHunk();
                 }
                 else {
-                    beforeCurrent = beforeCurrent.next();
+                    hunk = new ChangeHunk();
                 }
             }
+            hunk.setOldLines(createFileLines(oldFile, oldLine, oldNum));
+            hunk.setNewLines(createFileLines(newFile, newLine, newNum));
+            retval.add(hunk);
+            oldLine += oldNum;
+            newLine += newNum;
         }
-        return null; //null means we need to step again.
+        return retval;
     }
 
+    private FileLines createFileLines(String[] file, int fromLine, int numLines) {
+        FileLines retval = new FileLines();
+        retval.setFromLine(fromLine + 1); //fromLine is an index, so it is one too small
+        retval.setToLine(fromLine + numLines + 1); //fromLine is still an index
+        for (int i = fromLine; i < fromLine + numLines; i++) {
+            retval.addLine(file[i]);
+        }
+        return retval;
+    }
 }
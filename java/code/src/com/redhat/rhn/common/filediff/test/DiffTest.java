@@ -15,6 +15,7 @@
 package com.redhat.rhn.common.filediff.test;
 
 import com.redhat.rhn.common.filediff.ChangeHunk;
+import com.redhat.rhn.common.filediff.DeleteHunk;
 import com.redhat.rhn.common.filediff.Diff;
 import com.redhat.rhn.common.filediff.Hunk;
 import com.redhat.rhn.common.filediff.InsertHunk;
@@ -52,7 +53,46 @@ public class DiffTest extends RhnBaseTestCase {
         checkDiff(testOld, testNew, testType);
     }
 
-    private void checkDiff(String[] oldFile, String[] newFile, Class<?>[] types) {
+    public void testLineNumbers() {
+        String[] testOld = {"a", "b", "c", "d", "e"};
+        String[] testNew = {"x", "a", "c", "d", "y", "e"};
+        Class<?>[] testTypes = { InsertHunk.class, MatchHunk.class, DeleteHunk.class,
+                MatchHunk.class, InsertHunk.class, MatchHunk.class };
+        List<Hunk> hunks = checkDiff(testOld, testNew, testTypes);
+
+        Hunk delete = hunks.get(2);
+        assertEquals(2, delete.getOldLines().getFromLine());
+        assertEquals(3, delete.getOldLines().getToLine());
+        assertEquals("b", delete.getOldLines().getLines().get(0));
+        assertEquals(3, delete.getNewLines().getFromLine());
+        assertTrue(delete.getNewLines().getLines().isEmpty());
+
+        Hunk insert = hunks.get(4);
+        assertEquals(5, insert.getNewLines().getFromLine());
+        assertEquals("y", insert.getNewLines().getLines().get(0));
+    }
+
+    public void testLargeFile() {
+        String[] testOld = new String[50000];
+        String[] testNew = new String[50000];
+        for (int i = 0; i < testOld.length; i++) {
+            testOld[i] = "line " + i;
+            testNew[i] = i % 1000 == 500 ? "changed " + i : testOld[i];
+        }
+        List<Hunk> hunks = new Diff(testOld, testNew).diffFiles();
+        // 50 changed lines, each between two matching blocks
+        assertEquals(101, hunks.size());
+        int changed = 0;
+        for (Hunk hunk : hunks) {
+            if (hunk instanceof ChangeHunk) {
+                assertEquals(1, hunk.getOldLines().getLines().size());
+                changed++;
+            }
+        }
+        assertEquals(50, changed);
+    }
+
+    private List<Hunk> checkDiff(String[] oldFile, String[] newFile, Class<?>[] types) {
         Diff diff = new Diff(oldFile, newFile);
         List<Hunk> hunks = diff.diffFiles();
         assertTrue(types.length == hunks.size());
@@ -62,6 +102,7 @@ public class DiffTest extends RhnBaseTestCase {
             assertTrue(types[a].isInstance(i.next()));
             a++;
         }
+        return hunks;
     }
 
 }
@@ -69,11 +69,11 @@ public class LocalizationService {
     public static final Locale DEFAULT_LOCALE = new Locale("EN", "US");
     // private instance of the service.
     private static LocalizationService instance = new LocalizationService();
-    // This Map stores the association of the java class names
+    // This Map stores the association of the java classes
     // that map to the message keys found in the StringResources.xml
     // files. This allows us to have sets of XML ResourceBundles that
     // are specified in the rhn.jconf
-    private Map<String, String> keyToBundleMap;
+    private Map<String, Class> keyToBundleMap;
 
     // List of supported locales
     private final Map<String, LocaleInfo> supportedLocales =
@@ -96,7 +96,7 @@ public class LocalizationService {
             log.warn("Reloading XML StringResource files.");
             XmlMessages.getInstance().resetBundleCache();
         }
-        keyToBundleMap = new HashMap<String, String>();
+        keyToBundleMap = new HashMap<String, Class>();
 
         // Get the list of configured classnames from the config file.
         String[] packages = Config.get().getStringArray(
@@ -121,7 +121,7 @@ public class LocalizationService {
             Enumeration<String> e = XmlMessages.getInstance().getKeys(z, Locale.US);
             while (e.hasMoreElements()) {
                 String key = e.nextElement();
-                keyToBundleMap.put(key, className);
+                keyToBundleMap.put(key, z);
             }
         }
         catch (ClassNotFoundException ce) {
@@ -254,8 +254,10 @@ public class LocalizationService {
      * @return Translated String
      */
     public String getMessage(String messageId, Locale locale, Object... args) {
-        log.debug("getMessage() called with messageId: " + messageId +
-                " and locale: " + locale);
+        if (log.isDebugEnabled()) {
+            log.debug("getMessage() called with messageId: " + messageId +
+                    " and locale: " + locale);
+        }
         // Short-circuit the rest of the method if the messageId is null
         // See bz 199892
         if (messageId == null) {
@@ -267,14 +269,13 @@ public class LocalizationService {
                     "\" for locale " + userLocale);
         }
         String mess = null;
-        Class z = null;
+        Class z = keyToBundleMap.get(messageId);
+        // If the keyMap doesn't contain the requested key
+        // then there is no hope and we return.
+        if (z == null) {
+            return getMissingMessageString(messageId);
+        }
         try {
-            // If the keyMap doesn't contain the requested key
-            // then there is no hope and we return.
-            if (!keyToBundleMap.containsKey(messageId)) {
-                return getMissingMessageString(messageId);
-            }
-            z = Class.forName(keyToBundleMap.get(messageId));
             // If we already determined that there aren't an bundles
             // for this Locale then we shouldn't repeatedly fail
             // attempts to parse the bundle. Instead just force a
@@ -303,12 +304,6 @@ public class LocalizationService {
                 return getMissingMessageString(messageId);
             }
         }
-        catch (ClassNotFoundException ce) {
-            String message = "Class not found when trying to fetch a message: " +
-                    ce.toString();
-            log.error(message, ce);
-            throw new LocalizationException(message, ce);
-        }
         return getDebugVersionOfString(mess);
     }
 
@@ -23,10 +23,11 @@ import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utility (Singleton) class to get and format messages centralized by package.
@@ -64,7 +65,12 @@ public final class XmlMessages {
 
     // Store the bundles in memory so we don't load it off disk
     // each time.
-    private Map<String, ResourceBundle> bundles;
+    private ConcurrentMap<String, ResourceBundle> bundles;
+
+    // Messages ready to be formatted, by bundle, locale and key. Messages
+    // which are missing are cached as well, so that the lookup of a bundle
+    // which does not exist is not retried every time.
+    private ConcurrentMap<String, CompiledMessage> messages;
 
 
     /** Private constructor, since this is a singleton
@@ -74,7 +80,8 @@ public final class XmlMessages {
     }
 
     private void initBundleCache() {
-        bundles = new HashMap<String, ResourceBundle>();
+        bundles = new ConcurrentHashMap<String, ResourceBundle>();
+        messages = new ConcurrentHashMap<String, CompiledMessage>();
     }
 
     /**
@@ -86,7 +93,7 @@ public final class XmlMessages {
     }
 
     /**
-     * Reload the XML Messages off the disk.
+     * Reload the XML Messages off the disk, dropping the compiled messages.
      */
     public void resetBundleCache() {
         initBundleCache();
@@ -239,23 +246,37 @@ public final class XmlMessages {
                                 final String key,
                                 final Object... args) {
 
-        // Fetch the bundle
-        ResourceBundle bundle = getBundle(getBundleName(clazz), locale);
-        String pattern = StringEscapeUtils.unescapeHtml(bundle.getString(key));
-
-        pattern = pattern.replaceAll(PRODUCT_NAME_MACRO,
-                Config.get().getString("web.product_name"));
+        String bundleName = getBundleName(clazz);
+        String messageKey = bundleName + "|" + locale + "|" + key;
+        CompiledMessage message = messages.get(messageKey);
+        if (message == null) {
+            message = compile(bundleName, locale, key);
+            messages.putIfAbsent(messageKey, message);
+        }
+        if (message == CompiledMessage.MISSING) {
+            throw new MissingResourceException("Can't find resource for bundle " +
+                    bundleName + ", key " + key, bundleName, key);
+        }
 
         if (args == null || args.length == 0) {
-            return pattern;
+            return message.getText();
         }
+        return message.format(args);
+    }
 
-        //MessageFormat uses single quotes to escape text. Therefore, we have to
-        //escape the single quote so that MessageFormat keeps the single quote and
-        //does replace all arguments after it.
-        String escapedPattern = pattern.replaceAll("'", "''");
-        MessageFormat mf = new MessageFormat(escapedPattern, locale);
-        return mf.format(args);
+    private CompiledMessage compile(String bundleName, Locale locale, String key) {
+        try {
+            // Fetch the bundle
+            ResourceBundle bundle = getBundle(bundleName, locale);
+            String pattern = StringEscapeUtils.unescapeHtml(bundle.getString(key));
+
+            pattern = pattern.replace(PRODUCT_NAME_MACRO,
+                    Config.get().getString("web.product_name"));
+            return new CompiledMessage(pattern, locale);
+        }
+        catch (MissingResourceException e) {
+            return CompiledMessage.MISSING;
+        }
     }
 
     private String getBundleName(final Class clazz) {
@@ -279,4 +300,38 @@ public final class XmlMessages {
         return getBundle(getBundleName(clazz), locale).getKeys();
     }
 
+    /**
+     * A message with its HTML entities unescaped and the product name filled
+     * in. The message format for the arguments is parsed on first use and
+     * copied for every use, as MessageFormat is not thread safe.
+     */
+    private static final class CompiledMessage {
+
+        private static final CompiledMessage MISSING = new CompiledMessage(null, null);
+
+        private final String text;
+        private final Locale locale;
+        private volatile MessageFormat messageFormat;
+
+        private CompiledMessage(String textIn, Locale localeIn) {
+            text = textIn;
+            locale = localeIn;
+        }
+
+        private String getText() {
+            return text;
+        }
+
+        private String format(Object[] args) {
+            MessageFormat mf = messageFormat;
+            if (mf == null) {
+                //MessageFormat uses single quotes to escape text. Therefore, we have
+                //to escape the single quote so that MessageFormat keeps the single
+                //quote and does replace all arguments after it.
+                mf = new MessageFormat(text.replace("'", "''"), locale);
+                messageFormat = mf;
+            }
+            return ((MessageFormat) mf.clone()).format(args);
+        }
+    }
 }
@@ -148,6 +148,36 @@ public class MessagesTest extends RhnBaseTestCase {
         assertEquals(html, recieved);
     }
 
+    /**
+     * Test that compiled messages are formatted with the arguments of each call
+     */
+    public void testXmlFormatCached() {
+        assertEquals(oneArg, XmlMessages.getInstance().format(
+            clazz, locale, "oneArg", "fooboo"));
+        assertEquals("one arg: bubba", XmlMessages.getInstance().format(
+            clazz, locale, "oneArg", "bubba"));
+        assertEquals(quoteMsg, XmlMessages.getInstance().format(clazz, locale,
+                "quotewitharg", "mail"));
+        XmlMessages.getInstance().resetBundleCache();
+        assertEquals(oneArg, XmlMessages.getInstance().format(
+            clazz, locale, "oneArg", "fooboo"));
+    }
+
+    /**
+     * Make sure a missing message keeps failing once it has been looked up
+     */
+    public void testXmlMissingMessageCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                XmlMessages.getInstance().getMessage(clazz, locale, "bogus");
+                fail("Didn't get expected exception");
+            }
+            catch (java.util.MissingResourceException e) {
+                //expected
+            }
+        }
+    }
+
     /**
      * Make sure we fail if there's no resource bundle
      *
@@ -31,6 +31,7 @@ class ActionExecutor implements Runnable {
 
     private EventMessage msg;
     private List<MessageAction> actionHandlers = new ArrayList<MessageAction>();
+    private long queuedTime = System.currentTimeMillis();
 
     /**
      * Constructor
@@ -42,6 +43,20 @@ class ActionExecutor implements Runnable {
         msg = eventMsg;
     }
 
+    /**
+     * @return the message published to the queue
+     */
+    public EventMessage getMessage() {
+        return msg;
+    }
+
+    /**
+     * @return the time the message was published, in ms
+     */
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
     /**
      * Iterates over the list of handlers and dispatches
      * the message to each
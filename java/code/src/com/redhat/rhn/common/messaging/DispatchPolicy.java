@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging;
+
+/**
+ * Describes how the events of a given type are scheduled by the
+ * {@link MessageDispatcher}.
+ *
+ * An event type can be limited to a maximum number of events running at the
+ * same time, so that a burst of heavy events does not take all the threads of
+ * the dispatcher. Events of types ordered by user are executed one at a time
+ * per user, in the order they have been published, across all the event types
+ * ordered by user.
+ *
+ * @version $Rev$
+ */
+public final class DispatchPolicy {
+
+    /** no limit besides the size of the thread pool, no ordering */
+    public static final DispatchPolicy DEFAULT = new DispatchPolicy(0, false);
+
+    private final int maxConcurrent;
+    private final boolean orderedByUser;
+
+    /**
+     * Constructor
+     * @param maxConcurrentIn maximum number of events of the type running at
+     * the same time, 0 for no limit
+     * @param orderedByUserIn true to run the events of each user one at a time
+     * and in publishing order
+     */
+    public DispatchPolicy(int maxConcurrentIn, boolean orderedByUserIn) {
+        maxConcurrent = maxConcurrentIn;
+        orderedByUser = orderedByUserIn;
+    }
+
+    /**
+     * @return maximum number of events of the type running at the same time,
+     * 0 for no limit
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return true if the events of each user run one at a time
+     */
+    public boolean isOrderedByUser() {
+        return orderedByUser;
+    }
+
+    /**
+     * Returns the key of the events which must not run concurrently with
+     * the given one.
+     * @param msg the event
+     * @return the ordering key, or null if the event can run at any time
+     */
+    Object getOrderingKey(EventMessage msg) {
+        if (!orderedByUser || msg.getUserId() == null) {
+            return null;
+        }
+        return "user-" + msg.getUserId();
+    }
+}
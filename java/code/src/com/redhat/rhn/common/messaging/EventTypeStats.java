@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging;
+
+/**
+ * Queue depth, wait time and execution time of the events of one type
+ * handled by the {@link MessageDispatcher}. Instances handed out by the
+ * dispatcher are snapshots and are not updated afterwards.
+ *
+ * @version $Rev$
+ */
+public class EventTypeStats {
+
+    private final String eventType;
+    private int queued;
+    private int running;
+    private long completed;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+    private long totalExecutionMillis;
+    private long maxExecutionMillis;
+
+    /**
+     * Constructor
+     * @param eventTypeIn class name of the events
+     */
+    EventTypeStats(String eventTypeIn) {
+        eventType = eventTypeIn;
+    }
+
+    /**
+     * Copy constructor
+     * @param other statistics to copy
+     */
+    EventTypeStats(EventTypeStats other) {
+        eventType = other.eventType;
+        queued = other.queued;
+        running = other.running;
+        completed = other.completed;
+        totalWaitMillis = other.totalWaitMillis;
+        maxWaitMillis = other.maxWaitMillis;
+        totalExecutionMillis = other.totalExecutionMillis;
+        maxExecutionMillis = other.maxExecutionMillis;
+    }
+
+    void queued() {
+        queued++;
+    }
+
+    void dispatched() {
+        queued--;
+        running++;
+    }
+
+    void started(long waitMillis) {
+        totalWaitMillis += waitMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+    }
+
+    void finished(long executionMillis) {
+        running--;
+        completed++;
+        totalExecutionMillis += executionMillis;
+        maxExecutionMillis = Math.max(maxExecutionMillis, executionMillis);
+    }
+
+    /**
+     * @return class name of the events
+     */
+    public String getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return number of events waiting to be handed to the pool
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return number of events handed to the pool which have not finished,
+     * including the ones still waiting for a free thread
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of events executed
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return total time in ms the started events waited until a thread of
+     * the pool started them
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /**
+     * @return longest time in ms an event waited until a thread of the pool
+     * started it
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return total execution time in ms of the executed events
+     */
+    public long getTotalExecutionMillis() {
+        return totalExecutionMillis;
+    }
+
+    /**
+     * @return longest execution time in ms of an event
+     */
+    public long getMaxExecutionMillis() {
+        return maxExecutionMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return eventType + ": queued=" + queued + ", running=" + running +
+                ", completed=" + completed + ", wait=" + totalWaitMillis + "ms (max " +
+                maxWaitMillis + "ms), execution=" + totalExecutionMillis + "ms (max " +
+                maxExecutionMillis + "ms)";
+    }
+}
@@ -19,21 +19,75 @@ import com.redhat.rhn.frontend.events.TraceBackEvent;
 
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
+import EDU.oswego.cs.dl.util.concurrent.PooledExecutor;
+import EDU.oswego.cs.dl.util.concurrent.ThreadFactory;
+
 /**
- * Polls the EventQueue for events and executes them
+ * Executes the events published to the queue on a pool of threads.
  *
- * @version $Rev $
+ * Events wait in a single list in publishing order and are handed to the pool
+ * as soon as their {@link DispatchPolicy} allows it: an event is skipped, but
+ * keeps its place, while its type has reached its concurrency limit or while
+ * another event with the same ordering key is running or still pending ahead
+ * of it. A slow event type therefore only delays the events of its own type
+ * and of its ordering key.
+ *
+ * @version $Rev$
  */
-public class MessageDispatcher implements Runnable {
+public class MessageDispatcher {
 
     private static Logger log = Logger.getLogger(MessageDispatcher.class);
     private boolean isStopped = false;
+    private final PooledExecutor executor;
+    private final LinkedList<ActionExecutor> pending = new LinkedList<ActionExecutor>();
+    private final Map<Class, EventTypeStats> stats = new HashMap<Class, EventTypeStats>();
+    private final Set<Object> busyKeys = new HashSet<Object>();
+    private int runningCount = 0;
+    private final long statsInterval;
+    private long lastStatsLog = System.currentTimeMillis();
 
     /**
-     * Signals the dispatcher to stop
+     * Constructor
+     * @param threads number of threads executing events
+     * @param statsIntervalMillis how often in ms the statistics of the event
+     * types are logged, 0 to never log them
+     */
+    public MessageDispatcher(int threads, long statsIntervalMillis) {
+        statsInterval = statsIntervalMillis;
+        executor = new PooledExecutor(new LinkedQueue());
+        executor.setThreadFactory(new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable task) {
+                Thread retval = new Thread(task);
+                retval.setName("RHN Message Dispatcher-" + (++count));
+                retval.setDaemon(false);
+                return retval;
+            }
+        });
+        executor.setKeepAliveTime(-1);
+        executor.setMinimumPoolSize(threads);
+        executor.setMaximumPoolSize(threads);
+        executor.createThreads(threads);
+    }
+
+    /**
+     * Signals the dispatcher to stop. Events already handed to the pool are
+     * still executed, the others stay pending, see {@link #drainPending()}.
      */
     public synchronized void stop() {
         isStopped = true;
+        executor.shutdownAfterProcessingCurrentlyQueuedTasks();
     }
 
     /**
@@ -45,22 +99,146 @@ public class MessageDispatcher implements Runnable {
     }
 
     /**
-     * Main run loop where events are popped off the queue
-     * and executed. Events are wrapped inside of a Runnable instance
+     * Queues an event for execution.
+     * @param action the event along with its handlers
      */
-    public void run() {
-        while (!isStopped) {
-            try {
-                Runnable actionHandler = MessageQueue.popEventMessage();
-                if (actionHandler == null) {
-                    continue;
+    synchronized void dispatch(ActionExecutor action) {
+        pending.add(action);
+        getStats(action.getMessage().getClass()).queued();
+        schedule();
+    }
+
+    /**
+     * Removes and returns the events which have not been handed to the pool
+     * yet, so that they can be dispatched by another dispatcher.
+     * @return the pending events, in publishing order
+     */
+    synchronized List<ActionExecutor> drainPending() {
+        List<ActionExecutor> retval = new ArrayList<ActionExecutor>(pending);
+        pending.clear();
+        return retval;
+    }
+
+    /**
+     * Returns the number of events waiting or running.
+     * @return number of events
+     */
+    public synchronized int getMessageCount() {
+        return pending.size() + runningCount;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of every event type dispatched.
+     * @return the statistics
+     */
+    public synchronized List<EventTypeStats> getStatistics() {
+        List<EventTypeStats> retval = new ArrayList<EventTypeStats>();
+        for (EventTypeStats s : stats.values()) {
+            retval.add(new EventTypeStats(s));
+        }
+        return retval;
+    }
+
+    private EventTypeStats getStats(Class type) {
+        EventTypeStats retval = stats.get(type);
+        if (retval == null) {
+            retval = new EventTypeStats(type.getName());
+            stats.put(type, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Hands to the pool every pending event its policy allows to run.
+     */
+    private void schedule() {
+        if (isStopped) {
+            return;
+        }
+        // keys of the events skipped during this pass, the later events with
+        // the same key must wait for them whatever the reason of the skip
+        Set<Object> skippedKeys = new HashSet<Object>();
+        for (Iterator<ActionExecutor> iter = pending.iterator(); iter.hasNext();) {
+            ActionExecutor action = iter.next();
+            EventMessage msg = action.getMessage();
+            DispatchPolicy policy = MessageQueue.getDispatchPolicy(msg.getClass());
+            EventTypeStats typeStats = getStats(msg.getClass());
+            Object key = policy.getOrderingKey(msg);
+            if (key != null && (skippedKeys.contains(key) || busyKeys.contains(key))) {
+                skippedKeys.add(key);
+                continue;
+            }
+            if (policy.getMaxConcurrent() > 0 &&
+                    typeStats.getRunning() >= policy.getMaxConcurrent()) {
+                if (key != null) {
+                    skippedKeys.add(key);
                 }
-                actionHandler.run();
+                continue;
+            }
+            if (key != null) {
+                busyKeys.add(key);
+            }
+            iter.remove();
+            typeStats.dispatched();
+            runningCount++;
+            try {
+                executor.execute(new Task(action, key));
             }
             catch (InterruptedException e) {
-                log.error("Error occurred in the MessageQueue", e);
+                log.error(e.getMessage(), e);
+                long now = System.currentTimeMillis();
+                started(action, now);
+                finished(action, key, now);
                 return;
             }
+        }
+    }
+
+    private synchronized void started(ActionExecutor action, long start) {
+        getStats(action.getMessage().getClass()).started(
+                start - action.getQueuedTime());
+    }
+
+    private synchronized void finished(ActionExecutor action, Object key, long start) {
+        runningCount--;
+        if (key != null) {
+            busyKeys.remove(key);
+        }
+        EventTypeStats typeStats = getStats(action.getMessage().getClass());
+        long now = System.currentTimeMillis();
+        typeStats.finished(now - start);
+        if (log.isDebugEnabled()) {
+            log.debug(typeStats);
+        }
+        if (statsInterval > 0 && now - lastStatsLog >= statsInterval) {
+            lastStatsLog = now;
+            for (EventTypeStats s : stats.values()) {
+                log.info(s);
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Runs one event and releases its slot afterwards.
+     */
+    private class Task implements Runnable {
+
+        private final ActionExecutor action;
+        private final Object key;
+
+        Task(ActionExecutor actionIn, Object keyIn) {
+            action = actionIn;
+            key = keyIn;
+        }
+
+        public void run() {
+            // the event may have waited in the pool for a free thread
+            long start = System.currentTimeMillis();
+            started(action, start);
+            try {
+                action.run();
+            }
             catch (Throwable t) {
                 // better log this puppy to let folks know we have a problem
                 // but keep the queue running.
@@ -81,8 +259,9 @@ public class MessageDispatcher implements Runnable {
                     log.error("Error sending traceback email, logging for posterity.", t1);
                 }
             }
-
+            finally {
+                finished(action, key, start);
+            }
         }
     }
-
 }
@@ -20,9 +20,7 @@ import com.redhat.rhn.frontend.events.SsmRemovePackagesEvent;
 import com.redhat.rhn.frontend.events.SsmUpgradePackagesAction;
 import com.redhat.rhn.frontend.events.SsmUpgradePackagesEvent;
 
-import EDU.oswego.cs.dl.util.concurrent.Channel;
-import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
-
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.frontend.events.CloneErrataAction;
 import com.redhat.rhn.frontend.events.CloneErrataEvent;
 import com.redhat.rhn.frontend.events.NewCloneErrataAction;
@@ -57,10 +55,13 @@ import com.redhat.rhn.frontend.events.SsmVerifyPackagesEvent;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A class that passes messages from the sender to an action class
@@ -75,10 +76,9 @@ public class MessageQueue {
 
     private static final Map<Class, List<MessageAction>> ACTIONS =
             new HashMap<Class, List<MessageAction>>();
-    private static Channel messages = new LinkedQueue();
-    private static Thread dispatcherThread = null;
-    private static MessageDispatcher dispatcher = null;
-    private static int messageCount;
+    private static final ConcurrentMap<Class, DispatchPolicy> POLICIES =
+            new ConcurrentHashMap<Class, DispatchPolicy>();
+    private static volatile MessageDispatcher dispatcher = null;
 
     /**
      * Util class so we don't have a usable constructor
@@ -99,23 +99,20 @@ public class MessageQueue {
             startMessaging();
         }
         if (msg != null) {
+            ActionExecutor executor = null;
             synchronized (ACTIONS) {
                 List<MessageAction> handlers = ACTIONS.get(msg.getClass());
                 if (handlers != null && handlers.size() > 0) {
                     logger.debug("creating ActionExecutor");
-                    ActionExecutor executor = new ActionExecutor(handlers, msg);
-                    try {
-                        messages.put(executor);
-                        messageCount++;
-                    }
-                    catch (InterruptedException e) {
-                        logger.error(e.getMessage(), e);
-                    }
+                    executor = new ActionExecutor(handlers, msg);
                 }
                 else {
                     logger.debug("handlers is null, not processing!");
                 }
             }
+            if (executor != null) {
+                dispatch(executor);
+            }
         }
 
         if (logger.isDebugEnabled()) {
@@ -123,18 +120,16 @@ public class MessageQueue {
         }
     }
 
-    static Runnable popEventMessage() throws InterruptedException {
-        Runnable retval = (Runnable) messages.poll(500);
-        if (retval != null) {
-            synchronized (ACTIONS) {
-                messageCount--;
-            }
+    private static synchronized void dispatch(ActionExecutor executor) {
+        if (!isMessaging()) {
+            startMessaging();
         }
-        return retval;
+        dispatcher.dispatch(executor);
     }
 
     /**
-     * Start the messaging system
+     * Start the messaging system. Events published but not executed before
+     * the last {@link #stopMessaging()} are executed by the new dispatcher.
      */
     public static synchronized void startMessaging() {
         if (logger.isDebugEnabled()) {
@@ -143,11 +138,16 @@ public class MessageQueue {
         if (isMessaging()) {
             return;
         }
-        dispatcher = new MessageDispatcher();
-        dispatcherThread = new Thread(dispatcher);
-        dispatcherThread.setName("RHN Message Dispatcher");
-        dispatcherThread.setDaemon(false);
-        dispatcherThread.start();
+        List<ActionExecutor> carried = Collections.emptyList();
+        if (dispatcher != null) {
+            carried = dispatcher.drainPending();
+        }
+        dispatcher = new MessageDispatcher(
+                ConfigDefaults.get().getMessageQueueThreadPoolSize(),
+                ConfigDefaults.get().getMessageQueueStatsInterval() * 60 * 1000L);
+        for (ActionExecutor executor : carried) {
+            dispatcher.dispatch(executor);
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("startMessaging() - end");
         }
@@ -160,18 +160,54 @@ public class MessageQueue {
         if (logger.isDebugEnabled()) {
             logger.debug("stopMessaging() - start");
         }
-        dispatcher.stop();
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("stopMessaging() - end");
         }
     }
 
     /**
-     * Get the number of messages in the queue
+     * Get the number of messages in the queue, including the ones being
+     * executed
      * @return int number of messages in queue.
      */
     public static int getMessageCount() {
-        return messageCount;
+        MessageDispatcher current = dispatcher;
+        return current == null ? 0 : current.getMessageCount();
+    }
+
+    /**
+     * Get the queue depth, wait time and execution time per event type since
+     * the messaging system was last started
+     * @return statistics of every event type published
+     */
+    public static List<EventTypeStats> getEventStatistics() {
+        MessageDispatcher current = dispatcher;
+        if (current == null) {
+            return new ArrayList<EventTypeStats>();
+        }
+        return current.getStatistics();
+    }
+
+    /**
+     * Sets how the events of a type are scheduled.
+     * @param eventType type of event.
+     * @param policy the policy, {@link DispatchPolicy#DEFAULT} if never set
+     */
+    public static void setDispatchPolicy(Class eventType, DispatchPolicy policy) {
+        POLICIES.put(eventType, policy);
+    }
+
+    /**
+     * Returns how the events of a type are scheduled.
+     * @param eventType type of event.
+     * @return the policy
+     */
+    static DispatchPolicy getDispatchPolicy(Class eventType) {
+        DispatchPolicy retval = POLICIES.get(eventType);
+        return retval == null ? DispatchPolicy.DEFAULT : retval;
     }
 
     /**
@@ -310,6 +346,25 @@ public class MessageQueue {
         // Deploy configuration files
         MessageQueue.registerAction(new SsmConfigFilesAction(),
                                     SsmConfigFilesEvent.class);
+
+        // Long running events must not take all the dispatcher threads, and
+        // the SSM operations and errata clones of a user must run in the
+        // order they were requested.
+        DispatchPolicy perUser = new DispatchPolicy(2, true);
+        Class[] perUserEvents = {SsmChangeBaseChannelSubscriptionsEvent.class,
+                SsmChangeChannelSubscriptionsEvent.class, SsmDeleteServersEvent.class,
+                SsmInstallPackagesEvent.class, SsmRemovePackagesEvent.class,
+                SsmVerifyPackagesEvent.class, SsmUpgradePackagesEvent.class,
+                SsmPowerManagementEvent.class, SsmErrataEvent.class,
+                SsmSystemRebootEvent.class, SsmConfigFilesEvent.class,
+                CloneErrataEvent.class, NewCloneErrataEvent.class};
+        for (Class eventType : perUserEvents) {
+            MessageQueue.setDispatchPolicy(eventType, perUser);
+        }
+        MessageQueue.setDispatchPolicy(UpdateErrataCacheEvent.class,
+                new DispatchPolicy(1, false));
+        MessageQueue.setDispatchPolicy(RestartSatelliteEvent.class,
+                new DispatchPolicy(1, false));
     }
 }
 
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a batch of mails on a bounded number of threads.
+ *
+ * Mails are queued for the sending threads as they are handed over. Once the
+ * queue holds as many mails as there are threads, the caller sends the next
+ * mail itself, which keeps it from rendering mails much faster than they can
+ * be delivered. Failures are logged and counted, they do not stop the batch.
+ *
+ * @version $Rev$
+ */
+public class ParallelMailSender {
+
+    private static Logger log = Logger.getLogger(ParallelMailSender.class);
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Constructor
+     * @param threads number of threads sending mails
+     */
+    public ParallelMailSender(int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadFactory() {
+                    private int count = 0;
+
+                    public synchronized Thread newThread(Runnable task) {
+                        Thread retval = new Thread(task);
+                        retval.setName("RHN Mail Sender-" + (++count));
+                        retval.setDaemon(true);
+                        return retval;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Queues a mail for sending. The mail must not be changed afterwards.
+     * @param mail the mail to send
+     */
+    public void send(final Mail mail) {
+        executor.execute(new Runnable() {
+            public void run() {
+                if (log.isDebugEnabled()) {
+                    log.debug("Sending mail message:\n" + mail.toString());
+                }
+                try {
+                    mail.send();
+                    sent.incrementAndGet();
+                }
+                catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.error("Error sending mail", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all queued mails have been sent and stops the sending
+     * threads. No mail can be sent afterwards.
+     * @return the number of mails which could not be sent
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int finish() throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.info("Waiting for " + (executor.getQueue().size() +
+                    executor.getActiveCount()) + " mail(s) to be sent");
+        }
+        return failed.get();
+    }
+
+    /**
+     * @return the number of mails sent so far
+     */
+    public int getSentCount() {
+        return sent.get();
+    }
+}
@@ -32,7 +32,6 @@ import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.Message.RecipientType;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
@@ -46,6 +45,7 @@ import javax.mail.internet.MimeMessage;
 public class SmtpMail implements Mail {
 
     private String smtpHost;
+    private Session session;
     private MimeMessage message;
     private static Logger log = Logger.getLogger(SmtpMail.class);
 
@@ -74,7 +74,7 @@ public class SmtpMail implements Mail {
         props.put("mail.smtp.host", smtpHost);
 
         // Get session
-        Session session = Session.getDefaultInstance(props, null);
+        session = Session.getDefaultInstance(props, null);
         try {
             message = new MimeMessage(session);
             message.setFrom(new InternetAddress(from));
@@ -136,7 +136,7 @@ public class SmtpMail implements Mail {
                         ": No recipients");
                 return;
             }
-            Transport.send(message);
+            SmtpTransportPool.getInstance().send(session, message);
         }
         catch (MessagingException me) {
             String msg = "MessagingException while trying to send email: " +
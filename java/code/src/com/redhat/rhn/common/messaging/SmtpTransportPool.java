@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+
+import org.apache.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+/**
+ * Pool of connections to the mail server.
+ *
+ * Transport.send opens a new SMTP connection for every message. Messages sent
+ * through the pool take an idle connection instead, if there is one, and
+ * leave it open for the next message afterwards. At most maxIdle connections
+ * are kept open. While there are any, a background thread checks them every
+ * quarter of the idle timeout, {@value #IDLE_TIMEOUT} ms by default, and closes
+ * the ones which have not been used for that long. When a message cannot be
+ * sent over a reused connection, which the mail server may have closed
+ * meanwhile, it is sent once more over a new one.
+ *
+ * @version $Rev$
+ */
+public class SmtpTransportPool {
+
+    /** default time in ms after which an unused connection is closed */
+    public static final long IDLE_TIMEOUT = 60000;
+
+    private static final int REAPER_CHECKS = 4;
+
+    private static Logger log = Logger.getLogger(SmtpTransportPool.class);
+    private static SmtpTransportPool instance;
+
+    private final int maxIdle;
+    private final long idleTimeout;
+    private final LinkedList<IdleTransport> idle = new LinkedList<IdleTransport>();
+    private Session session;
+    private ScheduledExecutorService reaper;
+
+    /**
+     * Constructor
+     * @param maxIdleIn maximum number of idle connections to keep open
+     */
+    public SmtpTransportPool(int maxIdleIn) {
+        this(maxIdleIn, IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructor
+     * @param maxIdleIn maximum number of idle connections to keep open
+     * @param idleTimeoutIn time in ms after which an unused connection is closed
+     */
+    public SmtpTransportPool(int maxIdleIn, long idleTimeoutIn) {
+        maxIdle = maxIdleIn;
+        idleTimeout = idleTimeoutIn;
+    }
+
+    /**
+     * Returns the pool configured in rhn.conf, creating it on first use.
+     * @return the shared pool
+     */
+    public static synchronized SmtpTransportPool getInstance() {
+        if (instance == null) {
+            instance = new SmtpTransportPool(ConfigDefaults.get().getSmtpPoolSize());
+        }
+        return instance;
+    }
+
+    /**
+     * Sends a message to all its recipients.
+     * @param sessionIn the mail session to connect with
+     * @param message the message to send
+     * @throws MessagingException if the message cannot be sent
+     */
+    public void send(Session sessionIn, Message message) throws MessagingException {
+        message.saveChanges();
+        Address[] recipients = message.getAllRecipients();
+        Transport transport = takeIdle(sessionIn);
+        if (transport != null) {
+            try {
+                transport.sendMessage(message, recipients);
+                release(sessionIn, transport);
+                return;
+            }
+            catch (SendFailedException e) {
+                close(transport);
+                throw e;
+            }
+            catch (MessagingException e) {
+                close(transport);
+                log.debug("Sending over a reused connection failed, retrying", e);
+            }
+        }
+        transport = connect(sessionIn);
+        try {
+            transport.sendMessage(message, recipients);
+        }
+        catch (MessagingException e) {
+            close(transport);
+            throw e;
+        }
+        release(sessionIn, transport);
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    public void closeIdle() {
+        LinkedList<IdleTransport> closing;
+        synchronized (this) {
+            closing = new LinkedList<IdleTransport>(idle);
+            idle.clear();
+            stopReaper();
+        }
+        for (IdleTransport i : closing) {
+            close(i.transport);
+        }
+    }
+
+    /**
+     * Closes the idle connections which have not been used for the idle
+     * timeout.
+     */
+    private void closeExpired() {
+        LinkedList<IdleTransport> expired = new LinkedList<IdleTransport>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            // the least recently used connections are at the end
+            while (!idle.isEmpty() && now - idle.getLast().released >= idleTimeout) {
+                expired.add(idle.removeLast());
+            }
+            if (idle.isEmpty()) {
+                stopReaper();
+            }
+        }
+        for (IdleTransport i : expired) {
+            close(i.transport);
+        }
+    }
+
+    private void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread retval = new Thread(task);
+                retval.setName("RHN Mail Connection Reaper");
+                retval.setDaemon(true);
+                return retval;
+            }
+        });
+        long interval = Math.max(1, idleTimeout / REAPER_CHECKS);
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                closeExpired();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopReaper() {
+        if (reaper != null) {
+            reaper.shutdown();
+            reaper = null;
+        }
+    }
+
+    /**
+     * @return the number of idle connections
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    private Transport takeIdle(Session sessionIn) {
+        Transport transport = null;
+        LinkedList<IdleTransport> expired = new LinkedList<IdleTransport>();
+        synchronized (this) {
+            if (sessionIn != session) {
+                expired.addAll(idle);
+                idle.clear();
+                session = sessionIn;
+            }
+            long now = System.currentTimeMillis();
+            for (Iterator<IdleTransport> i = idle.iterator(); i.hasNext();) {
+                IdleTransport candidate = i.next();
+                i.remove();
+                if (now - candidate.released < idleTimeout) {
+                    transport = candidate.transport;
+                    break;
+                }
+                expired.add(candidate);
+            }
+        }
+        for (IdleTransport i : expired) {
+            close(i.transport);
+        }
+        return transport;
+    }
+
+    private void release(Session sessionIn, Transport transport) {
+        synchronized (this) {
+            if (sessionIn == session && idle.size() < maxIdle) {
+                // most recently used first, so that surplus connections expire
+                idle.addFirst(new IdleTransport(transport));
+                startReaper();
+                return;
+            }
+        }
+        close(transport);
+    }
+
+    private Transport connect(Session sessionIn) throws MessagingException {
+        Transport transport = sessionIn.getTransport("smtp");
+        transport.connect();
+        return transport;
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        }
+        catch (MessagingException e) {
+            log.debug("Unable to close mail server connection", e);
+        }
+    }
+
+    /**
+     * An open connection along with the time it was last used.
+     */
+    private static final class IdleTransport {
+
+        private final Transport transport;
+        private final long released;
+
+        private IdleTransport(Transport transportIn) {
+            transport = transportIn;
+            released = System.currentTimeMillis();
+        }
+    }
+}
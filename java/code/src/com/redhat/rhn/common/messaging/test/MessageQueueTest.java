@@ -18,12 +18,21 @@ package com.redhat.rhn.common.messaging.test;
 import org.apache.log4j.Logger;
 
 import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.messaging.DispatchPolicy;
+import com.redhat.rhn.common.messaging.EventMessage;
+import com.redhat.rhn.common.messaging.EventTypeStats;
+import com.redhat.rhn.common.messaging.MessageAction;
 import com.redhat.rhn.common.messaging.MessageQueue;
 import com.redhat.rhn.domain.common.LoggingFactory;
 import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class MessageQueueTest extends RhnBaseTestCase {
 
     private static Logger logger = Logger.getLogger(MessageQueueTest.class);
@@ -189,6 +198,78 @@ public class MessageQueueTest extends RhnBaseTestCase {
         logger.debug("testThreadKiller - end");
     }
 
+    public void testSlowEventDoesNotBlockOthers() throws Exception {
+        SlowAction slow = new SlowAction();
+        MessageQueue.registerAction(slow, SlowEventMessage.class);
+        MessageQueue.setDispatchPolicy(SlowEventMessage.class,
+                new DispatchPolicy(1, false));
+        try {
+            MessageQueue.publish(new SlowEventMessage());
+            MessageQueue.publish(new SlowEventMessage());
+            TestEventMessage me = new TestEventMessage();
+            MessageQueue.publish(me);
+            Thread.sleep(1000);
+            assertTrue(me.getMessageReceived());
+            // the second slow event waits for the first one
+            assertEquals(1, slow.getStarted());
+        }
+        finally {
+            slow.release();
+            MessageQueue.deRegisterAction(slow, SlowEventMessage.class);
+        }
+        int tries = 0;
+        while (MessageQueue.getMessageCount() > 0 && tries++ < 10) {
+            Thread.sleep(500);
+        }
+        assertEquals(2, slow.getStarted());
+        EventTypeStats stats = null;
+        for (EventTypeStats s : MessageQueue.getEventStatistics()) {
+            if (s.getEventType().equals(SlowEventMessage.class.getName())) {
+                stats = s;
+            }
+        }
+        assertNotNull(stats);
+        assertEquals(2, stats.getCompleted());
+        assertEquals(0, stats.getQueued());
+        assertTrue(stats.getMaxWaitMillis() >= 1000);
+    }
+
+    public void testThrottledEventKeepsUserOrder() throws Exception {
+        List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        SlowUserAction slow = new SlowUserAction(executed);
+        UserAction other = new UserAction(executed);
+        MessageQueue.registerAction(slow, SlowUserEventMessage.class);
+        MessageQueue.registerAction(other, UserEventMessage.class);
+        MessageQueue.setDispatchPolicy(SlowUserEventMessage.class,
+                new DispatchPolicy(1, true));
+        MessageQueue.setDispatchPolicy(UserEventMessage.class,
+                new DispatchPolicy(0, true));
+        try {
+            // the first event takes the only slot of its type, the second one
+            // is throttled and the third one must wait for it
+            MessageQueue.publish(new SlowUserEventMessage(2L));
+            MessageQueue.publish(new SlowUserEventMessage(1L));
+            MessageQueue.publish(new UserEventMessage(1L));
+            Thread.sleep(1000);
+            assertEquals(Arrays.asList("slow-2"), new ArrayList<String>(executed));
+        }
+        finally {
+            slow.release();
+        }
+        try {
+            int tries = 0;
+            while (MessageQueue.getMessageCount() > 0 && tries++ < 10) {
+                Thread.sleep(500);
+            }
+            assertEquals(Arrays.asList("slow-2", "slow-1", "user-1"),
+                    new ArrayList<String>(executed));
+        }
+        finally {
+            MessageQueue.deRegisterAction(slow, SlowUserEventMessage.class);
+            MessageQueue.deRegisterAction(other, UserEventMessage.class);
+        }
+    }
+
     private void verifyMessageEvent(TestEventMessage me, boolean matchingValue)
             throws InterruptedException {
         MessageQueue.publish(me);
@@ -214,6 +295,117 @@ public class MessageQueueTest extends RhnBaseTestCase {
 
     }
 
+    /**
+     * Event handled by {@link SlowAction}.
+     */
+    public static class SlowEventMessage implements EventMessage {
+
+        public String toText() {
+            return "slow";
+        }
+
+        public Long getUserId() {
+            return null;
+        }
+    }
+
+    /**
+     * Action blocking until released.
+     */
+    public static class SlowAction implements MessageAction {
+
+        private int started = 0;
+        private boolean released = false;
+
+        public synchronized void execute(EventMessage msg) {
+            started++;
+            while (!released) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        public synchronized int getStarted() {
+            return started;
+        }
+
+        public synchronized void release() {
+            released = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Event of a user, handled by {@link UserAction}.
+     */
+    public static class UserEventMessage implements EventMessage {
+
+        private final Long userId;
+
+        public UserEventMessage(Long userIdIn) {
+            userId = userIdIn;
+        }
+
+        public String toText() {
+            return "user-" + userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+    }
+
+    /**
+     * Event of a user, handled by {@link SlowUserAction}.
+     */
+    public static class SlowUserEventMessage extends UserEventMessage {
+
+        public SlowUserEventMessage(Long userIdIn) {
+            super(userIdIn);
+        }
+
+        public String toText() {
+            return "slow-" + getUserId();
+        }
+    }
+
+    /**
+     * Action recording the events it executes.
+     */
+    public static class UserAction implements MessageAction {
+
+        private final List<String> executed;
+
+        public UserAction(List<String> executedIn) {
+            executed = executedIn;
+        }
+
+        public void execute(EventMessage msg) {
+            executed.add(msg.toText());
+        }
+    }
+
+    /**
+     * Action recording the events it executes, then blocking until released.
+     */
+    public static class SlowUserAction extends SlowAction {
+
+        private final List<String> executed;
+
+        public SlowUserAction(List<String> executedIn) {
+            executed = executedIn;
+        }
+
+        public void execute(EventMessage msg) {
+            executed.add(msg.toText());
+            super.execute(msg);
+        }
+    }
+
     /**
     * Util thread to simulate multiple Threads publishing
     * events.
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging.test;
+
+import com.redhat.rhn.common.messaging.Mail;
+import com.redhat.rhn.common.messaging.ParallelMailSender;
+import com.redhat.rhn.common.messaging.SmtpTransportPool;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * SmtpTransportPoolTest
+ * @version $Rev$
+ */
+public class SmtpTransportPoolTest extends RhnBaseTestCase {
+
+    private TestSmtpServer server;
+    private Session session;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new TestSmtpServer();
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(server.getPort()));
+        session = Session.getInstance(props);
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+        super.tearDown();
+    }
+
+    public void testConnectionReuse() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(2);
+        for (int i = 0; i < 5; i++) {
+            pool.send(session, createMessage(i));
+        }
+        assertEquals(5, server.getMessageCount());
+        assertEquals(1, server.getConnectionCount());
+        assertEquals(1, pool.getIdleCount());
+
+        pool.closeIdle();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    public void testReconnect() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(2);
+        pool.send(session, createMessage(0));
+        server.closeConnections();
+        pool.send(session, createMessage(1));
+        assertEquals(2, server.getMessageCount());
+        assertEquals(2, server.getConnectionCount());
+        pool.closeIdle();
+    }
+
+    public void testIdleConnectionsExpire() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(2, 200);
+        pool.send(session, createMessage(0));
+        assertEquals(1, pool.getIdleCount());
+
+        // closed by the pool itself, without sending another message
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getIdleCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getIdleCount());
+
+        pool.send(session, createMessage(1));
+        assertEquals(2, server.getMessageCount());
+        assertEquals(2, server.getConnectionCount());
+        pool.closeIdle();
+    }
+
+    public void testParallelMailSender() throws Exception {
+        final AtomicInteger sent = new AtomicInteger();
+        ParallelMailSender sender = new ParallelMailSender(3);
+        for (int i = 0; i < 20; i++) {
+            final boolean fail = i % 5 == 0;
+            Mail mail = new MockMail() {
+                public void send() {
+                    if (fail) {
+                        throw new IllegalStateException("test failure");
+                    }
+                    sent.incrementAndGet();
+                }
+            };
+            sender.send(mail);
+        }
+        assertEquals(4, sender.finish());
+        assertEquals(16, sent.get());
+        assertEquals(16, sender.getSentCount());
+    }
+
+    private Message createMessage(int i) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("sender@example.com"));
+        message.setRecipient(Message.RecipientType.TO,
+                new InternetAddress("user" + i + "@example.com"));
+        message.setSubject("Test message " + i);
+        message.setText("body " + i);
+        return message;
+    }
+}
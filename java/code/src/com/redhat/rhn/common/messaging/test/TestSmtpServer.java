@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal SMTP server accepting every message, for tests which need a mail
+ * server to talk to. It listens on a free local port and only counts the
+ * connections and messages it receives.
+ *
+ * @version $Rev$
+ */
+public class TestSmtpServer {
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> clients = new ArrayList<Socket>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+
+    /**
+     * Starts the server.
+     * @throws IOException if no port can be bound
+     */
+    public TestSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread("Test SMTP Server") {
+            public void run() {
+                acceptConnections();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of connections accepted so far
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * @return the number of messages received so far
+     */
+    public int getMessageCount() {
+        return messages.get();
+    }
+
+    /**
+     * Closes the open client connections, like a server dropping idle
+     * connections does.
+     * @throws IOException if a connection cannot be closed
+     */
+    public synchronized void closeConnections() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     * @throws IOException if a socket cannot be closed
+     */
+    public void stop() throws IOException {
+        serverSocket.close();
+        closeConnections();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                synchronized (this) {
+                    clients.add(client);
+                }
+                connections.incrementAndGet();
+                Thread handler = new Thread("Test SMTP Connection") {
+                    public void run() {
+                        try {
+                            converse(client);
+                        }
+                        catch (IOException e) {
+                            // connection closed
+                        }
+                    }
+                };
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch (IOException e) {
+                // server stopped
+            }
+        }
+    }
+
+    private void converse(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                client.getInputStream(), "US-ASCII"));
+        Writer out = new OutputStreamWriter(client.getOutputStream(), "US-ASCII");
+        reply(out, "220 localhost test SMTP server");
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.length() > 4 ?
+                    line.substring(0, 4).toUpperCase() : line.toUpperCase();
+            if (command.equals("DATA")) {
+                reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                // skip the message
+                line = in.readLine();
+                while (line != null && !line.equals(".")) {
+                    line = in.readLine();
+                }
+                messages.incrementAndGet();
+                reply(out, "250 OK");
+            }
+            else if (command.equals("QUIT")) {
+                reply(out, "221 Bye");
+                client.close();
+                return;
+            }
+            else if (command.equals("EHLO") || command.equals("HELO")) {
+                reply(out, "250 localhost");
+            }
+            else {
+                reply(out, "250 OK");
+            }
+        }
+    }
+
+    private void reply(Writer out, String message) throws IOException {
+        out.write(message + "\r\n");
+        out.flush();
+    }
+}
@@ -15,18 +15,12 @@
 
 package com.redhat.rhn.common.security.acl;
 
-import com.redhat.rhn.common.IllegalRegexException;
 import com.redhat.rhn.common.MethodInvocationException;
 import com.redhat.rhn.common.localization.LocalizationService;
+import com.redhat.rhn.domain.Identifiable;
+import com.redhat.rhn.domain.user.User;
 
 import org.apache.log4j.Logger;
-import org.apache.oro.text.regex.MalformedPatternException;
-import org.apache.oro.text.regex.MatchResult;
-import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.PatternCompiler;
-import org.apache.oro.text.regex.PatternMatcher;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
@@ -34,8 +28,11 @@ import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
@@ -160,27 +157,6 @@ import java.util.TreeSet;
  */
 public class Acl {
 
-    /** RegEx to split ACL into multiple expressions */
-    private static final String ACL_SPLIT_REGEX = "\\s*;\\s*";
-
-    /** RegEx to split expressions into multiple statements */
-    private static final String EXPR_SPLIT_REGEX = "\\s+or\\s+";
-
-    /** RegEx to parse statement to grab negation, function call, params */
-    private static final String STMT_PARSE_REGEX = "^(not +)?(.*)\\((.*)\\)$";
-
-    /** RegEx to split params */
-    private static final String PARAM_SPLIT_REGEX = "\\s*,\\s*";
-
-    /** constant used to identify negation regex group within statement */
-    private static final int NEGATION_GROUP = 1;
-    /** constant used to identify handler name regex group within statement */
-    private static final int HANDLERNAME_GROUP = 2;
-    /** constant used to identify param regex group within statement */
-    private static final int PARAM_GROUP = 3;
-    /** total number of regex groups expected in statement */
-    private static final int EXPECTED_GROUPS = 4;
-
     /** prefix of acl handler method names */
     private static final String ACL_PREFIX = "acl";
 
@@ -190,23 +166,6 @@ public class Acl {
     /** Store acl handlers against keys referenced in acl statements */
     private Map handlers = new HashMap();
 
-    /** store the compiled regex that will be re-used for evalAcl invocations */
-    private static Pattern parsePattern = null;
-
-    // initialize the parse pattern
-    static {
-        PatternCompiler compiler = new Perl5Compiler();
-        try {
-            parsePattern = compiler.compile(STMT_PARSE_REGEX);
-        }
-        catch (MalformedPatternException e) {
-            // we assume our regex is sane and tested
-            // and that we don't get here
-            throw new IllegalRegexException("Invalid when constructing parse " +
-                                            "pattern for acls.", e);
-        }
-    }
-
     /** Constructor for a new Acl instance without any default ACL handlers. */
     public Acl() {
         // default constructor with no acl handlers
@@ -382,6 +341,24 @@ public class Acl {
      *  @see AclHandler
      */
     public boolean evalAcl(Object context, String acl) {
+        return evalAcl(context, acl, null);
+    }
+
+    /** Evaluates an ACL string within a given context, reusing the results
+     *  of handler calls already made with the same parameters and context
+     *  values.
+     *  Only contexts whose values are strings, numbers, booleans, users or
+     *  {@link Identifiable} objects are looked up in the cache, any other
+     *  context is evaluated as if no cache was given.
+     *  @param context context in which the acl string is evaluated
+     *  @param acl the ACL string.
+     *  @param cache results of handler calls of the current request, may be
+     *  null
+     *  @return true if the ACL string and given context allow access,
+     *  false otherwise
+     *  @see AclHandler
+     */
+    public boolean evalAcl(Object context, String acl, AclResultCache cache) {
 
         if (log.isDebugEnabled()) {
             log.debug("acl: " + acl);
@@ -394,107 +371,29 @@ public class Acl {
                              "bad-syntax", acl));
         }
 
-        String[] expressions = acl.split(ACL_SPLIT_REGEX);
-        int exprLen = expressions.length;
-
-        boolean result = false;
-
-        PatternMatcher matcher = new Perl5Matcher();
-
-        for (int exprIdx = 0; exprIdx < exprLen; ++exprIdx) {
-
-            String expression = expressions[exprIdx];
-
-            if (log.isDebugEnabled()) {
-                log.debug("expression[" + exprIdx + "]: " + expression);
-            }
+        String contextKey = null;
+        if (cache != null) {
+            contextKey = contextKey(context);
+        }
 
-            String[] statements = expression.split(EXPR_SPLIT_REGEX);
-            int statementLen = statements.length;
+        CompiledAcl.Statement[][] expressions =
+            CompiledAcl.compile(acl).getExpressions();
 
-            for (int stmtIdx = 0; stmtIdx < statementLen; ++stmtIdx) {
+        for (int exprIdx = 0; exprIdx < expressions.length; ++exprIdx) {
 
-                String statement = statements[stmtIdx];
+            boolean result = false;
+            CompiledAcl.Statement[] statements = expressions[exprIdx];
 
-                if (log.isDebugEnabled()) {
-                    log.debug("statement[" + stmtIdx + "]: " + statement);
-                }
+            for (int stmtIdx = 0; stmtIdx < statements.length; ++stmtIdx) {
 
-                boolean itMatches = matcher.matches(statement, parsePattern);
-                MatchResult matchResult = matcher.getMatch();
-                if (!itMatches || matchResult == null || matchResult.groups() <
-                        EXPECTED_GROUPS) {
-                    throw new IllegalArgumentException(
-                                  LocalizationService.getInstance().getMessage(
-                                     "bad-syntax", statement));
-                }
+                CompiledAcl.Statement statement = statements[stmtIdx];
 
                 if (log.isDebugEnabled()) {
-                    log.debug("num groups: " + matchResult.groups());
-                    log.debug("not: " + matchResult.group(NEGATION_GROUP));
-                    log.debug("handler: " +
-                            matchResult.group(HANDLERNAME_GROUP));
-                    log.debug("params: " + matchResult.group(PARAM_GROUP));
-                }
-
-                boolean negated = matchResult.group(NEGATION_GROUP) != null;
-
-                String func = matchResult.group(HANDLERNAME_GROUP);
-
-                String params = matchResult.group(PARAM_GROUP);
-
-                InstanceMethodPair pair =
-                    (InstanceMethodPair)handlers.get(func);
-
-                if (pair == null) {
-                    Object[] args = new Object[3];
-                    args[0] = func;
-                    args[1] = statement;
-                    args[2] = new TreeSet(handlers.keySet()).toString();
-                    throw new IllegalArgumentException(
-                        LocalizationService.getInstance().getMessage(
-                            "bad-handler", args));
-                }
-
-                Method handler = pair.getMethod();
-
-                String[] paramArray = params.split(PARAM_SPLIT_REGEX);
-
-                // if no args were givien, make sure we pass a 0-length array
-                if (paramArray.length == 1 && paramArray[0].trim().equals("")) {
-                    paramArray = new String[0];
-                }
-
-                try {
-                    result = ((Boolean)handler.invoke(pair.getInstance(),
-                        new Object[] {context, paramArray })).booleanValue();
-                }
-                // we shouldn't hit any of these exceptions, because the
-                // handler classes should have been adequately junit-tested
-                catch (IllegalAccessException iae) {
-                    Object[] args = new Object[3];
-                    args[0] = handler.getName();
-                    args[1] = statement;
-                    args[2] = iae.getMessage();
-
-                    throw new MethodInvocationException(
-                        LocalizationService.getInstance().getMessage(
-                        "illegal-access", args), iae);
-                }
-                catch (InvocationTargetException ite) {
-                    Object[] args = new Object[3];
-                    args[0] = handler.getName();
-                    args[1] = statement;
-                    args[2] = ite.getMessage();
-
-                    throw new MethodInvocationException(
-                        LocalizationService.getInstance().getMessage(
-                        "invocation-target-exception", args), ite);
+                    log.debug("statement[" + exprIdx + "][" + stmtIdx + "]: " +
+                            statement.getText());
                 }
 
-                if (negated) {
-                    result = !result;
-                }
+                result = evalStatement(context, statement, cache, contextKey);
 
                 // break if we hit true, since we're in an or's loop
                 if (result) {
@@ -518,6 +417,125 @@ public class Acl {
 
     }
 
+    private boolean evalStatement(Object context, CompiledAcl.Statement statement,
+            AclResultCache cache, String contextKey) {
+        if (!statement.isValid()) {
+            throw new IllegalArgumentException(
+                          LocalizationService.getInstance().getMessage(
+                             "bad-syntax", statement.getText()));
+        }
+
+        String func = statement.getHandlerName();
+        InstanceMethodPair pair = (InstanceMethodPair)handlers.get(func);
+
+        if (pair == null) {
+            Object[] args = new Object[3];
+            args[0] = func;
+            args[1] = statement.getText();
+            args[2] = new TreeSet(handlers.keySet()).toString();
+            throw new IllegalArgumentException(
+                LocalizationService.getInstance().getMessage(
+                    "bad-handler", args));
+        }
+
+        Method handler = pair.getMethod();
+
+        String resultKey = null;
+        Boolean cached = null;
+        if (contextKey != null) {
+            resultKey = handler.getDeclaringClass().getName() + "." +
+                statement.getKey() + contextKey;
+            cached = cache.get(resultKey);
+        }
+
+        boolean result;
+        if (cached != null) {
+            result = cached.booleanValue();
+        }
+        else {
+            result = invoke(pair, context, statement);
+            if (resultKey != null) {
+                cache.put(resultKey, result);
+            }
+        }
+
+        if (statement.isNegated()) {
+            result = !result;
+        }
+        return result;
+    }
+
+    private boolean invoke(InstanceMethodPair pair, Object context,
+            CompiledAcl.Statement statement) {
+        Method handler = pair.getMethod();
+        try {
+            return ((Boolean)handler.invoke(pair.getInstance(),
+                new Object[] {context, statement.getParams() })).booleanValue();
+        }
+        // we shouldn't hit any of these exceptions, because the
+        // handler classes should have been adequately junit-tested
+        catch (IllegalAccessException iae) {
+            Object[] args = new Object[3];
+            args[0] = handler.getName();
+            args[1] = statement.getText();
+            args[2] = iae.getMessage();
+
+            throw new MethodInvocationException(
+                LocalizationService.getInstance().getMessage(
+                "illegal-access", args), iae);
+        }
+        catch (InvocationTargetException ite) {
+            Object[] args = new Object[3];
+            args[0] = handler.getName();
+            args[1] = statement.getText();
+            args[2] = ite.getMessage();
+
+            throw new MethodInvocationException(
+                LocalizationService.getInstance().getMessage(
+                "invocation-target-exception", args), ite);
+        }
+    }
+
+    /**
+     * Builds the part of the result cache key identifying the context: its
+     * keys along with the values, or the ids of the objects, they map to.
+     * @param context the evaluation context
+     * @return the context key, or null if the context holds values that
+     * cannot be identified and the results must not be cached
+     */
+    private static String contextKey(Object context) {
+        if (context == null) {
+            return "{}";
+        }
+        if (!(context instanceof Map)) {
+            return null;
+        }
+        Map<Object, Object> sorted = new TreeMap<Object, Object>();
+        for (Iterator i = ((Map) context).entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            if (!(entry.getKey() instanceof String)) {
+                return null;
+            }
+            Object value = entry.getValue();
+            if (value instanceof User) {
+                value = "User#" + ((User) value).getId();
+            }
+            else if (value instanceof Identifiable) {
+                value = value.getClass().getSimpleName() + "#" +
+                    ((Identifiable) value).getId();
+            }
+            else if (value instanceof String[]) {
+                value = Arrays.asList((String[]) value);
+            }
+            else if (value != null && !(value instanceof String) &&
+                    !(value instanceof Number) && !(value instanceof Boolean)) {
+                return null;
+            }
+            sorted.put(entry.getKey(), value);
+        }
+        return sorted.toString();
+    }
+
     private static class InstanceMethodPair {
         private Method method;
         private Object instance;
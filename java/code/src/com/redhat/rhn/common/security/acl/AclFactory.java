@@ -17,13 +17,17 @@ package com.redhat.rhn.common.security.acl;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Class to assist with creating Acls.  This Factory will setup
  * the Acl class as well as setup the default as well as the mixin AclHandlers
  * associated with the Acl.
  *
- * TODO - consider caching the Acl instances within the Factory so we don't have to
- * instantiate new ones each time. Not sure how to do this yet.
+ * Acl instances are cached by mixin list, so the handlers of a given list
+ * are instantiated and introspected only once. ACL handlers are stateless,
+ * which allows the cached instances to be shared between threads.
  *
  * @version $Rev$
  */
@@ -32,6 +36,9 @@ public class AclFactory {
     // private instance of the service.
     private static AclFactory instance = new AclFactory();
 
+    private final ConcurrentMap<String, Acl> acls =
+        new ConcurrentHashMap<String, Acl>();
+
     /**
      * hidden constructor
      */
@@ -48,21 +55,41 @@ public class AclFactory {
     }
 
     /**
-     * Get an instance of an Acl
+     * Get an instance of an Acl. The instance is shared with every other
+     * caller asking for the same mixins and must not have further handlers
+     * registered.
      * @param mixinsIn the String with a comma separated list of classnames
      * @return Acl created
      */
     public Acl getAcl(String mixinsIn) {
+        String[] mixin = new String[0];
+        if (mixinsIn != null) {
+            mixin = StringUtils.split(mixinsIn, ",");
+            for (int i = 0; i < mixin.length; i++) {
+                mixin[i] = StringUtils.trim(mixin[i]);
+            }
+        }
+        String key = StringUtils.join(mixin, ",");
+
+        Acl aclObj = acls.get(key);
+        if (aclObj == null) {
+            aclObj = createAcl(mixin);
+            Acl existing = acls.putIfAbsent(key, aclObj);
+            if (existing != null) {
+                aclObj = existing;
+            }
+        }
+        return aclObj;
+    }
+
+    private Acl createAcl(String[] mixin) {
         Acl aclObj = new Acl();
         Access access = new Access();
         aclObj.registerHandler(access);
 
         // Add the mixin handlers as well.
-        if (mixinsIn != null) {
-            String[] mixin = StringUtils.split(mixinsIn, ",");
-            for (int i = 0; i < mixin.length; i++) {
-                aclObj.registerHandler(StringUtils.trim(mixin[i]));
-            }
+        for (int i = 0; i < mixin.length; i++) {
+            aclObj.registerHandler(mixin[i]);
         }
         return aclObj;
     }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.security.acl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Results of ACL handler calls, to be reused by later ACL evaluations of the
+ * same unit of work, typically one HTTP request. Results are keyed by handler
+ * method, parameters and the identifying values of the context, so a check
+ * like <code>child_channel_candidate(rhn-satellite)</code> hits the database
+ * at most once per request no matter how many navigation nodes use it.
+ *
+ * An instance must not outlive the unit of work it was created for, as it
+ * never expires its entries, and is not meant to be shared between threads.
+ *
+ * @see Acl#evalAcl(Object, String, AclResultCache)
+ * @version $Rev$
+ */
+public class AclResultCache {
+
+    private final Map<String, Boolean> results = new HashMap<String, Boolean>();
+    private int hits;
+    private int misses;
+
+    /**
+     * @param key the handler call
+     * @return the result of the handler call, or null if it is not known
+     */
+    Boolean get(String key) {
+        Boolean result = results.get(key);
+        if (result == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * @param key the handler call
+     * @param result the result of the handler call
+     */
+    void put(String key, boolean result) {
+        results.put(key, Boolean.valueOf(result));
+    }
+
+    /**
+     * @return the number of handler calls answered from this cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of handler calls not found in this cache
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results in this cache
+     */
+    public int size() {
+        return results.size();
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.security.acl;
+
+import com.redhat.rhn.common.IllegalRegexException;
+
+import org.apache.log4j.Logger;
+import org.apache.oro.text.regex.MalformedPatternException;
+import org.apache.oro.text.regex.MatchResult;
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.PatternCompiler;
+import org.apache.oro.text.regex.PatternMatcher;
+import org.apache.oro.text.regex.Perl5Compiler;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed form of an ACL string, see {@link Acl} for the syntax.
+ *
+ * Parsing does not depend on the registered handlers, so the parsed form of
+ * every ACL string is kept in a single cache shared by all {@link Acl}
+ * instances. ACL strings come from the navigation XML files, the JSPs and the
+ * struts configuration, so the cache is bounded by the size of the webapp.
+ *
+ * @version $Rev$
+ */
+final class CompiledAcl {
+
+    /** RegEx to split ACL into multiple expressions */
+    private static final String ACL_SPLIT_REGEX = "\\s*;\\s*";
+
+    /** RegEx to split expressions into multiple statements */
+    private static final String EXPR_SPLIT_REGEX = "\\s+or\\s+";
+
+    /** RegEx to parse statement to grab negation, function call, params */
+    private static final String STMT_PARSE_REGEX = "^(not +)?(.*)\\((.*)\\)$";
+
+    /** RegEx to split params */
+    private static final String PARAM_SPLIT_REGEX = "\\s*,\\s*";
+
+    /** constant used to identify negation regex group within statement */
+    private static final int NEGATION_GROUP = 1;
+    /** constant used to identify handler name regex group within statement */
+    private static final int HANDLERNAME_GROUP = 2;
+    /** constant used to identify param regex group within statement */
+    private static final int PARAM_GROUP = 3;
+    /** total number of regex groups expected in statement */
+    private static final int EXPECTED_GROUPS = 4;
+
+    /** The log instance for this class */
+    private static Logger log = Logger.getLogger(CompiledAcl.class);
+
+    /** store the compiled regex that will be re-used for every parse */
+    private static Pattern parsePattern = null;
+
+    /** parsed ACLs by ACL string */
+    private static final ConcurrentMap<String, CompiledAcl> CACHE =
+        new ConcurrentHashMap<String, CompiledAcl>();
+
+    // initialize the parse pattern
+    static {
+        PatternCompiler compiler = new Perl5Compiler();
+        try {
+            parsePattern = compiler.compile(STMT_PARSE_REGEX);
+        }
+        catch (MalformedPatternException e) {
+            // we assume our regex is sane and tested
+            // and that we don't get here
+            throw new IllegalRegexException("Invalid when constructing parse " +
+                                            "pattern for acls.", e);
+        }
+    }
+
+    /** expressions ANDed together, each made of statements ORed together */
+    private final Statement[][] expressions;
+
+    private CompiledAcl(Statement[][] expressionsIn) {
+        expressions = expressionsIn;
+    }
+
+    /**
+     * Returns the parsed form of the given ACL string, parsing it on first
+     * use.
+     * @param acl the ACL string
+     * @return the parsed ACL
+     */
+    static CompiledAcl compile(String acl) {
+        CompiledAcl compiled = CACHE.get(acl);
+        if (compiled == null) {
+            compiled = parse(acl);
+            CACHE.putIfAbsent(acl, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the expressions that all have to be true, each made of
+     * statements of which at least one has to be true
+     */
+    Statement[][] getExpressions() {
+        return expressions;
+    }
+
+    private static CompiledAcl parse(String acl) {
+        String[] exprStrings = acl.split(ACL_SPLIT_REGEX);
+        Statement[][] parsed = new Statement[exprStrings.length][];
+
+        PatternMatcher matcher = new Perl5Matcher();
+
+        for (int exprIdx = 0; exprIdx < exprStrings.length; ++exprIdx) {
+            String[] statements = exprStrings[exprIdx].split(EXPR_SPLIT_REGEX);
+            parsed[exprIdx] = new Statement[statements.length];
+
+            for (int stmtIdx = 0; stmtIdx < statements.length; ++stmtIdx) {
+                parsed[exprIdx][stmtIdx] = parseStatement(matcher,
+                        statements[stmtIdx]);
+            }
+        }
+        return new CompiledAcl(parsed);
+    }
+
+    private static Statement parseStatement(PatternMatcher matcher,
+            String statement) {
+        boolean itMatches = matcher.matches(statement, parsePattern);
+        MatchResult matchResult = matcher.getMatch();
+        if (!itMatches || matchResult == null || matchResult.groups() <
+                EXPECTED_GROUPS) {
+            // reported when the statement is evaluated, like it always was
+            return new Statement(statement, false, null, null);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("statement: " + statement);
+            log.debug("not: " + matchResult.group(NEGATION_GROUP));
+            log.debug("handler: " + matchResult.group(HANDLERNAME_GROUP));
+            log.debug("params: " + matchResult.group(PARAM_GROUP));
+        }
+
+        boolean negated = matchResult.group(NEGATION_GROUP) != null;
+        String func = matchResult.group(HANDLERNAME_GROUP);
+        String[] paramArray = matchResult.group(PARAM_GROUP).split(PARAM_SPLIT_REGEX);
+
+        // if no args were givien, make sure we pass a 0-length array
+        if (paramArray.length == 1 && paramArray[0].trim().equals("")) {
+            paramArray = new String[0];
+        }
+        return new Statement(statement, negated, func, paramArray);
+    }
+
+    /**
+     * A single handler call of an ACL, e.g. <code>not user_role(org_admin)</code>.
+     */
+    static final class Statement {
+
+        private final String text;
+        private final boolean negated;
+        private final String handlerName;
+        private final String[] params;
+        private final String key;
+
+        private Statement(String textIn, boolean negatedIn, String handlerNameIn,
+                String[] paramsIn) {
+            text = textIn;
+            negated = negatedIn;
+            handlerName = handlerNameIn;
+            params = paramsIn;
+            if (paramsIn == null) {
+                key = null;
+            }
+            else {
+                StringBuilder sb = new StringBuilder(handlerNameIn).append('(');
+                for (int i = 0; i < paramsIn.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(paramsIn[i]);
+                }
+                key = sb.append(')').toString();
+            }
+        }
+
+        /**
+         * @return the statement as written in the ACL
+         */
+        String getText() {
+            return text;
+        }
+
+        /**
+         * @return false if the statement could not be parsed
+         */
+        boolean isValid() {
+            return handlerName != null;
+        }
+
+        /**
+         * @return true if the result of the handler is negated
+         */
+        boolean isNegated() {
+            return negated;
+        }
+
+        /**
+         * @return the name of the handler to call
+         */
+        String getHandlerName() {
+            return handlerName;
+        }
+
+        /**
+         * @return a copy of the handler parameters
+         */
+        String[] getParams() {
+            return params.clone();
+        }
+
+        /**
+         * @return the handler call without negation, e.g.
+         * <code>user_role(org_admin)</code>
+         */
+        String getKey() {
+            return key;
+        }
+    }
+}
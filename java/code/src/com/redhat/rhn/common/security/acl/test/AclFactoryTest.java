@@ -29,4 +29,13 @@ public class AclFactoryTest extends RhnBaseTestCase {
             getAcl("  com.redhat.rhn.common.security.acl.test.MixinTestHandler  ");
         assertNotNull(test);
     }
+
+    public void testGetAclIsCached() {
+        Acl test = AclFactory.getInstance().
+            getAcl("com.redhat.rhn.common.security.acl.test.MixinTestHandler");
+        assertSame(test, AclFactory.getInstance().
+            getAcl(" com.redhat.rhn.common.security.acl.test.MixinTestHandler "));
+        assertTrue(test.evalAcl(null, "mixin_test()"));
+        assertNotSame(test, AclFactory.getInstance().getAcl(null));
+    }
 }
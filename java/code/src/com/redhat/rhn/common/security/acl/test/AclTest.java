@@ -17,6 +17,7 @@ package com.redhat.rhn.common.security.acl.test;
 
 import com.redhat.rhn.common.security.acl.Acl;
 import com.redhat.rhn.common.security.acl.AclHandler;
+import com.redhat.rhn.common.security.acl.AclResultCache;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 
 import com.mockobjects.ExpectationValue;
@@ -297,6 +298,41 @@ public class AclTest extends RhnBaseTestCase {
         ts.contains("handle_two");
     }
 
+    public void testResultCache() {
+        CountingAclHandler counter = new CountingAclHandler();
+        acl.registerHandler(counter);
+        AclResultCache cache = new AclResultCache();
+        context.put("sid", "1000");
+
+        assertTrue(acl.evalAcl(context, "counted(a)", cache));
+        assertFalse(acl.evalAcl(context, "not counted(a)", cache));
+        assertTrue(acl.evalAcl(context, "counted(b); counted(a)", cache));
+        assertEquals(2, counter.calls);
+        assertEquals(2, cache.getHits());
+
+        // a different context value is a different check
+        context.put("sid", "1001");
+        assertTrue(acl.evalAcl(context, "counted(a)", cache));
+        assertEquals(3, counter.calls);
+
+        // contexts holding arbitrary objects are never cached
+        context.put("other", new Object());
+        assertTrue(acl.evalAcl(context, "counted(a)", cache));
+        assertTrue(acl.evalAcl(context, "counted(a)", cache));
+        assertEquals(5, counter.calls);
+
+        // nor are evaluations without a cache
+        context.remove("other");
+        assertTrue(acl.evalAcl(context, "counted(a)"));
+        assertEquals(6, counter.calls);
+    }
+
+    public void testUnreachedStatementNotChecked() {
+        // unknown handlers are reported when evaluated, not when parsed
+        assertTrue(acl.evalAcl(context,
+                "handler_zero(true) or handler_zero(true) and handler_zero(true)"));
+    }
+
 
     // HELPER CLASSES
 
@@ -384,6 +420,16 @@ public class AclTest extends RhnBaseTestCase {
        }
    }
 
+   /** A handler counting how many times it is called. */
+   public static class CountingAclHandler implements AclHandler {
+       private int calls = 0;
+
+       public boolean aclCounted(Object ctx, String[] params) {
+           calls++;
+           return true;
+       }
+   }
+
    /** A handler class with a variety of names to test that method names
     *  get converted to acl names correctly.
     */
@@ -17,6 +17,10 @@ package com.redhat.rhn.common.translation;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * TranslationFactory, simple factory class that uses ManifestFactory to
@@ -27,6 +31,13 @@ import java.lang.reflect.Method;
 
 public class Translations {
 
+    /**
+     * exact and best matching translator methods already found, by translator
+     * class, source and target
+     */
+    private static final ConcurrentMap<List<Class>, Method[]> RESOLVED =
+        new ConcurrentHashMap<List<Class>, Method[]>();
+
     protected Translations() {
     }
 
@@ -40,27 +51,33 @@ public class Translations {
             return have;
         }
 
-        Method[] methods = thisClass.getDeclaredMethods();
-
-        // tries to find an exact match
-        Object rc = findMatch(methods, have, want, false);
+        List<Class> key = Arrays.asList(new Class[] {thisClass, have.getClass(), want});
+        Method[] translators = RESOLVED.get(key);
+        if (translators == null) {
+            Method[] methods = thisClass.getDeclaredMethods();
+            translators = new Method[] {findMatch(methods, have, want, false),
+                    findMatch(methods, have, want, true)};
+            RESOLVED.putIfAbsent(key, translators);
+        }
 
+        // tries the exact match first
+        Object rc = null;
+        if (translators[0] != null) {
+            rc = translate(translators[0], have, want);
+        }
+        if (rc == null && translators[1] != null) {
+            // then the best match, also when the exact match returns nothing
+            rc = translate(translators[1], have, want);
+        }
         if (rc == null) {
-            // try to find the best match
-            rc = findMatch(methods, have, want, true);
-
-            if (rc == null) {
-                throw new TranslationException("Could not find translator for " +
-                        have.getClass() + " to " + want);
-            }
+            throw new TranslationException("Could not find translator for " +
+                    have.getClass() + " to " + want);
         }
-
         return rc;
     }
 
-    private static Object findMatch(Method[] methods, Object have,
-                                    Class want, boolean bestMatch)
-            throws TranslationException {
+    private static Method findMatch(Method[] methods, Object have,
+                                    Class want, boolean bestMatch) {
 
         for (int i = 0; i < methods.length; i++) {
             Class returnType = methods[i].getReturnType();
@@ -71,29 +88,36 @@ public class Translations {
                 (params.length != 1 || !params[0].equals(have.getClass()))) {
                 continue;
             }
+            // the best match is only looked for among the inexact matches,
+            // the exact ones are always tried first
             else if (bestMatch && have != null &&
-                    (params.length != 1 || !params[0].isAssignableFrom(have.getClass()))) {
+                    (params.length != 1 || params[0].equals(have.getClass()) ||
+                     !params[0].isAssignableFrom(have.getClass()))) {
                 continue;
             }
 
             if (returnType.equals(want)) {
-                Object[] objs = {have};
-                try {
-                    return methods[i].invoke(null, objs);
-                }
-                catch (IllegalAccessException e) {
-                    throw new TranslationException("Could not execute " +
-                                    "translator for " + have.getClass() +
-                                    " to " + want, e);
-                }
-                catch (InvocationTargetException e) {
-                    throw new TranslationException("Error when executing " +
-                                    "translator for " + have.getClass() +
-                                    " to " + want, e.getCause());
-                }
+                return methods[i];
             }
         }
 
         return null;
     }
+
+    private static Object translate(Method translator, Object have, Class want) {
+        Object[] objs = {have};
+        try {
+            return translator.invoke(null, objs);
+        }
+        catch (IllegalAccessException e) {
+            throw new TranslationException("Could not execute " +
+                            "translator for " + have.getClass() +
+                            " to " + want, e);
+        }
+        catch (InvocationTargetException e) {
+            throw new TranslationException("Error when executing " +
+                            "translator for " + have.getClass() +
+                            " to " + want, e.getCause());
+        }
+    }
 }
@@ -17,6 +17,7 @@ package com.redhat.rhn.common.translation.test;
 
 import com.redhat.rhn.common.translation.Translations;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -40,4 +41,13 @@ public class TestTranslations extends Translations {
     public static String list2String(List l) {
         return l.toString();
     }
+
+    public static Character arrayList2Char(ArrayList l) {
+        // empty lists are left to list2Char
+        return l.isEmpty() ? null : Character.valueOf('a');
+    }
+
+    public static Character list2Char(List l) {
+        return Character.valueOf('l');
+    }
 }
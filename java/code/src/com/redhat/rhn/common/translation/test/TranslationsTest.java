@@ -81,4 +81,19 @@ public class TranslationsTest extends RhnBaseTestCase {
         assertNotNull(s);
         assertEquals("[20, list]", s);
     }
+
+    public void testExactTranslatorReturningNull() {
+        // the translators are looked up once, the fallback has to work on the
+        // following conversions too
+        for (int i = 0; i < 2; i++) {
+            assertEquals(new Character('l'),
+                    TestTranslations.convert(new ArrayList(), Character.class));
+        }
+        List list = new ArrayList();
+        list.add("list");
+        assertEquals(new Character('a'),
+                TestTranslations.convert(list, Character.class));
+        assertEquals(new Character('l'),
+                TestTranslations.convert(new LinkedList(), Character.class));
+    }
 }
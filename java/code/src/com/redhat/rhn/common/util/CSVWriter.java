@@ -116,6 +116,37 @@ public class CSVWriter extends BufferedWriter implements ExportWriter {
     }
 
 
+    /**
+     * Writes the optional header text and the column names, for a writer
+     * which is streamed row by row with {@link #writeRow(Object)} rather
+     * than written at once and read back with getContents().
+     * @throws IOException if there is a Writer error
+     */
+    public void writeStart() throws IOException {
+        if (headerText != null) {
+            super.write(getHeaderText());
+            super.write(System.getProperty("line.separator"));
+        }
+        if (columns != null) {
+            writeColumnNames();
+        }
+    }
+
+    /**
+     * Writes a single row, which must be a Map or a Dto, followed by a
+     * newline.
+     * @param row the row to write
+     * @throws IOException if there is a Writer error
+     */
+    public void writeRow(Object row) throws IOException {
+        if (!(row instanceof Map || row instanceof BaseDto)) {
+            throw new IllegalArgumentException("Must pass in a Map or " +
+                    "an AbstractDto class");
+        }
+        writeValues(row);
+        newLine();
+    }
+
     /**
      * Write a List to the stream
      * @param values you want to write
@@ -126,24 +157,7 @@ public class CSVWriter extends BufferedWriter implements ExportWriter {
 
         // Write out the column headers
         if (columns != null) {
-            Iterator citer = columns.iterator();
-            while (citer.hasNext()) {
-                String cname = (String) citer.next();
-                if (LocalizationService.
-                        getInstance().hasMessage("exportcolumn." + cname)) {
-                    write(LocalizationService.
-                            getInstance().getMessage("exportcolumn." + cname));
-                }
-                else {
-                    write(LocalizationService.
-                            getInstance().getMessage(cname));
-                }
-
-                if (citer.hasNext()) {
-                    writeSeparator();
-                }
-            }
-            newLine();
+            writeColumnNames();
         }
         // Iterate over the values
         while (itr.hasNext()) {
@@ -157,21 +171,7 @@ public class CSVWriter extends BufferedWriter implements ExportWriter {
             }
             // If its a list of Maps or Dtos
             else if (value instanceof Map || value instanceof BaseDto) {
-                if (columns == null || !columns.iterator().hasNext()) {
-                    throw new IllegalArgumentException("Tried to csv export without" +
-                            " setting up the list of columns first");
-                }
-                Iterator citer = columns.iterator();
-                while (citer.hasNext()) {
-                    String columnKey = (String) citer.next();
-                    Object colVal = getObjectValue(value, columnKey);
-                    if (colVal != null) {
-                        write(colVal.toString());
-                    }
-                    if (citer.hasNext()) {
-                        writeSeparator();
-                    }
-                }
+                writeValues(value);
                 if (itr.hasNext()) {
                     newLine();
                 }
@@ -186,6 +186,45 @@ public class CSVWriter extends BufferedWriter implements ExportWriter {
         newLine();
     }
 
+    private void writeColumnNames() throws IOException {
+        Iterator citer = columns.iterator();
+        while (citer.hasNext()) {
+            String cname = (String) citer.next();
+            if (LocalizationService.
+                    getInstance().hasMessage("exportcolumn." + cname)) {
+                write(LocalizationService.
+                        getInstance().getMessage("exportcolumn." + cname));
+            }
+            else {
+                write(LocalizationService.
+                        getInstance().getMessage(cname));
+            }
+
+            if (citer.hasNext()) {
+                writeSeparator();
+            }
+        }
+        newLine();
+    }
+
+    private void writeValues(Object value) throws IOException {
+        if (columns == null || !columns.iterator().hasNext()) {
+            throw new IllegalArgumentException("Tried to csv export without" +
+                    " setting up the list of columns first");
+        }
+        Iterator citer = columns.iterator();
+        while (citer.hasNext()) {
+            String columnKey = (String) citer.next();
+            Object colVal = getObjectValue(value, columnKey);
+            if (colVal != null) {
+                write(colVal.toString());
+            }
+            if (citer.hasNext()) {
+                writeSeparator();
+            }
+        }
+    }
+
     /**
      * Util function to get the value for the current row/column in the List.
      */
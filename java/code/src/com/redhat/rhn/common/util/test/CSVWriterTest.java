@@ -108,6 +108,42 @@ public class CSVWriterTest extends RhnBaseTestCase {
                 endsWith("f1 - 9,f2 - 9,f3 - 9\n"));
     }
 
+    public void testStreamedRows() throws Exception {
+        List columns = new LinkedList();
+        columns.add("column1");
+        columns.add("column2");
+        columns.add("column3");
+        columns.add("nullColumn");
+        List values = getTestListOfMaps();
+
+        CSVWriter listWriter = new CSVWriter(new StringWriter());
+        listWriter.setColumns(columns);
+        listWriter.setHeaderText("Systems");
+        listWriter.write(values);
+
+        StringWriter out = new StringWriter();
+        CSVWriter rowWriter = new CSVWriter(out);
+        rowWriter.setColumns(columns);
+        rowWriter.setHeaderText("Systems");
+        rowWriter.writeStart();
+        for (Object row : values) {
+            rowWriter.writeRow(row);
+        }
+        rowWriter.flush();
+
+        assertTrue(out.toString().startsWith("Systems,,,\n"));
+        assertEquals(listWriter.getContents(), out.toString());
+
+        boolean failed = false;
+        try {
+            rowWriter.writeRow("val1");
+        }
+        catch (IllegalArgumentException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+    }
+
     public static List getTestListOfMaps() {
         List values = new LinkedList();
 
@@ -31,6 +31,7 @@ import com.redhat.rhn.manager.user.UserManager;
 import org.apache.log4j.Logger;
 import org.hibernate.Session;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -425,6 +426,16 @@ public class PackageFactory extends HibernateFactory {
         return singleton.listObjectsByNamedQuery("PackageSource.findByPackage", params);
     }
 
+    /**
+     * List packages by id, in batches
+     * @param ids ids of the packages
+     * @return the packages found
+     */
+    public static List<Package> listPackages(Collection<Long> ids) {
+        return singleton.listObjectsByNamedQuery("Package.listByIds",
+                new HashMap<String, Object>(), ids, "list");
+    }
+
     /**
      * Find other packages with the same NVRE but with different arches
      * @param pack the package
@@ -21,9 +21,14 @@ import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.translation.SqlExceptionTranslator;
 
 import org.apache.log4j.Logger;
+import org.hibernate.Session;
 
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -118,15 +123,11 @@ public class RhnSetFactory extends HibernateFactory {
      */
     public static void save(RhnSet set) {
         RhnSetImpl simpl = (RhnSetImpl) set;
-        // The updates really need to be batched
         if (simpl.isSynced() && !simpl.getElements().isEmpty()) {
-            WriteMode deleteEl3 = writeMode("delete_from_set_el3");
-            WriteMode deleteEl2 = writeMode("delete_from_set_el2");
-            WriteMode deleteEl1 = writeMode("delete_from_set_el1");
-            for (Iterator i = simpl.getRemoved().iterator(); i.hasNext();) {
-                RhnSetElement current = (RhnSetElement) i.next();
-                executeMode(current, deleteEl3, deleteEl2, deleteEl1);
-            }
+            List<Map<String, Object>>[] removed = groupByArity(simpl.getRemoved());
+            writeMode("delete_from_set_el1").executeBatchUpdate(removed[0]);
+            writeMode("delete_from_set_el2").executeBatchUpdate(removed[1]);
+            writeMode("delete_from_set_el3").executeBatchUpdate(removed[2]);
         }
         else {
             removeByLabel(simpl.getUserId(), simpl.getLabel());
@@ -139,26 +140,10 @@ public class RhnSetFactory extends HibernateFactory {
         else {
             added = simpl.getAdded();
         }
-        WriteMode insertEl3 = writeMode("add_to_set_el3");
-        WriteMode insertEl2 = writeMode("add_to_set_el2");
-        WriteMode insertEl1 = writeMode("add_to_set_el1");
-        for (Iterator i = added.iterator(); i.hasNext();) {
-            RhnSetElement current = (RhnSetElement) i.next();
-            try {
-                executeMode(current, insertEl3, insertEl2, insertEl1);
-            }
-            catch (ConstraintViolationException e) {
-                // a concurrent transaction has already inserted this row
-                // and COMMITted. This is tolerable and can happen because
-                // the default transaction isolation level is READ
-                // COMMITTED, thus this exception can be safely ignored
-            }
-            catch (WrappedSQLException e) {
-                if (e.getMessage().contains("violates unique constraint")) {
-                    // see ConstraintViolationException
-                }
-            }
-        }
+        List<Map<String, Object>>[] inserted = groupByArity(added);
+        insertBatch(writeMode("add_to_set_el1"), inserted[0]);
+        insertBatch(writeMode("add_to_set_el2"), inserted[1]);
+        insertBatch(writeMode("add_to_set_el3"), inserted[2]);
         if (!added.isEmpty()) {
             simpl.getCleanup().cleanup(simpl);
         }
@@ -179,28 +164,120 @@ public class RhnSetFactory extends HibernateFactory {
         return ModeFactory.getWriteMode(CATALOG, modeName);
     }
 
-    private static void executeMode(RhnSetElement elem,
-            WriteMode el3, WriteMode el2, WriteMode el1) {
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put("user_id", elem.getUserId());
-        params.put("label", elem.getLabel());
-        params.put("el_one", elem.getElement());
-        int count;
+    /**
+     * Builds the query parameters of the given elements, grouped by the
+     * number of element columns they use.
+     * @param elements the RhnSetElements
+     * @return the parameters of the elements with one, two and three columns
+     */
+    private static List<Map<String, Object>>[] groupByArity(Set elements) {
+        List<Map<String, Object>>[] retval = new List[] {
+            new ArrayList<Map<String, Object>>(),
+            new ArrayList<Map<String, Object>>(),
+            new ArrayList<Map<String, Object>>()
+        };
+        for (Iterator i = elements.iterator(); i.hasNext();) {
+            RhnSetElement elem = (RhnSetElement) i.next();
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("user_id", elem.getUserId());
+            params.put("label", elem.getLabel());
+            params.put("el_one", elem.getElement());
+
+            if (elem.getElementThree() == null && elem.getElementTwo() == null) {
+                retval[0].add(params);
+            }
+            else if (elem.getElementThree() == null) {
+                params.put("el_two", elem.getElementTwo());
+                retval[1].add(params);
+            }
+            else {
+                params.put("el_three", elem.getElementThree());
+                params.put("el_two", elem.getElementTwo());
+                retval[2].add(params);
+            }
+        }
+        return retval;
+    }
 
-        if (elem.getElementThree() == null && elem.getElementTwo() == null) {
-            count = el1.executeUpdate(params);
+    /**
+     * Inserts rows in one batch. The insert statements skip the rows which
+     * are already in the set, but a concurrent transaction can still insert
+     * some of them and COMMIT in the meantime. The batch then fails, and as
+     * PostgreSQL aborts the transaction on any error, it is rolled back to a
+     * savepoint before the rows are inserted one by one.
+     * @param insert the insert statement
+     * @param rows parameters of the rows to insert
+     */
+    private static void insertBatch(WriteMode insert, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
         }
-        else if (elem.getElementThree() == null) {
-            params.put("el_two", elem.getElementTwo());
-            count = el2.executeUpdate(params);
+        Savepoint savepoint = setSavepoint();
+        try {
+            insert.executeBatchUpdate(rows);
         }
-        else {
-            params.put("el_three", elem.getElementThree());
-            params.put("el_two", elem.getElementTwo());
-            count = el3.executeUpdate(params);
+        catch (ConstraintViolationException e) {
+            rollback(savepoint);
+            insertOneByOne(insert, rows);
         }
+        catch (WrappedSQLException e) {
+            if (!isUniqueViolation(e)) {
+                throw e;
+            }
+            rollback(savepoint);
+            insertOneByOne(insert, rows);
+        }
+    }
 
-        assert count == 1 : "Failed to update row";
+    private static void insertOneByOne(WriteMode insert,
+            List<Map<String, Object>> rows) {
+        for (Map<String, Object> params : rows) {
+            Savepoint savepoint = setSavepoint();
+            try {
+                insert.executeUpdate(params);
+            }
+            catch (ConstraintViolationException e) {
+                // a concurrent transaction has already inserted this row
+                // and COMMITted. This is tolerable and can happen because
+                // the default transaction isolation level is READ
+                // COMMITTED, thus this exception can be safely ignored
+                rollback(savepoint);
+            }
+            catch (WrappedSQLException e) {
+                if (!isUniqueViolation(e)) {
+                    throw e;
+                }
+                // see ConstraintViolationException
+                rollback(savepoint);
+            }
+        }
+    }
+
+    private static boolean isUniqueViolation(WrappedSQLException e) {
+        return e.getMessage() != null &&
+                e.getMessage().contains("violates unique constraint");
+    }
+
+    private static Savepoint setSavepoint() {
+        Session session = HibernateFactory.getSession();
+        // the statements flush the session, which must not be undone by a
+        // rollback to the savepoint
+        session.flush();
+        try {
+            return session.connection().setSavepoint();
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
+    }
+
+    private static void rollback(Savepoint savepoint) {
+        try {
+            HibernateFactory.getSession().connection().rollback(savepoint);
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
     }
 
     /**
@@ -80,6 +80,21 @@ public class WebSessionFactory extends HibernateFactory {
         return singleton.removeObject(webSession);
     }
 
+    /**
+     * Sets the expiration of a Session without loading it.
+     * @param id id of the Session
+     * @param expires the new expiration time in seconds since the epoch
+     * @return the number of sessions updated (1, or 0 if there is no such
+     * session)
+     */
+    public static int updateExpires(Long id, long expires) {
+        Session session = HibernateFactory.getSession();
+        Query query = session.getNamedQuery("WebSession.updateExpires");
+        query.setParameter("id", id);
+        query.setParameter("expires", new Long(expires));
+        return query.executeUpdate();
+    }
+
     /**
      * Removes all the sessions of a user. This action is useful
      * especially when we disable/deactivate a user. We donot want
@@ -14,9 +14,9 @@
  */
 package com.redhat.rhn.frontend.action;
 
-import com.redhat.rhn.common.db.datasource.CachedStatement;
-import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.Elaborator;
+import com.redhat.rhn.common.db.datasource.QueryDescriptor;
+import com.redhat.rhn.common.db.datasource.RowHandler;
 import com.redhat.rhn.common.util.CSVWriter;
 import com.redhat.rhn.common.util.download.ByteArrayStreamInfo;
 import com.redhat.rhn.domain.user.User;
@@ -30,11 +30,14 @@ import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
 import org.apache.struts.actions.DownloadAction;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -49,6 +52,11 @@ import javax.servlet.http.HttpSession;
  *  UNIQUE_NAME set to the value of the uniqueName associated with this list
  *      from the CSVTag
  *
+ * Instead of PAGE_LIST_DATA, QUERY_DATA may be set to the value of the session
+ * attribute containing the QueryDescriptor of the list. The query is then run
+ * again and its rows are written to the response as they are read, gzipped
+ * if the client accepts it, so the export is never held in memory.
+ *
  * @author jmatthews
  * @version $Rev: $
  */
@@ -66,7 +74,12 @@ public class CSVDownloadAction extends DownloadAction {
             HttpServletRequest request, HttpServletResponse response)
             throws Exception {
         try {
-            super.execute(mapping, form, request, response);
+            if (request.getParameter(QUERY_DATA) != null) {
+                streamQuery(request, response);
+            }
+            else {
+                super.execute(mapping, form, request, response);
+            }
         }
         catch (Exception e) {
             /**
@@ -74,11 +87,105 @@ public class CSVDownloadAction extends DownloadAction {
              * example: Session timeout.
              */
             e.printStackTrace();
+            if (response.isCommitted()) {
+                // part of the export has been sent already, make the container
+                // abort the response instead of ending it as if it were complete
+                throw e;
+            }
+            // drop the headers of the export, such as its gzip encoding, so
+            // that they do not apply to the error page
+            response.reset();
             return mapping.findForward("error");
         }
         return null;
     }
 
+    /**
+     * Runs the query described by the session attribute named by QUERY_DATA
+     * again and streams the export of its rows to the response.
+     * @param request HTTP request
+     * @param response HTTP response
+     * @throws Exception thrown if a parameter or session attribute is missing
+     */
+    protected void streamQuery(HttpServletRequest request,
+            HttpServletResponse response)
+        throws Exception {
+        HttpSession session = request.getSession(false);
+        if (null == session) {
+            throw new Exception("Missing session");
+        }
+        String exportColumns = getExportColumns(request, session);
+        QueryDescriptor query = getQuery(request, session);
+        String header = getHeaderText(request, session);
+        final Map partial = (Map) session.getAttribute("ssr_" +
+                request.getParameter(QUERY_DATA));
+
+        OutputStream out = response.getOutputStream();
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        response.setHeader("Vary", "Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            out = new GZIPOutputStream(out);
+        }
+
+        // Read the CSV separator from user preferences
+        User user = new RequestContext(request).getCurrentUser();
+        final CSVWriter expW = new CSVWriter(new OutputStreamWriter(out,
+                response.getCharacterEncoding()), user.getCsvSeparator());
+        expW.setColumns(Arrays.asList(exportColumns.split("\\s*,\\s*")));
+        if (header != null) {
+            expW.setHeaderText(header);
+        }
+
+        response.setContentType(expW.getMimeType() + ";charset=" +
+            response.getCharacterEncoding());
+        response.setHeader("Content-Disposition",
+                "attachment; filename=download." + expW.getFileExtension());
+        expW.writeStart();
+        query.execute(new RowHandler() {
+            public void handleRow(Object row) {
+                if (partial != null && row instanceof SystemSearchResult) {
+                    mergeWithPartialResult((SystemSearchResult) row, partial);
+                }
+                try {
+                    expW.writeRow(row);
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(
+                            "IOException caught trying to write the row", e);
+                }
+            }
+        });
+        // Only closed once all rows are written: closing writes the gzip
+        // trailer and ends the response, which must not happen for an export
+        // cut short by a failure.
+        expW.close();
+    }
+
+    /**
+     * Returns the QueryDescriptor referred to by the session attribute with
+     * the name QUERY_DATA. Throws Exception if request attribute QUERY_DATA is
+     * missing or session attribute is null.
+     *
+     * @param request HTTP Request
+     * @param session HTTP session
+     * @return query of the list
+     * @throws Exception thrown if the query is missing.
+     */
+    protected QueryDescriptor getQuery(HttpServletRequest request, HttpSession session)
+        throws Exception {
+        String paramQuery = request.getParameter(QUERY_DATA);
+        if (null == paramQuery) {
+            throw new Exception("Missing request parameter, " + QUERY_DATA);
+        }
+        QueryDescriptor query = (QueryDescriptor) session.getAttribute(paramQuery);
+        if (null == query) {
+            throw new Exception("Missing value for session attribute, " +
+                    paramQuery);
+        }
+        return query;
+    }
+
     /**
      * Returns String containing a comma separated list of names to represent the
      * header values of the List or throws Exception if request attribute
@@ -116,18 +223,6 @@ public class CSVDownloadAction extends DownloadAction {
      */
     protected List getPageData(HttpServletRequest request, HttpSession session)
         throws Exception {
-        String paramQuery = request.getParameter(QUERY_DATA);
-        if (paramQuery != null) {
-            CachedStatement query = (CachedStatement) session.getAttribute(paramQuery);
-            if (query == null) {
-                throw new Exception("Missing request parameter, " + QUERY_DATA);
-            }
-            /*if (session.getAttribute("ssr_" + paramQuery) != null) {
-                return (DataResult) session.getAttribute("ssr_" + paramQuery);
-            }*/
-            return (DataResult) query.restartQuery();
-        }
-
         String paramPageData = request.getParameter(PAGE_LIST_DATA);
         if (null == paramPageData) {
             throw new Exception("Missing request parameter, " + EXPORT_COLUMNS);
@@ -207,13 +302,6 @@ public class CSVDownloadAction extends DownloadAction {
                 getUniqueName(request), request);
         if (elab != null) {
             elab.elaborate(pageData);
-            if (pageData.iterator().hasNext() &&
-                    pageData.iterator().next().getClass().equals(new SystemSearchResult()
-                .getClass())) {
-                pageData = mergeWithPartialResult(pageData,
-                        (Map)session.getAttribute("ssr_" + request
-                                .getParameter(QUERY_DATA)));
-            }
         }
 
         String contentType = expW.getMimeType() + ";charset=" +
@@ -225,14 +313,12 @@ public class CSVDownloadAction extends DownloadAction {
         return new ByteArrayStreamInfo(contentType, expW.getContents().getBytes());
     }
 
-    private List mergeWithPartialResult(List full, Map partial) {
-        for (Iterator iter = full.iterator(); iter.hasNext();) {
-            SystemSearchResult r = (SystemSearchResult) iter.next();
-            SystemSearchPartialResult p =
-                    (SystemSearchPartialResult) partial.get(r.getId());
+    private void mergeWithPartialResult(SystemSearchResult r, Map partial) {
+        SystemSearchPartialResult p =
+                (SystemSearchPartialResult) partial.get(r.getId());
+        if (p != null) {
             r.setMatchingField(p.getMatchingField());
             r.setMatchingFieldValue(p.getMatchingFieldValue());
         }
-        return full;
     }
 }
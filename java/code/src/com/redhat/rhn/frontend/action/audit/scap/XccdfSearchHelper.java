@@ -22,15 +22,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcException;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnAction;
 import com.redhat.rhn.manager.audit.ScapManager;
+import com.redhat.rhn.manager.search.SearchClient;
 
 /**
  * XccdfSearchHelper
@@ -110,8 +109,6 @@ public class XccdfSearchHelper extends RhnAction {
 
     private static List invokeSearchServer(String path, List args)
             throws MalformedURLException, XmlRpcException, XmlRpcFault {
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
-        return (List) client.invoke(path, args);
+        return (List) SearchClient.getInstance().invoke(path, args);
     }
 }
@@ -26,16 +26,15 @@ import java.util.Set;
 
 import org.apache.log4j.Logger;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 import com.redhat.rhn.frontend.action.BaseSearchAction;
 import com.redhat.rhn.frontend.dto.PackageOverview;
 import com.redhat.rhn.frontend.xmlrpc.SearchServerIndexException;
 import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.manager.search.SearchClient;
 
 /**
  * PackageSearchHelper
@@ -78,14 +77,12 @@ public class PackageSearchHelper {
         }
 
         // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
         List<Object> args = new ArrayList<Object>();
         args.add(sessionId);
         args.add("package");
         args.add(preprocessSearchString(searchString, mode, pkgArchLabels));
         args.add(fineGrained);
-        List results = (List)client.invoke("index.search", args);
+        List results = (List) SearchClient.getInstance().invoke("index.search", args);
 
         if (log.isDebugEnabled()) {
             log.debug("results = [" + results + "]");
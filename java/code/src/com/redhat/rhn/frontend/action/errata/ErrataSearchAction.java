@@ -35,10 +35,8 @@ import org.apache.struts.action.ActionMapping;
 import org.apache.struts.action.ActionMessages;
 import org.apache.struts.action.DynaActionForm;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.util.DatePicker;
 import com.redhat.rhn.domain.org.Org;
@@ -49,6 +47,7 @@ import com.redhat.rhn.frontend.dto.ErrataOverview;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnHelper;
 import com.redhat.rhn.manager.errata.ErrataManager;
+import com.redhat.rhn.manager.search.SearchClient;
 
 /**
  * SearchAction
@@ -189,9 +188,6 @@ public class ErrataSearchAction extends BaseSearchAction {
         LOG.debug("Performing errata search");
         RequestContext ctx = new RequestContext(request);
         Org org = ctx.getCurrentUser().getOrg();
-        // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
         String path = null;
         List args = new ArrayList();
         args.add(sessionId);
@@ -251,7 +247,8 @@ public class ErrataSearchAction extends BaseSearchAction {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Calling to search server (XMLRPC):  \"index.search\", args=" + args);
         }
-        results = (List)client.invoke(path, args);
+        // call search server
+        results = (List) SearchClient.getInstance().invoke(path, args);
         if (LOG.isDebugEnabled()) {
             LOG.debug("results = [" + results + "]");
         }
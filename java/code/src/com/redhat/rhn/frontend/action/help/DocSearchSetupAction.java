@@ -30,10 +30,8 @@ import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
 import org.apache.struts.action.DynaActionForm;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.common.validator.ValidatorWarning;
 import com.redhat.rhn.frontend.action.BaseSearchAction;
@@ -41,6 +39,7 @@ import com.redhat.rhn.frontend.context.Context;
 import com.redhat.rhn.frontend.dto.HelpDocumentOverview;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnHelper;
+import com.redhat.rhn.manager.search.SearchClient;
 
 /**
  * DocSearchSetupAction
@@ -88,9 +87,6 @@ public class DocSearchSetupAction extends BaseSearchAction {
 
         log.debug("Performing doc search");
 
-        // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
         List args = new ArrayList();
         args.add(sessionId);
         args.add("docs");
@@ -109,6 +105,8 @@ public class DocSearchSetupAction extends BaseSearchAction {
             searchFreeForm = true;
         }
         args.add(searchFreeForm);
+        // call search server
+        SearchClient client = SearchClient.getInstance();
         List results = Collections.emptyList();
         try {
             results = (List)client.invoke("index.search", args);
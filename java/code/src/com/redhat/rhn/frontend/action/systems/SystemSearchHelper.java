@@ -15,7 +15,6 @@
 package com.redhat.rhn.frontend.action.systems;
 
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.validator.ValidatorException;
@@ -28,6 +27,7 @@ import com.redhat.rhn.frontend.dto.SystemOverview;
 import com.redhat.rhn.frontend.dto.SystemSearchResult;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.manager.rhnset.RhnSetDecl;
+import com.redhat.rhn.manager.search.SearchClient;
 import com.redhat.rhn.manager.session.SessionManager;
 import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.manager.user.UserManager;
@@ -45,7 +45,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
 /**
@@ -253,14 +252,12 @@ public class SystemSearchHelper {
 
         log.info("Performing system search: index = " + index + ", query = " +
                 query);
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
         List args = new ArrayList();
         args.add(sessionId);
         args.add(index);
         args.add(query);
         args.add(isFineGrained);
-        List results = (List)client.invoke("index.search", args);
+        List results = (List) SearchClient.getInstance().invoke("index.search", args);
         if (log.isDebugEnabled()) {
             log.debug("results = [" + results + "]");
         }
@@ -23,11 +23,26 @@ package com.redhat.rhn.frontend.dto;
  */
 public class PackageCapabilityDto extends BaseDto {
 
+    private Long packageId;
     private Long id;
     private String name;
     private String version;
     private Long sense;
 
+    /**
+     * @return the id of the package having this capability, only set by
+     * the queries returning the capabilities of several packages
+     */
+    public Long getPackageId() {
+        return packageId;
+    }
+
+    /**
+     * @param packageIdIn the package id to set
+     */
+    public void setPackageId(Long packageIdIn) {
+        this.packageId = packageIdIn;
+    }
 
     /**
      * @return the id
@@ -41,6 +41,7 @@ public class PackageDto extends BaseDto {
     private String archLabel;
     private String checksum;
     private String checksumType;
+    private Long checksumId;
     private Long cid;
     private String channelName;
     private String summary;
@@ -225,6 +226,22 @@ public class PackageDto extends BaseDto {
         this.checksumType = checksumTypeIn;
     }
 
+    /**
+     *
+     * @return Returns the id of the checksum
+     */
+    public Long getChecksumId() {
+        return checksumId;
+    }
+
+    /**
+     *
+     * @param checksumIdIn The id of the checksum to set
+     */
+    public void setChecksumId(Long checksumIdIn) {
+        this.checksumId = checksumIdIn;
+    }
+
     /**
      *
      * @return Returns the summary.
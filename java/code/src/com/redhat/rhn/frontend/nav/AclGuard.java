@@ -16,6 +16,7 @@ package com.redhat.rhn.frontend.nav;
 
 import com.redhat.rhn.common.security.acl.Acl;
 import com.redhat.rhn.common.security.acl.AclFactory;
+import com.redhat.rhn.common.security.acl.AclResultCache;
 
 import java.util.Map;
 
@@ -26,6 +27,7 @@ import java.util.Map;
 public class AclGuard implements RenderGuard {
     private Map context;
     private String mixins;
+    private AclResultCache cache;
 
 
     /**
@@ -34,9 +36,20 @@ public class AclGuard implements RenderGuard {
      * @param mixinsIn The string of classnames used to add extra Acl Handlers
      */
     public AclGuard(Map ctx, String mixinsIn) {
+        this(ctx, mixinsIn, null);
+    }
+
+    /**
+     * Constructor
+     * @param ctx Acl Context
+     * @param mixinsIn The string of classnames used to add extra Acl Handlers
+     * @param cacheIn results of Acl Handlers already evaluated, may be null
+     */
+    public AclGuard(Map ctx, String mixinsIn, AclResultCache cacheIn) {
         super();
         context = ctx;
         this.mixins = mixinsIn;
+        this.cache = cacheIn;
     }
 
     /**
@@ -66,7 +79,7 @@ public class AclGuard implements RenderGuard {
         }
 
         Acl acl = AclFactory.getInstance().getAcl(mixins);
-        boolean rc = acl.evalAcl(context, aclStr);
+        boolean rc = acl.evalAcl(context, aclStr, cache);
         return rc;
     }
 }
@@ -622,7 +622,7 @@ public class ListDisplayTag extends ListDisplayTagBase {
         }
 
         out.println("<div class=\"col-sm-12 text-right\">");
-        if (getButton2() != null && AclManager.hasAcl(getButton2Acl(),
+        if (getButton2() != null && AclManager.hasRenderedAcl(getButton2Acl(),
                 (HttpServletRequest) pageContext.getRequest(), getMixins())) {
 
             out.println("<button class=\"btn btn-default\"" +
@@ -632,7 +632,7 @@ public class ListDisplayTag extends ListDisplayTagBase {
                         LocalizationService.getInstance().getMessage(getButton2()) +
                         "</button>");
         }
-        if (getButton() != null && AclManager.hasAcl(getButtonAcl(),
+        if (getButton() != null && AclManager.hasRenderedAcl(getButtonAcl(),
                 (HttpServletRequest) pageContext.getRequest(), getMixins())) {
 
             out.println("<button class=\"btn btn-primary\"" +
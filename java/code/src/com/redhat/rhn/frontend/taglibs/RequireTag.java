@@ -98,8 +98,8 @@ public class RequireTag extends TagSupport {
                 throw new Exception();
             }
 
-            if (AclManager.hasAcl(acl, (HttpServletRequest)pageContext.getRequest(),
-                                  mixins)) {
+            if (AclManager.hasRenderedAcl(acl,
+                    (HttpServletRequest) pageContext.getRequest(), mixins)) {
                 // acl methods must be in the following form
                 // aclXxxYyy(Object context, String[] params) and invoked
                 // xxx_yyy(param);
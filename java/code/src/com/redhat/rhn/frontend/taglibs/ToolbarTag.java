@@ -671,7 +671,7 @@ public class ToolbarTag extends TagSupport {
 
     private boolean evalAcl(String acl) {
         HttpServletRequest request = (HttpServletRequest) pageContext.getRequest();
-        return AclManager.hasAcl(acl, request, getAclMixins());
+        return AclManager.hasRenderedAcl(acl, request, getAclMixins());
     }
 
     private boolean assertNotEmpty(String str) {
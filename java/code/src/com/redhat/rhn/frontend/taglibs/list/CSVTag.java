@@ -15,6 +15,7 @@
 package com.redhat.rhn.frontend.taglibs.list;
 
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.QueryDescriptor;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.frontend.action.CSVDownloadAction;
 import com.redhat.rhn.frontend.dto.SystemSearchPartialResult;
@@ -241,24 +242,22 @@ public class CSVTag extends BodyTagSupport {
     }
 
     private String exportDataToSession(HttpSession session) {
-        if (pageData != null && pageData instanceof DataResult &&
-                ((DataResult)pageData).getMode() != null &&
-                ((DataResult)pageData).getMode().getQuery() != null) {
+        QueryDescriptor query = null;
+        if (pageData instanceof DataResult) {
+            query = ((DataResult) pageData).getQueryDescriptor();
+        }
+        if (query != null) {
             /* We better do not export pageList, let's keep the query instead.
              *   1) Query is usually smaller than data. And since this never gets deleted
              *      from session, the session data doesn't grow that rapidly.
              *   2) Part of the pageList might be already elaborated and we cannot say
              *      which (consider filters, alfphabar, pagination, and sorting).
              *      Repeated elaboration isn't great thing; bug 453477, 851480, 445895
+             * The descriptor holds the parameters of the elaborators as well and
+             * none of the rows, which are streamed again by CSVDownloadAction.
              */
             String paramQuery = "query_" + getUniqueName();
-            session.setAttribute(paramQuery, ((DataResult)pageData).getMode().getQuery());
-            /* in some cases session does not contain elabotor for actual tag
-             * so it's better to add it into session so we can elaborate for data
-             * bug: 960885
-             */
-            session.setAttribute("list_" + getUniqueName() + TagHelper.ELAB_TAG,
-                    ((DataResult)pageData).getElaborator());
+            session.setAttribute(paramQuery, query);
             if (pageData.iterator().hasNext() && pageData.iterator().next().getClass().
                     equals(new SystemSearchResult().getClass())) {
                 session.setAttribute("ssr_" + paramQuery, makePartialResult(pageData));
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc;
+
+/**
+ * Number of calls, failures and latency distribution of one API method.
+ * Instances handed out by {@link DispatchTable#getStatistics()} are
+ * snapshots and are not updated afterwards.
+ *
+ * @version $Rev$
+ */
+public class ApiMethodStats {
+
+    /** upper bounds in ms of the latency histogram buckets, the last one is open */
+    private static final long[] BUCKETS = {10, 50, 100, 500, 1000, 5000, Long.MAX_VALUE};
+
+    private final String method;
+    private long calls;
+    private long failures;
+    private long totalMillis;
+    private long maxMillis;
+    private final long[] histogram;
+
+    /**
+     * Constructor
+     * @param methodIn name of the API method, e.g. system.listSystems
+     */
+    ApiMethodStats(String methodIn) {
+        method = methodIn;
+        histogram = new long[BUCKETS.length];
+    }
+
+    /**
+     * Copy constructor
+     * @param other statistics to copy
+     */
+    ApiMethodStats(ApiMethodStats other) {
+        synchronized (other) {
+            method = other.method;
+            calls = other.calls;
+            failures = other.failures;
+            totalMillis = other.totalMillis;
+            maxMillis = other.maxMillis;
+            histogram = other.histogram.clone();
+        }
+    }
+
+    synchronized void called(long millis, boolean failed) {
+        calls++;
+        if (failed) {
+            failures++;
+        }
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+        int i = 0;
+        while (millis >= BUCKETS[i]) {
+            i++;
+        }
+        histogram[i]++;
+    }
+
+    /**
+     * @return name of the API method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return number of calls
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return number of calls that ended with a fault
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return total time in ms spent in the method
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * @return longest time in ms of a single call
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return upper bounds in ms (exclusive) of the latency histogram buckets,
+     * the last bucket has no bound
+     */
+    public static long[] getBucketBounds() {
+        return BUCKETS.clone();
+    }
+
+    /**
+     * @return number of calls per latency bucket
+     * @see #getBucketBounds()
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder(method);
+        buf.append(": calls=").append(calls);
+        buf.append(", failures=").append(failures);
+        buf.append(", time=").append(totalMillis).append("ms (max ");
+        buf.append(maxMillis).append("ms), histogram=[");
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            if (i < BUCKETS.length - 1) {
+                buf.append("<").append(BUCKETS[i]).append("ms: ");
+            }
+            else {
+                buf.append(">=").append(BUCKETS[i - 1]).append("ms: ");
+            }
+            buf.append(histogram[i]);
+        }
+        return buf.append("]").toString();
+    }
+}
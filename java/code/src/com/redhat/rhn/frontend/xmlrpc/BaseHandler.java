@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -37,6 +36,8 @@ import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.client.ClientCertificate;
 import com.redhat.rhn.common.client.ClientCertificateDigester;
 import com.redhat.rhn.common.client.InvalidCertificateException;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.translation.Translator;
@@ -48,8 +49,8 @@ import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.role.Role;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.domain.user.UserFactory;
 import com.redhat.rhn.manager.entitlement.EntitlementManager;
 import com.redhat.rhn.manager.session.SessionManager;
 import com.redhat.rhn.manager.system.SystemManager;
@@ -83,27 +84,44 @@ public class BaseHandler implements XmlRpcInvocationHandler {
      * @exception XmlRpcFault if some error occurs
      */
     public Object invoke(String methodCalled, List params) throws XmlRpcFault {
-        Class myClass = this.getClass();
-        Method[] methods;
+        DispatchTable table = DispatchTable.forClass(this.getClass());
+        String[] byNamespace = methodCalled.split("\\.");
+        String beanifiedMethod = table.beanify(byNamespace[byNamespace.length - 1]);
+
+        long start = System.currentTimeMillis();
+        boolean failed = true;
         try {
-            methods = myClass.getMethods();
+            Object result = dispatch(table, beanifiedMethod, params);
+            if (result instanceof DataStream) {
+                // small results are read here, so that a failure is reported
+                // as a fault and the connection is not held during the download
+                List rows = ((DataStream) result).prefetch(
+                        ConfigDefaults.get().getApiStreamBufferRows());
+                if (rows != null) {
+                    result = rows;
+                }
+            }
+            failed = false;
+            return result;
         }
-        catch (SecurityException e) {
-            // This should _never_ happen, because the Handler classes must
-            // have public classes if they're expected to work.
-            throw new XmlRpcFault(-1, "no public methods in class " + myClass);
+        finally {
+            table.recordCall(beanifiedMethod, System.currentTimeMillis() - start,
+                    failed);
         }
+    }
 
-        String[] byNamespace = methodCalled.split("\\.");
-        String beanifiedMethod = StringUtil.beanify(byNamespace[byNamespace.length - 1]);
-        WebSession session = null;
+    private Object dispatch(DispatchTable table, String beanifiedMethod, List params)
+        throws XmlRpcFault {
+        Class myClass = this.getClass();
+        String sessionKey = null;
 
         if (params.size() > 0 && params.get(0) instanceof String &&
                 isSessionKey((String)params.get(0))) {
             if (!myClass.getName().endsWith("AuthHandler") &&
                 !myClass.getName().endsWith("SearchHandler")) {
-                session = SessionManager.loadSession((String)params.get(0));
-                params.set(0, getLoggedInUser((String)params.get(0)));
+                String key = (String)params.get(0);
+                params.set(0, getLoggedInUser(key));
+                sessionKey = key;
                 if (((User)params.get(0)).isReadOnly()) {
                     if (!beanifiedMethod.matches(RO_REGEX)) {
                         throw new SecurityException("The " + beanifiedMethod +
@@ -114,7 +132,9 @@ public class BaseHandler implements XmlRpcInvocationHandler {
         }
 
         //we've found all the methods that have the same number of parameters
-        List<Method> matchedMethods = findMethods(methods, params, beanifiedMethod);
+        List<DispatchTable.Candidate> matchedMethods = findMethods(
+                table.getCandidates(beanifiedMethod, params.size()), params,
+                beanifiedMethod);
 
         //Attempt to find a perfect match
         Method foundMethod = findPerfectMethod(params, matchedMethods);
@@ -127,8 +147,8 @@ public class BaseHandler implements XmlRpcInvocationHandler {
         //      that is easy feel free to change.
         //Since it is not an exact match, we have to translate the params.
         if (foundMethod == null) {
-            foundMethod = matchedMethods.get(0);
-            Class[] types = foundMethod.getParameterTypes();
+            foundMethod = matchedMethods.get(0).getMethod();
+            Class[] types = matchedMethods.get(0).getTypes();
 
             Iterator iter = params.iterator();
             for (int i = 0; i < types.length; i++) {
@@ -183,8 +203,8 @@ public class BaseHandler implements XmlRpcInvocationHandler {
             throw new XmlRpcFault(-1, "unhandled internal exception");
         }
         finally {
-            if (session != null) {
-                SessionManager.extendSessionLifetime(session);
+            if (sessionKey != null) {
+                SessionManager.extendSessionLifetime(sessionKey);
             }
         }
     }
@@ -195,57 +215,31 @@ public class BaseHandler implements XmlRpcInvocationHandler {
      * @param matchedMethods the list of methods to check for a perfect match
      * @return null if no perfect match was found, otherwise the matched method.
      */
-    private Method findPerfectMethod(List params, List<Method> matchedMethods) {
+    private Method findPerfectMethod(List params,
+            List<DispatchTable.Candidate> matchedMethods) {
         //now lets try to find one that matches parameters exactly
-        for (Method currMethod : matchedMethods) {
-            Class[] types = currMethod.getParameterTypes();
-            for (int i = 0; i < types.length; i++) {
-                //if we find a param that doesn't match, go to the next method
-                if (!types[i].isAssignableFrom(params.get(i).getClass())) {
-                    break;
-                }
-                //if we have gone through all of the params, and are here it is a
-                //      perfect match.
-                if (i == types.length - 1) {
-                    return currMethod;
-                }
+        for (DispatchTable.Candidate candidate : matchedMethods) {
+            if (candidate.accepts(params)) {
+                return candidate.getMethod();
             }
         }
         return null;
     }
 
     /**
-     * Private method to find the method in the java class that is being called
+     * Makes sure the handler has a method for the call being made
      * via xml-rpc
-     * @param methods The methods contained in the class
+     * @param candidates The methods of the handler with the name and number of
+     * parameters of the call
      * @param params The parameters sent to us via xml-rpc
      * @param beanifiedMethod The method name we are looking for
-     * @return The matching method we're looking for
+     * @return The matching methods we're looking for
      * @throws XmlRpcFault Thrown if we can't find the method asked for
      */
-    /*
-     * TODO: Make this method even smarterer.
-     *      Currently this finds methods that match the number of parameters and returns
-     *          those.
-     */
-    private List<Method> findMethods(Method[] methods, Collection params,
+    private List<DispatchTable.Candidate> findMethods(
+            List<DispatchTable.Candidate> candidates, Collection params,
             String beanifiedMethod) throws XmlRpcFault {
-
-        List<Method> toReturn = new ArrayList<Method>();
-
-        //Loop through the methods array and find the one we are trying to call.
-        for (int i = 0; i < methods.length; i++) {
-            if (methods[i].getName().equals(beanifiedMethod)) {
-                // We found a method with the right name, but does the parameter count
-                // match?
-                int numberOfParams = methods[i].getParameterTypes().length;
-                if (numberOfParams == params.size()) {
-                    //Method name and number of parameters match.
-                    toReturn.add(methods[i]);
-                }
-            }
-        }
-        if (toReturn.isEmpty()) {
+        if (candidates.isEmpty()) {
             //The caller didn't get the method name or number of parameters right
             String message = "Could not find method: " + beanifiedMethod +
             " in class: " + this.getClass().getName() + " with params: [";
@@ -259,7 +253,7 @@ public class BaseHandler implements XmlRpcInvocationHandler {
             message = message + "]";
             throw new XmlRpcFault(-1, message);
         }
-        return toReturn;
+        return candidates;
     }
 
     /**
@@ -271,9 +265,12 @@ public class BaseHandler implements XmlRpcInvocationHandler {
      * sessionkey.
      */
     public static User getLoggedInUser(String sessionKey) {
-        //Load the session
-        WebSession session = SessionManager.loadSession(sessionKey);
-        User user = session.getUser();
+        //Load the session, or the user id remembered from a recent call
+        Long userId = SessionManager.lookupUserIdByKey(sessionKey);
+        User user = null;
+        if (userId != null) {
+            user = UserFactory.lookupById(userId);
+        }
 
         //Make sure there was a valid user in the session. If not, the session is invalid.
         if (user == null) {
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc;
+
+import com.redhat.rhn.common.util.StringUtil;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The public methods of an XML-RPC handler class, indexed by name and number
+ * of parameters, along with the call statistics of each of them.
+ *
+ * Tables are built once per handler class, when {@link XmlRpcServlet} registers
+ * the handlers, so that dispatching a call does not have to go through
+ * reflection to find its candidate methods.
+ *
+ * @version $Rev$
+ */
+public final class DispatchTable {
+
+    private static final ConcurrentMap<Class, DispatchTable> TABLES =
+        new ConcurrentHashMap<Class, DispatchTable>();
+
+    private final Map<String, Map<Integer, List<Candidate>>> methods;
+    private final Map<String, ApiMethodStats> stats;
+    private final ConcurrentMap<String, String> beanified =
+        new ConcurrentHashMap<String, String>();
+
+    private DispatchTable(String namespace, Class handlerClass) {
+        Map<String, Map<Integer, List<Candidate>>> byName =
+            new HashMap<String, Map<Integer, List<Candidate>>>();
+        Map<String, ApiMethodStats> statsByName = new HashMap<String, ApiMethodStats>();
+
+        // keep the order of getMethods(), the first candidate is the default
+        Method[] all = handlerClass.getMethods();
+        for (int i = 0; i < all.length; i++) {
+            String name = all[i].getName();
+            Map<Integer, List<Candidate>> byArity = byName.get(name);
+            if (byArity == null) {
+                byArity = new HashMap<Integer, List<Candidate>>();
+                byName.put(name, byArity);
+                statsByName.put(name, new ApiMethodStats(namespace + "." + name));
+            }
+            Integer arity = new Integer(all[i].getParameterTypes().length);
+            List<Candidate> candidates = byArity.get(arity);
+            if (candidates == null) {
+                candidates = new ArrayList<Candidate>();
+                byArity.put(arity, candidates);
+            }
+            candidates.add(new Candidate(all[i]));
+        }
+        methods = byName;
+        stats = statsByName;
+    }
+
+    /**
+     * Builds the table of a handler registered under the given namespace.
+     * @param namespace namespace of the handler, e.g. system
+     * @param handler the handler
+     * @return the table
+     */
+    public static DispatchTable register(String namespace, BaseHandler handler) {
+        DispatchTable table = new DispatchTable(namespace, handler.getClass());
+        TABLES.put(handler.getClass(), table);
+        return table;
+    }
+
+    /**
+     * Returns the table of the given handler class, building it if the handler
+     * has not been registered.
+     * @param handlerClass the handler class
+     * @return the table
+     */
+    public static DispatchTable forClass(Class handlerClass) {
+        DispatchTable table = TABLES.get(handlerClass);
+        if (table == null) {
+            table = new DispatchTable(handlerClass.getSimpleName(), handlerClass);
+            DispatchTable existing = TABLES.putIfAbsent(handlerClass, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns snapshots of the statistics of every API method called so far.
+     * @return the statistics, sorted by method name
+     */
+    public static List<ApiMethodStats> getStatistics() {
+        Map<String, ApiMethodStats> sorted = new TreeMap<String, ApiMethodStats>();
+        for (DispatchTable table : TABLES.values()) {
+            for (ApiMethodStats s : table.stats.values()) {
+                ApiMethodStats copy = new ApiMethodStats(s);
+                if (copy.getCalls() > 0) {
+                    sorted.put(copy.getMethod(), copy);
+                }
+            }
+        }
+        return new ArrayList<ApiMethodStats>(sorted.values());
+    }
+
+    /**
+     * Converts the name of a method as called through XML-RPC, like
+     * list_systems, to the name of the Java method, like listSystems.
+     * @param name the XML-RPC method name
+     * @return the Java method name
+     */
+    public String beanify(String name) {
+        String ret = beanified.get(name);
+        if (ret == null) {
+            ret = StringUtil.beanify(name);
+            // only remember names of existing methods, anybody can call
+            // any name
+            if (methods.containsKey(ret)) {
+                beanified.put(name, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the methods with the given name and number of parameters.
+     * @param name the Java method name
+     * @param arity the number of parameters
+     * @return the matching methods, in the order of Class.getMethods(), or an
+     * empty list if there are none
+     */
+    public List<Candidate> getCandidates(String name, int arity) {
+        Map<Integer, List<Candidate>> byArity = methods.get(name);
+        if (byArity != null) {
+            List<Candidate> candidates = byArity.get(new Integer(arity));
+            if (candidates != null) {
+                return candidates;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Records a call of the given method.
+     * @param name the Java method name
+     * @param millis time in ms the call took
+     * @param failed true if the call ended with a fault
+     */
+    public void recordCall(String name, long millis, boolean failed) {
+        ApiMethodStats s = stats.get(name);
+        // calls of methods which do not exist are not worth recording
+        if (s != null) {
+            s.called(millis, failed);
+        }
+    }
+
+    /**
+     * A public method of a handler along with its parameter types.
+     */
+    public static final class Candidate {
+
+        private final Method method;
+        private final Class[] types;
+
+        private Candidate(Method methodIn) {
+            method = methodIn;
+            types = methodIn.getParameterTypes();
+        }
+
+        /**
+         * @return the method
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * Returns whether the given parameters can be passed to the method as
+         * they are, without conversion.
+         * @param params the parameters
+         * @return true if every parameter is an instance of the type of the
+         * method parameter
+         */
+        public boolean accepts(List params) {
+            if (types.length == 0) {
+                // never considered a perfect match, the first candidate wins
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].isAssignableFrom(params.get(i).getClass())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the parameter types of the method
+         */
+        Class[] getTypes() {
+            return types;
+        }
+    }
+}
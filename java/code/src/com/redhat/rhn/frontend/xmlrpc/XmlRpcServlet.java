@@ -15,11 +15,14 @@
 
 package com.redhat.rhn.frontend.xmlrpc;
 
+import com.redhat.rhn.frontend.xmlrpc.serializer.DataStreamSerializer;
 import com.redhat.rhn.frontend.xmlrpc.serializer.SerializerFactory;
 
 import org.apache.log4j.Logger;
 
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Iterator;
 
 import javax.servlet.ServletException;
@@ -113,7 +116,9 @@ public class XmlRpcServlet extends HttpServlet {
                 log.debug("registerInvocationHandler: namespace [" + namespace +
                           "] handler [" + handlers.getHandler(namespace) + "]");
             }
-            srvr.addInvocationHandler(namespace, handlers.getHandler(namespace));
+            BaseHandler handler = handlers.getHandler(namespace);
+            DispatchTable.register(namespace, handler);
+            srvr.addInvocationHandler(namespace, handler);
         }
     }
 
@@ -159,12 +164,25 @@ public class XmlRpcServlet extends HttpServlet {
                 log.debug("Passing control to XmlRpcServer.execute");
             }
 
+            // No content length is set, so once the response buffer fills
+            // up the container commits the headers and sends the rest of the
+            // response chunked. Results returned as a DataStream or an
+            // Iterator are serialized while they are read and thus never
+            // held in memory as a whole.
             server.execute(request.getInputStream(),
-                           response.getWriter(),
+                           new StreamWriter(response.getWriter()),
                            request.getRemoteAddr(),
                            request.getLocalName(),
                            request.getProtocol());
 
+            // A stream which failed after the response was committed leaves
+            // an incomplete document behind, make the container abort the
+            // response instead of ending it as if it were complete.
+            RuntimeException failure = DataStreamSerializer.takeFailure();
+            if (failure != null) {
+                throw failure;
+            }
+
             /*
              * jesusr - 2007.09.14
              * this is still the case
@@ -191,5 +209,39 @@ public class XmlRpcServlet extends HttpServlet {
             }
             throw e;
         }
+        finally {
+            // do not leave the failure of this request to the next one
+            DataStreamSerializer.takeFailure();
+        }
+    }
+
+    /**
+     * Response writer which drops everything written after a DataStream has
+     * failed, such as the closing tags or the fault appended by the XMLRPC
+     * server, so that the client never gets a well formed partial result.
+     */
+    private static class StreamWriter extends FilterWriter {
+
+        StreamWriter(Writer out) {
+            super(out);
+        }
+
+        public void write(int c) throws IOException {
+            if (!DataStreamSerializer.hasFailed()) {
+                super.write(c);
+            }
+        }
+
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (!DataStreamSerializer.hasFailed()) {
+                super.write(cbuf, off, len);
+            }
+        }
+
+        public void write(String str, int off, int len) throws IOException {
+            if (!DataStreamSerializer.hasFailed()) {
+                super.write(str, off, len);
+            }
+        }
     }
 }
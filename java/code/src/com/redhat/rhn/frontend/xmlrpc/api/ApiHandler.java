@@ -15,9 +15,12 @@
 package com.redhat.rhn.frontend.xmlrpc.api;
 
 import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.util.StringUtil;
 import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.frontend.xmlrpc.ApiMethodStats;
 import com.redhat.rhn.frontend.xmlrpc.BaseHandler;
+import com.redhat.rhn.frontend.xmlrpc.DispatchTable;
 import com.redhat.rhn.frontend.xmlrpc.HandlerFactory;
 
 import org.apache.commons.lang.StringUtils;
@@ -184,6 +187,61 @@ public class ApiHandler extends BaseHandler {
         return methods;
     }
 
+    /**
+     * Lists the number of calls and the latencies of the api calls made since
+     * the server was started
+     * @param loggedInUser The current user
+     * @return list of call statistics, sorted by method name
+     *
+     * @xmlrpc.doc Lists the number of calls and the latencies of the api calls
+     * made since the server was started. Only satellite administrators can see
+     * the statistics.
+     * @xmlrpc.param #param("string", "sessionKey")
+     * @xmlrpc.returntype
+     *   #array()
+     *     #struct("call_statistics")
+     *       #prop_desc("string", "name", "method name, e.g. system.listSystems")
+     *       #prop_desc("int", "calls", "number of calls")
+     *       #prop_desc("int", "failures", "number of calls ending with a fault")
+     *       #prop_desc("int", "total_ms", "time spent in the method in ms")
+     *       #prop_desc("int", "max_ms", "longest time of a single call in ms")
+     *       #prop_array_begin("histogram")
+     *         #struct("latency_bucket")
+     *           #prop_desc("int", "below_ms", "upper bound of the call time in ms,
+     *                  not present for the last bucket")
+     *           #prop_desc("int", "calls", "number of calls in the bucket")
+     *         #struct_end()
+     *       #prop_array_end()
+     *     #struct_end()
+     *   #array_end()
+     */
+    public List<Map<String, Object>> getCallStatistics(User loggedInUser) {
+        ensureSatAdmin(loggedInUser);
+        long[] bounds = ApiMethodStats.getBucketBounds();
+        List<Map<String, Object>> ret = new ArrayList<Map<String, Object>>();
+        for (ApiMethodStats stats : DispatchTable.getStatistics()) {
+            Map<String, Object> call = new HashMap<String, Object>();
+            call.put("name", stats.getMethod());
+            call.put("calls", stats.getCalls());
+            call.put("failures", stats.getFailures());
+            call.put("total_ms", stats.getTotalMillis());
+            call.put("max_ms", stats.getMaxMillis());
+            long[] histogram = stats.getHistogram();
+            List<Map<String, Object>> buckets = new ArrayList<Map<String, Object>>();
+            for (int i = 0; i < histogram.length; i++) {
+                Map<String, Object> bucket = new HashMap<String, Object>();
+                if (i < bounds.length - 1) {
+                    bucket.put("below_ms", bounds[i]);
+                }
+                bucket.put("calls", histogram[i]);
+                buckets.add(bucket);
+            }
+            call.put("histogram", buckets);
+            ret.add(call);
+        }
+        return ret;
+    }
+
     private String getType(Type classType, boolean firstParam) {
         if (classType.equals(String.class)) {
             return "string";
@@ -204,6 +262,8 @@ public class ApiHandler extends BaseHandler {
         }
         else if ((classType.equals(List.class)) ||
                  (classType.equals(Set.class)) ||
+                 (classType.equals(Iterator.class)) ||
+                 (classType.equals(DataStream.class)) ||
                  (classType.toString().contains("class [L")) ||
                  (classType.toString().contains("class [I"))) {
             return "array";
@@ -15,10 +15,15 @@
 package com.redhat.rhn.frontend.xmlrpc.api.test;
 
 import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.frontend.xmlrpc.DispatchTable;
+import com.redhat.rhn.frontend.xmlrpc.PermissionCheckFailureException;
 import com.redhat.rhn.frontend.xmlrpc.api.ApiHandler;
-import com.redhat.rhn.testing.RhnBaseTestCase;
+import com.redhat.rhn.frontend.xmlrpc.test.BaseHandlerTestCase;
 
-public class ApiHandlerTest extends RhnBaseTestCase {
+import java.util.List;
+import java.util.Map;
+
+public class ApiHandlerTest extends BaseHandlerTestCase {
 
     public void testSystemVersion() {
         ApiHandler handler = new ApiHandler();
@@ -36,4 +41,30 @@ public class ApiHandlerTest extends RhnBaseTestCase {
         String version = Config.get().getString("java.apiversion");
         assertEquals(version, handler.getVersion());
     }
+
+    public void testGetCallStatistics() {
+        ApiHandler handler = new ApiHandler();
+        DispatchTable.forClass(ApiHandler.class).recordCall("getVersion", 20, false);
+
+        Map<String, Object> getVersion = null;
+        for (Map<String, Object> call : handler.getCallStatistics(satAdmin)) {
+            if (((String) call.get("name")).endsWith(".getVersion")) {
+                getVersion = call;
+            }
+        }
+        assertNotNull(getVersion);
+        assertTrue((Long) getVersion.get("calls") >= 1);
+        assertTrue((Long) getVersion.get("max_ms") >= 20);
+        List<Map<String, Object>> histogram =
+                (List<Map<String, Object>>) getVersion.get("histogram");
+        assertNull(histogram.get(histogram.size() - 1).get("below_ms"));
+
+        try {
+            handler.getCallStatistics(regular);
+            fail("Should have received an Exception");
+        }
+        catch (PermissionCheckFailureException e) {
+            // expected.
+        }
+    }
 }
@@ -31,6 +31,7 @@ import org.apache.log4j.Logger;
 import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.client.InvalidCertificateException;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -79,6 +80,7 @@ import com.redhat.rhn.frontend.xmlrpc.system.XmlRpcSystemHelper;
 import com.redhat.rhn.frontend.xmlrpc.user.XmlRpcUserHelper;
 import com.redhat.rhn.manager.channel.ChannelEditor;
 import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.manager.channel.ChannelMergeSummary;
 import com.redhat.rhn.manager.channel.CloneChannelCommand;
 import com.redhat.rhn.manager.channel.CreateChannelCommand;
 import com.redhat.rhn.manager.channel.UpdateChannelCommand;
@@ -248,11 +250,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             Date startDate, Date endDate) throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel, startDate, endDate);
+        return ChannelManager.listAllPackagesStream(channel, startDate, endDate);
     }
 
     /**
@@ -275,7 +277,7 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             Date startDate) throws NoSuchChannelException {
         return listAllPackages(loggedInUser, channelLabel, startDate, null);
     }
@@ -295,11 +297,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel)
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel)
         throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel);
+        return ChannelManager.listAllPackagesStream(channel, (String) null, null);
     }
 
     /**
@@ -328,11 +330,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @Deprecated
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             String startDate, String endDate) throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel, startDate, endDate);
+        return ChannelManager.listAllPackagesStream(channel, startDate, endDate);
     }
 
     /**
@@ -358,7 +360,7 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @Deprecated
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             String startDate) throws NoSuchChannelException {
         return listAllPackages(loggedInUser, channelLabel, startDate, null);
     }
@@ -2069,10 +2071,10 @@ public class ChannelSoftwareHandler extends BaseHandler {
             throw new PermissionCheckFailureException();
         }
 
-        Set<Errata> mergedErrata = mergeErrataToChannel(loggedInUser, mergeFrom
-                .getErratas(), mergeTo, mergeFrom);
+        ChannelMergeSummary summary = ChannelManager.mergeErrata(loggedInUser,
+                mergeFrom, mergeTo, null, null, null, false);
 
-        return mergedErrata.toArray();
+        return ErrataFactory.listErrata(summary.getErrataIds()).toArray();
     }
 
     /**
@@ -2109,13 +2111,10 @@ public class ChannelSoftwareHandler extends BaseHandler {
             throw new PermissionCheckFailureException();
         }
 
-        List<Errata> fromErrata = ErrataFactory.lookupByChannelBetweenDates(
-                loggedInUser.getOrg(), mergeFrom, startDate, endDate);
+        ChannelMergeSummary summary = ChannelManager.mergeErrata(loggedInUser,
+                mergeFrom, mergeTo, startDate, endDate, null, false);
 
-        Set<Errata> mergedErrata = mergeErrataToChannel(loggedInUser,
-                new HashSet<Errata>(fromErrata), mergeTo, mergeFrom);
-
-        return mergedErrata.toArray();
+        return ErrataFactory.listErrata(summary.getErrataIds()).toArray();
     }
 
     /**
@@ -2151,56 +2150,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
             throw new PermissionCheckFailureException();
         }
 
-        Set<Errata> sourceErrata = mergeFrom.getErratas();
-        Set<Errata> errataToMerge = new HashSet<Errata>();
-
-        // make sure our errata exist in the "from" channel
-        for (String erratumName : errataNames) {
-            Errata toMerge = ErrataManager.lookupByAdvisory(erratumName);
-
-            for (Errata erratum : sourceErrata) {
-                if (erratum.getAdvisoryName() == toMerge.getAdvisoryName()) {
-                    errataToMerge.add(toMerge);
-                    break;
-                }
-            }
-        }
-
-        Set<Errata> mergedErrata =
-            mergeErrataToChannel(loggedInUser, errataToMerge, mergeTo, mergeFrom);
-
-        return mergedErrata.toArray();
-    }
-
-    private Set<Errata> mergeErrataToChannel(User user, Set<Errata> errataToMerge,
-            Channel toChannel, Channel fromChannel) {
-
-        // find errata that we do not need to merge
-        List<Errata> same = ErrataManager.listSamePublishedInChannels(
-                user, fromChannel, toChannel);
-        List<Errata> brothers = ErrataManager.listPublishedBrothersInChannels(
-                user, fromChannel, toChannel);
-        List<Errata> clones = ErrataManager.listPublishedClonesInChannels(
-                user, fromChannel, toChannel);
-        // and remove them
-        errataToMerge.removeAll(same);
-        errataToMerge.removeAll(brothers);
-        errataToMerge.removeAll(clones);
-
-        ErrataManager.publishErrataToChannelAsync(toChannel,
-                getErrataIds(errataToMerge), user);
-
-        // no need to regenerate errata cache, because we didn't touch any packages
+        // only errata of the "from" channel are merged
+        ChannelMergeSummary summary = ChannelManager.mergeErrata(loggedInUser,
+                mergeFrom, mergeTo, null, null, errataNames, false);
 
-        return errataToMerge;
-    }
-
-    private Set<Long> getErrataIds(Set<Errata> errata) {
-        Set<Long> ids = new HashSet<Long>();
-        for (Errata erratum : errata) {
-            ids.add(erratum.getId());
-        }
-        return ids;
+        return ErrataFactory.listErrata(summary.getErrataIds()).toArray();
     }
 
     /**
@@ -2231,30 +2185,53 @@ public class ChannelSoftwareHandler extends BaseHandler {
             throw new PermissionCheckFailureException();
         }
 
-        List<Package> differentPackages = new ArrayList<Package>();
+        ChannelMergeSummary summary = ChannelManager.mergePackages(loggedInUser,
+                mergeFrom, mergeTo, false);
 
-        Set<Package> toPacks = mergeTo.getPackages();
-        Set<Package> fromPacks = mergeFrom.getPackages();
-        List<Long> pids = new ArrayList<Long>();
-        for (Package pack : fromPacks) {
-            if (!toPacks.contains(pack)) {
-                pids.add(pack.getId());
-                differentPackages.add(pack);
-            }
-        }
-        mergeTo.getPackages().addAll(differentPackages);
-        ChannelFactory.save(mergeTo);
-        ChannelManager.refreshWithNewestPackages(mergeTo, "api");
+        return PackageFactory.listPackages(summary.getPackageIds()).toArray();
+    }
 
-        // Mark the affected channel to have it's metadata evaluated, where necessary
-        // (RHEL5+, mostly)
-        ChannelManager.queueChannelChange(mergeTo.getLabel(), "java::mergePackages",
-            loggedInUser.getLogin());
+    /**
+     * Preview what merging a channel into another would add to it.
+     * @param loggedInUser The current user
+     * @param mergeFromLabel the label of the channel to pull from
+     * @param mergeToLabel the label of the channel to push into
+     * @return the packages and errata a merge would add
+     *
+     * @xmlrpc.doc Lists the packages and errata that mergePackages and
+     * mergeErrata would add to a channel, without changing it
+     * @xmlrpc.param #session_key()
+     * @xmlrpc.param #param_desc("string", "mergeFromLabel", "the label of the
+     *          channel to pull from")
+     * @xmlrpc.param #param_desc("string", "mergeToLabel", "the label of the
+     *          channel to push into")
+     * @xmlrpc.returntype
+     *  #struct("merge preview")
+     *      #prop_array_begin("packages")
+     *          $PackageDtoSerializer
+     *      #prop_array_end()
+     *      #prop_array_begin("errata")
+     *          #struct("errata")
+     *              #prop("int", "id")
+     *              #prop("string", "advisory_name")
+     *              #prop("string", "advisory_type")
+     *              #prop("string", "synopsis")
+     *          #struct_end()
+     *      #prop_array_end()
+     *  #struct_end()
+     */
+    public Map<String, Object> previewMerge(User loggedInUser, String mergeFromLabel,
+            String mergeToLabel) {
+
+        Channel mergeFrom = lookupChannelByLabel(loggedInUser, mergeFromLabel);
+        Channel mergeTo = lookupChannelByLabel(loggedInUser, mergeToLabel);
 
-        List<Long> cids = new ArrayList<Long>();
-        cids.add(mergeTo.getId());
-        ErrataCacheManager.insertCacheForChannelPackagesAsync(cids, pids);
-        return differentPackages.toArray();
+        Map<String, Object> preview = new HashMap<String, Object>();
+        preview.put("packages", ChannelManager.mergePackages(loggedInUser, mergeFrom,
+                mergeTo, true).getPackages());
+        preview.put("errata", ChannelManager.mergeErrata(loggedInUser, mergeFrom,
+                mergeTo, null, null, null, true).getErrata());
+        return preview;
     }
 
     /**
@@ -914,25 +914,25 @@ public class ChannelSoftwareHandlerTest extends BaseHandlerTestCase {
         String endDateStr = "3004-08-20 08:00:00";
 
         List<PackageDto> list = handler.listAllPackages(admin, chan.getLabel(),
-                startDateStr);
+                startDateStr).toList();
         assertTrue(list.size() == 1);
 
         list = handler.listAllPackages(admin, chan.getLabel(), startDateStr,
-                endDateStr);
+                endDateStr).toList();
         assertTrue(list.size() == 1);
 
-        list = handler.listAllPackages(admin, chan.getLabel());
+        list = handler.listAllPackages(admin, chan.getLabel()).toList();
         assertTrue(list.size() == 1);
 
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date startDate = sdf.parse(startDateStr);
         Date endDate = sdf.parse(endDateStr);
 
-        list = handler.listAllPackages(admin, chan.getLabel(), startDate);
+        list = handler.listAllPackages(admin, chan.getLabel(), startDate).toList();
         assertTrue(list.size() == 1);
 
         list = handler.listAllPackages(admin, chan.getLabel(), startDate,
-                endDate);
+                endDate).toList();
         assertTrue(list.size() == 1);
     }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.log4j.Logger;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+import com.redhat.rhn.common.db.datasource.DataStream;
+import com.redhat.rhn.common.db.datasource.RowHandler;
+
+/**
+ * DataStreamSerializer
+ *
+ * Writes a DataStream returned by a handler as an XMLRPC array. The query is
+ * only run here, and every row is serialized to the response as soon as it
+ * has been read and elaborated, so the size of the result does not show up
+ * on the heap.
+ *
+ * By then the response has already been committed with a 200 status, so a
+ * failure of the query can no longer be reported as a fault. It is recorded
+ * instead, for {@link com.redhat.rhn.frontend.xmlrpc.XmlRpcServlet} to abort
+ * the response rather than complete it, see {@link #takeFailure()}. Results
+ * small enough never get here, they are read by the handler, see
+ * {@link DataStream#prefetch(int)}.
+ * @version $Rev$
+ */
+public class DataStreamSerializer extends RhnXmlRpcCustomSerializer {
+
+    private static Logger log = Logger.getLogger(DataStreamSerializer.class);
+
+    private static final ThreadLocal<RuntimeException> FAILURE =
+        new ThreadLocal<RuntimeException>();
+
+    /**
+     * Returns whether a stream has failed while being written by the current
+     * thread.
+     * @return true if the response being written is incomplete
+     */
+    public static boolean hasFailed() {
+        return FAILURE.get() != null;
+    }
+
+    /**
+     * Returns and forgets the failure of a stream written by the current
+     * thread.
+     * @return the failure, or null if no stream has failed
+     */
+    public static RuntimeException takeFailure() {
+        RuntimeException retval = FAILURE.get();
+        FAILURE.remove();
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class getSupportedClass() {
+        return DataStream.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void doSerialize(Object value, final Writer output,
+            final XmlRpcSerializer serializer) throws XmlRpcException, IOException {
+        DataStream<Object> stream = (DataStream<Object>) value;
+        output.write("<array><data>");
+        try {
+            stream.forEach(new RowHandler<Object>() {
+                public void handleRow(Object row) {
+                    try {
+                        serializer.serialize(row, output);
+                    }
+                    catch (IOException e) {
+                        throw new WriteFailedException(e);
+                    }
+                }
+            });
+        }
+        catch (WriteFailedException e) {
+            throw (IOException) e.getCause();
+        }
+        catch (RuntimeException e) {
+            log.error("Streaming of " + stream.getMode().getName() +
+                    " failed, aborting the response", e);
+            FAILURE.set(e);
+            throw e;
+        }
+        output.write("</data></array>");
+    }
+
+    /**
+     * Carries an IOException of the response writer out of the row handler.
+     */
+    private static class WriteFailedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        WriteFailedException(IOException cause) {
+            super(cause);
+        }
+    }
+}
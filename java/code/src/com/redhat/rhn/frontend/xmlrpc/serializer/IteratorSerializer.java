@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+/**
+ * IteratorSerializer
+ *
+ * Writes the elements of an Iterator returned by a handler as an XMLRPC
+ * array, serializing each one straight to the response as it is taken from
+ * the iterator.
+ * @version $Rev$
+ */
+public class IteratorSerializer extends RhnXmlRpcCustomSerializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class getSupportedClass() {
+        return Iterator.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void doSerialize(Object value, Writer output, XmlRpcSerializer serializer)
+        throws XmlRpcException, IOException {
+        Iterator i = (Iterator) value;
+        output.write("<array><data>");
+        while (i.hasNext()) {
+            serializer.serialize(i.next(), output);
+        }
+        output.write("</data></array>");
+    }
+}
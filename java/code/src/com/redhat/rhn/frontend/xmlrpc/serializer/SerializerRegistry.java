@@ -115,6 +115,8 @@ public class SerializerRegistry {
         SERIALIZER_CLASSES.add(IssSlaveSerializer.class);
         SERIALIZER_CLASSES.add(UserExtGroupSerializer.class);
         SERIALIZER_CLASSES.add(OrgUserExtGroupSerializer.class);
+        SERIALIZER_CLASSES.add(IteratorSerializer.class);
+        SERIALIZER_CLASSES.add(DataStreamSerializer.class);
     }
 
     /**
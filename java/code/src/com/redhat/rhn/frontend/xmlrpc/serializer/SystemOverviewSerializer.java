@@ -60,7 +60,7 @@ public class SystemOverviewSerializer extends RhnXmlRpcCustomSerializer {
         throws XmlRpcException, IOException {
 
         SystemOverview system = (SystemOverview) value;
-        SerializerHelper helper = new SerializerHelper(serializer);
+        SerializerHelper helper = new SerializerHelper(serializer, output);
         helper.add("id", system.getId());
         helper.add("name", system.getName());
         helper.add("last_checkin", system.getLastCheckinDate());
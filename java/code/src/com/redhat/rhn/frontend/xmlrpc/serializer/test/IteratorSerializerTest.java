@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer.test;
+
+import com.redhat.rhn.frontend.xmlrpc.serializer.IteratorSerializer;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+
+public class IteratorSerializerTest extends TestCase {
+
+    public void testSerialize() throws Exception {
+        IteratorSerializer is = new IteratorSerializer();
+        Writer output = new StringWriter();
+        is.serialize(Arrays.asList("foo", "bar").iterator(), output,
+                new XmlRpcSerializer());
+        assertEquals("<array><data><value><string>foo</string></value>" +
+                "<value><string>bar</string></value></data></array>",
+                output.toString());
+    }
+
+    public void testSerializeEmpty() throws Exception {
+        IteratorSerializer is = new IteratorSerializer();
+        Writer output = new StringWriter();
+        is.serialize(Collections.EMPTY_LIST.iterator(), output, new XmlRpcSerializer());
+        assertEquals("<array><data></data></array>", output.toString());
+    }
+}
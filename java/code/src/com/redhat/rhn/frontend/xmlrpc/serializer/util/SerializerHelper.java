@@ -23,11 +23,17 @@ import redstone.xmlrpc.XmlRpcSerializer;
 
 /**
  * SimpleSerializer
+ *
+ * Members are buffered until {@link #writeTo(Writer)} unless the helper is
+ * given the writer of the response up front, in which case they are written
+ * through to it as they are added.
  * @version $Rev$
  */
 public class SerializerHelper {
-    private Writer output = new StringWriter();
+    private Writer output;
     private XmlRpcSerializer serializer;
+    private Writer target;
+    private boolean started;
 
     /**
      * Constructs a SerializerHelper
@@ -36,6 +42,21 @@ public class SerializerHelper {
      */
     public SerializerHelper(XmlRpcSerializer basicSerializer) {
         serializer = basicSerializer;
+        output = new StringWriter();
+    }
+
+    /**
+     * Constructs a SerializerHelper writing the struct directly to the given
+     * writer. {@link #writeTo(Writer)} must be called with the same writer to
+     * close the struct.
+     * @param basicSerializer serializer to convert basic objects to
+     * XMLRPC format
+     * @param out the writer the struct is written to
+     */
+    public SerializerHelper(XmlRpcSerializer basicSerializer, Writer out) {
+        serializer = basicSerializer;
+        output = out;
+        target = out;
     }
 
     /**
@@ -54,10 +75,19 @@ public class SerializerHelper {
      * @throws IOException problem writing to given Writer
      */
     public void writeTo(Writer out) throws IOException {
-        out.write("<struct>");
-        out.write(output.toString());
+        if (target == null) {
+            out.write("<struct>");
+            out.write(output.toString());
+        }
+        else if (out != target) {
+            throw new IllegalStateException("Struct is being written to another writer");
+        }
+        else if (!started) {
+            out.write("<struct>");
+        }
         out.write("</struct>");
         out.write("\n");
+        started = false;
     }
 
     /**
@@ -65,6 +95,12 @@ public class SerializerHelper {
      * start over with a new snippet
      */
     public void clear() {
+        if (target != null) {
+            if (started) {
+                throw new IllegalStateException("Struct has already been written");
+            }
+            return;
+        }
         output = new StringWriter();
     }
     /**
@@ -83,6 +119,10 @@ public class SerializerHelper {
         }
 
         try {
+            if (target != null && !started) {
+                output.write("<struct>");
+                started = true;
+            }
             output.write("<member><name>");
             output.write(name);
             output.write("</name>");
@@ -44,4 +44,23 @@ public class SerializerHelperTest extends TestCase {
         sl.writeTo(actual);
         assertEquals("<struct></struct>\n", actual.toString());
     }
+
+    public void testSerializeWriteThrough() throws Exception {
+        Writer actual = new StringWriter();
+        SerializerHelper sl = new SerializerHelper(new XmlRpcSerializer(), actual);
+        sl.add("foo", new Long(12));
+        assertEquals("<struct><member><name>foo</name><value><i4>12</i4>" +
+                "</value></member>\n", actual.toString());
+        sl.add("bar", "barValue");
+        sl.writeTo(actual);
+        String expected = "<struct><member><name>foo</name><value><i4>12</i4>" +
+                  "</value></member>\n<member><name>bar</name><value><string>" +
+                  "barValue</string></value></member>\n</struct>\n";
+        assertEquals(expected, actual.toString());
+
+        actual = new StringWriter();
+        sl = new SerializerHelper(new XmlRpcSerializer(), actual);
+        sl.writeTo(actual);
+        assertEquals("<struct></struct>\n", actual.toString());
+    }
 }
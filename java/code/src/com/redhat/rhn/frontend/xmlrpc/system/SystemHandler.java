@@ -18,6 +18,7 @@ import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.client.ClientCertificate;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.localization.LocalizationService;
@@ -142,6 +143,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
@@ -534,7 +536,8 @@ public class SystemHandler extends BaseHandler {
     /**
      * Gets a list of all systems visible to user
      * @param loggedInUser The current user
-     * @return Returns an array of maps representing all systems visible to user
+     * @return Returns a stream of all systems visible to user, written to the
+     * client as it is read
      *
      * @throws FaultException A FaultException is thrown if a valid user can not be found
      * from the passed in session key
@@ -546,10 +549,9 @@ public class SystemHandler extends BaseHandler {
      *          $SystemOverviewSerializer
      *      #array_end()
      */
-    public Object[] listSystems(User loggedInUser) throws FaultException {
-        DataResult<SystemOverview> dr = SystemManager.systemListShort(loggedInUser, null);
-        dr.elaborate();
-        return dr.toArray();
+    public DataStream<SystemOverview> listSystems(User loggedInUser)
+        throws FaultException {
+        return SystemManager.systemListShortStream(loggedInUser);
     }
 
     /**
@@ -3107,6 +3109,8 @@ public class SystemHandler extends BaseHandler {
 
     /**
      * Private helper method is called by other methods to perform package action.
+     * A single action is scheduled for all of the servers; its id is returned
+     * once for every server id passed in.
      *
      * @param loggedInUser The current user
      * @param sids IDs of the servers
@@ -3117,33 +3121,28 @@ public class SystemHandler extends BaseHandler {
     private Long[] schedulePackagesAction(User loggedInUser, List<Integer> sids,
             List<Map<String, Long>> packageMaps, Date earliestOccurrence, ActionType acT) {
 
-        List<Long> actionIds = new ArrayList<Long>();
+        if (sids.isEmpty()) {
+            return new Long[0];
+        }
 
+        List<Long> serverIds = new ArrayList<Long>(sids.size());
         for (Integer sid : sids) {
-            Server server = SystemManager.lookupByIdAndUser(new Long(sid.longValue()),
-                    loggedInUser);
-
-            // Would be nice to do this check at the Manager layer but upset many tests,
-            // some of which were not cooperative when being fixed. Placing here for now.
-            if (!SystemManager.hasEntitlement(server.getId(),
-                    EntitlementManager.MANAGEMENT)) {
-                throw new MissingEntitlementException(
-                        EntitlementManager.MANAGEMENT.getHumanReadableLabel());
-            }
-
-            Action action = null;
-            try {
-
-                action = ActionManager.schedulePackageAction(loggedInUser, packageMaps, acT,
-                        earliestOccurrence, server);
-            }
-            catch (MissingEntitlementException e) {
-                throw new com.redhat.rhn.frontend.xmlrpc.MissingEntitlementException();
-            }
+            serverIds.add(new Long(sid.longValue()));
+        }
 
-            actionIds.add(action.getId());
+        Action action = null;
+        try {
+            action = ActionManager.scheduleBulkPackageAction(loggedInUser, packageMaps,
+                    acT, earliestOccurrence, serverIds);
         }
-        return actionIds.toArray(new Long[actionIds.size()]);
+        catch (MissingEntitlementException e) {
+            throw new com.redhat.rhn.frontend.xmlrpc.MissingEntitlementException(
+                    EntitlementManager.MANAGEMENT.getHumanReadableLabel());
+        }
+
+        Long[] actionIds = new Long[sids.size()];
+        Arrays.fill(actionIds, action.getId());
+        return actionIds;
     }
 
 
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.test;
+
+import com.redhat.rhn.frontend.xmlrpc.ApiMethodStats;
+import com.redhat.rhn.frontend.xmlrpc.DispatchTable;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import redstone.xmlrpc.XmlRpcFault;
+
+/**
+ * DispatchTableTest
+ * @version $Rev$
+ */
+public class DispatchTableTest extends RhnBaseTestCase {
+
+    private UnitTestHandler handler;
+    private DispatchTable table;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        handler = new UnitTestHandler();
+        table = DispatchTable.register("unittest", handler);
+    }
+
+    public void testCandidates() {
+        assertEquals(1, table.getCandidates("add", 2).size());
+        assertEquals("add", table.getCandidates("add", 2).get(0).getMethod().getName());
+        assertTrue(table.getCandidates("add", 1).isEmpty());
+        assertTrue(table.getCandidates("noSuchMethod", 0).isEmpty());
+        assertEquals("getUserLogin", table.beanify("get_user_login"));
+        assertSame(table, DispatchTable.forClass(UnitTestHandler.class));
+    }
+
+    public void testStatistics() throws Exception {
+        ApiMethodStats before = getStats("unittest.add");
+        long addCalls = before == null ? 0 : before.getCalls();
+        before = getStats("unittest.throwFault");
+        long faults = before == null ? 0 : before.getFailures();
+
+        List params = new ArrayList();
+        params.add(new Integer(1));
+        params.add(new Integer(2));
+        assertEquals(new Integer(3), handler.invoke("unittest.add", params));
+        try {
+            handler.invoke("unittest.throw_fault", new ArrayList());
+            fail("fault expected");
+        }
+        catch (XmlRpcFault e) {
+            // expected
+        }
+        try {
+            handler.invoke("unittest.no_such_method", new ArrayList());
+            fail("fault expected");
+        }
+        catch (XmlRpcFault e) {
+            // expected
+        }
+
+        ApiMethodStats add = getStats("unittest.add");
+        assertEquals(addCalls + 1, add.getCalls());
+        long total = 0;
+        long[] histogram = add.getHistogram();
+        for (int i = 0; i < histogram.length; i++) {
+            total += histogram[i];
+        }
+        assertEquals(add.getCalls(), total);
+        assertEquals(faults + 1, getStats("unittest.throwFault").getFailures());
+        assertNull(getStats("unittest.noSuchMethod"));
+    }
+
+    private ApiMethodStats getStats(String method) {
+        for (ApiMethodStats stats : DispatchTable.getStatistics()) {
+            if (stats.getMethod().equals(method)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+}
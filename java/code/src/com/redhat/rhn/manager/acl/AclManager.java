@@ -16,6 +16,7 @@ package com.redhat.rhn.manager.acl;
 
 import com.redhat.rhn.common.security.acl.Acl;
 import com.redhat.rhn.common.security.acl.AclFactory;
+import com.redhat.rhn.common.security.acl.AclResultCache;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.struts.RequestContext;
 
@@ -30,6 +31,9 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class AclManager {
 
+    /** request attribute holding the AclResultCache of the request */
+    private static final String RESULT_CACHE_ATTRIBUTE = "aclResultCache";
+
     private AclManager() {
         // hidden constructor
     }
@@ -50,6 +54,44 @@ public class AclManager {
                 new HashMap(request.getParameterMap()));
     }
 
+    /**
+     * Returns whether or not a specified acl is possessed, reusing the
+     * results of the acl handlers already evaluated while rendering the
+     * request. Only meant for tags and other rendering code, which run once
+     * the action is done changing roles, entitlements or the org; actions
+     * use {@link #hasAcl(String, HttpServletRequest, String)}.
+     * @param acl The acl required
+     * @param request The request
+     * @param mixins Any mixins with this acl
+     * @return has acl boolean
+     */
+    public static boolean hasRenderedAcl(String acl, HttpServletRequest request,
+            String mixins) {
+        if (acl == null || "".equals(acl)) {
+            return true;
+        }
+        return hasAcl(acl, new RequestContext(request).getCurrentUser(), mixins,
+                new HashMap(request.getParameterMap()), getResultCache(request));
+    }
+
+    /**
+     * Returns the cache of ACL handler results used while rendering the given
+     * request, creating it on first use. Must not be used before the action
+     * of the request has run, see
+     * {@link #hasRenderedAcl(String, HttpServletRequest, String)}.
+     * @param request The request
+     * @return the result cache of the request
+     */
+    public static AclResultCache getResultCache(HttpServletRequest request) {
+        AclResultCache cache =
+            (AclResultCache) request.getAttribute(RESULT_CACHE_ATTRIBUTE);
+        if (cache == null) {
+            cache = new AclResultCache();
+            request.setAttribute(RESULT_CACHE_ATTRIBUTE, cache);
+        }
+        return cache;
+    }
+
     /**
      * Returns whether or not a specified acl is possessed
      * @param acl The acl required
@@ -61,14 +103,25 @@ public class AclManager {
      */
     public static boolean hasAcl(String acl, User user, String mixins,
             Map context) {
+        return hasAcl(acl, user, mixins, context, null);
+    }
+
+    /**
+     * Returns whether or not a specified acl is possessed
+     * @param acl The acl required
+     * @param user The user object needed for verification.
+     * @param mixins Any mixins with this acl
+     * @param context Context object thats used by the acl mixin to evaluate data,
+     *                this needs to be a writable Map or can be null if there is no data.
+     * @param cache results of acl handlers already evaluated during the
+     *              current request, or null
+     * @return has acl boolean
+     */
+    public static boolean hasAcl(String acl, User user, String mixins,
+            Map context, AclResultCache cache) {
         if (acl == null || "".equals(acl)) {
             return true;
         }
-        // TODO: Lifecycle issue
-        // It's not cool that we're instantiating a new
-        // Acl everytime we need to use it. We should register
-        // the acl handlers at startup and simply call acl.evalAcl()
-        // when needed.
         Acl aclObj = AclFactory.getInstance().getAcl(mixins);
         if (context == null) {
            context = new HashMap();
@@ -78,6 +131,6 @@ public class AclManager {
             context.put("user", user);
         }
 
-        return (aclObj.evalAcl(context, acl));
+        return (aclObj.evalAcl(context, acl, cache));
     }
 }
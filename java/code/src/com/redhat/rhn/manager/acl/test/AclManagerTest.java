@@ -74,6 +74,20 @@ public class AclManagerTest extends RhnBaseTestCase {
         }
     }
 
+    public void testRenderedAclCache() {
+        MockHttpServletRequest request = TestUtils.getRequestWithSessionAndUser();
+        String mixinBoolean = BooleanAclHandler.class.getName();
+
+        // actions may change what the acls answer, nothing is cached for them
+        assertTrue(AclManager.hasAcl("true_test()", request, mixinBoolean));
+        assertTrue(AclManager.hasAcl("true_test()", request, mixinBoolean));
+        assertEquals(0, AclManager.getResultCache(request).size());
+
+        assertTrue(AclManager.hasRenderedAcl("true_test()", request, mixinBoolean));
+        assertTrue(AclManager.hasRenderedAcl("true_test()", request, mixinBoolean));
+        assertEquals(1, AclManager.getResultCache(request).getHits());
+    }
+
     public static class MockFooAclHandler implements AclHandler {
 
         public MockFooAclHandler() {
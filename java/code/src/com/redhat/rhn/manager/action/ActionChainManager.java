@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +89,8 @@ public class ActionChainManager {
     /**
      * Schedules package upgrade(s) for the given servers.
      * Note: package upgrade = package install
+     * Servers upgrading the same list of packages share one action, and access
+     * to all servers is checked at once.
      * @param user the user scheduling actions
      * @param packageMaps maps system IDs to lists of "package maps"
      * @param earliestAction Date of earliest action to be executed
@@ -104,11 +107,23 @@ public class ActionChainManager {
         if (actionChain != null) {
             sortOrder = ActionChainFactory.getNextSortOrderValue(actionChain);
         }
-        for (Long sid : packageMaps.keySet()) {
-            Server server = SystemManager.lookupByIdAndUser(sid, user);
-            actions.add(schedulePackageActionByOs(user, server, packageMaps.get(sid),
-                    earliestAction, actionChain, sortOrder,
-                    ActionFactory.TYPE_PACKAGES_UPDATE));
+        SystemManager.ensureAvailableToUser(user, packageMaps.keySet());
+
+        Map<List<Map<String, Long>>, Set<Long>> serversByPackages =
+                new LinkedHashMap<List<Map<String, Long>>, Set<Long>>();
+        for (Map.Entry<Long, List<Map<String, Long>>> e : packageMaps.entrySet()) {
+            Set<Long> sids = serversByPackages.get(e.getValue());
+            if (sids == null) {
+                sids = new HashSet<Long>();
+                serversByPackages.put(e.getValue(), sids);
+            }
+            sids.add(e.getKey());
+        }
+        for (Map.Entry<List<Map<String, Long>>, Set<Long>> e :
+                serversByPackages.entrySet()) {
+            actions.addAll(schedulePackageActions(user, e.getKey(),
+                    ActionFactory.TYPE_PACKAGES_UPDATE, earliestAction, actionChain,
+                    sortOrder, e.getValue()));
         }
         return actions;
     }
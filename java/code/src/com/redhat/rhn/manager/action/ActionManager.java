@@ -1548,6 +1548,40 @@ public class ActionManager extends BaseManager {
         return action;
     }
 
+    /**
+     * Schedules a single package action of the given type for all the given
+     * servers. Access and entitlement are checked for all servers at once
+     * with set-based queries, and the server actions are inserted with one
+     * statement per batch of server ids, so the number of queries does not
+     * grow with the number of servers.
+     * @param scheduler The user scheduling the action.
+     * @param pkgs A list of maps containing keys 'name_id', 'evr_id' and
+     *             optional 'arch_id' with Long values.
+     * @param type The type of the package action.  One of the static types found in
+     *             ActionFactory
+     * @param earliestAction The earliest time that this action could happen.
+     * @param serverIds The server ids that this action is for.
+     * @return The action that has been scheduled.
+     * @throws com.redhat.rhn.common.hibernate.LookupException if any of the
+     *             servers is not available to the scheduler
+     * @throws MissingEntitlementException if any of the servers is missing
+     *             Management; schedule fails
+     */
+    public static Action scheduleBulkPackageAction(User scheduler, List pkgs,
+            ActionType type, Date earliestAction, Collection<Long> serverIds) {
+        Set<Long> sids = new HashSet<Long>(serverIds);
+        SystemManager.ensureAvailableToUser(scheduler, sids);
+
+        Set<Long> entitled = SystemManager.idsWithEntitlement(sids,
+                EntitlementManager.MANAGEMENT);
+        if (entitled.size() < sids.size()) {
+            throw new MissingEntitlementException(
+                    EntitlementManager.MANAGEMENT.getHumanReadableLabel());
+        }
+
+        return schedulePackageAction(scheduler, pkgs, type, earliestAction, sids);
+    }
+
     /**
      * Adds package details to an Action
      * @param action the action
@@ -1561,6 +1595,8 @@ public class ActionManager extends BaseManager {
             // hibernate. It seems terribly inefficient to lookup a
             // packagename and packageevr object to insert the ids into the
             // correct table if I already have the ids.
+            List<Map<String, Object>> withArch = new ArrayList<Map<String, Object>>();
+            List<Map<String, Object>> noArch = new ArrayList<Map<String, Object>>();
             for (Iterator itr = packages.iterator(); itr.hasNext();) {
                 Map rse = (Map) itr.next();
                 Map<String, Object> params = new HashMap<String, Object>();
@@ -1577,16 +1613,21 @@ public class ActionManager extends BaseManager {
                 params.put("name_id", nameId);
                 params.put("evr_id", evrId);
 
-                WriteMode m = null;
                 if (archId == null) {
-                    m = ModeFactory.getWriteMode("Action_queries",
-                            "schedule_action_no_arch");
+                    noArch.add(params);
                 }
                 else {
                     params.put("arch_id", archId);
-                    m = ModeFactory.getWriteMode("Action_queries", "schedule_action");
+                    withArch.add(params);
                 }
-                m.executeUpdate(params);
+            }
+            if (!noArch.isEmpty()) {
+                ModeFactory.getWriteMode("Action_queries", "schedule_action_no_arch")
+                        .executeBatchUpdate(noArch);
+            }
+            if (!withArch.isEmpty()) {
+                ModeFactory.getWriteMode("Action_queries", "schedule_action")
+                        .executeBatchUpdate(withArch);
             }
         }
     }
@@ -53,6 +53,7 @@ import com.redhat.rhn.frontend.dto.ActionedSystem;
 import com.redhat.rhn.frontend.dto.PackageListItem;
 import com.redhat.rhn.frontend.dto.PackageMetadata;
 import com.redhat.rhn.frontend.listview.PageControl;
+import com.redhat.rhn.manager.MissingEntitlementException;
 import com.redhat.rhn.manager.action.ActionIsChildException;
 import com.redhat.rhn.manager.action.ActionManager;
 import com.redhat.rhn.manager.kickstart.ProvisionVirtualInstanceCommand;
@@ -524,6 +525,65 @@ public class ActionManagerTest extends RhnBaseTestCase {
         assertEquals(pa, pa1);
     }
 
+    public void testScheduleBulkPackageAction() throws Exception {
+        User user = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        user.addPermanentRole(RoleFactory.ORG_ADMIN);
+
+        List<Long> sids = new ArrayList<Long>();
+        for (int i = 0; i < 3; i++) {
+            sids.add(ServerFactoryTest.createTestServer(user, true).getId());
+        }
+        Package pkg = PackageTest.createTestPackage(user.getOrg());
+        List<Map<String, Long>> packages = new ArrayList<Map<String, Long>>();
+        Map<String, Long> row = new HashMap<String, Long>();
+        row.put("name_id", pkg.getPackageName().getId());
+        row.put("evr_id", pkg.getPackageEvr().getId());
+        row.put("arch_id", pkg.getPackageArch().getId());
+        packages.add(row);
+
+        Action action = ActionManager.scheduleBulkPackageAction(user, packages,
+                ActionFactory.TYPE_PACKAGES_UPDATE, new Date(), sids);
+        flushAndEvict(action);
+
+        PackageAction pa = (PackageAction) ActionManager.lookupAction(user,
+                action.getId());
+        assertEquals(3, pa.getServerActions().size());
+        assertEquals(1, pa.getDetails().size());
+    }
+
+    public void testScheduleBulkPackageActionUnentitled() throws Exception {
+        User user = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        user.addPermanentRole(RoleFactory.ORG_ADMIN);
+
+        List<Long> sids = new ArrayList<Long>();
+        sids.add(ServerFactoryTest.createTestServer(user, true).getId());
+        sids.add(ServerFactoryTest.createUnentitledTestServer(user, true,
+                ServerFactoryTest.TYPE_SERVER_NORMAL, new Date()).getId());
+
+        try {
+            ActionManager.scheduleBulkPackageAction(user, new ArrayList(),
+                    ActionFactory.TYPE_PACKAGES_UPDATE, new Date(), sids);
+            fail("unentitled server should not get the action");
+        }
+        catch (MissingEntitlementException e) {
+            // expected
+        }
+
+        User other = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        sids.remove(1);
+        try {
+            ActionManager.scheduleBulkPackageAction(other, new ArrayList(),
+                    ActionFactory.TYPE_PACKAGES_UPDATE, new Date(), sids);
+            fail("server of another org should not be found");
+        }
+        catch (LookupException e) {
+            // expected
+        }
+    }
+
     public void testSchedulePackageVerify() throws Exception {
         User user = UserTestUtils.findNewUser("testUser",
                 "testOrg" + this.getClass().getSimpleName());
@@ -20,6 +20,7 @@ import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -37,6 +38,7 @@ import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -79,6 +81,7 @@ import com.redhat.rhn.frontend.listview.PageControl;
 import com.redhat.rhn.frontend.xmlrpc.NoSuchChannelException;
 import com.redhat.rhn.frontend.xmlrpc.ProxyChannelNotFoundException;
 import com.redhat.rhn.manager.BaseManager;
+import com.redhat.rhn.manager.errata.ErrataManager;
 import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
 import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import com.redhat.rhn.manager.rhnset.RhnSetDecl;
@@ -1007,8 +1010,45 @@ public class ChannelManager extends BaseManager {
      */
     public static List<PackageDto> listAllPackages(Channel channel, String startDate,
             String endDate) {
-        String mode = "all_packages_in_channel";
         Map<String, Object> params = new HashMap<String, Object>();
+        SelectMode m = allPackagesMode(channel, startDate, endDate, params);
+
+        return m.execute(params);
+    }
+
+    /**
+     * Returns the packages in channel as a stream that is only read when it
+     * is consumed, so that large channels need not be held in memory.
+     * @param channel channel whose packages are sought
+     * @param startDate package start date, may be null
+     * @param endDate package end date, may be null
+     * @return stream of packages in channel
+     */
+    public static DataStream<PackageDto> listAllPackagesStream(Channel channel,
+            String startDate, String endDate) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        SelectMode m = allPackagesMode(channel, startDate, endDate, params);
+
+        return new DataStream<PackageDto>(m, params);
+    }
+
+    /**
+     * Returns the packages in channel as a stream that is only read when it
+     * is consumed, so that large channels need not be held in memory.
+     * @param channel channel whose packages are sought
+     * @param startDate package start date, may be null
+     * @param endDate package end date, may be null
+     * @return stream of packages in channel
+     */
+    public static DataStream<PackageDto> listAllPackagesStream(Channel channel,
+            Date startDate, Date endDate) {
+        return listAllPackagesStream(channel, formatPackageDate(startDate),
+                formatPackageDate(endDate));
+    }
+
+    private static SelectMode allPackagesMode(Channel channel, String startDate,
+            String endDate, Map<String, Object> params) {
+        String mode = "all_packages_in_channel";
         params.put("cid", channel.getId());
 
         if (!StringUtils.isEmpty(startDate)) {
@@ -1021,9 +1061,7 @@ public class ChannelManager extends BaseManager {
             mode = "all_packages_in_channel_between";
         }
 
-        SelectMode m = ModeFactory.getMode("Package_queries", mode);
-
-        return m.execute(params);
+        return ModeFactory.getMode("Package_queries", mode);
     }
 
     /**
@@ -1050,22 +1088,19 @@ public class ChannelManager extends BaseManager {
      */
     public static List<PackageDto> listAllPackages(Channel channel, Date startDate,
             Date endDate) {
+        return listAllPackages(channel, formatPackageDate(startDate),
+                formatPackageDate(endDate));
+    }
 
-        // convert the start and end dates to a string representation
-        // that can be used in the db query...
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-        String startDateStr = null;
-        String endDateStr = null;
-
-        if (startDate != null) {
-            startDateStr = sdf.format(startDate);
-        }
-        if (endDate != null) {
-            endDateStr = sdf.format(endDate);
+    /**
+     * Converts a package start or end date to the string representation
+     * used in the db queries.
+     */
+    private static String formatPackageDate(Date date) {
+        if (date == null) {
+            return null;
         }
-
-        return listAllPackages(channel, startDateStr, endDateStr);
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date);
     }
 
     /**
@@ -2242,6 +2277,106 @@ public class ChannelManager extends BaseManager {
     }
 
 
+    /**
+     * Merges the packages of one channel into another. The packages to add
+     * are found and added by the database, so that neither channel has its
+     * packages loaded.
+     * @param user the user doing the merge
+     * @param from the channel to pull the packages from
+     * @param to the channel to push the packages into
+     * @param dryRun if set, only find the packages to add and leave the
+     * channel unchanged
+     * @return summary of the packages added
+     */
+    public static ChannelMergeSummary mergePackages(User user, Channel from, Channel to,
+            boolean dryRun) {
+        if (!dryRun && !UserManager.verifyChannelAdmin(user, to)) {
+            throw new PermissionException(RoleFactory.CHANNEL_ADMIN);
+        }
+
+        Map<String, Long> params = new HashMap<String, Long>();
+        params.put("from_cid", from.getId());
+        params.put("to_cid", to.getId());
+
+        SelectMode m = ModeFactory.getMode("Channel_queries", "packages_to_merge");
+        List<PackageDto> packages = m.execute(params);
+        ChannelMergeSummary summary = new ChannelMergeSummary(packages,
+                new ArrayList<Map<String, Object>>(), dryRun);
+        if (dryRun || packages.isEmpty()) {
+            return summary;
+        }
+
+        WriteMode w = ModeFactory.getWriteMode("Channel_queries", "merge_channel_packages");
+        w.executeUpdate(params);
+        HibernateFactory.getSession().refresh(to);
+
+        refreshWithNewestPackages(to, "api");
+        // Mark the affected channel to have it's metadata evaluated, where necessary
+        // (RHEL5+, mostly)
+        queueChannelChange(to.getLabel(), "java::mergePackages", user.getLogin());
+        List<Long> cids = new ArrayList<Long>();
+        cids.add(to.getId());
+        ErrataCacheManager.insertCacheForChannelPackagesAsync(cids,
+                summary.getPackageIds());
+        return summary;
+    }
+
+    /**
+     * Merges the errata of one channel into another. Errata which are in the
+     * target channel already, or have a clone there, or are cloned from the
+     * same original as an erratum there, are skipped. The errata to add are
+     * found by the database and published to the target channel
+     * asynchronously.
+     * @param user the user doing the merge
+     * @param from the channel to pull the errata from
+     * @param to the channel to push the errata into
+     * @param startDate if set along with endDate, only merge the errata of
+     * the user's org or of no org last modified between the dates
+     * @param endDate see startDate
+     * @param advisoryNames if set, only merge the errata with these advisory names
+     * @param dryRun if set, only find the errata to add and leave the
+     * channel unchanged
+     * @return summary of the errata added
+     */
+    public static ChannelMergeSummary mergeErrata(User user, Channel from, Channel to,
+            String startDate, String endDate, Collection<String> advisoryNames,
+            boolean dryRun) {
+        if (!dryRun && !UserManager.verifyChannelAdmin(user, to)) {
+            throw new PermissionException(RoleFactory.CHANNEL_ADMIN);
+        }
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("from_cid", from.getId());
+        params.put("to_cid", to.getId());
+        SelectMode m;
+        if (startDate != null && endDate != null) {
+            params.put("org_id", user.getOrg().getId());
+            params.put("start_date", startDate);
+            params.put("end_date", endDate);
+            m = ModeFactory.getMode("Channel_queries", "errata_to_merge_by_date");
+        }
+        else {
+            m = ModeFactory.getMode("Channel_queries", "errata_to_merge");
+        }
+        List<Map<String, Object>> errata = m.execute(params);
+        if (advisoryNames != null) {
+            Set<String> names = new HashSet<String>(advisoryNames);
+            for (Iterator<Map<String, Object>> iter = errata.iterator(); iter.hasNext();) {
+                if (!names.contains(iter.next().get("advisory_name"))) {
+                    iter.remove();
+                }
+            }
+        }
+
+        ChannelMergeSummary summary = new ChannelMergeSummary(
+                new ArrayList<PackageDto>(), errata, dryRun);
+        if (!dryRun && !errata.isEmpty()) {
+            // no need to regenerate errata cache, because we didn't touch any packages
+            ErrataManager.publishErrataToChannelAsync(to, summary.getErrataIds(), user);
+        }
+        return summary;
+    }
+
     /**
      * Remove a set of erratas from a channel
      *      and remove associated packages
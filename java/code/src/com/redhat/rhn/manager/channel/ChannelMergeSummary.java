@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.channel;
+
+import com.redhat.rhn.frontend.dto.PackageDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a merge of one channel into another adds, or would add for a dry run,
+ * to the target channel.
+ *
+ * @version $Rev$
+ * @see ChannelManager#mergePackages(com.redhat.rhn.domain.user.User,
+ * com.redhat.rhn.domain.channel.Channel, com.redhat.rhn.domain.channel.Channel,
+ * boolean)
+ */
+public class ChannelMergeSummary {
+
+    private final List<PackageDto> packages;
+    private final List<Map<String, Object>> errata;
+    private final boolean dryRun;
+
+    /**
+     * Constructor
+     * @param packagesIn packages added to the target channel
+     * @param errataIn errata added to the target channel, with their id,
+     * advisory_name, advisory_type and synopsis
+     * @param dryRunIn true if the target channel was left unchanged
+     */
+    public ChannelMergeSummary(List<PackageDto> packagesIn,
+            List<Map<String, Object>> errataIn, boolean dryRunIn) {
+        packages = Collections.unmodifiableList(packagesIn);
+        errata = Collections.unmodifiableList(errataIn);
+        dryRun = dryRunIn;
+    }
+
+    /**
+     * @return the packages added to the target channel
+     */
+    public List<PackageDto> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return the ids of the packages added to the target channel
+     */
+    public List<Long> getPackageIds() {
+        List<Long> ids = new ArrayList<Long>(packages.size());
+        for (PackageDto pack : packages) {
+            ids.add(pack.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * @return the errata added to the target channel
+     */
+    public List<Map<String, Object>> getErrata() {
+        return errata;
+    }
+
+    /**
+     * @return the ids of the errata added to the target channel
+     */
+    public List<Long> getErrataIds() {
+        List<Long> ids = new ArrayList<Long>(errata.size());
+        for (Map<String, Object> erratum : errata) {
+            ids.add((Long) erratum.get("id"));
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if the target channel was left unchanged
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+}
@@ -48,6 +48,7 @@ import com.redhat.rhn.frontend.dto.PackageOverview;
 import com.redhat.rhn.frontend.dto.SystemsPerChannelDto;
 import com.redhat.rhn.frontend.xmlrpc.NoSuchChannelException;
 import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.manager.channel.ChannelMergeSummary;
 import com.redhat.rhn.manager.channel.EusReleaseComparator;
 import com.redhat.rhn.manager.channel.MultipleChannelsWithPackageException;
 import com.redhat.rhn.manager.errata.ErrataManager;
@@ -806,6 +807,60 @@ public class ChannelManagerTest extends BaseTestCaseWithUser {
         assertFalse(c.getErratas().contains(eids));
     }
 
+    public void testMergePackages() throws Exception {
+        user.addPermanentRole(RoleFactory.CHANNEL_ADMIN);
+        Channel from = ChannelFactoryTest.createTestChannel(user);
+        Channel to = ChannelFactoryTest.createTestChannel(user);
+        Package both = PackageTest.createTestPackage(user.getOrg());
+        Package fromOnly = PackageTest.createTestPackage(user.getOrg());
+        from.addPackage(both);
+        from.addPackage(fromOnly);
+        to.addPackage(both);
+        from = (Channel) TestUtils.saveAndReload(from);
+        to = (Channel) TestUtils.saveAndReload(to);
+
+        ChannelMergeSummary preview = ChannelManager.mergePackages(user, from, to, true);
+        assertTrue(preview.isDryRun());
+        assertEquals(1, preview.getPackages().size());
+        assertEquals(fromOnly.getId(), preview.getPackageIds().get(0));
+        assertEquals(1, to.getPackages().size());
+
+        ChannelMergeSummary summary = ChannelManager.mergePackages(user, from, to, false);
+        assertEquals(preview.getPackageIds(), summary.getPackageIds());
+        to = (Channel) TestUtils.reload(to);
+        assertEquals(2, to.getPackages().size());
+        assertTrue(to.getPackages().contains(fromOnly));
+
+        // nothing is left to merge
+        summary = ChannelManager.mergePackages(user, from, to, false);
+        assertTrue(summary.getPackages().isEmpty());
+    }
+
+    public void testMergeErrata() throws Exception {
+        Channel from = ChannelFactoryTest.createTestChannel(user);
+        Channel to = ChannelFactoryTest.createTestChannel(user);
+        Errata both = ErrataFactoryTest.createTestPublishedErrata(user.getOrg().getId());
+        Errata fromOnly = ErrataFactoryTest.createTestPublishedErrata(
+                user.getOrg().getId());
+        from.addErrata(both);
+        from.addErrata(fromOnly);
+        to.addErrata(both);
+        from = (Channel) TestUtils.saveAndReload(from);
+        to = (Channel) TestUtils.saveAndReload(to);
+
+        ChannelMergeSummary preview = ChannelManager.mergeErrata(user, from, to,
+                null, null, null, true);
+        assertEquals(1, preview.getErrata().size());
+        assertEquals(fromOnly.getId(), preview.getErrataIds().get(0));
+        assertEquals(fromOnly.getAdvisoryName(),
+                preview.getErrata().get(0).get("advisory_name"));
+
+        List<String> names = new ArrayList<String>();
+        names.add(both.getAdvisoryName());
+        preview = ChannelManager.mergeErrata(user, from, to, null, null, names, true);
+        assertTrue(preview.getErrata().isEmpty());
+    }
+
     public void testListErrataPackages() throws Exception {
 
         Channel c = ChannelFactoryTest.createBaseChannel(user);
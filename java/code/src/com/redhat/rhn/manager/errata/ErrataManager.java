@@ -18,7 +18,6 @@
 package com.redhat.rhn.manager.errata;
 
 import com.redhat.rhn.common.conf.Config;
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
@@ -63,6 +62,7 @@ import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
 import com.redhat.rhn.manager.rhnset.RhnSetDecl;
 import com.redhat.rhn.manager.rhnset.RhnSetManager;
+import com.redhat.rhn.manager.search.SearchClient;
 import com.redhat.rhn.manager.system.SystemManager;
 
 import org.apache.commons.lang.StringUtils;
@@ -81,7 +81,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
 /**
@@ -1596,11 +1595,10 @@ public class ErrataManager extends BaseManager {
         boolean flag = false;
 
         try {
-            XmlRpcClient client = new XmlRpcClient(
-                    ConfigDefaults.get().getSearchServerUrl(), true);
             List args = new ArrayList();
             args.add("errata");
-            Boolean rc = (Boolean)client.invoke("admin.updateIndex", args);
+            Boolean rc = (Boolean) SearchClient.getInstance().invoke(
+                    "admin.updateIndex", args);
             flag =  rc.booleanValue();
         }
         catch (XmlRpcFault e) {
@@ -21,12 +21,16 @@ import com.redhat.rhn.manager.rhnset.RhnSetManager;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 import com.redhat.rhn.testing.UserTestUtils;
 
+import org.apache.log4j.Logger;
+
 /**
  * RhnManagerTest
  * @version $Rev$
  */
 public class RhnSetManagerTest extends RhnBaseTestCase {
 
+    private static Logger log = Logger.getLogger(RhnSetManagerTest.class);
+
     /** user id to be used when creating RhnSet tests */
     private Long userId = null;
     private TestSetCleanup cleanup;
@@ -208,6 +212,107 @@ public class RhnSetManagerTest extends RhnBaseTestCase {
         assertEquals(new Long(33), element.getElementThree());
     }
 
+    /**
+     * Stores a set large enough to span several JDBC batches, then removes
+     * part of it and stores it again.
+     */
+    public void testStoreLargeSet() throws Exception {
+        String label = "test_rhn_set_store_large";
+
+        RhnSet set = RhnSetManager.createSet(userId, label, cleanup);
+        fill(set, 2500);
+        RhnSetManager.store(set);
+        assertEquals(1, cleanup.callbacks);
+
+        set = RhnSetManager.findByLabel(userId, label, cleanup);
+        assertEquals(2500, set.size());
+        assertTrue(set.contains(new Long(0)));
+        assertTrue(set.contains(new Long(1), new Long(2)));
+
+        // remove every other element of each kind and add a few new ones
+        for (long i = 0; i < 2500; i += 2) {
+            set.removeElement(element(label, i));
+        }
+        set.addElement(new Long(100000), new Long(1));
+        set.addElement(new Long(100001), new Long(1), new Long(1));
+        RhnSetManager.store(set);
+        assertEquals(2, cleanup.callbacks);
+
+        set = RhnSetManager.findByLabel(userId, label, cleanup);
+        assertEquals(1252, set.size());
+        assertFalse(set.contains(new Long(0)));
+        assertTrue(set.contains(new Long(1), new Long(2)));
+        assertTrue(set.contains(new Long(100000), new Long(1)));
+    }
+
+    /**
+     * Stores elements which were already stored through another copy of the
+     * set. The transaction has to remain usable afterwards.
+     */
+    public void testStoreExistingElements() throws Exception {
+        String label = "test_rhn_set_store_existing";
+
+        RhnSet set = RhnSetManager.createSet(userId, label, cleanup);
+        set.addElement(new Long(1));
+        RhnSetManager.store(set);
+
+        RhnSet first = RhnSetManager.findByLabel(userId, label, cleanup);
+        RhnSet second = RhnSetManager.findByLabel(userId, label, cleanup);
+        second.addElement(new Long(2));
+        second.addElement(new Long(3), new Long(4));
+        RhnSetManager.store(second);
+
+        first.addElement(new Long(2));
+        first.addElement(new Long(3), new Long(4));
+        first.addElement(new Long(5));
+        RhnSetManager.store(first);
+
+        set = RhnSetManager.findByLabel(userId, label, cleanup);
+        assertEquals(4, set.size());
+        assertTrue(set.contains(new Long(2)));
+        assertTrue(set.contains(new Long(3), new Long(4)));
+        assertTrue(set.contains(new Long(5)));
+    }
+
+    /**
+     * Logs how long it takes to store sets of increasing size. Not run by
+     * default.
+     */
+    public void skipTestStoreBenchmark() throws Exception {
+        int[] sizes = {100, 1000, 10000, 100000};
+        for (int size : sizes) {
+            String label = "test_rhn_set_benchmark_" + size;
+            RhnSet set = RhnSetManager.createSet(userId, label, cleanup);
+            fill(set, size);
+            long start = System.currentTimeMillis();
+            RhnSetManager.store(set);
+            log.info("Stored " + size + " elements in " +
+                    (System.currentTimeMillis() - start) + " ms");
+            RhnSetManager.deleteByLabel(userId, label);
+        }
+    }
+
+    private void fill(RhnSet set, int size) {
+        for (long i = 0; i < size; i++) {
+            set.addElement(element(set.getLabel(), i));
+        }
+    }
+
+    /**
+     * @return an element with one, two or three columns depending on i
+     */
+    private RhnSetElement element(String label, long i) {
+        switch ((int) (i % 3)) {
+            case 0:
+                return new RhnSetElement(userId, label, new Long(i), null);
+            case 1:
+                return new RhnSetElement(userId, label, new Long(i), new Long(i + 1));
+            default:
+                return new RhnSetElement(userId, label, new Long(i), new Long(i + 1),
+                        new Long(i + 2));
+        }
+    }
+
     public static final class TestSetCleanup extends SetCleanup {
         private int callbacks = 0;
 
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.search;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import redstone.xmlrpc.XmlRpcClient;
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcFault;
+
+/**
+ * Shared client of the search server.
+ *
+ * Calls are executed by a small pool of worker threads, each of which keeps
+ * its own XmlRpcClient, so that the connection to the search server is kept
+ * alive and reused rather than opened for every search. A call which does not
+ * complete within the configured timeout fails with an XmlRpcException, the
+ * same way as a call to a search server which cannot be reached. The same
+ * timeout applies to connecting to and reading from the search server, so
+ * that the worker thread of such a call is freed as well.
+ *
+ * Search results can optionally be cached for a short time. The search server
+ * screens the hits by what the user of the session may see, so the session id
+ * is part of the cache key along with the index and the query, the latter
+ * with its whitespace normalized. Any admin call, such as an index update,
+ * empties the cache.
+ *
+ * @version $Rev$
+ */
+public class SearchClient {
+
+    private static final String ADMIN_PREFIX = "admin.";
+
+    private static Logger log = Logger.getLogger(SearchClient.class);
+    private static SearchClient instance;
+
+    private final String url;
+    private final long timeout;
+    private final long cacheTtl;
+    private final ExecutorService executor;
+    private final ThreadLocal<XmlRpcClient> clients = new ThreadLocal<XmlRpcClient>();
+    private final Map<List<Object>, CachedResult> cache;
+
+    /**
+     * Constructor
+     * @param urlIn URL of the search server
+     * @param threads maximum number of concurrent calls to the search server
+     * @param timeoutIn time in ms after which a call is given up
+     * @param cacheSize maximum number of cached search results
+     * @param cacheTtlIn time in ms for which search results are cached, 0 to
+     * disable caching
+     */
+    public SearchClient(String urlIn, int threads, long timeoutIn, final int cacheSize,
+            long cacheTtlIn) {
+        url = urlIn;
+        timeout = timeoutIn;
+        cacheTtl = cacheTtlIn;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable task) {
+                Thread retval = new Thread(task);
+                retval.setName("RHN Search Client-" + (++count));
+                retval.setDaemon(true);
+                return retval;
+            }
+        });
+        cache = new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                    Map.Entry<List<Object>, CachedResult> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the client configured in rhn.conf, creating it on first use.
+     * @return the shared client
+     */
+    public static synchronized SearchClient getInstance() {
+        if (instance == null) {
+            ConfigDefaults c = ConfigDefaults.get();
+            instance = new SearchClient(c.getSearchServerUrl(),
+                    c.getSearchClientThreads(), c.getSearchClientTimeout() * 1000L,
+                    c.getSearchCacheSize(), c.getSearchCacheTtl() * 1000L);
+        }
+        return instance;
+    }
+
+    /**
+     * Calls a method of the search server. Searches are answered from the
+     * cache when possible, the lists they return must not be modified.
+     * @param method name of the method, for example index.search
+     * @param args arguments of the method
+     * @return the result of the method
+     * @throws XmlRpcFault if the search server reports an error
+     * @throws MalformedURLException if the search server URL is invalid
+     */
+    public Object invoke(String method, List args)
+        throws XmlRpcFault, MalformedURLException {
+        if (method.startsWith(ADMIN_PREFIX)) {
+            try {
+                return get(submit(method, args));
+            }
+            finally {
+                clearCache();
+            }
+        }
+        List<Object> key = cacheKey(method, args);
+        Object result = getCached(key);
+        if (result == null) {
+            result = get(submit(method, args));
+            if (result instanceof List) {
+                result = Collections.unmodifiableList((List) result);
+            }
+            putCached(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Calls a method of the search server once for every argument list,
+     * concurrently, for example to search several indexes at once. Searches
+     * are answered from the cache when possible.
+     * @param method name of the method, for example index.search
+     * @param argsList the argument lists of the calls
+     * @return the results of the calls, in the order of the argument lists
+     * @throws XmlRpcFault if the search server reports an error for any call
+     * @throws MalformedURLException if the search server URL is invalid
+     */
+    public List<Object> invokeAll(String method, List<List> argsList)
+        throws XmlRpcFault, MalformedURLException {
+        if (method.startsWith(ADMIN_PREFIX)) {
+            List<Object> retval = new ArrayList<Object>(argsList.size());
+            for (List args : argsList) {
+                retval.add(invoke(method, args));
+            }
+            return retval;
+        }
+        List<Object> keys = new ArrayList<Object>(argsList.size());
+        List<Object> retval = new ArrayList<Object>(argsList.size());
+        for (List args : argsList) {
+            List<Object> key = cacheKey(method, args);
+            Object result = getCached(key);
+            keys.add(key);
+            retval.add(result != null ? result : submit(method, args));
+        }
+        for (int i = 0; i < retval.size(); i++) {
+            if (retval.get(i) instanceof Future) {
+                Object result = get((Future<Object>) retval.get(i));
+                if (result instanceof List) {
+                    result = Collections.unmodifiableList((List) result);
+                }
+                putCached((List<Object>) keys.get(i), result);
+                retval.set(i, result);
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Empties the cache of search results.
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Performs a call to the search server. Runs in a worker thread.
+     * @param method name of the method
+     * @param args arguments of the method
+     * @return the result of the method
+     * @throws XmlRpcFault if the search server reports an error
+     * @throws MalformedURLException if the search server URL is invalid
+     */
+    protected Object call(String method, List args)
+        throws XmlRpcFault, MalformedURLException {
+        XmlRpcClient client = clients.get();
+        if (client == null) {
+            client = new XmlRpcClient(openTimedUrl(), true);
+            clients.set(client);
+        }
+        try {
+            return client.invoke(method, args);
+        }
+        catch (XmlRpcException e) {
+            // start over with a fresh connection on the next call
+            clients.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the URL of the search server, the connections of which time out
+     * when connecting or reading for longer than the call timeout. The
+     * XmlRpcClient does blocking I/O which ignores interrupts, so this is what
+     * frees the worker thread of a call to a search server which hangs.
+     * @return the URL
+     * @throws MalformedURLException if the search server URL is invalid
+     */
+    private URL openTimedUrl() throws MalformedURLException {
+        final URL target = new URL(url);
+        final int millis = (int) Math.min(timeout, Integer.MAX_VALUE);
+        return new URL(null, url, new URLStreamHandler() {
+            protected URLConnection openConnection(URL u) throws IOException {
+                URLConnection retval = target.openConnection();
+                retval.setConnectTimeout(millis);
+                retval.setReadTimeout(millis);
+                return retval;
+            }
+        });
+    }
+
+    /**
+     * Returns the cache key of a call, which is made of the method name and
+     * the arguments, strings having their whitespace trimmed and collapsed.
+     * @param method name of the method
+     * @param args arguments of the method
+     * @return the cache key, null if the result of the call is not cached
+     */
+    private List<Object> cacheKey(String method, List args) {
+        if (cacheTtl <= 0 || method.startsWith(ADMIN_PREFIX)) {
+            return null;
+        }
+        List<Object> key = new ArrayList<Object>(args.size() + 1);
+        key.add(method);
+        for (Object arg : args) {
+            if (arg instanceof String) {
+                key.add(((String) arg).trim().replaceAll("\\s+", " "));
+            }
+            else {
+                key.add(arg);
+            }
+        }
+        return key;
+    }
+
+    private synchronized Object getCached(List<Object> key) {
+        if (key == null) {
+            return null;
+        }
+        CachedResult cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.created >= cacheTtl) {
+            cache.remove(key);
+            return null;
+        }
+        return cached.result;
+    }
+
+    private synchronized void putCached(List<Object> key, Object result) {
+        if (key != null && result != null) {
+            cache.put(key, new CachedResult(result));
+        }
+    }
+
+    private Future<Object> submit(final String method, final List args) {
+        if (log.isDebugEnabled()) {
+            log.debug("Calling search server: " + method + ", args = " + args);
+        }
+        return executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                return SearchClient.this.call(method, args);
+            }
+        });
+    }
+
+    private Object get(Future<Object> future) throws XmlRpcFault, MalformedURLException {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            future.cancel(true);
+            throw new XmlRpcException("Search server did not answer within " +
+                    timeout + " ms", e);
+        }
+        catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new XmlRpcException("Interrupted while calling the search server", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XmlRpcFault) {
+                throw (XmlRpcFault) cause;
+            }
+            if (cause instanceof MalformedURLException) {
+                throw (MalformedURLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new XmlRpcException("Unable to call the search server", cause);
+        }
+    }
+
+    /**
+     * A search result along with when it was received.
+     */
+    private static final class CachedResult {
+
+        private final Object result;
+        private final long created;
+
+        private CachedResult(Object resultIn) {
+            result = resultIn;
+            created = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.search.test;
+
+import com.redhat.rhn.manager.search.SearchClient;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcFault;
+
+/**
+ * SearchClientTest
+ * @version $Rev$
+ */
+public class SearchClientTest extends RhnBaseTestCase {
+
+    public void testCache() throws Exception {
+        CountingClient client = new CountingClient(60000);
+        List first = (List) client.invoke("index.search",
+                Arrays.asList(1L, "package", "name:kernel  AND  arch:x86_64"));
+        List second = (List) client.invoke("index.search",
+                Arrays.asList(1L, "package", " name:kernel AND arch:x86_64"));
+        assertEquals(1, client.calls);
+        assertEquals(first, second);
+
+        // another session or index is another search
+        client.invoke("index.search", Arrays.asList(2L, "package", "name:kernel"));
+        client.invoke("index.search", Arrays.asList(1L, "errata", "name:kernel"));
+        assertEquals(3, client.calls);
+
+        client.invoke("admin.updateIndex", Arrays.asList("errata"));
+        assertEquals(4, client.calls);
+        client.invoke("index.search", Arrays.asList(1L, "errata", "name:kernel"));
+        assertEquals(5, client.calls);
+    }
+
+    public void testCacheDisabled() throws Exception {
+        CountingClient client = new CountingClient(0);
+        client.invoke("index.search", Arrays.asList(1L, "package", "kernel"));
+        client.invoke("index.search", Arrays.asList(1L, "package", "kernel"));
+        assertEquals(2, client.calls);
+    }
+
+    public void testInvokeAll() throws Exception {
+        CountingClient client = new CountingClient(60000);
+        client.invoke("index.search", Arrays.asList(1L, "hwdevice", "kernel"));
+        List<List> argsList = new ArrayList<List>();
+        argsList.add(Arrays.asList(1L, "server", "kernel"));
+        argsList.add(Arrays.asList(1L, "hwdevice", "kernel"));
+        argsList.add(Arrays.asList(1L, "snapshotTag", "kernel"));
+        List<Object> results = client.invokeAll("index.search", argsList);
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(argsList.get(i).get(1), ((List) results.get(i)).get(1));
+        }
+        assertEquals(3, client.calls);
+    }
+
+    public void testFault() throws Exception {
+        CountingClient client = new CountingClient(60000);
+        try {
+            client.invoke("index.search", Arrays.asList(1L, "fault", "kernel"));
+            fail("XmlRpcFault expected");
+        }
+        catch (XmlRpcFault e) {
+            assertEquals(200, e.getErrorCode());
+        }
+    }
+
+    public void testTimeout() throws Exception {
+        SearchClient client = new SearchClient("http://localhost/RPC2", 1, 50, 10, 0) {
+            protected Object call(String method, List args) {
+                try {
+                    Thread.sleep(5000);
+                }
+                catch (InterruptedException e) {
+                    // cancelled
+                }
+                return args;
+            }
+        };
+        try {
+            client.invoke("index.search", Arrays.asList(1L, "package", "kernel"));
+            fail("XmlRpcException expected");
+        }
+        catch (XmlRpcException e) {
+            // expected
+        }
+    }
+
+    public void testHungServerFreesWorker() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        Thread acceptor = new Thread() {
+            public void run() {
+                List<Socket> accepted = new ArrayList<Socket>();
+                try {
+                    // accept the connections but never answer
+                    while (true) {
+                        accepted.add(server.accept());
+                    }
+                }
+                catch (IOException e) {
+                    // server closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            DirectClient client = new DirectClient("http://localhost:" +
+                    server.getLocalPort() + "/RPC2", 200);
+            long start = System.currentTimeMillis();
+            try {
+                client.callDirectly("index.search",
+                        Arrays.asList(1L, "package", "kernel"));
+                fail("XmlRpcException expected");
+            }
+            catch (XmlRpcException e) {
+                // expected
+            }
+            // the call itself gave up, not only the caller waiting for it
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Client exposing the call performed by the worker threads.
+     */
+    private static class DirectClient extends SearchClient {
+
+        DirectClient(String url, long timeout) {
+            super(url, 1, timeout, 10, 0);
+        }
+
+        Object callDirectly(String method, List args) throws Exception {
+            return call(method, args);
+        }
+    }
+
+    /**
+     * Client answering every search with its arguments, without calling
+     * the search server.
+     */
+    private static class CountingClient extends SearchClient {
+
+        private int calls = 0;
+
+        CountingClient(long cacheTtl) {
+            super("http://localhost/RPC2", 3, 10000, 10, cacheTtl);
+        }
+
+        protected Object call(String method, List args) throws XmlRpcFault {
+            synchronized (this) {
+                calls++;
+            }
+            if (args.contains("fault")) {
+                throw new XmlRpcFault(200, "Index files appear to be missing");
+            }
+            return new ArrayList(args);
+        }
+    }
+}
@@ -49,6 +49,11 @@ public class SessionManager extends BaseManager {
     // Timeout value 900,000 = 15 min
     public static final long TIMEOUT_VAL = 900000;
 
+    private static final WebSessionCache CACHE = new WebSessionCache(
+            ConfigDefaults.get().getSessionCacheSize(),
+            ConfigDefaults.get().getSessionCheckInterval() * 1000L,
+            ConfigDefaults.get().getSessionExtendInterval() * 1000L);
+
     protected SessionManager() {
     }
 
@@ -94,6 +99,9 @@ public class SessionManager extends BaseManager {
      * @return number of sessions removed (typically 1 or 0).
      */
     public static int removeSession(WebSession s) {
+        if (s.getId() != null) {
+            CACHE.remove(s.getId());
+        }
         return WebSessionFactory.remove(s);
     }
 
@@ -359,39 +367,66 @@ public class SessionManager extends BaseManager {
      * @return Returns the session if the key is valid.
      */
     public static WebSession lookupByKey(String key) {
-        //Make sure we didn't get null for a key
-        if (key == null || key.equals("")) {
-            throw new InvalidSessionIdException("Session key cannot be empty null.");
-        }
-
-        //Get the id
-        String[] keyParts = StringUtils.split(key, 'x');
-
-        //make sure the id is numeric and can be made into a Long
-        if (!StringUtils.isNumeric(keyParts[0])) {
-            throw new InvalidSessionIdException("Session id: " + keyParts[0] +
-                          " is not valid. Session ids must be numeric.");
-        }
+        Long sessionId = parseSessionId(key);
 
         //Load the session
-        Long sessionId = new Long(keyParts[0]);
         WebSession session = WebSessionFactory.lookupById(sessionId);
 
         //Make sure we found a session
         if (session == null) {
+            CACHE.remove(sessionId);
             throw new LookupException("Could not find session with id: " + sessionId);
         }
 
-        //Verify the key
-        if (!isPxtSessionKeyValid(key)) {
+        //Verify the key, unless it has been verified before
+        if (!CACHE.isValidated(sessionId, key) && !isPxtSessionKeyValid(key)) {
             throw new InvalidSessionIdException("Session id: " + sessionId +
                            " is not valid.");
         }
 
         //If we made it this far, the key was ok and the sesion valid.
+        if (session.getWebUserId() != null) {
+            CACHE.put(sessionId, key, session.getWebUserId());
+        }
         return session;
     }
 
+    /**
+     * Returns the id of the user logged into the session identified by key.
+     * Sessions seen in the database less than java.session_check_interval
+     * seconds ago are answered from memory, others are looked up like
+     * {@link #lookupByKey(String)} does. Sessions removed through this class
+     * are dropped from memory right away, the check interval only bounds how
+     * long a session deleted by another process stays usable.
+     * @param key The key containing the session id and hash
+     * @return the id of the user logged into the session, or null if there
+     * is none
+     */
+    public static Long lookupUserIdByKey(String key) {
+        Long userId = CACHE.getUserId(parseSessionId(key), key);
+        if (userId == null) {
+            userId = lookupByKey(key).getWebUserId();
+        }
+        return userId;
+    }
+
+    private static Long parseSessionId(String key) {
+        //Make sure we didn't get null for a key
+        if (key == null || key.equals("")) {
+            throw new InvalidSessionIdException("Session key cannot be empty null.");
+        }
+
+        //Get the id
+        String[] keyParts = StringUtils.split(key, 'x');
+
+        //make sure the id is numeric and can be made into a Long
+        if (!StringUtils.isNumeric(keyParts[0])) {
+            throw new InvalidSessionIdException("Session id: " + keyParts[0] +
+                          " is not valid. Session ids must be numeric.");
+        }
+        return new Long(keyParts[0]);
+    }
+
     /**
      * Removes all the sessions of a user. This action is useful
      * especially when we disable/deactivate a user. We donot want
@@ -399,6 +434,7 @@ public class SessionManager extends BaseManager {
      * @param user the user whose sessions are to be purged.
      */
     public static void purgeUserSessions(User user) {
+        CACHE.removeUser(user.getId());
         WebSessionFactory.purgeUserSessions(user);
     }
 
@@ -409,6 +445,36 @@ public class SessionManager extends BaseManager {
         session.setExpires(TimeUtils.currentTimeSeconds() +
                 SessionManager.lifetimeValue());
         WebSessionFactory.save(session);
+        CACHE.extended(session.getId());
+    }
+
+    /**
+     * Extends the lifetime of the session identified by key. The new
+     * expiration is written only if it has not been written during the last
+     * java.session_extend_interval seconds, so a session used by many calls
+     * in a row is updated once per interval instead of once per call.
+     * @param key The key containing the session id and hash
+     */
+    public static void extendSessionLifetime(String key) {
+        Long sessionId = parseSessionId(key);
+        if (!CACHE.isExtensionDue(sessionId)) {
+            return;
+        }
+        long expires = TimeUtils.currentTimeSeconds() + SessionManager.lifetimeValue();
+        if (WebSessionFactory.updateExpires(sessionId, expires) > 0) {
+            CACHE.extended(sessionId);
+        }
+        else {
+            CACHE.remove(sessionId);
+        }
+    }
+
+    /**
+     * Forgets every session remembered by the session cache, so the next use
+     * of each session goes to the database.
+     */
+    public static void clearSessionCache() {
+        CACHE.clear();
     }
 }
 
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of recently used web sessions, keyed by session id.
+ *
+ * For every session the cache remembers the session key that has already been
+ * validated, the id of the logged in user, when the session row was last seen
+ * in the database and when its expiration was last written. A session seen
+ * less than one check interval ago is trusted without going to the database.
+ * Its expiration is written back at most once per refresh interval, which is
+ * usually much longer, instead of on every call.
+ *
+ * The least recently used sessions are dropped once the cache is full.
+ *
+ * @version $Rev$
+ */
+public class WebSessionCache {
+
+    private final long checkInterval;
+    private final long refreshInterval;
+    private final Map<Long, Entry> entries;
+
+    /**
+     * Constructor
+     * @param maxSize maximum number of sessions to keep
+     * @param checkIntervalIn time in ms for which a session is trusted without
+     * checking that it still exists
+     * @param refreshIntervalIn time in ms for which the expiration of a session
+     * is not written again
+     */
+    public WebSessionCache(final int maxSize, long checkIntervalIn,
+            long refreshIntervalIn) {
+        checkInterval = checkIntervalIn;
+        refreshInterval = refreshIntervalIn;
+        entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Remembers that the session row was just read from the database and that
+     * the given key is valid for it.
+     * @param sessionId the session id
+     * @param key the validated session key
+     * @param userId id of the user logged into the session
+     */
+    public synchronized void put(Long sessionId, String key, Long userId) {
+        Entry entry = entries.get(sessionId);
+        if (entry == null || !entry.key.equals(key)) {
+            entry = new Entry(key);
+            entries.put(sessionId, entry);
+        }
+        entry.userId = userId;
+        entry.verified = System.currentTimeMillis();
+    }
+
+    /**
+     * @param sessionId the session id
+     * @param key the session key
+     * @return true if the key has already been validated for the session
+     */
+    public synchronized boolean isValidated(Long sessionId, String key) {
+        Entry entry = entries.get(sessionId);
+        return entry != null && entry.key.equals(key);
+    }
+
+    /**
+     * Returns the id of the user logged into the session if the session has
+     * been seen in the database less than one check interval ago.
+     * @param sessionId the session id
+     * @param key the session key
+     * @return the user id, or null if the session has to be looked up
+     */
+    public synchronized Long getUserId(Long sessionId, String key) {
+        Entry entry = entries.get(sessionId);
+        if (entry == null || !entry.key.equals(key) ||
+                System.currentTimeMillis() - entry.verified >= checkInterval) {
+            return null;
+        }
+        return entry.userId;
+    }
+
+    /**
+     * @param sessionId the session id
+     * @return true if the expiration of the session has not been written
+     * during the last refresh interval
+     */
+    public synchronized boolean isExtensionDue(Long sessionId) {
+        Entry entry = entries.get(sessionId);
+        return entry == null ||
+            System.currentTimeMillis() - entry.extended >= refreshInterval;
+    }
+
+    /**
+     * Remembers that the expiration of the session was just written, which
+     * also proves that the session row still exists.
+     * @param sessionId the session id
+     */
+    public synchronized void extended(Long sessionId) {
+        Entry entry = entries.get(sessionId);
+        if (entry != null) {
+            entry.extended = System.currentTimeMillis();
+            entry.verified = entry.extended;
+        }
+    }
+
+    /**
+     * Forgets the given session.
+     * @param sessionId the session id
+     */
+    public synchronized void remove(Long sessionId) {
+        entries.remove(sessionId);
+    }
+
+    /**
+     * Forgets all the sessions of the given user.
+     * @param userId the user id
+     */
+    public synchronized void removeUser(Long userId) {
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();) {
+            if (userId.equals(i.next().userId)) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets all sessions.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of sessions in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * What is known about a single session.
+     */
+    private static class Entry {
+        private final String key;
+        private Long userId;
+        private long verified;
+        private long extended;
+
+        Entry(String keyIn) {
+            key = keyIn;
+        }
+    }
+}
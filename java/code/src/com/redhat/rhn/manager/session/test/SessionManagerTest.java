@@ -221,4 +221,60 @@ public class SessionManagerTest extends RhnBaseTestCase {
         }
 
     }
+
+    public void testLookupUserIdByKey() throws Exception {
+        User u = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        WebSession s = SessionManager.makeSession(u.getId(),
+                SessionManager.lifetimeValue());
+        String key = s.getKey();
+
+        assertEquals(u.getId(), SessionManager.lookupUserIdByKey(key));
+        // a second call is answered from the cache
+        assertEquals(u.getId(), SessionManager.lookupUserIdByKey(key));
+
+        // a tampered key is still rejected
+        try {
+            SessionManager.lookupUserIdByKey(s.getId() + "xfoobaredkeyhash");
+            fail("tampered session key accepted");
+        }
+        catch (InvalidSessionIdException e) {
+            // expected
+        }
+
+        // purging the sessions of the user drops them from the cache as well
+        flushAndEvict(s);
+        SessionManager.purgeUserSessions(u);
+        try {
+            SessionManager.lookupUserIdByKey(key);
+            fail("purged session found");
+        }
+        catch (LookupException e) {
+            // expected
+        }
+    }
+
+    public void testExtendSessionLifetimeCoalesced() throws Exception {
+        User u = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        WebSession s = SessionManager.makeSession(u.getId(), 10);
+        String key = s.getKey();
+        Long id = s.getId();
+        flushAndEvict(s);
+        SessionManager.lookupUserIdByKey(key);
+
+        // the first extension is written
+        SessionManager.extendSessionLifetime(key);
+        clearSession();
+        s = WebSessionFactory.lookupById(id);
+        assertTrue(s.getExpires() >= TimeUtils.currentTimeSeconds() +
+                SessionManager.lifetimeValue() - 2);
+
+        // the next ones are not, until the extend interval has passed
+        WebSessionFactory.updateExpires(id, 42);
+        SessionManager.extendSessionLifetime(key);
+        clearSession();
+        s = WebSessionFactory.lookupById(id);
+        assertEquals(42, s.getExpires());
+    }
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session.test;
+
+import com.redhat.rhn.manager.session.WebSessionCache;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+/**
+ * WebSessionCacheTest
+ * @version $Rev$
+ */
+public class WebSessionCacheTest extends RhnBaseTestCase {
+
+    public void testCheckIntervalShorterThanRefresh() throws Exception {
+        WebSessionCache cache = new WebSessionCache(10, 100, 60000);
+        Long id = new Long(1);
+        cache.put(id, "1xkey", new Long(42));
+        cache.extended(id);
+        assertEquals(new Long(42), cache.getUserId(id, "1xkey"));
+        assertNull(cache.getUserId(id, "1xother"));
+
+        // the session has to be checked again long before its expiration is
+        // due to be written
+        Thread.sleep(200);
+        assertNull(cache.getUserId(id, "1xkey"));
+        assertTrue(cache.isValidated(id, "1xkey"));
+        assertFalse(cache.isExtensionDue(id));
+
+        cache.put(id, "1xkey", new Long(42));
+        assertEquals(new Long(42), cache.getUserId(id, "1xkey"));
+    }
+
+    public void testRemove() {
+        WebSessionCache cache = new WebSessionCache(2, 60000, 60000);
+        cache.put(new Long(1), "1xkey", new Long(42));
+        cache.put(new Long(2), "2xkey", new Long(42));
+        cache.put(new Long(3), "3xkey", new Long(43));
+        assertEquals(2, cache.size());
+        assertFalse(cache.isValidated(new Long(1), "1xkey"));
+
+        cache.removeUser(new Long(42));
+        assertEquals(1, cache.size());
+        cache.remove(new Long(3));
+        assertEquals(0, cache.size());
+        assertTrue(cache.isExtensionDue(new Long(3)));
+    }
+}
@@ -20,6 +20,7 @@ import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -493,6 +494,22 @@ public class SystemManager extends BaseManager {
         return m.execute(params);
     }
 
+    /**
+     * Returns all systems visible to user as a stream that is only read
+     * when it is consumed, for callers that do not need the whole list at
+     * once. This is meant to be fast and only gets the id, name, and last
+     * checkin
+     * @param user Currently logged in user.
+     * @return stream of SystemOverviews.
+     */
+    public static DataStream<SystemOverview> systemListShortStream(User user) {
+        SelectMode m = ModeFactory.getMode("System_queries", "xmlrpc_visible_to_user",
+                SystemOverview.class);
+        Map<String, Long> params = new HashMap<String, Long>();
+        params.put("user_id", user.getId());
+        return new DataStream<SystemOverview>(m, params);
+    }
+
     /**
      * Returns list of all systems visible to user.
      *    This is meant to be fast and only gets the id, name, and last checkin
@@ -2090,6 +2107,54 @@ public class SystemManager extends BaseManager {
         }
     }
 
+    /**
+     * Checks if the user has permissions to see all of the given Servers,
+     * using a single query per batch of ids instead of one per server.
+     * @param user User being checked
+     * @param sids IDs of the Servers being checked
+     * @throws LookupException if the user does not have permissions to see
+     * any of the Servers
+     */
+    public static void ensureAvailableToUser(User user, Collection<Long> sids) {
+        SelectMode m = ModeFactory.getMode("System_queries", "ids_available_to_user");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("uid", user.getId());
+        Set<Long> available = selectIds(m, params, sids);
+        for (Long sid : sids) {
+            if (!available.contains(sid)) {
+                ensureAvailableToUser(user, sid);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the given servers that have the given entitlement,
+     * using a single query per batch of ids instead of one per server.
+     * @param sids IDs of the servers to check
+     * @param ent Entitlement to look for
+     * @return ids of the servers having the entitlement
+     */
+    public static Set<Long> idsWithEntitlement(Collection<Long> sids, Entitlement ent) {
+        SelectMode m = ModeFactory.getMode("System_queries", "ids_with_entitlement");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("entitlement", ent.getLabel());
+        return selectIds(m, params, sids);
+    }
+
+    private static Set<Long> selectIds(SelectMode m, Map<String, Object> params,
+            Collection<Long> sids) {
+        Set<Long> ids = new HashSet<Long>();
+        if (sids.isEmpty()) {
+            return ids;
+        }
+        DataResult<Map<String, Object>> dr = m.execute(params,
+                new ArrayList<Long>(sids));
+        for (Map<String, Object> row : dr) {
+            ids.add((Long) row.get("id"));
+        }
+        return ids;
+    }
+
     /**
      * Return systems in the current set without a base channel.
      * @param user User requesting the query.
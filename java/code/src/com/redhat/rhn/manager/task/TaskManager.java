@@ -16,6 +16,7 @@ package com.redhat.rhn.manager.task;
 
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.RowHandler;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
@@ -24,7 +25,10 @@ import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +56,55 @@ public class TaskManager {
         return m.execute(params);
     }
 
+    /**
+     * Streams the elaborated package list of a channel to the handler,
+     * without holding the whole list in memory.
+     * @param channel channel info
+     * @param handler called for each package of the channel
+     * @return the number of packages handled
+     */
+    public static int getChannelPackageDtos(Channel channel,
+            RowHandler<PackageDto> handler) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES);
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("channel_id", channel.getId());
+        return m.execute(params, Collections.EMPTY_MAP, handler);
+    }
+
+    /**
+     * Get the ids of the packages of a channel along with the ids of their
+     * checksums, which change whenever a package gets a new checksum
+     * @param channel channel info
+     * @return the checksum ids by package id, in ascending package id order
+     */
+    public static Map<Long, Long> getChannelPackageChecksumIds(Channel channel) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGE_IDS);
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("channel_id", channel.getId());
+        DataResult<Map<String, Object>> dr = m.execute(params);
+        Map<Long, Long> ids = new LinkedHashMap<Long, Long>(dr.size());
+        for (Map<String, Object> row : dr) {
+            ids.put((Long) row.get("id"), (Long) row.get("checksum_id"));
+        }
+        return ids;
+    }
+
+    /**
+     * Get the elaborated package details of the given packages
+     * @param packageIds ids of the packages
+     * @return the packages, in ascending id order
+     */
+    public static List<PackageDto> getPackageDtos(List<Long> packageIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_PACKAGES);
+        DataResult<PackageDto> dr = m.execute(new HashMap<String, Object>(),
+                packageIds);
+        dr.elaborate();
+        return dr;
+    }
+
     /**
      * Get capabilities of a certain type for a package
      * @param packageId the package's id
@@ -66,6 +119,21 @@ public class TaskManager {
         return m.execute(params);
     }
 
+    /**
+     * Get capabilities of a certain type for a list of packages, using a
+     * single query per batch of packages. The returned capabilities have
+     * their package id set.
+     * @param packageIds ids of the packages
+     * @param query the per package query, its bulk variant is executed
+     * @return the capabilities of all the packages
+     */
+    public static Collection<PackageCapabilityDto> getPackageCapabilityDtos(
+            List<Long> packageIds, String query) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                query + TaskConstants.TASK_QUERY_REPOMD_GENERATOR_BULK_SUFFIX);
+        return m.execute(new HashMap<String, Object>(), packageIds);
+    }
+
     /**
      * Get changelog entries for a particular package
      * @param packageId the package's id
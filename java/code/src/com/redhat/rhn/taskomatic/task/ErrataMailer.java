@@ -23,6 +23,7 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.messaging.JavaMailException;
 import com.redhat.rhn.common.messaging.Mail;
+import com.redhat.rhn.common.messaging.ParallelMailSender;
 import com.redhat.rhn.common.messaging.SmtpMail;
 import com.redhat.rhn.domain.errata.Errata;
 import com.redhat.rhn.domain.errata.impl.PublishedErrata;
@@ -35,6 +36,7 @@ import org.quartz.JobExecutionException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -64,33 +66,52 @@ public class ErrataMailer extends RhnJavaJob {
             if (log.isDebugEnabled()) {
                 log.debug("=== Queued up " + results.size() + " errata");
             }
-            for (Iterator iter = results.iterator(); iter.hasNext();) {
-                Map row = (Map) iter.next();
-                Long errataId = (Long) row.get("errata_id");
-                Long orgId = (Long) row.get("org_id");
-                Long channelId = (Long) row.get("channel_id");
-                markErrataDone(errataId, orgId, channelId);
-                if (OrgFactory.lookupById(orgId).getOrgConfig().isErrataEmailsEnabled()) {
+            ParallelMailSender sender = new ParallelMailSender(
+                    ConfigDefaults.get().getMailSenderThreads());
+            try {
+                processErrata(results, sender);
+            }
+            finally {
+                try {
+                    int failed = sender.finish();
+                    log.info("Sent " + sender.getSentCount() + " errata notification(s), " +
+                            failed + " failed.");
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while sending errata notifications", e);
+                }
+            }
+        }
+    }
+
+    private void processErrata(List results, ParallelMailSender sender) {
+        for (Iterator iter = results.iterator(); iter.hasNext();) {
+            Map row = (Map) iter.next();
+            Long errataId = (Long) row.get("errata_id");
+            Long orgId = (Long) row.get("org_id");
+            Long channelId = (Long) row.get("channel_id");
+            markErrataDone(errataId, orgId, channelId);
+            if (OrgFactory.lookupById(orgId).getOrgConfig().isErrataEmailsEnabled()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Processing errata " + errataId +
+                            " for org " + orgId);
+                }
+                try {
+                    sendEmails(errataId, orgId, channelId, sender);
                     if (log.isDebugEnabled()) {
-                        log.debug("Processing errata " + errataId +
+                        log.debug("Finished errata " + errataId +
                                 " for org " + orgId);
                     }
-                    try {
-                        sendEmails(errataId, orgId, channelId);
-                        if (log.isDebugEnabled()) {
-                            log.debug("Finished errata " + errataId +
-                                    " for org " + orgId);
-                        }
-                    }
-                    catch (JavaMailException e) {
-                        log.error("Error sending mail", e);
-                    }
                 }
-                else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Errata notifications disabled for whole org " + orgId +
-                                " => skipping " + errataId);
-                    }
+                catch (JavaMailException e) {
+                    log.error("Error sending mail", e);
+                }
+            }
+            else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Errata notifications disabled for whole org " + orgId +
+                            " => skipping " + errataId);
                 }
             }
         }
@@ -119,7 +140,8 @@ public class ErrataMailer extends RhnJavaJob {
         }
     }
 
-    private void sendEmails(Long errataId, Long orgId, Long channelId) {
+    private void sendEmails(Long errataId, Long orgId, Long channelId,
+            ParallelMailSender sender) {
         Errata errata = (Errata) HibernateFactory.getSession().load(PublishedErrata.class,
                 new Long(errataId.longValue()));
         List orgServers = getOrgRelevantServers(errataId, orgId, channelId);
@@ -136,8 +158,18 @@ public class ErrataMailer extends RhnJavaJob {
         log.info("Found " + userMap.keySet().size() + " user(s) to notify about erratum " +
                 errata.getId() + " in channel " + channelId + " for org " + orgId + ".");
 
+        Map<Long, Map> userInfos = getUserInfo(userMap.keySet());
+        StringBuilder subject = new StringBuilder();
+        subject.append(Config.get().getString("web.product_name") + " Errata Alert: ");
+        subject.append(errata.getAdvisory()).append(" - ");
+        subject.append(errata.getSynopsis());
+
         for (Long userId : userMap.keySet()) {
-            Map userInfo = getUserInfo(userId);
+            Map userInfo = userInfos.get(userId);
+            if (userInfo == null) {
+                log.debug("User " + userId + " not found ... skipping.");
+                continue;
+            }
             String email = (String) userInfo.get("email");
             String login = (String) userInfo.get("login");
             List servers = userMap.get(userId);
@@ -152,12 +184,8 @@ public class ErrataMailer extends RhnJavaJob {
             mail.setHeader("Errors-To", "rhn-bounce" +
                     login + "-" + orgId.toString() + "@rhn.redhat.com");
             mail.setBody(emailBody);
-            StringBuilder subject = new StringBuilder();
-            subject.append(Config.get().getString("web.product_name") + " Errata Alert: ");
-            subject.append(errata.getAdvisory()).append(" - ");
-            subject.append(errata.getSynopsis());
             mail.setSubject(subject.toString());
-            TaskHelper.sendMail(mail, log);
+            sender.send(mail);
         }
     }
 
@@ -175,12 +203,16 @@ public class ErrataMailer extends RhnJavaJob {
         return map;
     }
 
-    private Map getUserInfo(Long userId) {
+    private Map<Long, Map> getUserInfo(Collection<Long> userIds) {
         SelectMode mode = ModeFactory.getMode(TaskConstants.MODE_NAME,
                 TaskConstants.TASK_QUERY_ERRATAMAILER_GET_USERINFO);
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put("user_id", userId);
-        return (Map) mode.execute(params).get(0);
+        List<Map> rows = mode.execute(new HashMap<String, Object>(),
+                new ArrayList<Long>(userIds));
+        Map<Long, Map> retval = new HashMap<Long, Map>();
+        for (Map row : rows) {
+            retval.put((Long) row.get("id"), row);
+        }
+        return retval;
     }
 
     protected List getOrgRelevantServers(Long errataId, Long orgId, Long channelId) {
@@ -127,6 +127,12 @@ public class TaskConstants {
     public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES =
         "repomdgenerator_channel_packages";
 
+    public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGE_IDS =
+        "repomdgenerator_channel_package_ids";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_PACKAGES =
+        "repomdgenerator_packages";
+
     public static final String TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES =
         "repomdgenerator_capability_files";
 
@@ -160,6 +166,9 @@ public class TaskConstants {
     public static final String TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_PREDEPENDS =
         "repomdgenerator_capability_predepends";
 
+    /** suffix of the capability queries taking a list of packages */
+    public static final String TASK_QUERY_REPOMD_GENERATOR_BULK_SUFFIX = "_bulk";
+
     public static final String TASK_QUERY_REPOMD_GENERATOR_PACKAGE_CHANGELOG =
         "repomdgenerator_package_changelog";
 
@@ -102,6 +102,11 @@ public class ChannelRepodataWorker implements QueueWorker {
                         if (queueContainsBypass("bypass_filters") ||
                                 channelToProcess.isChannelRepodataRequired()) {
                             repoWriter.writeRepomdFiles(channelToProcess);
+                            if (repoWriter.getTimings() != null) {
+                                logger.info("Repodata stage timings for " +
+                                        channelLabelToProcess + ": " +
+                                        repoWriter.getTimings());
+                            }
                         }
                     }
                     else {
@@ -20,7 +20,6 @@ import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
 import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.manager.rhnpackage.PackageManager;
-import com.redhat.rhn.manager.task.TaskManager;
 import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import org.apache.commons.lang.StringUtils;
@@ -82,12 +81,21 @@ public class FilelistsXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Returns the filelists.xml element of a package, generating it and storing it in
+     * the database if it isn't cached yet
+     * @param pkgDto pkg info
+     * @return the package element
+     */
+    public String getPackageXml(PackageDto pkgDto) {
         try {
             String xml = pkgDto.getFilelistXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -102,7 +110,7 @@ public class FilelistsXmlWriter extends RepomdWriter {
 
             String pkg =  st.toString();
             PackageManager.updateRepoFileList(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            return pkg;
 
 
         }
@@ -120,10 +128,8 @@ public class FilelistsXmlWriter extends RepomdWriter {
     private void addPackageFiles(PackageDto pkgDto,
             SimpleContentHandler localHandler) throws SAXException {
         Long pkgId = pkgDto.getId();
-        Collection<PackageCapabilityDto> files = TaskManager
-                .getPackageCapabilityDtos(
-                        pkgId,
-                        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES);
+        Collection<PackageCapabilityDto> files = getCapabilities(pkgId,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES);
         for (PackageCapabilityDto file : files) {
             localHandler.addElementWithCharacters("file",
                     sanitize(pkgId, file.getName()));
@@ -80,13 +80,22 @@ public class OtherXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Returns the other.xml element of a package, generating it and storing it in
+     * the database if it isn't cached yet
+     * @param pkgDto pkg info
+     * @return the package element
+     */
+    public String getPackageXml(PackageDto pkgDto) {
 
         try {
             String xml = pkgDto.getOtherXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -101,14 +110,14 @@ public class OtherXmlWriter extends RepomdWriter {
 
             String pkg =  st.toString();
             PackageManager.updateRepoOther(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            return pkg;
 
         }
         catch (SAXException e) {
             throw new RepomdRuntimeException(e);
         }
         catch (SQLException e) {
-            SqlExceptionTranslator.sqlException(e);
+            throw SqlExceptionTranslator.sqlException(e);
         }
     }
 
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.common.db.datasource.RowHandler;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.manager.task.TaskManager;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches and elaborates the packages of a channel on a separate thread,
+ * with its own Hibernate session, so that the next batch is loaded while
+ * the current one is rendered.
+ * @version $Rev$
+ */
+public class PackageBatchFetcher implements Runnable {
+
+    private static final int QUEUE_SIZE = 2;
+    private static final List<PackageDto> END = new ArrayList<PackageDto>(0);
+
+    private static Logger log = Logger.getLogger(PackageBatchFetcher.class);
+
+    private final Channel channel;
+    private final int batchSize;
+    private final RepomdTimings timings;
+    private final BlockingQueue<List<PackageDto>> batches =
+            new ArrayBlockingQueue<List<PackageDto>>(QUEUE_SIZE);
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private Thread thread;
+
+    /**
+     * @param channelIn channel to fetch the packages of
+     * @param batchSizeIn number of packages per batch
+     * @param timingsIn timings to add the fetch and wait times to
+     */
+    public PackageBatchFetcher(Channel channelIn, int batchSizeIn,
+            RepomdTimings timingsIn) {
+        channel = channelIn;
+        batchSize = batchSizeIn;
+        timings = timingsIn;
+    }
+
+    /**
+     * Starts fetching on a new thread.
+     */
+    public void start() {
+        thread = new Thread(this, "repomd fetch " + channel.getLabel());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops fetching, used when the consumer of the batches failed.
+     */
+    public void cancel() {
+        cancelled = true;
+        batches.clear();
+    }
+
+    /**
+     * Returns the next batch of elaborated packages, waiting for it if
+     * needed.
+     * @return the next batch, null when all packages have been returned
+     */
+    public List<PackageDto> nextBatch() {
+        long start = System.currentTimeMillis();
+        List<PackageDto> batch;
+        try {
+            batch = batches.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepomdRuntimeException(e);
+        }
+        timings.add("wait", System.currentTimeMillis() - start);
+        if (batch == END) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new RepomdRuntimeException(failure);
+            }
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run() {
+        long start = System.currentTimeMillis();
+        final long[] blocked = {0};
+        try {
+            final List<List<PackageDto>> current = new ArrayList<List<PackageDto>>(1);
+            current.add(new ArrayList<PackageDto>(batchSize));
+            TaskManager.getChannelPackageDtos(channel, new RowHandler<PackageDto>() {
+                public void handleRow(PackageDto row) {
+                    if (cancelled) {
+                        throw new RepomdRuntimeException("Fetching cancelled");
+                    }
+                    current.get(0).add(row);
+                    if (current.get(0).size() == batchSize) {
+                        blocked[0] += put(current.get(0));
+                        current.set(0, new ArrayList<PackageDto>(batchSize));
+                    }
+                }
+            });
+            if (!current.get(0).isEmpty()) {
+                blocked[0] += put(current.get(0));
+            }
+            HibernateFactory.commitTransaction();
+        }
+        catch (Throwable t) {
+            // errors too, the consumer must not take a truncated channel for
+            // a complete one
+            if (!cancelled) {
+                log.error("Fetching packages of " + channel.getLabel() + " failed", t);
+                failure = t;
+            }
+        }
+        finally {
+            try {
+                timings.add("fetch", System.currentTimeMillis() - start - blocked[0]);
+                HibernateFactory.closeSession();
+            }
+            finally {
+                putEnd();
+            }
+        }
+    }
+
+    /**
+     * Queues a batch, returns the time spent waiting for room in the queue.
+     */
+    private long put(List<PackageDto> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            while (!cancelled && !batches.offer(batch, 1, TimeUnit.SECONDS)) {
+                // wait for the consumer
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!cancelled) {
+                log.error("Fetching packages of " + channel.getLabel() +
+                        " interrupted");
+                failure = new RepomdRuntimeException(e);
+                cancelled = true;
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Queues the end of the batches, whatever happened before, so that the
+     * consumer is always released. Once fetching is cancelled the batches
+     * left in the queue are dropped to make room for it.
+     */
+    private void putEnd() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                if (cancelled) {
+                    batches.clear();
+                }
+                try {
+                    if (batches.offer(END, 1, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
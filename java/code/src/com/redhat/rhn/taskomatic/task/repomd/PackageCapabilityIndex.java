@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.manager.task.TaskManager;
+import com.redhat.rhn.taskomatic.task.TaskConstants;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the capabilities and files of a batch of packages,
+ * loaded with one query per capability type for the whole batch instead of
+ * one query per type and package.
+ *
+ * Only the packages whose primary or filelists XML has to be generated are
+ * loaded, the capabilities of any other package are queried on demand.
+ * @version $Rev$
+ */
+public class PackageCapabilityIndex {
+
+    private static final String[] DEPENDENCY_QUERIES = {
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_PROVIDES,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_REQUIRES,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_CONFLICTS,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_OBSOLETES,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_RECOMMENDS,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_SUGGESTS,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_SUPPLEMENTS,
+        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_ENHANCES
+    };
+
+    private final Map<String, Map<Long, List<PackageCapabilityDto>>> index =
+            new HashMap<String, Map<Long, List<PackageCapabilityDto>>>();
+
+    /**
+     * Loads the capabilities needed to generate the primary and filelists
+     * XML of a batch of packages.
+     * @param batch the packages
+     * @return the index of their capabilities
+     */
+    public static PackageCapabilityIndex load(List<PackageDto> batch) {
+        boolean useCache = ConfigDefaults.get().useDBRepodata();
+        Set<Long> primaryIds = new LinkedHashSet<Long>();
+        Set<Long> fileIds = new LinkedHashSet<Long>();
+        for (PackageDto pkgDto : batch) {
+            if (!useCache || StringUtils.isEmpty(pkgDto.getPrimaryXml())) {
+                primaryIds.add(pkgDto.getId());
+                fileIds.add(pkgDto.getId());
+            }
+            if (!useCache || StringUtils.isEmpty(pkgDto.getFilelistXml())) {
+                fileIds.add(pkgDto.getId());
+            }
+        }
+
+        PackageCapabilityIndex ret = new PackageCapabilityIndex();
+        if (!primaryIds.isEmpty()) {
+            for (String query : DEPENDENCY_QUERIES) {
+                ret.load(query, primaryIds);
+            }
+        }
+        if (!fileIds.isEmpty()) {
+            ret.load(TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES,
+                    fileIds);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the capabilities of a package, querying them if they are not
+     * part of the index.
+     * @param packageId the package id
+     * @param query the per package capability query
+     * @return the capabilities of the package
+     */
+    public Collection<PackageCapabilityDto> getCapabilities(Long packageId,
+            String query) {
+        Map<Long, List<PackageCapabilityDto>> byPackage = index.get(query);
+        if (byPackage != null) {
+            List<PackageCapabilityDto> ret = byPackage.get(packageId);
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return TaskManager.getPackageCapabilityDtos(packageId, query);
+    }
+
+    private void load(String query, Set<Long> packageIds) {
+        Map<Long, List<PackageCapabilityDto>> byPackage =
+                new HashMap<Long, List<PackageCapabilityDto>>();
+        for (Long id : packageIds) {
+            byPackage.put(id, new ArrayList<PackageCapabilityDto>());
+        }
+        for (PackageCapabilityDto capability : TaskManager.getPackageCapabilityDtos(
+                new ArrayList<Long>(packageIds), query)) {
+            byPackage.get(capability.getPackageId()).add(capability);
+        }
+        index.put(query, byPackage);
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputStream handing the written data in chunks to a dedicated thread,
+ * which writes it to the target stream. Used to move compression and
+ * checksumming of the repository metadata files off the rendering thread.
+ *
+ * Data is passed on when a chunk is full or on {@link #flush()}, the target
+ * stream itself is only flushed when closed.
+ * @version $Rev$
+ */
+public class PipelinedOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int QUEUE_SIZE = 16;
+    private static final byte[] END = new byte[0];
+
+    private final OutputStream target;
+    private final BlockingQueue<byte[]> chunks =
+            new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+    private final Thread writer;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE);
+    private volatile IOException failure;
+    private volatile long busyMillis;
+    private boolean closed;
+
+    /**
+     * Starts the writer thread for the target stream.
+     * @param targetIn stream to write to
+     * @param name name of the writer thread
+     */
+    public PipelinedOutputStream(OutputStream targetIn, String name) {
+        target = targetIn;
+        writer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+        buffer.write(b);
+        if (buffer.size() >= CHUNK_SIZE) {
+            handOver();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        buffer.write(b, off, len);
+        if (buffer.size() >= CHUNK_SIZE) {
+            handOver();
+        }
+    }
+
+    /**
+     * Passes the buffered data on to the writer thread.
+     * @throws IOException if the writer thread failed
+     */
+    @Override
+    public void flush() throws IOException {
+        handOver();
+    }
+
+    /**
+     * Passes the remaining data on, waits for the writer thread to write it
+     * and closes the target stream.
+     * @throws IOException if the writer thread failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        handOver();
+        put(END);
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing " +
+                    writer.getName());
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops the writer thread without writing the pending data, used when
+     * the generation failed.
+     */
+    public void abort() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * Returns the time the writer thread spent writing to the target.
+     * @return milliseconds spent writing
+     */
+    public long getBusyMillis() {
+        return busyMillis;
+    }
+
+    private void handOver() throws IOException {
+        checkFailure();
+        if (buffer.size() == 0) {
+            return;
+        }
+        put(buffer.toByteArray());
+        buffer.reset();
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        try {
+            while (!chunks.offer(chunk, 1, TimeUnit.SECONDS)) {
+                checkFailure();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to " +
+                    writer.getName());
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                byte[] chunk = chunks.take();
+                if (chunk == END) {
+                    break;
+                }
+                long start = System.currentTimeMillis();
+                target.write(chunk);
+                busyMillis += System.currentTimeMillis() - start;
+            }
+            long start = System.currentTimeMillis();
+            target.close();
+            busyMillis += System.currentTimeMillis() - start;
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        catch (InterruptedException e) {
+            failure = new InterruptedIOException(writer.getName() + " interrupted");
+        }
+    }
+}
@@ -20,7 +20,6 @@ import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
 import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.manager.rhnpackage.PackageManager;
-import com.redhat.rhn.manager.task.TaskManager;
 import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import org.apache.commons.lang.StringUtils;
@@ -85,13 +84,22 @@ public class PrimaryXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Returns the primary.xml element of a package, generating it and storing it in
+     * the database if it isn't cached yet
+     * @param pkgDto pkg info
+     * @return the package element
+     */
+    public String getPackageXml(PackageDto pkgDto) {
         try {
             String xml = pkgDto.getPrimaryXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
 
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -112,7 +120,7 @@ public class PrimaryXmlWriter extends RepomdWriter {
 
             String pkg =  st.toString();
             PackageManager.updateRepoPrimary(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            return pkg;
 
         }
         catch (SAXException e) {
@@ -261,8 +269,8 @@ public class PrimaryXmlWriter extends RepomdWriter {
      */
     private void addPackageDepData(String query, Long pkgId,
             String dep, SimpleContentHandler localHandler) throws SAXException {
-        Collection<PackageCapabilityDto> capabilities = TaskManager
-                .getPackageCapabilityDtos(pkgId, query);
+        Collection<PackageCapabilityDto> capabilities = getCapabilities(pkgId,
+                query);
         localHandler.startElement("rpm:" + dep);
         for (PackageCapabilityDto capability : capabilities) {
             SimpleAttributesImpl attr = new SimpleAttributesImpl();
@@ -344,10 +352,8 @@ public class PrimaryXmlWriter extends RepomdWriter {
     private void addEssentialPackageFiles(long pkgId,
             SimpleContentHandler hndlr) throws SAXException {
         String regex = ".*bin/.*|^/etc/.*|^/usr/lib.sendmail$";
-        Collection<PackageCapabilityDto> files = TaskManager
-                .getPackageCapabilityDtos(
-                        pkgId,
-                        TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES);
+        Collection<PackageCapabilityDto> files = getCapabilities(pkgId,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES);
         for (PackageCapabilityDto file : files) {
             String path = sanitize(pkgId, file.getName());
             if (path.matches(regex)) {
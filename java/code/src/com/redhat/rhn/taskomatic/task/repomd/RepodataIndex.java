@@ -0,0 +1,457 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk index of the package elements of a channel's primary, filelists
+ * and other XML, used to regenerate the repository metadata of a channel
+ * from the previous run plus the packages that were added or removed since.
+ *
+ * The package elements are stored gzipped, in ascending package id order, in
+ * one body file per metadata file. The index file lists the checksum id of
+ * each package, which tells whether its elements are still current, and the
+ * offset and length of its elements in the uncompressed body files, which are
+ * only ever read sequentially.
+ * @version $Rev$
+ */
+public class RepodataIndex {
+
+    /** index of the primary.xml elements */
+    public static final int PRIMARY = 0;
+    /** index of the filelists.xml elements */
+    public static final int FILELISTS = 1;
+    /** index of the other.xml elements */
+    public static final int OTHER = 2;
+
+    private static final String INDEX_FILE = "packages.idx";
+    private static final String[] BODY_FILES = {"primary.xml.body.gz",
+        "filelists.xml.body.gz", "other.xml.body.gz"};
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String NEW_SUFFIX = ".new";
+    private static final String VERSION = "3";
+    private static final int BUFFER_SIZE = 65536;
+    private static final String ENCODING = "UTF-8";
+
+    private static Logger log = Logger.getLogger(RepodataIndex.class);
+
+    private final String prefix;
+    private final String checksumType;
+    private final List<Entry> entries;
+
+    private RepodataIndex(String prefixIn, String checksumTypeIn,
+            List<Entry> entriesIn) {
+        prefix = prefixIn;
+        checksumType = checksumTypeIn;
+        entries = entriesIn;
+    }
+
+    /**
+     * Loads the index of a channel's repository metadata directory.
+     * @param prefix the repository metadata directory, with trailing separator
+     * @return the index, null if there is none or it cannot be read
+     */
+    public static RepodataIndex load(String prefix) {
+        File indexFile = new File(prefix + INDEX_FILE);
+        if (!indexFile.exists()) {
+            return null;
+        }
+        for (String body : BODY_FILES) {
+            if (!new File(prefix + body).exists()) {
+                return null;
+            }
+        }
+        try {
+            BufferedReader in = new BufferedReader(new FileReader(indexFile));
+            try {
+                String[] header = in.readLine().split(" ");
+                if (header.length != 2 || !VERSION.equals(header[0])) {
+                    log.info("Ignoring repodata index of unknown version " +
+                            indexFile);
+                    return null;
+                }
+                List<Entry> entries = new ArrayList<Entry>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    entries.add(Entry.parse(line));
+                }
+                return new RepodataIndex(prefix, header[1], entries);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Unable to read repodata index " + indexFile, e);
+        }
+        catch (RuntimeException e) {
+            log.warn("Unable to parse repodata index " + indexFile, e);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the index of a channel's repository metadata directory.
+     * @param prefix the repository metadata directory, with trailing separator
+     */
+    public static void delete(String prefix) {
+        new File(prefix + INDEX_FILE).delete();
+        for (String body : BODY_FILES) {
+            new File(prefix + body).delete();
+            // uncompressed body of a version 1 index
+            new File(prefix + body.substring(0,
+                    body.length() - GZIP_SUFFIX.length())).delete();
+        }
+    }
+
+    /**
+     * Starts writing a new index, which replaces the current one when
+     * committed.
+     * @param prefix the repository metadata directory, with trailing separator
+     * @param checksumType checksum type of the channel
+     * @return the index writer
+     */
+    public static IndexWriter create(String prefix, String checksumType) {
+        try {
+            return new IndexWriter(prefix, checksumType);
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * @return checksum type of the channel when the index was written
+     */
+    public String getChecksumType() {
+        return checksumType;
+    }
+
+    /**
+     * @return the ids of the indexed packages, in ascending order
+     */
+    public List<Long> getPackageIds() {
+        List<Long> ids = new ArrayList<Long>(entries.size());
+        for (Entry entry : entries) {
+            ids.add(entry.id);
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * @return the checksum ids of the indexed packages by package id, in
+     * ascending package id order
+     */
+    public Map<Long, Long> getPackageChecksumIds() {
+        Map<Long, Long> ids = new LinkedHashMap<Long, Long>(entries.size());
+        for (Entry entry : entries) {
+            ids.put(entry.id, entry.checksumId);
+        }
+        return Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Opens the body files for sequential reading of package elements.
+     * @return the reader, to be closed by the caller
+     */
+    public FragmentReader openReader() {
+        try {
+            return new FragmentReader(this);
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * Checksum id of a package and offsets and lengths of its elements in the
+     * body files.
+     */
+    private static final class Entry {
+
+        private final long id;
+        private final long checksumId;
+        private final long[] offsets = new long[BODY_FILES.length];
+        private final int[] lengths = new int[BODY_FILES.length];
+
+        private Entry(long idIn, long checksumIdIn) {
+            id = idIn;
+            checksumId = checksumIdIn;
+        }
+
+        static Entry parse(String line) {
+            String[] fields = line.split(" ");
+            if (fields.length != 2 + 2 * BODY_FILES.length) {
+                throw new IllegalArgumentException("Invalid index line: " + line);
+            }
+            Entry entry = new Entry(Long.parseLong(fields[0]),
+                    Long.parseLong(fields[1]));
+            for (int i = 0; i < BODY_FILES.length; i++) {
+                entry.offsets[i] = Long.parseLong(fields[2 + 2 * i]);
+                entry.lengths[i] = Integer.parseInt(fields[3 + 2 * i]);
+            }
+            return entry;
+        }
+
+        String format() {
+            StringBuilder buf = new StringBuilder();
+            buf.append(id).append(' ').append(checksumId);
+            for (int i = 0; i < BODY_FILES.length; i++) {
+                buf.append(' ').append(offsets[i]).append(' ').append(lengths[i]);
+            }
+            return buf.toString();
+        }
+    }
+
+    /**
+     * Reads the package elements of an index in ascending package id order,
+     * skipping the packages which are not asked for.
+     */
+    public static final class FragmentReader {
+
+        private final List<Entry> entries;
+        private final DataInputStream[] bodies = new DataInputStream[BODY_FILES.length];
+        private final long[] positions = new long[BODY_FILES.length];
+        private int next;
+
+        private FragmentReader(RepodataIndex index) throws IOException {
+            entries = index.entries;
+            try {
+                for (int i = 0; i < BODY_FILES.length; i++) {
+                    bodies[i] = new DataInputStream(new BufferedInputStream(
+                            new GZIPInputStream(new FileInputStream(
+                                    index.prefix + BODY_FILES[i]), BUFFER_SIZE)));
+                }
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the elements of an indexed package. Packages have to be
+         * asked for in ascending id order.
+         * @param packageId id of the package
+         * @return the primary, filelists and other elements of the package
+         */
+        public String[] read(Long packageId) {
+            while (next < entries.size() && entries.get(next).id < packageId) {
+                next++;
+            }
+            if (next == entries.size() || entries.get(next).id != packageId) {
+                throw new RepomdRuntimeException("Package " + packageId +
+                        " is not in the repodata index");
+            }
+            Entry entry = entries.get(next++);
+            String[] ret = new String[BODY_FILES.length];
+            try {
+                for (int i = 0; i < BODY_FILES.length; i++) {
+                    skipTo(i, entry.offsets[i]);
+                    byte[] bytes = new byte[entry.lengths[i]];
+                    bodies[i].readFully(bytes);
+                    positions[i] += bytes.length;
+                    ret[i] = new String(bytes, ENCODING);
+                }
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+            return ret;
+        }
+
+        private void skipTo(int body, long offset) throws IOException {
+            while (positions[body] < offset) {
+                int skipped = bodies[body].skipBytes(
+                        (int) Math.min(offset - positions[body], Integer.MAX_VALUE));
+                if (skipped == 0) {
+                    throw new IOException("Unexpected end of " + BODY_FILES[body]);
+                }
+                positions[body] += skipped;
+            }
+        }
+
+        /**
+         * Closes the body files.
+         */
+        public void close() {
+            for (DataInputStream body : bodies) {
+                if (body != null) {
+                    try {
+                        body.close();
+                    }
+                    catch (IOException e) {
+                        log.warn("Unable to close repodata index", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a new index next to the current one. Packages have to be added
+     * in ascending id order, otherwise the new index is discarded.
+     */
+    public static final class IndexWriter {
+
+        private final String prefix;
+        private final PrintWriter index;
+        private final OutputStream[] bodies = new OutputStream[BODY_FILES.length];
+        private final long[] positions = new long[BODY_FILES.length];
+        private long lastId = Long.MIN_VALUE;
+        private boolean ordered = true;
+        private boolean closed;
+
+        private IndexWriter(String prefixIn, String checksumType) throws IOException {
+            prefix = prefixIn;
+            index = new PrintWriter(new FileWriter(prefix + INDEX_FILE + NEW_SUFFIX));
+            index.println(VERSION + " " + checksumType);
+            try {
+                for (int i = 0; i < BODY_FILES.length; i++) {
+                    bodies[i] = new BufferedOutputStream(new GZIPOutputStream(
+                            new FileOutputStream(prefix + BODY_FILES[i] + NEW_SUFFIX),
+                            BUFFER_SIZE));
+                }
+            }
+            catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Adds the elements of a package.
+         * @param packageId id of the package
+         * @param checksumId id of the checksum of the package the elements
+         * were rendered for
+         * @param fragments the primary, filelists and other elements
+         */
+        public void add(Long packageId, Long checksumId, String... fragments) {
+            if (packageId <= lastId) {
+                ordered = false;
+            }
+            lastId = packageId;
+            if (!ordered) {
+                return;
+            }
+            Entry entry = new Entry(packageId, checksumId);
+            try {
+                for (int i = 0; i < BODY_FILES.length; i++) {
+                    byte[] bytes = fragments[i].getBytes(ENCODING);
+                    bodies[i].write(bytes);
+                    entry.offsets[i] = positions[i];
+                    entry.lengths[i] = bytes.length;
+                    positions[i] += bytes.length;
+                }
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+            index.println(entry.format());
+        }
+
+        /**
+         * Finishes writing the new index, leaving it next to the current one
+         * until committed.
+         */
+        public void close() {
+            if (closed) {
+                return;
+            }
+            try {
+                for (OutputStream body : bodies) {
+                    body.close();
+                }
+            }
+            catch (IOException e) {
+                abort();
+                throw new RepomdRuntimeException(e);
+            }
+            index.close();
+            closed = true;
+        }
+
+        /**
+         * Replaces the current index with the new one. To be called once the
+         * metadata files the new index was written with are in place.
+         */
+        public void commit() {
+            close();
+            if (!ordered || index.checkError()) {
+                log.warn("Discarding repodata index for " + prefix);
+                abort();
+                delete(prefix);
+                return;
+            }
+            // without an index the bodies are never read, so a failure between
+            // the renames only costs a full regeneration
+            delete(prefix);
+            boolean renamed = true;
+            for (String body : BODY_FILES) {
+                renamed = renamed && rename(body);
+            }
+            if (!renamed || !rename(INDEX_FILE)) {
+                log.warn("Unable to replace repodata index for " + prefix);
+                abort();
+                delete(prefix);
+            }
+        }
+
+        private boolean rename(String file) {
+            return new File(prefix + file + NEW_SUFFIX).renameTo(
+                    new File(prefix + file));
+        }
+
+        /**
+         * Discards the new index.
+         */
+        public void abort() {
+            index.close();
+            for (int i = 0; i < BODY_FILES.length; i++) {
+                if (bodies[i] != null) {
+                    try {
+                        bodies[i].close();
+                    }
+                    catch (IOException e) {
+                        // we are deleting it anyway
+                    }
+                }
+                new File(prefix + BODY_FILES[i] + NEW_SUFFIX).delete();
+            }
+            new File(prefix + INDEX_FILE + NEW_SUFFIX).delete();
+        }
+    }
+}
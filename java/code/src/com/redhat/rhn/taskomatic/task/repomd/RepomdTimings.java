@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the time spent in the stages of a repository metadata
+ * generation. Stages may be updated from several threads.
+ * @version $Rev$
+ */
+public class RepomdTimings {
+
+    private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+
+    /**
+     * Adds time to a stage.
+     * @param stage name of the stage
+     * @param millis milliseconds spent in the stage
+     */
+    public synchronized void add(String stage, long millis) {
+        Long current = stages.get(stage);
+        stages.put(stage, new Long(millis + (current == null ? 0 : current)));
+    }
+
+    /**
+     * Returns the time spent in a stage.
+     * @param stage name of the stage
+     * @return milliseconds spent in the stage, 0 if unknown
+     */
+    public synchronized long get(String stage) {
+        Long current = stages.get(stage);
+        return current == null ? 0 : current.longValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (Map.Entry<String, Long> stage : stages.entrySet()) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            buf.append(stage.getKey()).append(": ").append(stage.getValue())
+                    .append(" ms");
+        }
+        return buf.toString();
+    }
+}
@@ -16,7 +16,9 @@ package com.redhat.rhn.taskomatic.task.repomd;
 
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
 import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.manager.task.TaskManager;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -27,6 +29,7 @@ import org.xml.sax.SAXException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Collection;
 
 /**
  *
@@ -37,6 +40,9 @@ public abstract class RepomdWriter {
 
     protected SimpleContentHandler handler;
 
+    private PackageCapabilityIndex capabilityIndex;
+    private Writer output;
+
     private static final String CONTROL_CHARS;
     private static final String CONTROL_CHARS_REPLACEMENT;
 
@@ -55,6 +61,7 @@ public abstract class RepomdWriter {
      * @param shouldEscape says whether write output shall be escaped
      */
     public RepomdWriter(Writer writer, boolean shouldEscape) {
+        output = writer;
 
         OutputFormat of = new OutputFormat();
         of.setPreserveSpace(true);
@@ -157,6 +164,54 @@ public abstract class RepomdWriter {
         return StringUtils.replaceChars(input, CONTROL_CHARS, CONTROL_CHARS_REPLACEMENT);
     }
 
+    /**
+     * Adds an already generated package element
+     * @param xml the package element
+     */
+    public void addPackageXml(String xml) {
+        try {
+            handler.addCharacters(xml);
+        }
+        catch (SAXException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * Flushes the underlying writer
+     */
+    public void flush() {
+        try {
+            output.flush();
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * Sets the capabilities of the packages added next
+     * @param capabilityIndexIn preloaded capabilities, null to query them
+     * per package
+     */
+    public void setCapabilityIndex(PackageCapabilityIndex capabilityIndexIn) {
+        this.capabilityIndex = capabilityIndexIn;
+    }
+
+    /**
+     * Returns the capabilities of a package, from the capability index if set
+     * @param pkgId package id
+     * @param query the per package capability query
+     * @return the capabilities of the package
+     */
+    protected Collection<PackageCapabilityDto> getCapabilities(Long pkgId,
+            String query) {
+        if (capabilityIndex != null) {
+            return capabilityIndex.getCapabilities(pkgId, query);
+        }
+        return TaskManager.getPackageCapabilityDtos(pkgId, query);
+    }
+
 
     /**
      *
@@ -30,6 +30,7 @@ public abstract class RepositoryWriter {
     protected Logger log = Logger.getLogger(RepositoryWriter.class);
     protected String pathPrefix;
     protected String mountPoint;
+    protected RepomdTimings timings;
 
     /**
      * Constructor takes in pathprefix and mountpoint
@@ -54,6 +55,14 @@ public abstract class RepositoryWriter {
     */
    public abstract void writeRepomdFiles(Channel channel);
 
+   /**
+    * Returns the stage timings of the last repository generation
+    * @return the timings, null if the writer doesn't record any
+    */
+   public RepomdTimings getTimings() {
+       return timings;
+   }
+
    /**
     * Deletes repository cache files
     * @param channelLabelToProcess channel label
@@ -16,7 +16,6 @@ package com.redhat.rhn.taskomatic.task.repomd;
 
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
-import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.util.StringUtil;
@@ -38,8 +37,14 @@ import java.io.OutputStreamWriter;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -54,6 +59,7 @@ public class RpmRepositoryWriter extends RepositoryWriter {
     private static final String REPOMD_FILE = "repomd.xml.new";
     private static final String UPDATEINFO_FILE = "updateinfo.xml.gz.new";
     private static final String NOREPO_FILE = "noyumrepo.txt";
+    private static final int BATCH_SIZE = 1000;
 
     private String checksumtype;
 
@@ -162,121 +168,332 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             throw new RepomdRuntimeException(e);
         }
 
+        // compression and checksumming of each file happens on its own thread
+        PipelinedOutputStream primaryPipe = new PipelinedOutputStream(primaryFile,
+                "repomd primary " + channel.getLabel());
+        PipelinedOutputStream filelistsPipe = new PipelinedOutputStream(filelistsFile,
+                "repomd filelists " + channel.getLabel());
+        PipelinedOutputStream otherPipe = new PipelinedOutputStream(otherFile,
+                "repomd other " + channel.getLabel());
         BufferedWriter primaryBufferedWriter = new BufferedWriter(
-                new OutputStreamWriter(primaryFile));
+                new OutputStreamWriter(primaryPipe));
         BufferedWriter filelistsBufferedWriter = new BufferedWriter(
-                new OutputStreamWriter(filelistsFile));
+                new OutputStreamWriter(filelistsPipe));
         BufferedWriter otherBufferedWriter = new BufferedWriter(
-                new OutputStreamWriter(otherFile));
+                new OutputStreamWriter(otherPipe));
         PrimaryXmlWriter primary = new PrimaryXmlWriter(
                 primaryBufferedWriter);
         FilelistsXmlWriter filelists = new FilelistsXmlWriter(
                 filelistsBufferedWriter);
         OtherXmlWriter other = new OtherXmlWriter(otherBufferedWriter);
         Date start = new Date();
+        timings = new RepomdTimings();
 
         primary.begin(channel);
         filelists.begin(channel);
         other.begin(channel);
 
-        // batch the elaboration so we don't have to hold many thousands of
-        // packages in memory at once
-        final int batchSize = 1000;
-        DataResult<PackageDto> packages = TaskManager.getChannelPackageDtos(channel);
-        for (int i = 0; i < packages.size(); i += batchSize) {
-            DataResult<PackageDto> packageBatch = packages.subList(i, i + batchSize);
-            packageBatch.elaborate();
-            for (PackageDto pkgDto : packageBatch) {
-                // this is a sanity check
-                // package may have been deleted before packageBatch.elaborate()
-                if (pkgDto.getChecksum() == null) {
-                    // channel content changed, we cannot guarantee correct repodata
-                    throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
-                            " removed from server, interrupting repo generation for " +
-                            channel.getLabel());
-                }
-                primary.addPackage(pkgDto);
-                filelists.addPackage(pkgDto);
-                other.addPackage(pkgDto);
-                try {
-                    primaryFile.flush();
-                    filelistsFile.flush();
-                    otherFile.flush();
-                }
-                catch (IOException e) {
-                    throw new RepomdRuntimeException(e);
-                }
+        RepodataIndex oldIndex = RepodataIndex.load(prefix);
+        Map<Long, Long> packageIds = null;
+        if (oldIndex != null) {
+            packageIds = TaskManager.getChannelPackageChecksumIds(channel);
+            if (!isIndexUsable(oldIndex, packageIds)) {
+                oldIndex = null;
             }
         }
-        primary.end();
-        filelists.end();
-        other.end();
+        RepodataIndex.IndexWriter newIndex = RepodataIndex.create(prefix,
+                checksumtype);
+        boolean done = false;
         try {
+            if (oldIndex == null) {
+                writeAllPackages(channel, primary, filelists, other, newIndex);
+            }
+            else {
+                writeChangedPackages(channel, oldIndex, packageIds, primary,
+                        filelists, other, newIndex);
+            }
+            primary.end();
+            filelists.end();
+            other.end();
             primaryBufferedWriter.close();
             filelistsBufferedWriter.close();
             otherBufferedWriter.close();
+            newIndex.close();
+            done = true;
         }
         catch (IOException e) {
             throw new RepomdRuntimeException(e);
         }
+        finally {
+            if (!done) {
+                primaryPipe.abort();
+                filelistsPipe.abort();
+                otherPipe.abort();
+                newIndex.abort();
+            }
+        }
+        // the new index describes the new metadata files, so it only replaces
+        // the current one once they have all been put in place
+        boolean published = false;
+        try {
+            timings.add("compress primary", primaryPipe.getBusyMillis());
+            timings.add("compress filelists", filelistsPipe.getBusyMillis());
+            timings.add("compress other", otherPipe.getBusyMillis());
+
+            RepomdIndexData primaryData = new RepomdIndexData(primaryFile
+                    .getCompressedChecksum(), primaryFile
+                    .getUncompressedChecksum(), channel.getLastModified());
+            RepomdIndexData filelistsData = new RepomdIndexData(filelistsFile
+                    .getCompressedChecksum(), filelistsFile
+                    .getUncompressedChecksum(), channel.getLastModified());
+            RepomdIndexData otherData = new RepomdIndexData(otherFile
+                    .getCompressedChecksum(), otherFile
+                    .getUncompressedChecksum(), channel.getLastModified());
+
+            if (log.isDebugEnabled()) {
+                log.debug("Starting updateinfo generation for '" +
+                        channel.getLabel() + '"');
+            }
+            RepomdIndexData updateinfoData = generateUpdateinfo(channel,
+                    prefix, checksumAlgo);
 
-        RepomdIndexData primaryData = new RepomdIndexData(primaryFile
-                .getCompressedChecksum(), primaryFile
-                .getUncompressedChecksum(), channel.getLastModified());
-        RepomdIndexData filelistsData = new RepomdIndexData(filelistsFile
-                .getCompressedChecksum(), filelistsFile
-                .getUncompressedChecksum(), channel.getLastModified());
-        RepomdIndexData otherData = new RepomdIndexData(otherFile
-                .getCompressedChecksum(), otherFile
-                .getUncompressedChecksum(), channel.getLastModified());
+            RepomdIndexData groupsData = loadCompsFile(channel, checksumAlgo);
 
-        if (log.isDebugEnabled()) {
-            log.debug("Starting updateinfo generation for '" + channel.getLabel() + '"');
-        }
-        RepomdIndexData updateinfoData = generateUpdateinfo(channel,
-                prefix, checksumAlgo);
+            // Set the type so yum can read and perform checksum
+            primaryData.setType(checksumLabel);
+            filelistsData.setType(checksumLabel);
+            otherData.setType(checksumLabel);
+            if (updateinfoData != null) {
+                updateinfoData.setType(checksumLabel);
+            }
+
+            if (groupsData != null) {
+                groupsData.setType(checksumLabel);
+            }
 
-        RepomdIndexData groupsData = loadCompsFile(channel, checksumAlgo);
+            FileWriter indexFile;
 
-        // Set the type so yum can read and perform checksum
-        primaryData.setType(checksumLabel);
-        filelistsData.setType(checksumLabel);
-        otherData.setType(checksumLabel);
-        if (updateinfoData != null) {
-            updateinfoData.setType(checksumLabel);
-        }
+            try {
+                indexFile = new FileWriter(prefix + REPOMD_FILE);
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+
+            RepomdIndexWriter index = new RepomdIndexWriter(indexFile, primaryData,
+                    filelistsData, otherData, updateinfoData, groupsData);
 
-        if (groupsData != null) {
-            groupsData.setType(checksumLabel);
+            index.writeRepomdIndex();
+
+            try {
+                indexFile.close();
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+
+            renameFiles(prefix, channel.getLastModified().getTime(),
+                    updateinfoData != null);
+            published = true;
+        }
+        finally {
+            if (!published) {
+                newIndex.abort();
+            }
         }
+        newIndex.commit();
 
-        FileWriter indexFile;
+        log.info("Repository metadata generation for '" +
+                channel.getLabel() + "' finished in " +
+                (int) (new Date().getTime() - start.getTime()) / 1000 + " seconds (" +
+                timings + ")");
+    }
 
+    /**
+     * Writes the elements of all the packages of the channel, fetching the
+     * next batch of elaborated packages while the current one is rendered so
+     * we never hold more than a few batches in memory
+     * @param channel the channel
+     * @param primary primary.xml writer
+     * @param filelists filelists.xml writer
+     * @param other other.xml writer
+     * @param newIndex index of the written package elements
+     */
+    private void writeAllPackages(Channel channel, PrimaryXmlWriter primary,
+            FilelistsXmlWriter filelists, OtherXmlWriter other,
+            RepodataIndex.IndexWriter newIndex) {
+        PackageBatchFetcher fetcher = new PackageBatchFetcher(channel, BATCH_SIZE,
+                timings);
+        fetcher.start();
+        boolean done = false;
         try {
-            indexFile = new FileWriter(prefix + REPOMD_FILE);
+            List<PackageDto> batch;
+            while ((batch = fetcher.nextBatch()) != null) {
+                long loadStart = System.currentTimeMillis();
+                PackageCapabilityIndex capabilities = PackageCapabilityIndex.load(batch);
+                primary.setCapabilityIndex(capabilities);
+                filelists.setCapabilityIndex(capabilities);
+                long renderStart = System.currentTimeMillis();
+                timings.add("capabilities", renderStart - loadStart);
+                for (PackageDto pkgDto : batch) {
+                    checkPackage(channel, pkgDto.getId(), pkgDto);
+                    addPackage(pkgDto, primary, filelists, other, newIndex);
+                }
+                primary.flush();
+                filelists.flush();
+                other.flush();
+                timings.add("render", System.currentTimeMillis() - renderStart);
+            }
+            done = true;
         }
-        catch (IOException e) {
-            throw new RepomdRuntimeException(e);
+        finally {
+            if (!done) {
+                fetcher.cancel();
+            }
         }
+    }
 
-        RepomdIndexWriter index = new RepomdIndexWriter(indexFile, primaryData,
-                filelistsData, otherData, updateinfoData, groupsData);
-
-        index.writeRepomdIndex();
+    /**
+     * Writes the elements of the packages of the channel, reusing the elements
+     * of the previous run for the packages which are still in the channel with
+     * the same checksum and rendering only the ones which were added or got a
+     * new checksum since
+     * @param channel the channel
+     * @param oldIndex index of the previous run
+     * @param packageIds checksum ids of the packages of the channel by package
+     * id, in ascending package id order
+     * @param primary primary.xml writer
+     * @param filelists filelists.xml writer
+     * @param other other.xml writer
+     * @param newIndex index of the written package elements
+     */
+    private void writeChangedPackages(Channel channel, RepodataIndex oldIndex,
+            Map<Long, Long> packageIds, PrimaryXmlWriter primary,
+            FilelistsXmlWriter filelists, OtherXmlWriter other,
+            RepodataIndex.IndexWriter newIndex) {
+        long spliceStart = System.currentTimeMillis();
+        Map<Long, Long> indexed = oldIndex.getPackageChecksumIds();
+        List<Long> changed = new ArrayList<Long>();
+        int added = 0;
+        for (Map.Entry<Long, Long> pkg : packageIds.entrySet()) {
+            Long checksumId = indexed.get(pkg.getKey());
+            if (checksumId == null) {
+                added++;
+                changed.add(pkg.getKey());
+            }
+            else if (!checksumId.equals(pkg.getValue())) {
+                // the package got a new checksum, its elements are stale
+                changed.add(pkg.getKey());
+            }
+        }
+        log.info("Updating repository metadata for channel '" + channel.getLabel() +
+                "' from the previous run: " + added + " packages added, " +
+                (changed.size() - added) + " changed, " +
+                (indexed.size() - packageIds.size() + added) + " removed");
+
+        Map<Long, PackageDto> changedPackages = new HashMap<Long, PackageDto>();
+        if (!changed.isEmpty()) {
+            List<PackageDto> pkgDtos = TaskManager.getPackageDtos(changed);
+            PackageCapabilityIndex capabilities = PackageCapabilityIndex.load(pkgDtos);
+            primary.setCapabilityIndex(capabilities);
+            filelists.setCapabilityIndex(capabilities);
+            for (PackageDto pkgDto : pkgDtos) {
+                changedPackages.put(pkgDto.getId(), pkgDto);
+            }
+        }
+        Set<Long> render = new HashSet<Long>(changed);
 
+        RepodataIndex.FragmentReader reader = oldIndex.openReader();
         try {
-            indexFile.close();
+            int count = 0;
+            for (Long id : packageIds.keySet()) {
+                if (!render.contains(id)) {
+                    String[] fragments = reader.read(id);
+                    primary.addPackageXml(fragments[RepodataIndex.PRIMARY]);
+                    filelists.addPackageXml(fragments[RepodataIndex.FILELISTS]);
+                    other.addPackageXml(fragments[RepodataIndex.OTHER]);
+                    newIndex.add(id, indexed.get(id), fragments);
+                }
+                else {
+                    PackageDto pkgDto = changedPackages.get(id);
+                    checkPackage(channel, id, pkgDto);
+                    addPackage(pkgDto, primary, filelists, other, newIndex);
+                }
+                if (++count % BATCH_SIZE == 0) {
+                    primary.flush();
+                    filelists.flush();
+                    other.flush();
+                }
+            }
         }
-        catch (IOException e) {
-            throw new RepomdRuntimeException(e);
+        finally {
+            reader.close();
         }
+        timings.add("splice", System.currentTimeMillis() - spliceStart);
+    }
 
-        renameFiles(prefix, channel.getLastModified().getTime(),
-                updateinfoData != null);
+    /**
+     * Renders the elements of a package and adds them to the metadata files
+     * and to the index
+     */
+    private void addPackage(PackageDto pkgDto, PrimaryXmlWriter primary,
+            FilelistsXmlWriter filelists, OtherXmlWriter other,
+            RepodataIndex.IndexWriter newIndex) {
+        String primaryXml = primary.getPackageXml(pkgDto);
+        String filelistsXml = filelists.getPackageXml(pkgDto);
+        String otherXml = other.getPackageXml(pkgDto);
+        primary.addPackageXml(primaryXml);
+        filelists.addPackageXml(filelistsXml);
+        other.addPackageXml(otherXml);
+        newIndex.add(pkgDto.getId(), pkgDto.getChecksumId(), primaryXml,
+                filelistsXml, otherXml);
+    }
 
-        log.info("Repository metadata generation for '" +
-                channel.getLabel() + "' finished in " +
-                (int) (new Date().getTime() - start.getTime()) / 1000 + " seconds");
+    /**
+     * Sanity check of an elaborated package, it may have been deleted before
+     * it was elaborated
+     */
+    private void checkPackage(Channel channel, Long id, PackageDto pkgDto) {
+        if (pkgDto == null || pkgDto.getChecksum() == null) {
+            // channel content changed, we cannot guarantee correct repodata
+            throw new RepomdRuntimeException("Package with id " + id +
+                    " removed from server, interrupting repo generation for " +
+                    channel.getLabel());
+        }
+    }
+
+    /**
+     * Tells whether the channel metadata can be updated from the index of
+     * the previous run, i.e. the checksum type didn't change and the number
+     * of added, changed and removed packages is below the configured threshold
+     * @param index index of the previous run
+     * @param packageIds checksum ids of the packages now in the channel by
+     * package id
+     * @return true if the index can be used
+     */
+    private boolean isIndexUsable(RepodataIndex index, Map<Long, Long> packageIds) {
+        if (!checksumtype.equals(index.getChecksumType())) {
+            return false;
+        }
+        int threshold = ConfigDefaults.get().getRepodataIncrementalThreshold();
+        if (threshold <= 0) {
+            return false;
+        }
+        Map<Long, Long> indexed = index.getPackageChecksumIds();
+        int removed = 0;
+        int changed = 0;
+        for (Map.Entry<Long, Long> pkg : indexed.entrySet()) {
+            Long checksumId = packageIds.get(pkg.getKey());
+            if (checksumId == null) {
+                removed++;
+            }
+            else if (!checksumId.equals(pkg.getValue())) {
+                changed++;
+            }
+        }
+        int added = packageIds.size() - (indexed.size() - removed);
+        return (long) (added + changed + removed) * 100 <=
+                (long) threshold * Math.max(packageIds.size(), 1);
     }
 
     /**
@@ -436,12 +653,19 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         repomd.setLastModified(lastModified);
 
         if (doUpdateinfo) {
-            updateinfo.renameTo(new File(prefix + "updateinfo.xml.gz"));
+            rename(updateinfo, prefix + "updateinfo.xml.gz");
         }
 
-        primary.renameTo(new File(prefix + "primary.xml.gz"));
-        filelists.renameTo(new File(prefix + "filelists.xml.gz"));
-        other.renameTo(new File(prefix + "other.xml.gz"));
-        repomd.renameTo(new File(prefix + "repomd.xml"));
+        rename(primary, prefix + "primary.xml.gz");
+        rename(filelists, prefix + "filelists.xml.gz");
+        rename(other, prefix + "other.xml.gz");
+        rename(repomd, prefix + "repomd.xml");
+    }
+
+    private static void rename(File from, String to) {
+        if (!from.renameTo(new File(to))) {
+            throw new RepomdRuntimeException("Unable to rename " + from + " to " +
+                    to);
+        }
     }
 }
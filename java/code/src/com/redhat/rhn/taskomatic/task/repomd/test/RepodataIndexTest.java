@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd.test;
+
+import com.redhat.rhn.taskomatic.task.repomd.RepodataIndex;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdRuntimeException;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * RepodataIndexTest
+ * @version $Rev$
+ */
+public class RepodataIndexTest extends RhnBaseTestCase {
+
+    private File dir;
+    private String prefix;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("repodata", "");
+        dir.delete();
+        dir.mkdir();
+        prefix = dir.getAbsolutePath() + File.separator;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        RepodataIndex.delete(prefix);
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testWriteAndRead() {
+        assertNull(RepodataIndex.load(prefix));
+
+        RepodataIndex.IndexWriter writer = RepodataIndex.create(prefix, "sha256");
+        writer.add(new Long(10), new Long(11), "<p10/>", "<f10/>", "<o10/>");
+        writer.add(new Long(20), new Long(21), "<p20>\u00e9</p20>", "", "<o20/>");
+        writer.add(new Long(30), new Long(31), "<p30/>", "<f30/>", "<o30/>");
+        writer.commit();
+
+        RepodataIndex index = RepodataIndex.load(prefix);
+        assertNotNull(index);
+        assertEquals("sha256", index.getChecksumType());
+        assertEquals(Arrays.asList(new Long(10), new Long(20), new Long(30)),
+                index.getPackageIds());
+        assertEquals(new Long(21), index.getPackageChecksumIds().get(new Long(20)));
+
+        // skipping a package has to work as well
+        RepodataIndex.FragmentReader reader = index.openReader();
+        try {
+            String[] fragments = reader.read(new Long(20));
+            assertEquals("<p20>\u00e9</p20>", fragments[RepodataIndex.PRIMARY]);
+            assertEquals("", fragments[RepodataIndex.FILELISTS]);
+            assertEquals("<o20/>", fragments[RepodataIndex.OTHER]);
+            fragments = reader.read(new Long(30));
+            assertEquals("<f30/>", fragments[RepodataIndex.FILELISTS]);
+            try {
+                reader.read(new Long(10));
+                fail("Should have received an Exception");
+            }
+            catch (RepomdRuntimeException e) {
+                // expected.
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void testUnorderedIndexIsDiscarded() {
+        RepodataIndex.IndexWriter writer = RepodataIndex.create(prefix, "sha1");
+        writer.add(new Long(20), new Long(21), "<p20/>", "<f20/>", "<o20/>");
+        writer.add(new Long(10), new Long(11), "<p10/>", "<f10/>", "<o10/>");
+        writer.commit();
+        assertNull(RepodataIndex.load(prefix));
+    }
+
+    public void testAbort() {
+        RepodataIndex.IndexWriter writer = RepodataIndex.create(prefix, "sha1");
+        writer.add(new Long(10), new Long(11), "<p10/>", "<f10/>", "<o10/>");
+        writer.commit();
+
+        writer = RepodataIndex.create(prefix, "sha1");
+        writer.add(new Long(20), new Long(21), "<p20/>", "<f20/>", "<o20/>");
+        writer.abort();
+
+        RepodataIndex index = RepodataIndex.load(prefix);
+        assertEquals(Arrays.asList(new Long(10)), index.getPackageIds());
+        assertEquals(4, dir.list().length);
+    }
+
+    public void testClosedIndexIsNotCommitted() {
+        RepodataIndex.IndexWriter writer = RepodataIndex.create(prefix, "sha1");
+        writer.add(new Long(10), new Long(11), "<p10/>", "<f10/>", "<o10/>");
+        writer.commit();
+
+        // the metadata files failed to be put in place after the index was written
+        writer = RepodataIndex.create(prefix, "sha1");
+        writer.add(new Long(20), new Long(21), "<p20/>", "<f20/>", "<o20/>");
+        writer.close();
+        assertEquals(Arrays.asList(new Long(10)),
+                RepodataIndex.load(prefix).getPackageIds());
+        writer.abort();
+
+        RepodataIndex index = RepodataIndex.load(prefix);
+        assertEquals(Arrays.asList(new Long(10)), index.getPackageIds());
+        RepodataIndex.FragmentReader reader = index.openReader();
+        try {
+            assertEquals("<o10/>", reader.read(new Long(10))[RepodataIndex.OTHER]);
+        }
+        finally {
+            reader.close();
+        }
+        assertEquals(4, dir.list().length);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.db.models;
+
+/**
+ * Membership of a package or an erratum in a channel
+ * @version $Rev$
+ */
+public class ChannelMember extends GenericRecord {
+
+    private long channelId;
+
+    /**
+     * @return the id of the channel
+     */
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @param channelIdIn the id of the channel
+     */
+    public void setChannelId(long channelIdIn) {
+        this.channelId = channelIdIn;
+    }
+}
@@ -82,6 +82,8 @@ public class Server extends GenericRecord {
 
     private String uuid;
 
+    private String orgId;
+
     /**
      * @return the name
      */
@@ -731,4 +733,18 @@ public class Server extends GenericRecord {
             this.uuid = null;
         }
     }
+
+    /**
+     * @return the id of the org owning the server
+     */
+    public String getOrgId() {
+        return orgId;
+    }
+
+    /**
+     * @param orgIdIn the id of the org owning the server
+     */
+    public void setOrgId(String orgIdIn) {
+        this.orgId = orgIdIn;
+    }
 }
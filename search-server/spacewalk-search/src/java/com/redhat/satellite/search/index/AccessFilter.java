@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.Filter;
+
+/**
+ * Filter on one of the access fields of an index, letting through the
+ * documents with one of the given values in the field.
+ *
+ * Documents without any value in the field, indexed before the field was
+ * introduced, are let through as well, and left to the visibility check
+ * done against the database on the hits.
+ *
+ * @version $Rev$
+ */
+public class AccessFilter extends Filter {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String field;
+    private final Set<String> values;
+
+    /**
+     * Constructor
+     * @param fieldIn access field to filter on
+     * @param valuesIn values of the field to let through
+     */
+    public AccessFilter(String fieldIn, Collection<String> valuesIn) {
+        field = fieldIn;
+        values = new HashSet<String>(valuesIn);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BitSet bits(IndexReader reader) throws IOException {
+        BitSet withField = new BitSet(reader.maxDoc());
+        BitSet allowed = new BitSet(reader.maxDoc());
+        TermEnum terms = reader.terms(new Term(field, ""));
+        TermDocs docs = reader.termDocs();
+        try {
+            do {
+                Term term = terms.term();
+                if (term == null || !term.field().equals(field)) {
+                    break;
+                }
+                boolean visible = values.contains(term.text());
+                docs.seek(terms);
+                while (docs.next()) {
+                    withField.set(docs.doc());
+                    if (visible) {
+                        allowed.set(docs.doc());
+                    }
+                }
+            } while (terms.next());
+        }
+        finally {
+            try {
+                docs.close();
+            }
+            finally {
+                terms.close();
+            }
+        }
+        BitSet retval = new BitSet(reader.maxDoc());
+        retval.set(0, reader.maxDoc());
+        retval.andNot(withField);
+        retval.or(allowed);
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof AccessFilter)) {
+            return false;
+        }
+        AccessFilter other = (AccessFilter) o;
+        return field.equals(other.field) && values.equals(other.values);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return field.hashCode() ^ values.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return "AccessFilter(" + field + ":" + values + ")";
+    }
+}
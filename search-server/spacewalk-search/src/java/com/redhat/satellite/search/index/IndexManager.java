@@ -19,12 +19,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.fs.FileSystem;
@@ -34,17 +38,23 @@ import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.Explanation;
-import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.nutch.analysis.AnalyzerFactory;
@@ -67,6 +77,8 @@ import com.redhat.satellite.search.rpc.handlers.IndexHandler;
 public class IndexManager {
 
     private static Logger log = Logger.getLogger(IndexManager.class);
+    // number of top hits ranked at first, as Hits does
+    private static final int INITIAL_HITS = 100;
     private String indexWorkDir;
     private int maxHits;
     private double score_threshold;
@@ -83,6 +95,12 @@ public class IndexManager {
     private Map<String, String> docLocaleLookUp = new TreeMap<String, String>
                                                                                                 (String.CASE_INSENSITIVE_ORDER);
     private Map<String, FetchedSegments> docSegments;
+    private long refreshInterval;
+    private int batchSize;
+    private long accessFilterTtl;
+    private ResultCache resultCache;
+    private ConcurrentMap<String, ManagedIndex> indexes =
+        new ConcurrentHashMap<String, ManagedIndex>();
     /**
      * Constructor
      *
@@ -108,10 +126,29 @@ public class IndexManager {
         initDocLocaleLookup();
         filterDocResults = config.getBoolean("search.doc.limit_results");
         explainResults = config.getBoolean("search.log.explain.results");
+        refreshInterval = config.getInt("search.searcher_refresh_interval", 10000);
+        batchSize = config.getInt("search.index_batch_size", 500);
+        accessFilterTtl = config.getInt("search.access_filter_ttl", 60000);
+        resultCache = new ResultCache(config.getInt("search.result_cache_size", 100));
         initDocSummary();
     }
 
 
+    /**
+     * @return number of documents indexing tasks should index between two
+     * commits
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return time in ms for which the access filter of a session is reused
+     */
+    public long getAccessFilterTtl() {
+        return accessFilterTtl;
+    }
+
     /**
      * @return String of the index working directory
      */
@@ -154,36 +191,71 @@ public class IndexManager {
     public List<Result> search(String indexName, String query, String lang,
             boolean isFineGrained)
             throws IndexingException, QueryParseException {
-        IndexSearcher searcher = null;
-        IndexReader reader = null;
-        List<Result> retval = null;
+        return search(indexName, query, lang, isFineGrained, null);
+    }
+
+    /**
+     * Query a index, only looking at the documents let through by a filter,
+     * so that documents which are filtered out never count against the
+     * maximum number of hits nor have to be loaded.
+     *
+     * @param indexName name of the index
+     * @param query search query
+     * @param lang language
+     * @param isFineGrained see {@link #search(String, String, String, boolean)}
+     * @param filter filter restricting the documents searched, may be null
+     * @return list of hits
+     * @throws IndexingException if there is a problem indexing the content.
+     * @throws QueryParseException
+     */
+    public List<Result> search(String indexName, String query, String lang,
+            boolean isFineGrained, Filter filter)
+            throws IndexingException, QueryParseException {
+        return search(indexName, query, lang, isFineGrained, filter, 0,
+                Integer.MAX_VALUE).getResults();
+    }
+
+    /**
+     * Query a index and return one page of the hits.
+     *
+     * Only the top offset + limit hits are ranked, and only the hits of the
+     * page are loaded from the index. The ranked hits are cached until the
+     * index changes, so asking for the next page of the same search, or for
+     * the same page again, does not run the query again.
+     *
+     * @param indexName name of the index
+     * @param query search query
+     * @param lang language
+     * @param isFineGrained see {@link #search(String, String, String, boolean)}
+     * @param filter filter restricting the documents searched, may be null
+     * @param offset rank of the first hit of the page
+     * @param limit maximum number of hits of the page
+     * @return the page of hits
+     * @throws IndexingException if there is a problem indexing the content.
+     * @throws QueryParseException
+     */
+    public ResultPage search(String indexName, String query, String lang,
+            boolean isFineGrained, Filter filter, int offset, int limit)
+            throws IndexingException, QueryParseException {
+        ManagedIndex index = null;
+        ManagedIndex.SearcherRef ref = null;
+        int needed = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
         try {
-            reader = getIndexReader(indexName, lang);
-            searcher = getIndexSearcher(indexName, lang);
-            QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
-            Query q = qp.parse(query);
-            if (log.isDebugEnabled()) {
-                log.debug("Original query was: " + query);
-                log.debug("Parsed Query is: " + q.toString());
-            }
-            Hits hits = searcher.search(q);
-            if (log.isDebugEnabled()) {
-                log.debug(hits.length() + " results were found.");
-            }
-            Set<Term> queryTerms = null;
-            try {
-                queryTerms = new HashSet<Term>();
-                Query newQ = q.rewrite(reader);
-                newQ.extractTerms(queryTerms);
+            index = getManagedIndex(indexName, lang);
+            ref = index.acquire();
+            List<Object> key = Arrays.asList(new Object[] {indexName,
+                    query.trim().replaceAll("\\s+", " "), lang, isFineGrained, filter});
+            RankedHits hits = resultCache.get(key, ref);
+            if (hits == null || !hits.covers(needed)) {
+                int start = hits == null ? 0 : hits.size() * 2;
+                hits = rankHits(indexName, ref, query, lang, isFineGrained, filter,
+                        needed, start);
+                resultCache.put(key, hits);
             }
-            catch (Exception e) {
-                e.printStackTrace();
-                throw new QueryParseException(e);
-            }
-            retval = processHits(indexName, hits, queryTerms, query, lang);
-            if (explainResults) {
-                debugExplainResults(indexName, hits, searcher, q, queryTerms);
+            else if (log.isDebugEnabled()) {
+                log.debug("Using cached hits for: " + query);
             }
+            return loadPage(indexName, ref, hits, query, lang, offset, needed);
         }
         catch (IOException e) {
             // this exception is thrown, when there're no packages or errata on the system
@@ -193,25 +265,212 @@ public class IndexManager {
                 throw new IndexingException(e);
             }
             log.error(e.getMessage());
-            retval = new ArrayList<Result>();
+            return new ResultPage(new ArrayList<Result>(), 0);
         }
         catch (ParseException e) {
             throw new QueryParseException("Could not parse query: '" + query + "'");
         }
         finally {
             try {
-                if (searcher != null) {
-                    searcher.close();
-                }
-                if (reader != null) {
-                    reader.close();
+                if (ref != null) {
+                    index.release(ref);
                 }
             }
             catch (IOException ex) {
                 throw new IndexingException(ex);
             }
         }
-        return retval;
+    }
+
+    /**
+     * Ranks the acceptable top hits of a query, at least the given number of
+     * them if there are as many. Hits are collected the way Hits does it,
+     * doubling the number of top documents asked for until enough of them
+     * are acceptable or the poor matches are reached.
+     */
+    private RankedHits rankHits(String indexName, ManagedIndex.SearcherRef ref,
+            String query, String lang, boolean isFineGrained, Filter filter,
+            int needed, int start)
+        throws IOException, ParseException, QueryParseException {
+        IndexSearcher searcher = ref.getSearcher();
+        QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
+        Query q = qp.parse(query);
+        if (log.isDebugEnabled()) {
+            log.debug("Original query was: " + query);
+            log.debug("Parsed Query is: " + q.toString());
+        }
+        Set<Term> queryTerms = null;
+        try {
+            queryTerms = new HashSet<Term>();
+            Query newQ = q.rewrite(ref.getReader());
+            newQ.extractTerms(queryTerms);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            throw new QueryParseException(e);
+        }
+
+        // processing used to stop after the hit of rank maxHits
+        int max = maxHits > 0 ? maxHits + 1 : Integer.MAX_VALUE;
+        int cap = Math.max(1, Math.min(max, searcher.maxDoc()));
+        int n = Math.min(Math.max(start, INITIAL_HITS), cap);
+        while (true) {
+            TopDocs top = searcher.search(q, filter, n);
+            // scale the scores down to at most 1 like Hits does, the score
+            // thresholds and the scores of the results depend on it
+            float norm = top.getMaxScore() > 1.0f ? 1.0f / top.getMaxScore() : 1.0f;
+            for (ScoreDoc scoreDoc : top.scoreDocs) {
+                scoreDoc.score *= norm;
+            }
+            int accepted = 0;
+            while (accepted < top.scoreDocs.length &&
+                    isScoreAcceptable(indexName, top.scoreDocs[accepted].score,
+                            accepted, top.totalHits, query)) {
+                accepted++;
+            }
+            boolean complete = accepted < top.scoreDocs.length ||
+                    top.scoreDocs.length >= top.totalHits || n >= max;
+            if (complete || accepted >= needed || n >= cap) {
+                if (log.isDebugEnabled()) {
+                    log.debug(top.totalHits + " results were found, " + accepted +
+                            " ranked.");
+                }
+                ScoreDoc[] hits = new ScoreDoc[accepted];
+                System.arraycopy(top.scoreDocs, 0, hits, 0, accepted);
+                if (explainResults) {
+                    debugExplainResults(indexName, hits, searcher, q, queryTerms);
+                }
+                return new RankedHits(ref, hits, Math.min(top.totalHits, max),
+                        complete, queryTerms);
+            }
+            n = (int) Math.min(2L * n, cap);
+        }
+    }
+
+    private ResultPage loadPage(String indexName, ManagedIndex.SearcherRef ref,
+            RankedHits hits, String query, String lang, int offset, int end)
+        throws IOException {
+        List<Result> retval = new ArrayList<Result>();
+        for (int x = offset; x < Math.min(end, hits.size()); x++) {
+            Result pr = hits.getResult(x);
+            if (pr == null) {
+                ScoreDoc hit = hits.getHit(x);
+                pr = buildResult(indexName, ref.getSearcher().doc(hit.doc), x,
+                        hit.score, hits.getQueryTerms(), query, lang);
+                hits.setResult(x, pr);
+            }
+            retval.add(pr);
+        }
+        return new ResultPage(retval, hits.getTotal());
+    }
+
+    /**
+     * Opens the writer of an index and keeps it open until
+     * {@link #finishIndexing(String)} is called. Until then documents are
+     * added to and removed from the index through this writer, and they
+     * become visible to searches when {@link #commitIndex(String)} is called.
+     *
+     * @param indexName index to use
+     * @param lang language.
+     * @throws IndexingException the writer could not be opened
+     */
+    public void startIndexing(String indexName, String lang)
+        throws IndexingException {
+        startIndexing(indexName, lang, false);
+    }
+
+    /**
+     * Opens the writer of an index, see {@link #startIndexing(String, String)}.
+     * When rebuilding, the documents already in the index are dropped with
+     * the first commit, so that the index only holds what is added afterwards.
+     *
+     * @param indexName index to use
+     * @param lang language.
+     * @param rebuild true to start the index over
+     * @throws IndexingException the writer could not be opened
+     */
+    public void startIndexing(String indexName, String lang, boolean rebuild)
+        throws IndexingException {
+        try {
+            getManagedIndex(indexName, lang).getWriter(getAnalyzer(indexName, lang),
+                    rebuild);
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Returns the version of the layout of the documents of an index, which
+     * tells whether it has been built before a change in the way its fields
+     * are indexed.
+     *
+     * @param indexName index to use
+     * @return the version recorded with {@link #setIndexVersion(String, int)},
+     * 1 if none has been recorded
+     * @throws IndexingException the version could not be read
+     */
+    public int getIndexVersion(String indexName) throws IndexingException {
+        try {
+            return getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).getVersion();
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Records the version of the layout of the documents of an index, once
+     * all of its documents have been written with that layout.
+     *
+     * @param indexName index to use
+     * @param version the version
+     * @throws IndexingException the version could not be written
+     */
+    public void setIndexVersion(String indexName, int version)
+        throws IndexingException {
+        try {
+            getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).setVersion(version);
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Commits the documents added since the last commit of an index opened
+     * with {@link #startIndexing(String, String)} and makes them visible to
+     * searches.
+     *
+     * @param indexName index to use
+     * @throws IndexingException the changes could not be committed
+     */
+    public void commitIndex(String indexName) throws IndexingException {
+        try {
+            getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).commit();
+            resultCache.invalidate(indexName);
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Commits and closes the writer of an index opened with
+     * {@link #startIndexing(String, String)}. Does nothing if the index has no
+     * open writer.
+     *
+     * @param indexName index to use
+     * @throws IndexingException the writer could not be closed
+     */
+    public void finishIndexing(String indexName) throws IndexingException {
+        try {
+            getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).closeWriter();
+            resultCache.invalidate(indexName);
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
     }
 
 
@@ -225,6 +484,10 @@ public class IndexManager {
     public void createIndex(String indexName, String lang)
         throws IndexingException {
 
+        if (getOpenWriter(indexName) != null) {
+            // the open writer has already created it
+            return;
+        }
         try {
             IndexWriter writer = getIndexWriter(indexName, lang);
             try {
@@ -264,7 +527,12 @@ public class IndexManager {
         throws IndexingException {
 
         try {
-            IndexWriter writer = getIndexWriter(indexName, lang);
+            IndexWriter writer = getOpenWriter(indexName);
+            if (writer != null) {
+                writer.addDocument(doc);
+                return;
+            }
+            writer = getIndexWriter(indexName, lang);
             try {
                 writer.addDocument(doc);
                 writer.flush();
@@ -278,6 +546,7 @@ public class IndexManager {
                     unlockIndex(indexName);
                 }
             }
+            refreshIndex(indexName);
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -299,6 +568,16 @@ public class IndexManager {
     public void addUniqueToIndex(String indexName, Document doc,
             String uniqueField, String lang)
         throws IndexingException {
+        IndexWriter writer = getOpenWriter(indexName);
+        if (writer != null) {
+            try {
+                writer.updateDocument(new Term(uniqueField, doc.get(uniqueField)), doc);
+            }
+            catch (IOException e) {
+                throw new IndexingException(e);
+            }
+            return;
+        }
         IndexReader reader = null;
         int numFound = 0;
         try {
@@ -332,6 +611,74 @@ public class IndexManager {
         addToIndex(indexName, doc, lang);
     }
 
+    /**
+     * Adds a batch of documents to an index, replacing the documents which
+     * have the same value of the unique field. All documents are written
+     * through a single writer; if the index has been opened with
+     * {@link #startIndexing(String, String)} they become visible to searches
+     * with the next {@link #commitIndex(String)}, otherwise they are
+     * committed right away.
+     *
+     * @param indexName index to use
+     * @param docs documents with data to index
+     * @param uniqueField field in the documents which identifies them uniquely
+     * @param lang language
+     * @throws IndexingException something went wrong adding the documents
+     */
+    public void addUniqueToIndex(String indexName, List<Document> docs,
+            String uniqueField, String lang)
+        throws IndexingException {
+        try {
+            IndexWriter writer = getBatchWriter(indexName, lang);
+            try {
+                for (Document doc : docs) {
+                    writer.updateDocument(new Term(uniqueField, doc.get(uniqueField)),
+                            doc);
+                }
+            }
+            finally {
+                closeBatchWriter(indexName, writer);
+            }
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Removes documents from an index in a single pass.
+     *
+     * @param indexName index to use
+     * @param uniqueField field name which represents this data's unique id
+     * @param objectIds unique ids of the documents to remove
+     * @throws IndexingException something went wrong removing the documents
+     */
+    public void removeFromIndex(String indexName, String uniqueField,
+            Collection<String> objectIds)
+        throws IndexingException {
+        if (objectIds.isEmpty()) {
+            return;
+        }
+        log.info("Removing " + objectIds.size() + " <" + indexName + "> documents");
+        Term[] terms = new Term[objectIds.size()];
+        int i = 0;
+        for (String objectId : objectIds) {
+            terms[i++] = new Term(uniqueField, objectId);
+        }
+        try {
+            IndexWriter writer = getBatchWriter(indexName, IndexHandler.DEFAULT_LANG);
+            try {
+                writer.deleteDocuments(terms);
+            }
+            finally {
+                closeBatchWriter(indexName, writer);
+            }
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
     /**
      * Remove a document from an index
      *
@@ -347,6 +694,11 @@ public class IndexManager {
         Term t = new Term(uniqueField, objectId);
         IndexReader reader;
         try {
+            IndexWriter writer = getOpenWriter(indexName);
+            if (writer != null) {
+                writer.deleteDocuments(t);
+                return;
+            }
             reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
             try {
                 reader.deleteDocuments(t);
@@ -357,6 +709,7 @@ public class IndexManager {
                     reader.close();
                }
             }
+            refreshIndex(indexName);
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -373,14 +726,74 @@ public class IndexManager {
      * @throws IOException thrown if there is a problem unlocking the index.
      */
     private void unlockIndex(String indexName) throws IOException {
-        String path = indexWorkDir + indexName;
-        File f = new File(path);
-        Directory dir = FSDirectory.getDirectory(f);
-        if (IndexReader.isLocked(dir)) {
-            IndexReader.unlock(dir);
+        getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).unlock();
+    }
+
+    private ManagedIndex getManagedIndex(String indexName, String locale)
+            throws IOException {
+        String path = getIndexPath(indexName, locale);
+        ManagedIndex index = indexes.get(path);
+        if (index == null) {
+            index = new ManagedIndex(path, refreshInterval);
+            ManagedIndex existing = indexes.putIfAbsent(path, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    private IndexWriter getOpenWriter(String indexName) throws IndexingException {
+        try {
+            return getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).getOpenWriter();
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
         }
     }
 
+    /**
+     * Returns the open writer of the index or, if there is none, a new
+     * writer which must be passed to {@link #closeBatchWriter} when done.
+     */
+    private IndexWriter getBatchWriter(String indexName, String lang)
+            throws IOException {
+        IndexWriter writer = getManagedIndex(indexName, lang).getOpenWriter();
+        if (writer == null) {
+            writer = getIndexWriter(indexName, lang);
+        }
+        return writer;
+    }
+
+    private void closeBatchWriter(String indexName, IndexWriter writer)
+            throws IOException {
+        ManagedIndex index = getManagedIndex(indexName, IndexHandler.DEFAULT_LANG);
+        if (writer == index.getOpenWriter()) {
+            return;
+        }
+        try {
+            writer.close();
+        }
+        finally {
+            // unlock it if it is locked.
+            unlockIndex(indexName);
+        }
+        index.refresh();
+        resultCache.invalidate(indexName);
+    }
+
+    private void refreshIndex(String indexName) throws IOException {
+        getManagedIndex(indexName, IndexHandler.DEFAULT_LANG).refresh();
+        resultCache.invalidate(indexName);
+    }
+
+    private String getIndexPath(String indexName, String locale) throws IOException {
+        if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
+            return indexWorkDir + File.separator + getDocIndexPath(locale);
+        }
+        return indexWorkDir + indexName;
+    }
+
     private IndexWriter getIndexWriter(String name, String lang)
             throws CorruptIndexException, LockObtainFailedException,
             IOException {
@@ -395,14 +808,7 @@ public class IndexManager {
 
     private IndexReader getIndexReader(String indexName, String locale)
             throws CorruptIndexException, IOException {
-        String path = "";
-        if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
-            path = indexWorkDir + File.separator +
-                getDocIndexPath(locale);
-        }
-        else {
-            path = indexWorkDir + indexName;
-        }
+        String path = getIndexPath(indexName, locale);
         log.info("IndexManager::getIndexReader(" + indexName + ", " + locale +
                 ") path = " + path);
         File f = new File(path);
@@ -410,22 +816,6 @@ public class IndexManager {
         return retval;
     }
 
-    private IndexSearcher getIndexSearcher(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = "";
-        if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
-            path = indexWorkDir + File.separator +
-                getDocIndexPath(locale);
-        }
-        else {
-            path = indexWorkDir + indexName;
-        }
-        log.info("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
-                ") path = " + path);
-        IndexSearcher retval = new IndexSearcher(path);
-        return retval;
-    }
-
     private QueryParser getQueryParser(String indexName, String lang,
             boolean isFineGrained) {
         if (log.isDebugEnabled()) {
@@ -473,84 +863,73 @@ public class IndexManager {
         }
     }
 
-    private List<Result> processHits(String indexName, Hits hits, Set<Term> queryTerms,
-            String query, String lang)
-        throws IOException {
-        List<Result> retval = new ArrayList<Result>();
-        for (int x = 0; x < hits.length(); x++) {
-            Document doc = hits.doc(x);
-            Result pr = null;
-            if (!isScoreAcceptable(indexName, hits, x, query)) {
-                break;
-            }
-            if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
-                pr = new DocResult(x, hits.score(x), doc);
-                String summary = lookupDocSummary(doc, query, lang);
-                if (summary != null) {
-                    ((DocResult)pr).setSummary(summary);
-                }
-            }
-            else if (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0) {
-                pr = new HardwareDeviceResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) {
-                pr = new SnapshotTagResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) {
-                pr = new ServerCustomInfoResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.XCCDF_IDENT_TYPE) == 0) {
-                pr = new Result(x,
-                        doc.getField("id").stringValue(),
-                        doc.getField("identifier").stringValue(),
-                        hits.score(x));
-            }
-            else {
-                pr = new Result(x,
-                        doc.getField("id").stringValue(),
-                        doc.getField("name").stringValue(),
-                        hits.score(x));
+    private Result buildResult(String indexName, Document doc, int x, float score,
+            Set<Term> queryTerms, String query, String lang) {
+        Result pr = null;
+        if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
+            pr = new DocResult(x, score, doc);
+            String summary = lookupDocSummary(doc, query, lang);
+            if (summary != null) {
+                ((DocResult)pr).setSummary(summary);
             }
+        }
+        else if (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0) {
+            pr = new HardwareDeviceResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) {
+            pr = new SnapshotTagResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) {
+            pr = new ServerCustomInfoResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.XCCDF_IDENT_TYPE) == 0) {
+            pr = new Result(x,
+                    doc.getField("id").stringValue(),
+                    doc.getField("identifier").stringValue(),
+                    score);
+        }
+        else {
+            pr = new Result(x,
+                    doc.getField("id").stringValue(),
+                    doc.getField("name").stringValue(),
+                    score);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Hit[" + x + "] Score = " + score + ", Result = " + pr);
+        }
+        /**
+         * matchingField will help the webUI to understand what field was responsible
+         * for this match.  Later implementation should use "Explanation" to determine
+         * field, for now we will simply grab one term and return it's field.
+         */
+        try {
+            MatchingField match = new MatchingField(query, doc, queryTerms);
+            pr.setMatchingField(match.getFieldName());
+            pr.setMatchingFieldValue(match.getFieldValue());
             if (log.isDebugEnabled()) {
-                log.debug("Hit[" + x + "] Score = " + hits.score(x) + ", Result = " + pr);
-            }
-            /**
-             * matchingField will help the webUI to understand what field was responsible
-             * for this match.  Later implementation should use "Explanation" to determine
-             * field, for now we will simply grab one term and return it's field.
-             */
-            try {
-                MatchingField match = new MatchingField(query, doc, queryTerms);
-                pr.setMatchingField(match.getFieldName());
-                pr.setMatchingFieldValue(match.getFieldValue());
-                log.info("hit[" + x + "] matchingField is being set to: <" +
+                log.debug("hit[" + x + "] matchingField is being set to: <" +
                     pr.getMatchingField() + "> based on passed in query field.  " +
                     "matchingFieldValue = " + pr.getMatchingFieldValue());
             }
-            catch (Exception e) {
-                log.error("Caught exception: ", e);
-            }
-            if (pr != null) {
-                retval.add(pr);
-            }
-            if (maxHits > 0 && x == maxHits) {
-                break;
-            }
         }
-        return retval;
+        catch (Exception e) {
+            log.error("Caught exception: ", e);
+        }
+        return pr;
     }
     /**
      *
      * @param indexName
-     * @param hits
-     * @param x
+     * @param score score of the hit
+     * @param x rank of the hit
+     * @param total number of hits
      * @param query
      * @return  true - score is acceptable
      *          false - score is NOT acceptable
      * @throws IOException
      */
-    private boolean isScoreAcceptable(String indexName, Hits hits, int x, String queryIn)
-        throws IOException {
+    private boolean isScoreAcceptable(String indexName, float score, int x, int total,
+            String queryIn) {
         String guessMainQueryTerm = MatchingField.getFirstFieldName(queryIn);
 
         if ((indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) &&
@@ -567,11 +946,11 @@ public class IndexManager {
                 (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) ||
                 (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) ||
                 (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0)) {
-            if (hits.score(x) < system_score_threshold) {
+            if (score < system_score_threshold) {
                 if (log.isDebugEnabled()) {
-                    log.debug("hits.score(" + x + ") is " + hits.score(x));
+                    log.debug("hits.score(" + x + ") is " + score);
                     log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "system_score_threshold = " + system_score_threshold);
                 }
                 return false;
@@ -579,11 +958,11 @@ public class IndexManager {
         }
         else if (indexName.compareTo(BuilderFactory.ERRATA_TYPE) == 0) {
             if (guessMainQueryTerm.compareTo("name") == 0) {
-                if (hits.score(x) < errata_advisory_score_threshold) {
+                if (score < errata_advisory_score_threshold) {
                     if (log.isDebugEnabled()) {
-                        log.debug("hits.score(" + x + ") is " + hits.score(x));
+                        log.debug("hits.score(" + x + ") is " + score);
                         log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "errata_advisory_score_threshold = " +
                             errata_advisory_score_threshold);
                     }
@@ -591,11 +970,11 @@ public class IndexManager {
                 }
             }
             else {
-                if (hits.score(x) < errata_score_threshold) {
+                if (score < errata_score_threshold) {
                     if (log.isDebugEnabled()) {
-                        log.debug("hits.score(" + x + ") is " + hits.score(x));
+                        log.debug("hits.score(" + x + ") is " + score);
                         log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "errata_score_threshold = " +
                             errata_score_threshold);
                     }
@@ -603,8 +982,8 @@ public class IndexManager {
                 }
             }
         }
-        else if (((hits.score(x) < score_threshold) && (x > 10)) ||
-                (hits.score(x) < 0.001)) {
+        else if (((score < score_threshold) && (x > 10)) ||
+                (score < 0.001)) {
             /**
              * Dropping matches which are a poor fit.
              * First term is configurable, it allows matches like spelling errors or
@@ -612,9 +991,9 @@ public class IndexManager {
              * Second term is intended to get rid of pure and utter crap hits
              */
             if (log.isDebugEnabled()) {
-                log.debug("hits.score(" + x + ") is " + hits.score(x));
+                log.debug("hits.score(" + x + ") is " + score);
                 log.debug("Filtering out search results from " + x + " to " +
-                        hits.length() + ", due to their score being below " +
+                        total + ", due to their score being below " +
                         "score_threshold = " + score_threshold);
             }
             return false;
@@ -632,61 +1011,97 @@ public class IndexManager {
      */
     public int deleteRecordsNotInList(Set<String> ids, String indexName,
             String uniqField) {
-        int count = 0;
-        IndexReader reader = null;
+        List<String> stale = new ArrayList<String>();
+        ManagedIndex index = null;
+        ManagedIndex.SearcherRef ref = null;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
-
-            // Use maxDoc() to iterate over all docs, numDocs() returns the
-            // number of currently alive docs leaving out the deleted ones.
-            int maxDoc = reader.maxDoc();
-            for (int i = 0; i < maxDoc; i++) {
-                if (!reader.isDeleted(i)) {
-                    Document doc = reader.document(i);
-                    String uniqId = doc.getField(uniqField).stringValue();
-                    if (!ids.contains(uniqId)) {
-                        log.info(indexName + ":" + uniqField  + ":  <" + uniqId +
-                                "> not found in list of current/good values " +
-                                "assuming this has been deleted from Database and we " +
-                                "should remove it.");
-                        removeFromIndex(indexName, uniqField, uniqId);
-                        count++;
-                    }
-                }
-            }
+            index = getManagedIndex(indexName, IndexHandler.DEFAULT_LANG);
+            ref = index.acquire();
+            findStaleTerms(ref.getReader(), ids, uniqField, stale);
         }
         catch (IOException e) {
             e.printStackTrace();
             log.info("deleteRecordsNotInList() caught exception : " + e);
         }
-        catch (IndexingException e) {
-            e.printStackTrace();
-            log.info("deleteRecordsNotInList() caught exception : " + e);
-        }
         finally {
-            if (reader != null) {
+            if (ref != null) {
                 try {
-                    reader.close();
+                    index.release(ref);
                 }
                 catch (IOException e) {
                     //
                 }
             }
         }
-        return count;
+        for (String uniqId : stale) {
+            log.info(indexName + ":" + uniqField  + ":  <" + uniqId +
+                    "> not found in list of current/good values " +
+                    "assuming this has been deleted from Database and we " +
+                    "should remove it.");
+        }
+        try {
+            removeFromIndex(indexName, uniqField, stale);
+        }
+        catch (IndexingException e) {
+            e.printStackTrace();
+            log.info("deleteRecordsNotInList() caught exception : " + e);
+            return 0;
+        }
+        return stale.size();
+    }
+
+    /**
+     * Collects the unique values which are not in ids by walking the terms of
+     * the unique field. A term is only taken as a unique value when a live
+     * document stores exactly that value in the field, so that the terms of a
+     * field indexed tokenized, and the documents without the field, are left
+     * alone. Only the unique field of those documents is loaded.
+     */
+    private void findStaleTerms(IndexReader reader, Set<String> ids,
+            String uniqField, List<String> stale) throws IOException {
+        FieldSelector selector = new MapFieldSelector(new String[] {uniqField});
+        TermEnum terms = reader.terms(new Term(uniqField, ""));
+        TermDocs termDocs = reader.termDocs();
+        try {
+            Term t = terms.term();
+            while (t != null && t.field().equals(uniqField)) {
+                if (!ids.contains(t.text())) {
+                    // terms of deleted documents stay until segments merge,
+                    // termDocs skips the deleted documents
+                    termDocs.seek(t);
+                    while (termDocs.next()) {
+                        Field field = reader.document(termDocs.doc(), selector)
+                                .getField(uniqField);
+                        if (field != null && t.text().equals(field.stringValue())) {
+                            stale.add(t.text());
+                            break;
+                        }
+                    }
+                }
+                t = terms.next() ? terms.term() : null;
+            }
+        }
+        finally {
+            try {
+                termDocs.close();
+            }
+            finally {
+                terms.close();
+            }
+        }
     }
 
-    private void debugExplainResults(String indexName, Hits hits, IndexSearcher searcher,
-            Query q, Set<Term> queryTerms)
+    private void debugExplainResults(String indexName, ScoreDoc[] hits,
+            IndexSearcher searcher, Query q, Set<Term> queryTerms)
         throws IOException {
         log.debug("Parsed Query is " + q.toString());
         log.debug("Looking at index:  " + indexName);
-        for (int i = 0; i < hits.length(); i++) {
+        for (int i = 0; i < hits.length; i++) {
             if ((i < 10)) {
-                Document doc = hits.doc(i);
-                Float score = hits.score(i);
-                Explanation ex = searcher.explain(q, hits.id(i));
-                log.debug("Looking at hit<" + i + ", " + hits.id(i) + ", " + score +
+                Document doc = searcher.doc(hits[i].doc);
+                Float score = hits[i].score;
+                Explanation ex = searcher.explain(q, hits[i].doc);
+                log.debug("Looking at hit<" + i + ", " + hits[i].doc + ", " + score +
                         ">: " + doc);
                 log.debug("Explanation: " + ex);
                 MatchingField match = new MatchingField(q.toString(), doc, queryTerms);
@@ -769,6 +1184,7 @@ public class IndexManager {
         analyzer.addAnalyzer("snapshotId", new KeywordAnalyzer());
         analyzer.addAnalyzer("orgId", new KeywordAnalyzer());
         analyzer.addAnalyzer("serverId", new KeywordAnalyzer());
+        analyzer.addAnalyzer("uniqId", new KeywordAnalyzer());
         analyzer.addAnalyzer("tagNameId", new KeywordAnalyzer());
         analyzer.addAnalyzer("created", new KeywordAnalyzer());
         analyzer.addAnalyzer("modified", new KeywordAnalyzer());
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Long-lived reader, searcher and writer of a single index directory.
+ *
+ * Searches share one reference counted searcher which is reopened after the
+ * index has been committed through {@link #commit()} or, for changes made
+ * outside of this instance, when it is found to be stale at most once per
+ * refresh interval. A searcher replaced by a newer one is closed once the
+ * last search using it releases it.
+ *
+ * The writer is opened on demand and kept until {@link #closeWriter()},
+ * so that an indexing run pays for a single open and close.
+ *
+ * @version $Rev$
+ */
+class ManagedIndex {
+
+    private static Logger log = Logger.getLogger(ManagedIndex.class);
+
+    /** file of the index directory holding the version, not a Lucene file */
+    private static final String VERSION_FILE = "index_version";
+
+    private final String path;
+    private final long refreshInterval;
+    private SearcherRef current;
+    private long lastCheck;
+    private IndexWriter writer;
+
+    /**
+     * Constructor
+     * @param pathIn index directory
+     * @param refreshIntervalIn minimum time in ms between two checks of
+     * whether the shared searcher is still current
+     */
+    ManagedIndex(String pathIn, long refreshIntervalIn) {
+        path = pathIn;
+        refreshInterval = refreshIntervalIn;
+    }
+
+    /**
+     * @return the index directory
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the shared searcher, opening it on first use. Every call
+     * must be paired with a call to {@link #release(SearcherRef)}.
+     * @return the searcher reference
+     * @throws IOException if the index cannot be opened
+     */
+    synchronized SearcherRef acquire() throws IOException {
+        long now = System.currentTimeMillis();
+        if (current == null) {
+            log.info("Opening searcher for " + path);
+            current = new SearcherRef(IndexReader.open(getDirectory()));
+            lastCheck = now;
+        }
+        else if (now - lastCheck >= refreshInterval) {
+            lastCheck = now;
+            if (!current.reader.isCurrent()) {
+                reopen();
+            }
+        }
+        current.refs++;
+        return current;
+    }
+
+    /**
+     * Releases a searcher reference obtained from {@link #acquire()}.
+     * @param ref the reference to release
+     * @throws IOException if a retired searcher cannot be closed
+     */
+    synchronized void release(SearcherRef ref) throws IOException {
+        ref.refs--;
+        if (ref.refs == 0 && ref != current) {
+            ref.close();
+        }
+    }
+
+    /**
+     * Makes the shared searcher see the latest committed state of the
+     * index. Does nothing if no searcher has been opened yet.
+     * @throws IOException if the index cannot be reopened
+     */
+    synchronized void refresh() throws IOException {
+        if (current != null) {
+            lastCheck = System.currentTimeMillis();
+            reopen();
+        }
+    }
+
+    /**
+     * Returns the writer of this index, opening it (and creating the index
+     * if needed) on first use.
+     * @param analyzer analyzer to use if the writer has to be opened
+     * @return the writer
+     * @throws IOException if the writer cannot be opened
+     */
+    synchronized IndexWriter getWriter(Analyzer analyzer) throws IOException {
+        return getWriter(analyzer, false);
+    }
+
+    /**
+     * Returns the writer of this index, opening it on first use.
+     * @param analyzer analyzer to use if the writer has to be opened
+     * @param create true to start the index over, dropping the documents it
+     * holds once the writer commits; ignored if the writer is already open
+     * @return the writer
+     * @throws IOException if the writer cannot be opened
+     */
+    synchronized IndexWriter getWriter(Analyzer analyzer, boolean create)
+        throws IOException {
+        if (writer == null) {
+            new File(path).mkdirs();
+            if (create) {
+                log.info("Recreating index " + path);
+                writer = new IndexWriter(path, analyzer, true);
+            }
+            else {
+                writer = new IndexWriter(path, analyzer);
+            }
+            writer.setUseCompoundFile(true);
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the version of the layout of the documents of this index, as
+     * recorded by {@link #setVersion(int)}.
+     * @return the version, 1 if none has been recorded
+     * @throws IOException if the version cannot be read
+     */
+    synchronized int getVersion() throws IOException {
+        File file = new File(path, VERSION_FILE);
+        if (!file.exists()) {
+            return 1;
+        }
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line = in.readLine();
+            return line == null ? 1 : Integer.parseInt(line.trim());
+        }
+        catch (NumberFormatException e) {
+            log.warn("Invalid version in " + file + ", assuming 1");
+            return 1;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Records the version of the layout of the documents of this index.
+     * @param version the version
+     * @throws IOException if the version cannot be written
+     */
+    synchronized void setVersion(int version) throws IOException {
+        new File(path).mkdirs();
+        FileWriter out = new FileWriter(new File(path, VERSION_FILE));
+        try {
+            out.write(version + "\n");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the open writer, or null if there is none
+     */
+    synchronized IndexWriter getOpenWriter() {
+        return writer;
+    }
+
+    /**
+     * Commits the pending changes of the open writer and refreshes the
+     * shared searcher.
+     * @throws IOException if the changes cannot be written
+     */
+    synchronized void commit() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        refresh();
+    }
+
+    /**
+     * Commits and closes the open writer, if any, and refreshes the shared
+     * searcher.
+     * @throws IOException if the writer cannot be closed
+     */
+    synchronized void closeWriter() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        }
+        finally {
+            writer = null;
+            // unlock it if it is locked.
+            unlock();
+        }
+        refresh();
+    }
+
+    /**
+     * Unlocks the index if it is currently locked and has no open writer.
+     * @throws IOException if the index cannot be unlocked
+     */
+    synchronized void unlock() throws IOException {
+        if (writer != null) {
+            return;
+        }
+        Directory dir = getDirectory();
+        if (IndexReader.isLocked(dir)) {
+            IndexReader.unlock(dir);
+        }
+    }
+
+    private Directory getDirectory() throws IOException {
+        return FSDirectory.getDirectory(new File(path));
+    }
+
+    private void reopen() throws IOException {
+        IndexReader reader;
+        try {
+            reader = current.reader.reopen();
+        }
+        catch (IOException e) {
+            log.warn("Unable to reopen " + path + ", opening it again", e);
+            reader = IndexReader.open(getDirectory());
+        }
+        if (reader == current.reader) {
+            return;
+        }
+        SearcherRef old = current;
+        current = new SearcherRef(reader);
+        if (old.refs == 0) {
+            old.close();
+        }
+    }
+
+    /**
+     * A reader and searcher pair along with the number of searches using
+     * it.
+     */
+    static final class SearcherRef {
+
+        private final IndexReader reader;
+        private final IndexSearcher searcher;
+        private int refs;
+
+        private SearcherRef(IndexReader readerIn) {
+            reader = readerIn;
+            searcher = new IndexSearcher(readerIn);
+        }
+
+        /**
+         * @return the reader
+         */
+        IndexReader getReader() {
+            return reader;
+        }
+
+        /**
+         * @return the searcher
+         */
+        IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        private void close() throws IOException {
+            try {
+                searcher.close();
+            }
+            finally {
+                reader.close();
+            }
+        }
+    }
+}
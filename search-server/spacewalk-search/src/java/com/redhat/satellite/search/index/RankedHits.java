@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.util.Set;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ScoreDoc;
+
+/**
+ * The acceptable top hits of a search on one searcher of an index, with the
+ * results built from them so far. Results, including their matching field,
+ * are only built for the pages which are asked for.
+ *
+ * @version $Rev$
+ */
+class RankedHits {
+
+    private final ManagedIndex.SearcherRef ref;
+    private final ScoreDoc[] hits;
+    private final int total;
+    private final boolean complete;
+    private final Set<Term> queryTerms;
+    private final Result[] results;
+
+    /**
+     * Constructor
+     * @param refIn searcher the hits were ranked on
+     * @param hitsIn the acceptable hits, best first
+     * @param totalIn number of documents matching the query
+     * @param completeIn true if there are no further acceptable hits
+     * @param queryTermsIn terms of the rewritten query
+     */
+    RankedHits(ManagedIndex.SearcherRef refIn, ScoreDoc[] hitsIn, int totalIn,
+            boolean completeIn, Set<Term> queryTermsIn) {
+        ref = refIn;
+        hits = hitsIn;
+        total = totalIn;
+        complete = completeIn;
+        queryTerms = queryTermsIn;
+        results = new Result[hitsIn.length];
+    }
+
+    /**
+     * @return the searcher the hits were ranked on
+     */
+    ManagedIndex.SearcherRef getSearcherRef() {
+        return ref;
+    }
+
+    /**
+     * @return number of acceptable hits ranked
+     */
+    int size() {
+        return hits.length;
+    }
+
+    /**
+     * @param rank rank of a hit
+     * @return the hit
+     */
+    ScoreDoc getHit(int rank) {
+        return hits[rank];
+    }
+
+    /**
+     * @return number of hits, exact once all acceptable hits have been ranked
+     */
+    int getTotal() {
+        return complete ? hits.length : total;
+    }
+
+    /**
+     * @param count number of hits needed
+     * @return true if the first count hits, or all there are, have been ranked
+     */
+    boolean covers(int count) {
+        return complete || hits.length >= count;
+    }
+
+    /**
+     * @return terms of the rewritten query
+     */
+    Set<Term> getQueryTerms() {
+        return queryTerms;
+    }
+
+    /**
+     * @param rank rank of a hit
+     * @return the result built for the hit, null if there is none yet
+     */
+    synchronized Result getResult(int rank) {
+        return results[rank];
+    }
+
+    /**
+     * @param rank rank of a hit
+     * @param result the result built for the hit
+     */
+    synchronized void setResult(int rank, Result result) {
+        results[rank] = result;
+    }
+}
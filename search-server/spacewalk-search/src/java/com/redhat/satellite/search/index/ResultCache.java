@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the ranked hits of searches, keyed by index,
+ * normalized query, language, fine grained flag and access filter. Hits are
+ * only returned for the searcher they were ranked on, and the hits of an
+ * index are dropped when changes to it are committed.
+ *
+ * @version $Rev$
+ */
+class ResultCache {
+
+    private final Map<List<Object>, RankedHits> cache;
+
+    /**
+     * Constructor
+     * @param maxSize maximum number of searches cached
+     */
+    ResultCache(final int maxSize) {
+        cache = new LinkedHashMap<List<Object>, RankedHits>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                    Map.Entry<List<Object>, RankedHits> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key key of the search, its first element being the index name
+     * @param ref searcher the search runs on
+     * @return the ranked hits, null if they are not cached for this searcher
+     */
+    synchronized RankedHits get(List<Object> key, ManagedIndex.SearcherRef ref) {
+        RankedHits hits = cache.get(key);
+        if (hits != null && hits.getSearcherRef() != ref) {
+            cache.remove(key);
+            return null;
+        }
+        return hits;
+    }
+
+    /**
+     * @param key key of the search, its first element being the index name
+     * @param hits the ranked hits
+     */
+    synchronized void put(List<Object> key, RankedHits hits) {
+        cache.put(key, hits);
+    }
+
+    /**
+     * Drops the cached hits of an index.
+     * @param indexName name of the index
+     */
+    synchronized void invalidate(String indexName) {
+        for (Iterator<List<Object>> iter = cache.keySet().iterator(); iter.hasNext();) {
+            if (indexName.equals(iter.next().get(0))) {
+                iter.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.util.List;
+
+/**
+ * One page of the ranked hits of a search.
+ *
+ * @version $Rev$
+ */
+public class ResultPage {
+
+    private final List<Result> results;
+    private final int total;
+
+    /**
+     * Constructor
+     * @param resultsIn hits of the page
+     * @param totalIn number of hits of the search
+     */
+    public ResultPage(List<Result> resultsIn, int totalIn) {
+        results = resultsIn;
+        total = totalIn;
+    }
+
+    /**
+     * @return the hits of the page, in rank order
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the number of hits of the search. As long as the hits beyond
+     * the page have not been ranked, this is the number of matching
+     * documents, which may include some whose score is too low to be
+     * returned.
+     * @return number of hits
+     */
+    public int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index.builder;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+import java.util.StringTokenizer;
+
+/**
+ * Fields recording who may see a document, used to filter the hits of a
+ * search before they are checked against the database.
+ * @version $Rev$
+ */
+public final class AccessFields {
+
+    /** id of the org owning a server */
+    public static final String ORG = "accessOrgId";
+
+    /** ids of the channels a package or an erratum is in, space separated */
+    public static final String CHANNELS = "accessChannelId";
+
+    /** value of CHANNELS for packages and errata which are in no channel */
+    public static final String NO_CHANNEL = "none";
+
+    private AccessFields() {
+    }
+
+    /**
+     * @param name name of a metadata entry
+     * @return true if the entry is an access field
+     */
+    public static boolean isAccessField(String name) {
+        return ORG.equals(name) || CHANNELS.equals(name);
+    }
+
+    /**
+     * Adds an access field to a document, one untokenized and unstored value
+     * per id.
+     * @param doc the document
+     * @param name name of the field
+     * @param ids the ids, space separated, may be null
+     */
+    public static void add(Document doc, String name, String ids) {
+        if (ids == null) {
+            return;
+        }
+        StringTokenizer st = new StringTokenizer(ids);
+        while (st.hasMoreTokens()) {
+            doc.add(new Field(name, st.nextToken(), Field.Store.NO,
+                    Field.Index.UN_TOKENIZED));
+        }
+    }
+}
@@ -43,6 +43,10 @@ public class ErrataDocumentBuilder implements DocumentBuilder {
 
             String name = iter.next();
             String value = metadata.get(name);
+            if (AccessFields.isAccessField(name)) {
+                AccessFields.add(doc, name, value);
+                continue;
+            }
 
             if (name.equals("name") || name.equals("advisoryName")) {
                 store = Field.Store.YES;
@@ -42,6 +42,10 @@ public class PackageDocumentBuilder implements DocumentBuilder {
 
             String name = iter.next();
             String value = metadata.get(name);
+            if (AccessFields.isAccessField(name)) {
+                AccessFields.add(doc, name, value);
+                continue;
+            }
             if (name.equals("name")) {
                 store = Field.Store.YES;
             }
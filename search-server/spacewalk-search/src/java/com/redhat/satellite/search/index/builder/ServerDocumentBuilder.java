@@ -49,6 +49,10 @@ public class ServerDocumentBuilder implements DocumentBuilder {
 
             String name = iter.next();
             String value = metadata.get(name);
+            if (AccessFields.isAccessField(name)) {
+                AccessFields.add(doc, name, value);
+                continue;
+            }
 
             if (name.equals("name") || name.equals("cpuModel") ||
                     name.equals("hostname") || name.equals("ipaddr") ||
@@ -50,7 +50,8 @@ public class SnapshotTagDocumentBuilder implements DocumentBuilder {
                 tokenize = Field.Index.UN_TOKENIZED;
             }
             else if (name.equals("snapshotId") || name.equals("tagNameId") ||
-                    name.equals("serverId") || name.equals("orgId")) {
+                    name.equals("serverId") || name.equals("orgId") ||
+                    name.equals("uniqId")) {
                 store = Field.Store.YES;
                 tokenize = Field.Index.UN_TOKENIZED;
             }
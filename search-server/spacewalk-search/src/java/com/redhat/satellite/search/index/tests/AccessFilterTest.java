@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.index.tests;
+
+import com.redhat.satellite.search.index.AccessFilter;
+import com.redhat.satellite.search.index.builder.AccessFields;
+import com.redhat.satellite.search.index.builder.PackageDocumentBuilder;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class AccessFilterTest extends TestCase {
+
+    private RAMDirectory dir;
+
+    public void setUp() throws Exception {
+        dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new StandardAnalyzer(), true);
+        writer.addDocument(buildPackage(1, "101"));
+        writer.addDocument(buildPackage(2, "102 103"));
+        writer.addDocument(buildPackage(3, AccessFields.NO_CHANNEL));
+        // indexed before the access fields existed
+        writer.addDocument(buildPackage(4, null));
+        writer.close();
+    }
+
+    public void testBits() throws Exception {
+        IndexReader reader = IndexReader.open(dir);
+        try {
+            assertEquals(ids(true, false, false, true), new AccessFilter(
+                    AccessFields.CHANNELS, Arrays.asList("101")).bits(reader));
+            assertEquals(ids(true, true, false, true), new AccessFilter(
+                    AccessFields.CHANNELS, Arrays.asList("101", "103")).bits(reader));
+            assertEquals(ids(false, false, false, true), new AccessFilter(
+                    AccessFields.CHANNELS, new HashSet<String>()).bits(reader));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void testSearch() throws Exception {
+        IndexSearcher searcher = new IndexSearcher(dir);
+        try {
+            Hits hits = searcher.search(new TermQuery(new Term("arch", "noarch")),
+                    new AccessFilter(AccessFields.CHANNELS, Arrays.asList("102")));
+            Set<String> found = new HashSet<String>();
+            for (int i = 0; i < hits.length(); i++) {
+                found.add(hits.doc(i).get("id"));
+            }
+            assertEquals(new HashSet<String>(Arrays.asList("2", "4")), found);
+        }
+        finally {
+            searcher.close();
+        }
+    }
+
+    public void testEquals() throws Exception {
+        // filters of sessions with the same access share cached results
+        AccessFilter filter = new AccessFilter(AccessFields.CHANNELS,
+                Arrays.asList("101", "102"));
+        AccessFilter same = new AccessFilter(AccessFields.CHANNELS,
+                Arrays.asList("102", "101", "102"));
+        assertEquals(filter, same);
+        assertEquals(filter.hashCode(), same.hashCode());
+        assertEquals(new CachingWrapperFilter(filter), new CachingWrapperFilter(same));
+        assertFalse(filter.equals(new AccessFilter(AccessFields.CHANNELS,
+                Arrays.asList("101"))));
+        assertFalse(filter.equals(new AccessFilter(AccessFields.ORG,
+                Arrays.asList("101", "102"))));
+    }
+
+    private Document buildPackage(long id, String channels) {
+        Map<String, String> attrs = new HashMap<String, String>();
+        attrs.put("name", "package" + id);
+        attrs.put("arch", "noarch");
+        if (channels != null) {
+            attrs.put(AccessFields.CHANNELS, channels);
+        }
+        return new PackageDocumentBuilder().buildDocument(id, attrs);
+    }
+
+    private BitSet ids(boolean... visible) {
+        BitSet retval = new BitSet();
+        for (int i = 0; i < visible.length; i++) {
+            retval.set(i, visible[i]);
+        }
+        return retval;
+    }
+}
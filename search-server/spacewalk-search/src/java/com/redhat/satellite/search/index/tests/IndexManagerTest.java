@@ -12,11 +12,15 @@ import com.redhat.satellite.search.tests.TestUtil;
 import com.redhat.satellite.search.config.Configuration;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class IndexManagerTest extends BaseTestCase {
 
@@ -60,6 +64,131 @@ public class IndexManagerTest extends BaseTestCase {
         assertTrue(results.size() >= 1);
     }
 
+    public void testIndexingSession()
+        throws IndexingException, QueryParseException {
+
+        String index = "foo";
+        Long objectId = new Long(456);
+        Map<String, String> meta = new HashMap<String, String>();
+        meta.put("name", "sessionfoo");
+        meta.put("desc", "A foo added through an open writer");
+        meta.put("size", "12345");
+        meta.put("dateCreated", "7/13/2007");
+        DocumentBuilder pdb = new PackageDocumentBuilder();
+        indexManager.startIndexing(index, "en");
+        try {
+            indexManager.addUniqueToIndex(index, pdb.buildDocument(objectId, meta),
+                    "id", "en");
+            indexManager.addUniqueToIndex(index, pdb.buildDocument(objectId, meta),
+                    "id", "en");
+            indexManager.commitIndex(index);
+            List<Result> results = indexManager.search(index, "name:sessionfoo", "en");
+            assertEquals(1, countHits(results, objectId));
+        }
+        finally {
+            indexManager.finishIndexing(index);
+        }
+        indexManager.removeFromIndex(index, "id", objectId.toString());
+        List<Result> results = indexManager.search(index, "name:sessionfoo", "en");
+        assertEquals(0, countHits(results, objectId));
+    }
+
+    public void testBatchIndexing()
+        throws IndexingException, QueryParseException {
+
+        String index = "batchfoo";
+        DocumentBuilder pdb = new PackageDocumentBuilder();
+        List<Document> docs = new ArrayList<Document>();
+        for (long i = 1; i <= 3; i++) {
+            Map<String, String> meta = new HashMap<String, String>();
+            meta.put("name", "batchfoo");
+            meta.put("desc", "Batch foo number " + i);
+            docs.add(pdb.buildDocument(new Long(i), meta));
+        }
+        indexManager.addUniqueToIndex(index, docs, "id", "en");
+        indexManager.addUniqueToIndex(index, docs, "id", "en");
+        List<Result> results = indexManager.search(index, "name:batchfoo", "en");
+        assertEquals(1, countHits(results, new Long(2)));
+
+        Set<String> ids = new HashSet<String>();
+        ids.add("1");
+        ids.add("3");
+        assertEquals(1, indexManager.deleteRecordsNotInList(ids, index, "id"));
+        assertEquals(0, indexManager.deleteRecordsNotInList(ids, index, "id"));
+        results = indexManager.search(index, "name:batchfoo", "en");
+        assertEquals(0, countHits(results, new Long(2)));
+        assertEquals(1, countHits(results, new Long(3)));
+    }
+
+    public void testDeleteRecordsNotInListMixedDocuments()
+        throws IndexingException, QueryParseException {
+
+        String index = "mixedfoo";
+        List<Document> docs = new ArrayList<Document>();
+        docs.add(buildMixedDocument("1", "1-10", Field.Index.UN_TOKENIZED));
+        docs.add(buildMixedDocument("2", "2-20", Field.Index.UN_TOKENIZED));
+        // indexed tokenized, its terms are not unique values
+        docs.add(buildMixedDocument("3", "3 30", Field.Index.TOKENIZED));
+        // no unique value at all
+        docs.add(buildMixedDocument("4", null, Field.Index.UN_TOKENIZED));
+        indexManager.addUniqueToIndex(index, docs, "id", "en");
+
+        Set<String> ids = new HashSet<String>();
+        ids.add("1-10");
+        assertEquals(1, indexManager.deleteRecordsNotInList(ids, index, "uniqId"));
+        List<Result> results = indexManager.search(index, "name:mixedfoo", "en");
+        assertEquals(1, countHits(results, new Long(1)));
+        assertEquals(0, countHits(results, new Long(2)));
+        assertEquals(1, countHits(results, new Long(3)));
+        assertEquals(1, countHits(results, new Long(4)));
+    }
+
+    public void testRebuildIndex()
+        throws IndexingException, QueryParseException {
+
+        String index = "rebuildfoo";
+        List<Document> docs = new ArrayList<Document>();
+        docs.add(buildMixedDocument("1", "1-10", Field.Index.TOKENIZED));
+        indexManager.addUniqueToIndex(index, docs, "id", "en");
+        assertEquals(1, indexManager.getIndexVersion(index));
+
+        indexManager.startIndexing(index, "en", true);
+        try {
+            docs.clear();
+            docs.add(buildMixedDocument("2", "2-20", Field.Index.UN_TOKENIZED));
+            indexManager.addUniqueToIndex(index, docs, "id", "en");
+        }
+        finally {
+            indexManager.finishIndexing(index);
+        }
+        indexManager.setIndexVersion(index, 2);
+        assertEquals(2, indexManager.getIndexVersion(index));
+        List<Result> results = indexManager.search(index, "name:mixedfoo", "en");
+        assertEquals(0, countHits(results, new Long(1)));
+        assertEquals(1, countHits(results, new Long(2)));
+    }
+
+    private Document buildMixedDocument(String id, String uniqId,
+            Field.Index uniqIndex) {
+        Document doc = new Document();
+        doc.add(new Field("id", id, Field.Store.YES, Field.Index.UN_TOKENIZED));
+        doc.add(new Field("name", "mixedfoo", Field.Store.YES,
+                Field.Index.TOKENIZED));
+        if (uniqId != null) {
+            doc.add(new Field("uniqId", uniqId, Field.Store.YES, uniqIndex));
+        }
+        return doc;
+    }
+
+    private int countHits(List<Result> results, Long objectId) {
+        int count = 0;
+        for (Result r : results) {
+            if (objectId.toString().equals(r.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
 
     public void StillNeedsWork_testQueryDocs()
         throws IOException, IndexingException, QueryParseException {
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.rpc.handlers;
+
+import com.redhat.satellite.search.db.DatabaseManager;
+import com.redhat.satellite.search.db.Query;
+import com.redhat.satellite.search.index.AccessFilter;
+import com.redhat.satellite.search.index.builder.AccessFields;
+
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access filters of the sessions searching the package, errata and server
+ * indexes, kept for a short time so that the channels or the org of a
+ * session are looked up once rather than for every search, and so that the
+ * filter bits of an index reader are computed once per session.
+ *
+ * A filter only narrows down the hits which are then checked against the
+ * database, so a filter which is out of date can hide a document which was
+ * made visible in the meantime, but never show one which is not visible.
+ *
+ * @version $Rev$
+ */
+class AccessFilterCache {
+
+    private static final int MAX_SESSIONS = 1000;
+
+    private final DatabaseManager databaseManager;
+    private final long ttl;
+    private final Map<String, CachedFilter> filters;
+
+    /**
+     * Constructor
+     * @param databaseManagerIn database to look the access of sessions up in
+     * @param ttlIn time in ms for which a filter is kept
+     */
+    AccessFilterCache(DatabaseManager databaseManagerIn, long ttlIn) {
+        databaseManager = databaseManagerIn;
+        ttl = ttlIn;
+        filters = new LinkedHashMap<String, CachedFilter>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, CachedFilter> eldest) {
+                return size() > MAX_SESSIONS;
+            }
+        };
+    }
+
+    /**
+     * Returns the access filter of a session for an index.
+     * @param sessionId id of the session searching
+     * @param indexName index searched
+     * @return the filter, null if the index has no access fields
+     * @throws SQLException something went wrong looking up the access
+     */
+    Filter getFilter(long sessionId, String indexName) throws SQLException {
+        String field;
+        if ("package".equals(indexName) || "errata".equals(indexName)) {
+            field = AccessFields.CHANNELS;
+        }
+        else if ("server".equals(indexName)) {
+            field = AccessFields.ORG;
+        }
+        else {
+            return null;
+        }
+        String key = sessionId + ":" + field;
+        long now = System.currentTimeMillis();
+        synchronized (filters) {
+            CachedFilter cached = filters.get(key);
+            if (cached != null && now - cached.created < ttl) {
+                return cached.filter;
+            }
+        }
+        Filter filter = new CachingWrapperFilter(new AccessFilter(field,
+                loadAccess(sessionId, field)));
+        synchronized (filters) {
+            filters.put(key, new CachedFilter(filter, now));
+        }
+        return filter;
+    }
+
+    private List<String> loadAccess(long sessionId, String field) throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("session_id", sessionId);
+        if (AccessFields.CHANNELS.equals(field)) {
+            Query<String> query = databaseManager.getQuery("listVisibleChannelIds");
+            try {
+                return query.loadList(params);
+            }
+            finally {
+                query.close();
+            }
+        }
+        Query<String> query = databaseManager.getQuery("getSessionOrgId");
+        try {
+            String orgId = query.load(params);
+            if (orgId == null) {
+                return Collections.<String>emptyList();
+            }
+            return Collections.singletonList(orgId);
+        }
+        finally {
+            query.close();
+        }
+    }
+
+    /**
+     * A filter along with when it was created.
+     */
+    private static final class CachedFilter {
+
+        private final Filter filter;
+        private final long created;
+
+        private CachedFilter(Filter filterIn, long createdIn) {
+            filter = filterIn;
+            created = createdIn;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.redhat.satellite.search.index.IndexManager;
 import com.redhat.satellite.search.index.IndexingException;
 import com.redhat.satellite.search.index.Result;
 import com.redhat.satellite.search.index.QueryParseException;
+import com.redhat.satellite.search.index.ResultPage;
 import com.redhat.satellite.search.scheduler.ScheduleManager;
 
 import org.apache.log4j.Logger;
@@ -48,6 +49,7 @@ public class IndexHandler {
     private static Logger log = Logger.getLogger(IndexHandler.class);
     private IndexManager indexManager;
     private DatabaseManager databaseManager;
+    private AccessFilterCache accessFilters;
     public static final int QUERY_ERROR = 100;
     public static final int INDEX_ERROR = 200;
     public static final int DB_ERROR = 300;
@@ -63,6 +65,7 @@ public class IndexHandler {
             ScheduleManager schedMgr) {
         indexManager = idxManager;
         databaseManager = dbMgr;
+        accessFilters = new AccessFilterCache(dbMgr, idxManager.getAccessFilterTtl());
     }
 
     /**
@@ -142,21 +145,70 @@ public class IndexHandler {
     public List<Result> search(long sessionId, String indexName, String query,
             String lang, boolean isFineGrained)
             throws XmlRpcFault {
+        return searchPage(sessionId, indexName, query, lang, isFineGrained, 0,
+                Integer.MAX_VALUE).getResults();
+    }
+
+    /**
+     * Search index and return one page of the hits
+     *
+     * @param sessionId
+     *            user's application session id
+     * @param indexName
+     *            index to use
+     * @param query
+     *            search query
+     *  @param lang
+     *            language
+     *  @param isFineGrained
+     *            if set will restrict matches to be stricter and less forgiving
+     *  @param offset
+     *            rank of the first hit of the page
+     *  @param limit
+     *            maximum number of hits of the page
+     * @return map with the hits of the page as "results" and the number of
+     * hits ranked for the query as "total", hits the user may not see being
+     * dropped from the page but counted in the total
+     * @throws XmlRpcFault something bad happened
+     */
+    public Map<String, Object> search(long sessionId, String indexName, String query,
+            String lang, boolean isFineGrained, int offset, int limit)
+            throws XmlRpcFault {
+        if (offset < 0 || limit < 0) {
+            throw new XmlRpcFault(QUERY_ERROR, "Invalid page: offset = " + offset +
+                    ", limit = " + limit);
+        }
+        ResultPage page = searchPage(sessionId, indexName, query, lang, isFineGrained,
+                offset, limit);
+        Map<String, Object> retval = new HashMap<String, Object>();
+        retval.put("total", page.getTotal());
+        retval.put("results", page.getResults());
+        return retval;
+    }
+
+    private ResultPage searchPage(long sessionId, String indexName, String query,
+            String lang, boolean isFineGrained, int offset, int limit)
+            throws XmlRpcFault {
         if (log.isDebugEnabled()) {
             log.debug("IndexHandler:: searching for: " + query + ", indexName = " +
-                    indexName + ", lang = " + lang);
+                    indexName + ", lang = " + lang + ", offset = " + offset +
+                    ", limit = " + limit);
         }
         boolean retry = true;
         while (retry) {
             try {
                 retry = false;
-                List<Result> hits = indexManager.search(indexName, query, lang,
-                        isFineGrained);
+                // hits the session may not see are dropped by the index
+                // already, the database check is only left with the rest
+                ResultPage page = indexManager.search(indexName, query, lang,
+                        isFineGrained, accessFilters.getFilter(sessionId, indexName),
+                        offset, limit);
                 if (indexName.equals("package") || indexName.equals("errata")
                         || indexName.equals("server")) {
-                    return screenHits(sessionId, indexName, hits);
+                    return new ResultPage(screenHits(sessionId, indexName,
+                            page.getResults()), page.getTotal());
                 }
-                return hits;
+                return page;
             }
             catch (IndexingException e) {
                 log.error("Caught exception: ", e);
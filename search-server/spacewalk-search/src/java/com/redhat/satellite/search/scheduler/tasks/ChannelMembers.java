@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2015 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.scheduler.tasks;
+
+import com.redhat.satellite.search.db.DatabaseManager;
+import com.redhat.satellite.search.db.Query;
+import com.redhat.satellite.search.db.models.ChannelMember;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the channels of a batch of packages or errata, the value of
+ * their access field.
+ * @version $Rev$
+ */
+final class ChannelMembers {
+
+    // oracle does not take more than 1000 items in an in clause
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    private ChannelMembers() {
+    }
+
+    /**
+     * @param databaseManager database to query
+     * @param queryName query returning the ChannelMembers of the id_list
+     * @param ids ids of the packages or errata
+     * @return space separated channel ids by package or erratum id, objects
+     * which are in no channel are left out
+     * @throws SQLException something went wrong querying the database
+     */
+    static Map<Long, String> load(DatabaseManager databaseManager, String queryName,
+            List<Long> ids) throws SQLException {
+        Map<Long, StringBuilder> channels = new HashMap<Long, StringBuilder>();
+        for (int i = 0; i < ids.size(); i += IN_CLAUSE_SIZE) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("id_list", ids.subList(i, Math.min(i + IN_CLAUSE_SIZE,
+                    ids.size())));
+            Query<ChannelMember> query = databaseManager.getQuery(queryName);
+            try {
+                for (ChannelMember member : query.loadList(params)) {
+                    StringBuilder buf = channels.get(member.getId());
+                    if (buf == null) {
+                        buf = new StringBuilder();
+                        channels.put(member.getId(), buf);
+                    }
+                    else {
+                        buf.append(' ');
+                    }
+                    buf.append(member.getChannelId());
+                }
+            }
+            finally {
+                query.close();
+            }
+        }
+        Map<Long, String> retval = new HashMap<Long, String>();
+        for (Map.Entry<Long, StringBuilder> e : channels.entrySet()) {
+            retval.put(e.getKey(), e.getValue().toString());
+        }
+        return retval;
+    }
+}
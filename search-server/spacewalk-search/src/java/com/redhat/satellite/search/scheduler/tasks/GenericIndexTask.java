@@ -31,6 +31,7 @@ import org.quartz.JobExecutionException;
 import org.quartz.StatefulJob;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -63,28 +64,49 @@ public abstract class GenericIndexTask implements StatefulJob {
             //try to create the index first incase we never actually
             //   have any records (BZ 537502)
             indexManager.createIndex(getIndexName(), lang);
-            List<GenericRecord> data = getRecords(databaseManager);
-            int count = 0;
-            log.info(super.getClass().toString() + "found [" +
-                    data.size() + "] items to index");
-            for (Iterator<GenericRecord> iter = data.iterator(); iter.hasNext();) {
-                GenericRecord current = iter.next();
-                indexRecord(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastRecord(databaseManager, current.getId());
+            // an index written with an older layout of its documents is built
+            // again from all the records
+            boolean rebuild =
+                indexManager.getIndexVersion(getIndexName()) < getIndexVersion();
+            if (rebuild) {
+                log.info("Rebuilding index <" + getIndexName() + "> for version " +
+                        getIndexVersion());
+            }
+            indexManager.startIndexing(getIndexName(), lang, rebuild);
+            try {
+                List<GenericRecord> data = getRecords(databaseManager, rebuild);
+                int batchSize = indexManager.getBatchSize();
+                List<Document> batch = new ArrayList<Document>(batchSize);
+                log.info(super.getClass().toString() + "found [" +
+                        data.size() + "] items to index");
+                for (Iterator<GenericRecord> iter = data.iterator(); iter.hasNext();) {
+                    GenericRecord current = iter.next();
+                    batch.add(buildDocument(current));
+                    if (batch.size() >= batchSize || !iter.hasNext()) {
+                        indexManager.addUniqueToIndex(getIndexName(), batch,
+                                getUniqueFieldId(), lang);
+                        // only record progress which has made it to the index
+                        indexManager.commitIndex(getIndexName());
+                        if (System.getProperties().get("isTesting") == null) {
+                            updateLastRecord(databaseManager, current.getId());
+                        }
+                        batch.clear();
                     }
-                    count = 0;
                 }
+                //
+                // Check to see if any records have been deleted from database, so
+                // we should delete from our indexes.
+                //
+                int numDel = handleDeletedRecords(databaseManager, indexManager);
+                log.info("Deleted " + numDel + " records from index <" +
+                        getIndexName() + ">");
+            }
+            finally {
+                indexManager.finishIndexing(getIndexName());
+            }
+            if (rebuild) {
+                indexManager.setIndexVersion(getIndexName(), getIndexVersion());
             }
-            //
-            // Check to see if any records have been deleted from database, so
-            // we should delete from our indexes.
-            //
-            int numDel = handleDeletedRecords(databaseManager, indexManager);
-            log.info("Deleted " + numDel + " records from index <" +
-                    getIndexName() + ">");
         }
         catch (SQLException e) {
             e.printStackTrace();
@@ -129,51 +151,50 @@ public abstract class GenericIndexTask implements StatefulJob {
     }
 
     /**
-     * @param indexManager
-     * @param current
+     * @param data record to index
+     * @return the document to add to the index
      */
-    private void indexRecord(IndexManager indexManager,
-            GenericRecord data)
-        throws IndexingException {
-
+    private Document buildDocument(GenericRecord data) {
         Map<String, String> attrs = getFieldMap(data);
         log.info(super.getClass().toString() + " Indexing object: " +
                 data.getId() + ": " + attrs.toString());
         DocumentBuilder pdb = BuilderFactory.getBuilder(getIndexName());
-        Document doc = pdb.buildDocument(new Long(data.getId()), attrs);
-        indexManager.addUniqueToIndex(getIndexName(), doc, getUniqueFieldId(),
-                lang);
+        return pdb.buildDocument(new Long(data.getId()), attrs);
     }
 
 
     /**
      * @param databaseManager
+     * @param all true to return all the records, whatever has been indexed
      * @return
      */
-    private List<GenericRecord> getRecords(DatabaseManager databaseManager)
+    private List<GenericRecord> getRecords(DatabaseManager databaseManager,
+            boolean all)
         throws SQLException {
         // What was the last object id we indexed?
         List<GenericRecord> retval = null;
-        Query<Long> query = databaseManager.getQuery(getQueryLastRecord());
         Long sid = null;
-        try {
-            sid = query.load();
-        }
-        finally {
-            query.close();
+        Date lastRun = null;
+        if (!all) {
+            Query<Long> query = databaseManager.getQuery(getQueryLastRecord());
+            try {
+                sid = query.load();
+            }
+            finally {
+                query.close();
+            }
+            // When was the last time we ran the indexing of servers?
+            Query<Date> queryLast = databaseManager.getQuery(getQueryLastIndexDate());
+            try {
+                lastRun = queryLast.load();
+            }
+            finally {
+                queryLast.close();
+            }
         }
         if (sid == null) {
             sid = new Long(0);
         }
-        // When was the last time we ran the indexing of servers?
-        Query<Date> queryLast = databaseManager.getQuery(getQueryLastIndexDate());
-        Date lastRun = null;
-        try {
-            lastRun = queryLast.load();
-        }
-        finally {
-            queryLast.close();
-        }
         if (lastRun == null) {
             lastRun = new Date(0);
         }
@@ -227,6 +248,16 @@ public abstract class GenericIndexTask implements StatefulJob {
         return indexManager.deleteRecordsNotInList(idSet, indexName, uniqField);
     }
 
+    /**
+     * Returns the version of the layout of the documents of the index. It is
+     * to be increased whenever the way a field is indexed changes, so that the
+     * index gets rebuilt rather than holding documents of both layouts.
+     * @return the version of the index
+     */
+    protected int getIndexVersion() {
+        return 1;
+    }
+
     /**
      *
      * @param data fully populated DTO object
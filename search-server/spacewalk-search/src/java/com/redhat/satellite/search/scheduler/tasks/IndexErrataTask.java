@@ -20,6 +20,7 @@ import com.redhat.satellite.search.db.WriteQuery;
 import com.redhat.satellite.search.db.models.Errata;
 import com.redhat.satellite.search.index.IndexManager;
 import com.redhat.satellite.search.index.IndexingException;
+import com.redhat.satellite.search.index.builder.AccessFields;
 import com.redhat.satellite.search.index.builder.BuilderFactory;
 import com.redhat.satellite.search.index.builder.DocumentBuilder;
 
@@ -31,7 +32,9 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -44,6 +47,8 @@ import java.util.Map;
  */
 public class IndexErrataTask implements Job {
 
+    // 2: documents carry the channels access field
+    private static final int INDEX_VERSION = 2;
     private static Logger log = Logger.getLogger(IndexErrataTask.class);
     private String lang = "en";
     /**
@@ -58,21 +63,41 @@ public class IndexErrataTask implements Job {
             (IndexManager)jobData.get("indexManager");
 
         try {
-
-            List<Errata> errata = getErrata(databaseManager);
-            int count = 0;
-            log.info("found [" + errata.size() + "] errata to index");
-            for (Iterator<Errata> iter = errata.iterator(); iter.hasNext();) {
-                Errata current = iter.next();
-                indexErrata(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastErrataId(databaseManager, current.getId());
+            // an index written with an older layout of its documents is built
+            // again from all the errata
+            boolean rebuild = indexManager.getIndexVersion("errata") < INDEX_VERSION;
+            if (rebuild) {
+                log.info("Rebuilding index <errata> for version " + INDEX_VERSION);
+            }
+            indexManager.startIndexing("errata", lang, rebuild);
+            try {
+                long lastId = rebuild ? 0 : getLastErrataId(databaseManager);
+                List<Errata> errata = getErrata(databaseManager, lastId, rebuild);
+                int batchSize = indexManager.getBatchSize();
+                List<Errata> batch = new ArrayList<Errata>(batchSize);
+                log.info("found [" + errata.size() + "] errata to index");
+                for (Iterator<Errata> iter = errata.iterator(); iter.hasNext();) {
+                    Errata current = iter.next();
+                    batch.add(current);
+                    if (batch.size() == batchSize || !iter.hasNext()) {
+                        indexErrata(databaseManager, indexManager, batch);
+                        indexManager.commitIndex("errata");
+                        // errata whose channels changed may be older than
+                        // the last indexed one
+                        lastId = Math.max(lastId, current.getId());
+                        if (System.getProperties().get("isTesting") == null) {
+                            updateLastErrataId(databaseManager, lastId);
+                        }
+                        batch.clear();
                     }
-                    count = 0;
                 }
             }
+            finally {
+                indexManager.finishIndexing("errata");
+            }
+            if (rebuild) {
+                indexManager.setIndexVersion("errata", INDEX_VERSION);
+            }
         }
         catch (SQLException e) {
             throw new JobExecutionException(e);
@@ -114,12 +139,27 @@ public class IndexErrataTask implements Job {
     }
 
     /**
+     * @param databaseManager
      * @param indexManager
-     * @param current
+     * @param errataList
      */
-    private void indexErrata(IndexManager indexManager, Errata errata)
-        throws IndexingException {
+    private void indexErrata(DatabaseManager databaseManager,
+            IndexManager indexManager, List<Errata> errataList)
+        throws SQLException, IndexingException {
+        List<Long> ids = new ArrayList<Long>(errataList.size());
+        for (Errata errata : errataList) {
+            ids.add(errata.getId());
+        }
+        Map<Long, String> channels = ChannelMembers.load(databaseManager,
+                "listErrataChannels", ids);
+        List<Document> docs = new ArrayList<Document>(errataList.size());
+        for (Errata errata : errataList) {
+            docs.add(buildDocument(errata, channels.get(errata.getId())));
+        }
+        indexManager.addUniqueToIndex("errata", docs, "id", lang);
+    }
 
+    private Document buildDocument(Errata errata, String channels) {
         Map<String, String> attrs = new HashMap<String, String>();
         attrs.put("id", new Long(errata.getId()).toString());
         attrs.put("advisory", errata.getAdvisory());
@@ -139,21 +179,20 @@ public class IndexErrataTask implements Job {
         attrs.put("modified", errata.getModified());
         attrs.put("lastModified", errata.getLastModified());
         attrs.put("name", errata.getAdvisory());
+        attrs.put(AccessFields.CHANNELS,
+                channels != null ? channels : AccessFields.NO_CHANNEL);
 
         log.info("Indexing errata: " + errata.getId() + ": " + attrs.toString());
         DocumentBuilder edb = BuilderFactory.getBuilder(BuilderFactory.ERRATA_TYPE);
-        Document doc = edb.buildDocument(new Long(errata.getId()), attrs);
-        indexManager.addToIndex("errata", doc, lang);
+        return edb.buildDocument(new Long(errata.getId()), attrs);
     }
 
     /**
      * @param databaseManager
      * @return
      */
-    private List<Errata> getErrata(DatabaseManager databaseManager)
+    private long getLastErrataId(DatabaseManager databaseManager)
         throws SQLException {
-
-        List<Errata> retval = null;
         Query<Long> query = databaseManager.getQuery("getLastErrataId");
         Long eid = null;
         try {
@@ -162,12 +201,31 @@ public class IndexErrataTask implements Job {
         finally {
             query.close();
         }
-        if (eid == null) {
-            eid = new Long(0);
+        return eid == null ? 0 : eid;
+    }
+
+    private List<Errata> getErrata(DatabaseManager databaseManager, long eid,
+            boolean all)
+        throws SQLException {
+
+        List<Errata> retval = null;
+        Query<Date> queryLast = databaseManager.getQuery("getLastErrataIndexRun");
+        Date lastRun = null;
+        try {
+            lastRun = queryLast.load();
+        }
+        finally {
+            queryLast.close();
+        }
+        if (lastRun == null || all) {
+            lastRun = new Date(0);
         }
         Query<Errata> errataQuery = databaseManager.getQuery("listErrataFromId");
         try {
-            retval = errataQuery.loadList(eid);
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("id", eid);
+            params.put("last_modified", lastRun);
+            retval = errataQuery.loadList(params);
         }
         finally {
             errataQuery.close();
@@ -21,6 +21,7 @@ import com.redhat.satellite.search.db.WriteQuery;
 import com.redhat.satellite.search.db.models.RhnPackage;
 import com.redhat.satellite.search.index.IndexManager;
 import com.redhat.satellite.search.index.IndexingException;
+import com.redhat.satellite.search.index.builder.AccessFields;
 import com.redhat.satellite.search.index.builder.BuilderFactory;
 import com.redhat.satellite.search.index.builder.DocumentBuilder;
 
@@ -32,7 +33,9 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +48,8 @@ import java.util.Map;
  */
 public class IndexPackagesTask implements Job {
 
+    // 2: documents carry the channels access field
+    private static final int INDEX_VERSION = 2;
     private static Logger log = Logger.getLogger(IndexPackagesTask.class);
     private String lang = "en";
     /**
@@ -61,20 +66,41 @@ public class IndexPackagesTask implements Job {
             if (System.getProperties().get("isTesting") != null) {
                 cleanLastPackage(databaseManager);
             }
-            List<RhnPackage> packages = getPackages(databaseManager);
-            int count = 0;
-            log.info("found [" + packages.size() + "] packages to index");
-            for (Iterator<RhnPackage> iter = packages.iterator(); iter.hasNext();) {
-                RhnPackage current = iter.next();
-                indexPackage(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastPackageId(databaseManager, current.getId());
+            // an index written with an older layout of its documents is built
+            // again from all the packages
+            boolean rebuild = indexManager.getIndexVersion("package") < INDEX_VERSION;
+            if (rebuild) {
+                log.info("Rebuilding index <package> for version " + INDEX_VERSION);
+            }
+            indexManager.startIndexing("package", lang, rebuild);
+            try {
+                long lastId = rebuild ? 0 : getLastPackageId(databaseManager);
+                List<RhnPackage> packages = getPackages(databaseManager, lastId, rebuild);
+                int batchSize = indexManager.getBatchSize();
+                List<RhnPackage> batch = new ArrayList<RhnPackage>(batchSize);
+                log.info("found [" + packages.size() + "] packages to index");
+                for (Iterator<RhnPackage> iter = packages.iterator(); iter.hasNext();) {
+                    RhnPackage current = iter.next();
+                    batch.add(current);
+                    if (batch.size() == batchSize || !iter.hasNext()) {
+                        indexPackages(databaseManager, indexManager, batch);
+                        indexManager.commitIndex("package");
+                        // packages whose channels changed may be older than
+                        // the last indexed one
+                        lastId = Math.max(lastId, current.getId());
+                        if (System.getProperties().get("isTesting") == null) {
+                            updateLastPackageId(databaseManager, lastId);
+                        }
+                        batch.clear();
                     }
-                    count = 0;
                 }
             }
+            finally {
+                indexManager.finishIndexing("package");
+            }
+            if (rebuild) {
+                indexManager.setIndexVersion("package", INDEX_VERSION);
+            }
         }
         catch (SQLException e) {
             throw new JobExecutionException(e);
@@ -95,8 +121,23 @@ public class IndexPackagesTask implements Job {
         }
     }
 
-    private void indexPackage(IndexManager indexManager, RhnPackage pkg)
-            throws IndexingException {
+    private void indexPackages(DatabaseManager databaseManager,
+            IndexManager indexManager, List<RhnPackage> pkgs)
+        throws SQLException, IndexingException {
+        List<Long> ids = new ArrayList<Long>(pkgs.size());
+        for (RhnPackage pkg : pkgs) {
+            ids.add(pkg.getId());
+        }
+        Map<Long, String> channels = ChannelMembers.load(databaseManager,
+                "listPackageChannels", ids);
+        List<Document> docs = new ArrayList<Document>(pkgs.size());
+        for (RhnPackage pkg : pkgs) {
+            docs.add(buildDocument(pkg, channels.get(pkg.getId())));
+        }
+        indexManager.addUniqueToIndex("package", docs, "id", lang);
+    }
+
+    private Document buildDocument(RhnPackage pkg, String channels) {
         Map<String, String> attrs = new HashMap<String, String>();
         attrs.put("name", pkg.getName());
         attrs.put("version", pkg.getVersion());
@@ -105,10 +146,11 @@ public class IndexPackagesTask implements Job {
         attrs.put("description", pkg.getDescription());
         attrs.put("summary", pkg.getSummary());
         attrs.put("arch", pkg.getArch());
+        attrs.put(AccessFields.CHANNELS,
+                channels != null ? channels : AccessFields.NO_CHANNEL);
         log.info("Indexing package: " + pkg.getId() + ": " + attrs.toString());
         DocumentBuilder pdb = BuilderFactory.getBuilder(BuilderFactory.PACKAGES_TYPE);
-        Document doc = pdb.buildDocument(new Long(pkg.getId()), attrs);
-        indexManager.addToIndex("package", doc, lang);
+        return pdb.buildDocument(new Long(pkg.getId()), attrs);
     }
 
     private void updateLastPackageId(DatabaseManager databaseManager,
@@ -137,9 +179,8 @@ public class IndexPackagesTask implements Job {
         }
     }
 
-    private List<RhnPackage> getPackages(DatabaseManager databaseManager)
+    private long getLastPackageId(DatabaseManager databaseManager)
             throws SQLException {
-        List<RhnPackage> retval = null;
         Query<Long> query = databaseManager.getQuery("getLastPackageId");
         Long packageId = null;
         try {
@@ -148,12 +189,29 @@ public class IndexPackagesTask implements Job {
         finally {
             query.close();
         }
-        if (packageId == null) {
-            packageId = new Long(0);
+        return packageId == null ? 0 : packageId;
+    }
+
+    private List<RhnPackage> getPackages(DatabaseManager databaseManager,
+            long packageId, boolean all) throws SQLException {
+        List<RhnPackage> retval = null;
+        Query<Date> queryLast = databaseManager.getQuery("getLastPackageIndexRun");
+        Date lastRun = null;
+        try {
+            lastRun = queryLast.load();
+        }
+        finally {
+            queryLast.close();
+        }
+        if (lastRun == null || all) {
+            lastRun = new Date(0);
         }
         Query<RhnPackage> pkgQuery = databaseManager.getQuery("listPackagesFromId");
         try {
-            retval = pkgQuery.loadList(packageId);
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("id", packageId);
+            params.put("last_modified", lastRun);
+            retval = pkgQuery.loadList(params);
         }
         finally {
             pkgQuery.close();
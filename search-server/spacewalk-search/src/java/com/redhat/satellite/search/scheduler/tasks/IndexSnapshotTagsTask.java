@@ -47,6 +47,15 @@ public class IndexSnapshotTagsTask extends GenericIndexTask {
         return attrs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getIndexVersion() {
+        // 2: uniqId is indexed untokenized
+        return 2;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -17,6 +17,7 @@ package com.redhat.satellite.search.scheduler.tasks;
 
 import com.redhat.satellite.search.db.models.GenericRecord;
 import com.redhat.satellite.search.db.models.Server;
+import com.redhat.satellite.search.index.builder.AccessFields;
 import com.redhat.satellite.search.index.builder.BuilderFactory;
 
 import java.util.HashMap;
@@ -90,9 +91,19 @@ public class IndexSystemsTask extends GenericIndexTask {
         attrs.put("ram", srvr.getRam());
         attrs.put("swap", srvr.getSwap());
         attrs.put("uuid", srvr.getUuid());
+        attrs.put(AccessFields.ORG, srvr.getOrgId());
         return attrs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getIndexVersion() {
+        // 2: documents carry the org access field
+        return 2;
+    }
+
     /**
      * {@inheritDoc}
      */